@@ -325,6 +325,7 @@ public class BenchmarkRunner {
             new ObservationTest(),
             new RevisionGCTest(),
             new ContinuousRevisionGCTest(),
+            new ConcurrentSegmentCommitTest(),
             new XmlImportTest(),
             new FlatTreeWithAceForSamePrincipalTest(),
             new ReadDeepTreeTest(
@@ -492,7 +493,8 @@ public class BenchmarkRunner {
             new BundlingNodeTest(),
             new PersistentCacheTest(statsProvider),
             new StringWriteTest(),
-            new BasicWriteTest()
+            new BasicWriteTest(),
+            new RDBDocumentEncodingBenchmark()
         };
 
         Set<String> argset = Sets.newHashSet(nonOption.values(options));
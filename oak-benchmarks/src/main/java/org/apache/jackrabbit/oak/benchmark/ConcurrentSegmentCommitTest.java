@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.benchmark;
+
+import static java.util.Arrays.asList;
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.fixture.OakFixture;
+import org.apache.jackrabbit.oak.fixture.RepositoryFixture;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitHook;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+
+/**
+ * Measures the commit throughput of the segment node store with the lock
+ * based and the optimistic commit scheduler. Every writer thread commits to
+ * its own subtree through a commit hook that burns a configurable amount of
+ * CPU time, standing in for index editors and validators. With the lock based
+ * scheduler the commit hooks run one at a time, while the optimistic scheduler
+ * runs them in parallel.
+ * <p>
+ * The benchmark runs only for the {@code Oak-Segment-Tar} fixture and creates
+ * its own file store for each run. The number of writers is taken from the
+ * {@code --concurrency} option, and defaults to 1, 2, 4, 8, 16 and 32.
+ */
+public class ConcurrentSegmentCommitTest extends Benchmark {
+
+    private static final List<Integer> CONCURRENCY_DEFAULT = asList(1, 2, 4, 8, 16, 32);
+
+    /**
+     * Time spent in the commit hook, in microseconds.
+     */
+    private static final long HOOK_COST = Long.getLong("hookCost", 500);
+
+    /**
+     * Duration of a single run, in seconds.
+     */
+    private static final int RUNTIME = Integer.getInteger("runtime", 10);
+
+    @Override
+    public void run(Iterable<RepositoryFixture> fixtures) {
+        run(fixtures, CONCURRENCY_DEFAULT);
+    }
+
+    @Override
+    public void run(Iterable<RepositoryFixture> fixtures, List<Integer> concurrencyLevels) {
+        if (concurrencyLevels == null || concurrencyLevels.isEmpty()) {
+            concurrencyLevels = CONCURRENCY_DEFAULT;
+        }
+        for (RepositoryFixture fixture : fixtures) {
+            if (!OakFixture.OAK_SEGMENT_TAR.equals(fixture.toString())) {
+                System.out.format("%s: %s only runs on %s, skipping%n", fixture, this, OakFixture.OAK_SEGMENT_TAR);
+                continue;
+            }
+            System.out.format("# %-26s %8s %12s %12s%n", this, "writers", "commits/s", "failures");
+            for (int writers : concurrencyLevels) {
+                for (boolean optimistic : new boolean[] {false, true}) {
+                    try {
+                        run(writers, optimistic);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+    }
+
+    private void run(int writers, boolean optimistic) throws Exception {
+        File directory = new File("target", "segment-commit-" + System.nanoTime());
+        FileStore store = fileStoreBuilder(directory).build();
+        try {
+            final SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store)
+                    .optimisticScheduler(optimistic)
+                    .build();
+
+            final AtomicBoolean running = new AtomicBoolean(true);
+            final AtomicLong commits = new AtomicLong();
+            final AtomicLong failures = new AtomicLong();
+            final CountDownLatch done = new CountDownLatch(writers);
+            final CommitHook hook = new BusyHook();
+
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                final String name = "writer-" + i;
+                threads.add(new Thread(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            for (long n = 0; running.get(); n++) {
+                                NodeBuilder builder = nodeStore.getRoot().builder();
+                                builder.child(name).child("node-" + (n % 1000)).setProperty("count", n);
+                                try {
+                                    nodeStore.merge(builder, hook, CommitInfo.EMPTY);
+                                    commits.incrementAndGet();
+                                } catch (CommitFailedException e) {
+                                    failures.incrementAndGet();
+                                }
+                            }
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+
+                }, name));
+            }
+
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            TimeUnit.SECONDS.sleep(RUNTIME);
+            running.set(false);
+            done.await();
+
+            System.out.format("  %-26s %8d %12d %12d%n",
+                    optimistic ? "optimistic" : "lock-based",
+                    writers,
+                    commits.get() / RUNTIME,
+                    failures.get());
+        } finally {
+            store.close();
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+
+    /**
+     * A commit hook that keeps the CPU busy for {@link #HOOK_COST}
+     * microseconds.
+     */
+    private static class BusyHook implements CommitHook {
+
+        @Override
+        public NodeState processCommit(NodeState before, NodeState after, CommitInfo info) {
+            long end = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(HOOK_COST);
+            while (System.nanoTime() < end) {
+                // Spin
+            }
+            return after;
+        }
+
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.benchmark;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import org.apache.jackrabbit.oak.fixture.RepositoryFixture;
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.UpdateOp;
+import org.apache.jackrabbit.oak.plugins.document.rdb.RDBDataSourceFactory;
+import org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentNodeStoreBuilder;
+import org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.rdb.RDBOptions;
+import org.apache.jackrabbit.oak.plugins.document.util.Utils;
+
+/**
+ * Compares the JSON and the compact binary document encoding of the
+ * {@link RDBDocumentStore}: write throughput, read throughput and the size
+ * of the rows. The benchmark uses its own embedded database and ignores the
+ * repository fixtures. The JDBC driver must be on the class path, for
+ * instance by building with the {@code rdb-h2} or {@code rdb-derby} profile.
+ * <p>
+ * System properties:
+ * <ul>
+ *     <li>{@code rdbEncoding.jdbcUrl}: the JDBC URL, defaults to an in-memory
+ *     H2 database. Use {@code jdbc:derby:memory:oak;create=true} for Derby.</li>
+ *     <li>{@code rdbEncoding.documents}: number of documents, default 10000</li>
+ *     <li>{@code rdbEncoding.revisions}: number of revisions per document,
+ *     default 20</li>
+ * </ul>
+ */
+public class RDBDocumentEncodingBenchmark extends Benchmark {
+
+    private static final String JDBC_URL = System.getProperty("rdbEncoding.jdbcUrl", "jdbc:h2:mem:oak;DB_CLOSE_DELAY=-1");
+
+    private static final int DOCUMENTS = Integer.getInteger("rdbEncoding.documents", 10000);
+
+    private static final int REVISIONS = Integer.getInteger("rdbEncoding.revisions", 20);
+
+    private static final int BATCH_SIZE = 100;
+
+    @Override
+    public void run(Iterable<RepositoryFixture> fixtures) {
+        System.out.format("# %-10s %12s %12s %12s %14s%n", "encoding", "writes/s", "reads/s", "avg row", "total bytes");
+        try {
+            DataSource ds = RDBDataSourceFactory.forJdbcUrl(JDBC_URL, "sa", "");
+            run(ds, "JSON", false);
+            run(ds, "BINARY", true);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void run(DataSource ds, String name, boolean binaryEncoding) throws SQLException {
+        RDBOptions options = new RDBOptions().tablePrefix("ENC" + name + "_")
+                .dropTablesOnClose(true).binaryEncoding(binaryEncoding);
+        RDBDocumentStore store = new RDBDocumentStore(ds,
+                RDBDocumentNodeStoreBuilder.newRDBDocumentNodeStoreBuilder(), options);
+        try {
+            long start = System.nanoTime();
+            List<UpdateOp> ops = Lists.newArrayList();
+            for (int i = 0; i < DOCUMENTS; i++) {
+                ops.add(newDocument(i));
+                if (ops.size() == BATCH_SIZE) {
+                    store.create(Collection.NODES, ops);
+                    ops.clear();
+                }
+            }
+            if (!ops.isEmpty()) {
+                store.create(Collection.NODES, ops);
+            }
+            long writeNanos = System.nanoTime() - start;
+
+            store.invalidateCache();
+            start = System.nanoTime();
+            for (int i = 0; i < DOCUMENTS; i++) {
+                if (store.find(Collection.NODES, idOf(i), 0) == null) {
+                    throw new IllegalStateException("document not found: " + idOf(i));
+                }
+            }
+            long readNanos = System.nanoTime() - start;
+
+            long totalBytes = rowBytes(ds, options.getTablePrefix() + "NODES");
+            System.out.format("  %-10s %12.0f %12.0f %12d %14d%n", name,
+                    perSecond(DOCUMENTS, writeNanos), perSecond(DOCUMENTS, readNanos),
+                    totalBytes / DOCUMENTS, totalBytes);
+        } finally {
+            store.dispose();
+        }
+    }
+
+    private static UpdateOp newDocument(int i) {
+        UpdateOp op = new UpdateOp(idOf(i), true);
+        long timestamp = 1500000000000L + i;
+        Revision r = null;
+        for (int j = 0; j < REVISIONS; j++) {
+            r = new Revision(timestamp + j * 1000L, j % 3, 1 + j % 4);
+            NodeDocument.setRevision(op, r, "c");
+            NodeDocument.setCommitRoot(op, r, 0);
+            NodeDocument.setDeleted(op, r, false);
+        }
+        op.set("title", "\"title of node " + i + "\"");
+        op.set("jcr:primaryType", "\"nam:nt:unstructured\"");
+        NodeDocument.setModified(op, r);
+        NodeDocument.setLastRev(op, r);
+        op.set("counter", (long) i);
+        return op;
+    }
+
+    private static String idOf(int i) {
+        return Utils.getIdFromPath("/content/encoding/node-" + i);
+    }
+
+    private static double perSecond(int count, long nanos) {
+        return count * (double) TimeUnit.SECONDS.toNanos(1) / Math.max(nanos, 1);
+    }
+
+    private static long rowBytes(DataSource ds, String table) throws SQLException {
+        Connection connection = ds.getConnection();
+        try {
+            Statement stmt = connection.createStatement();
+            try {
+                long total = 0;
+                ResultSet rs = stmt.executeQuery("select DATA, BDATA from " + table);
+                while (rs.next()) {
+                    String data = rs.getString(1);
+                    byte[] bdata = rs.getBytes(2);
+                    total += data == null ? 0 : data.getBytes(Charsets.UTF_8).length;
+                    total += bdata == null ? 0 : bdata.length;
+                }
+                return total;
+            } finally {
+                stmt.close();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+}
@@ -52,6 +52,16 @@ class CheckCommand implements Command {
                 "checkpoints", "checks only specified checkpoints (comma separated); use --checkpoints all to check all checkpoints")
                 .withOptionalArg().ofType(String.class).withValuesSeparatedBy(',').defaultsTo("all");
         OptionSpec<?> ioStatistics = parser.accepts("io-stats", "Print I/O statistics (only for oak-segment-tar)");
+        ArgumentAcceptingOptionSpec<Long> maxTimestamp = parser.accepts(
+                "max-timestamp", "only check revisions persisted at or before this time (milliseconds since the epoch)")
+                .withRequiredArg().ofType(Long.class).defaultsTo(Long.MAX_VALUE);
+        ArgumentAcceptingOptionSpec<Integer> probeThreads = parser.accepts(
+                "probe-threads", "number of threads probing upcoming revisions in parallel, 0 to disable probing")
+                .withRequiredArg().ofType(Integer.class).defaultsTo(0);
+        ArgumentAcceptingOptionSpec<Integer> threads = parser.accepts(
+                "threads", "number of threads traversing the content and verifying checksums, 1 to traverse sequentially")
+                .withRequiredArg().ofType(Integer.class).defaultsTo(1);
+        OptionSpec<?> verifyChecksums = parser.accepts("verify-checksums", "verify the checksums of the segments of every tar file");
 
         OptionSet options = parser.parse(args);
         
@@ -82,6 +92,10 @@ class CheckCommand implements Command {
             .withCheckpoints(checkpoints)
             .withFilterPaths(filterPaths)
             .withIOStatistics(options.has(ioStatistics))
+            .withMaxTimestamp(maxTimestamp.value(options))
+            .withProbeThreads(probeThreads.value(options))
+            .withThreads(threads.value(options))
+            .withVerifyChecksums(options.has(verifyChecksums))
             .withOutWriter(out)
             .withErrWriter(err)
             .build()
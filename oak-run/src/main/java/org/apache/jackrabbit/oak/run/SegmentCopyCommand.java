@@ -33,6 +33,7 @@ class SegmentCopyCommand implements Command {
     public void execute(String... args) throws Exception {
         OptionParser parser = new OptionParser();
         OptionSpec<?> verbose = parser.accepts("verbose", "print detailed output about individual segments transfered");
+        OptionSpec<?> compress = parser.accepts("compress", "compress the segments written to the destination (TAR only)");
         OptionSet options = parser.parse(args);
 
         PrintWriter out = new PrintWriter(System.out, true);
@@ -49,6 +50,7 @@ class SegmentCopyCommand implements Command {
                 .withSource(source)
                 .withDestination(destination)
                 .withVerbose(options.has(verbose))
+                .withSegmentCompression(options.has(compress))
                 .withOutWriter(out)
                 .withErrWriter(err)
                 .build()
@@ -30,6 +30,7 @@ import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentNodeStorePersistence;
 import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitor;
 import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,13 +45,25 @@ public class AzurePersistence implements SegmentNodeStorePersistence {
 
     private final CloudBlobDirectory segmentstoreDirectory;
 
+    private final StatisticsProvider statisticsProvider;
+
     public AzurePersistence(CloudBlobDirectory segmentstoreDirectory) {
+        this(segmentstoreDirectory, StatisticsProvider.NOOP);
+    }
+
+    /**
+     * @param segmentstoreDirectory the directory containing the segment store
+     * @param statisticsProvider    the statistics provider for the metrics of
+     *                              the segment upload queues
+     */
+    public AzurePersistence(CloudBlobDirectory segmentstoreDirectory, StatisticsProvider statisticsProvider) {
         this.segmentstoreDirectory = segmentstoreDirectory;
+        this.statisticsProvider = statisticsProvider;
     }
 
     @Override
     public SegmentArchiveManager createArchiveManager(boolean mmap, IOMonitor ioMonitor, FileStoreMonitor fileStoreMonitor) {
-        return new AzureArchiveManager(segmentstoreDirectory, ioMonitor, fileStoreMonitor);
+        return new AzureArchiveManager(segmentstoreDirectory, ioMonitor, fileStoreMonitor, statisticsProvider);
     }
 
     @Override
@@ -39,6 +39,7 @@ import org.apache.jackrabbit.oak.segment.azure.queue.SegmentWriteQueue;
 import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitor;
 import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveWriter;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 
 public class AzureSegmentArchiveWriter implements SegmentArchiveWriter {
 
@@ -59,10 +60,14 @@ public class AzureSegmentArchiveWriter implements SegmentArchiveWriter {
     private volatile boolean created = false;
 
     public AzureSegmentArchiveWriter(CloudBlobDirectory archiveDirectory, IOMonitor ioMonitor, FileStoreMonitor monitor) {
+        this(archiveDirectory, ioMonitor, monitor, StatisticsProvider.NOOP);
+    }
+
+    public AzureSegmentArchiveWriter(CloudBlobDirectory archiveDirectory, IOMonitor ioMonitor, FileStoreMonitor monitor, StatisticsProvider statisticsProvider) {
         this.archiveDirectory = archiveDirectory;
         this.ioMonitor = ioMonitor;
         this.monitor = monitor;
-        this.queue = SegmentWriteQueue.THREADS > 0 ? Optional.of(new SegmentWriteQueue(this::doWriteEntry)) : Optional.empty();
+        this.queue = SegmentWriteQueue.THREADS > 0 ? Optional.of(new SegmentWriteQueue(this::doWriteEntry, statisticsProvider)) : Optional.empty();
     }
 
     @Override
@@ -88,9 +93,9 @@ public class AzureSegmentArchiveWriter implements SegmentArchiveWriter {
         Stopwatch stopwatch = Stopwatch.createStarted();
         try {
             CloudBlockBlob blob = getBlob(getSegmentFileName(indexEntry));
+            // The metadata is sent along with the content in a single request
             blob.setMetadata(AzureBlobMetadata.toSegmentMetadata(indexEntry));
             blob.uploadFromByteArray(data, offset, size);
-            blob.uploadMetadata();
         } catch (StorageException e) {
             throw new IOException(e);
         }
@@ -22,12 +22,15 @@ import com.microsoft.azure.storage.CloudStorageAccount;
 import com.microsoft.azure.storage.StorageException;
 import com.microsoft.azure.storage.blob.CloudBlobContainer;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentNodeStorePersistence;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.ConfigurationPolicy;
 import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,9 +54,16 @@ public class AzureSegmentStoreService {
 
     private SegmentNodeStorePersistence persistence;
 
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL)
+    private StatisticsProvider statisticsProvider;
+
     @Activate
     public void activate(ComponentContext context, Configuration config) throws IOException {
-        persistence = createAzurePersistence(config);
+        StatisticsProvider statisticsProvider = this.statisticsProvider;
+        if (statisticsProvider == null) {
+            statisticsProvider = StatisticsProvider.NOOP;
+        }
+        persistence = createAzurePersistence(config, statisticsProvider);
         registration = context.getBundleContext().registerService(SegmentNodeStorePersistence.class.getName(), persistence, new Properties());
     }
 
@@ -66,7 +76,7 @@ public class AzureSegmentStoreService {
         persistence = null;
     }
 
-    private static SegmentNodeStorePersistence createAzurePersistence(Configuration configuration) throws IOException {
+    private static SegmentNodeStorePersistence createAzurePersistence(Configuration configuration, StatisticsProvider statisticsProvider) throws IOException {
         try {
             StringBuilder connectionString = new StringBuilder();
             if (configuration.connectionURL() == null || configuration.connectionURL().trim().isEmpty()) {
@@ -86,7 +96,7 @@ public class AzureSegmentStoreService {
                 path = path.substring(1);
             }
 
-            AzurePersistence persistence = new AzurePersistence(container.getDirectoryReference(path));
+            AzurePersistence persistence = new AzurePersistence(container.getDirectoryReference(path), statisticsProvider);
             return persistence;
         } catch (StorageException | URISyntaxException | InvalidKeyException e) {
             throw new IOException(e);
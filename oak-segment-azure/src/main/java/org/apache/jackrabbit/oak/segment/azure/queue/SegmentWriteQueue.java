@@ -17,6 +17,11 @@
 package org.apache.jackrabbit.oak.segment.azure.queue;
 
 import org.apache.jackrabbit.oak.segment.azure.AzureSegmentArchiveEntry;
+import org.apache.jackrabbit.oak.stats.CounterStats;
+import org.apache.jackrabbit.oak.stats.HistogramStats;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.apache.jackrabbit.oak.stats.StatsOptions;
+import org.apache.jackrabbit.oak.stats.TimerStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,13 +35,54 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * Queue of the segments waiting to be uploaded by a pool of worker threads.
+ * <p>
+ * By default the number of workers is fixed to {@link #THREADS}. If {@link
+ * #MAX_THREADS} is greater than {@link #THREADS}, the queue runs in the
+ * adaptive mode: the number of workers is adjusted periodically between these
+ * two bounds, according to the rate of the new segments, the observed upload
+ * latency and the depth of the queue.
+ * <p>
+ * The following metrics are registered with the {@link StatisticsProvider}:
+ * <ul>
+ *     <li>{@link #QUEUE_DEPTH}: a histogram of the number of queued segments,
+ *          sampled every time a segment is added</li>
+ *     <li>{@link #UPLOAD_TIME}: a timer of the segment uploads</li>
+ *     <li>{@link #BACK_PRESSURE_TIME}: a timer of the time spent by the
+ *          writers waiting for room in the queue</li>
+ *     <li>{@link #UPLOAD_THREADS}: a counter of the running workers</li>
+ * </ul>
+ */
 public class SegmentWriteQueue implements Closeable {
 
+    public static final String QUEUE_DEPTH = "oak.segment.azure.queue-depth";
+
+    public static final String UPLOAD_TIME = "oak.segment.azure.upload-time";
+
+    public static final String BACK_PRESSURE_TIME = "oak.segment.azure.back-pressure-time";
+
+    public static final String UPLOAD_THREADS = "oak.segment.azure.upload-threads";
+
     public static final int THREADS = Integer.getInteger("oak.segment.azure.threads", 5);
 
+    /**
+     * Maximum number of workers in the adaptive mode. The adaptive mode is
+     * disabled unless this is greater than {@link #THREADS}.
+     */
+    public static final int MAX_THREADS = Integer.getInteger("oak.segment.azure.threads.max", 0);
+
+    /**
+     * Interval in milliseconds between two adjustments of the number of
+     * workers in the adaptive mode.
+     */
+    static final long ADJUST_INTERVAL = Long.getLong("oak.segment.azure.threads.adjustInterval", 500);
+
     private static final int QUEUE_SIZE = Integer.getInteger("oak.segment.org.apache.jackrabbit.oak.segment.azure.queue", 20);
 
     private static final Logger log = LoggerFactory.getLogger(SegmentWriteQueue.class);
@@ -57,25 +103,113 @@ public class SegmentWriteQueue implements Closeable {
 
     private volatile boolean broken;
 
+    private final int queueSize;
+
+    private final int minThreads;
+
+    private final int maxThreads;
+
+    /**
+     * Number of running workers.
+     */
+    private final AtomicInteger workers = new AtomicInteger();
+
+    /**
+     * Number of workers the queue should run. Workers in excess retire
+     * between two uploads.
+     */
+    private volatile int targetWorkers;
+
+    private final LongAdder added = new LongAdder();
+
+    private final LongAdder uploaded = new LongAdder();
+
+    private final LongAdder uploadNanos = new LongAdder();
+
+    private final LongAdder backPressureNanos = new LongAdder();
+
+    private final HistogramStats queueDepth;
+
+    private final TimerStats uploadTime;
+
+    private final TimerStats backPressureTime;
+
+    private final CounterStats uploadThreads;
+
     public SegmentWriteQueue(SegmentConsumer writer) {
-        this(writer, QUEUE_SIZE, THREADS);
+        this(writer, StatisticsProvider.NOOP);
+    }
+
+    public SegmentWriteQueue(SegmentConsumer writer, StatisticsProvider statisticsProvider) {
+        this(writer, QUEUE_SIZE, THREADS, Math.max(THREADS, MAX_THREADS), statisticsProvider);
     }
 
     SegmentWriteQueue(SegmentConsumer writer, int queueSize, int threadNo) {
+        this(writer, queueSize, threadNo, threadNo, StatisticsProvider.NOOP);
+    }
+
+    SegmentWriteQueue(SegmentConsumer writer, int queueSize, int minThreads, int maxThreads, StatisticsProvider statisticsProvider) {
         this.writer = writer;
+        this.queueSize = queueSize;
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
         segmentsByUUID = new ConcurrentHashMap<>();
         flushLock = new ReentrantReadWriteLock();
 
+        queueDepth = statisticsProvider.getHistogram(QUEUE_DEPTH, StatsOptions.METRICS_ONLY);
+        uploadTime = statisticsProvider.getTimer(UPLOAD_TIME, StatsOptions.METRICS_ONLY);
+        backPressureTime = statisticsProvider.getTimer(BACK_PRESSURE_TIME, StatsOptions.METRICS_ONLY);
+        uploadThreads = statisticsProvider.getCounterStats(UPLOAD_THREADS, StatsOptions.METRICS_ONLY);
+
         queue = new LinkedBlockingDeque<>(queueSize);
-        executor = Executors.newFixedThreadPool(threadNo + 1);
-        for (int i = 0; i < threadNo; i++) {
-            executor.submit(this::mainLoop);
+        targetWorkers = minThreads;
+        if (isAdaptive()) {
+            executor = Executors.newCachedThreadPool();
+        } else {
+            executor = Executors.newFixedThreadPool(minThreads + 1);
+        }
+        for (int i = 0; i < minThreads; i++) {
+            startWorker();
         }
         executor.submit(this::emergencyLoop);
+        if (isAdaptive()) {
+            executor.submit(this::adjustLoop);
+        }
+    }
+
+    private boolean isAdaptive() {
+        return maxThreads > minThreads;
+    }
+
+    private void startWorker() {
+        workers.incrementAndGet();
+        uploadThreads.inc();
+        executor.submit(this::mainLoop);
+    }
+
+    /**
+     * Decrement the number of running workers if it's above the target.
+     *
+     * @return {@code true} if the calling worker should stop.
+     */
+    private boolean retireWorker() {
+        while (true) {
+            int current = workers.get();
+            if (current <= targetWorkers) {
+                return false;
+            }
+            if (workers.compareAndSet(current, current - 1)) {
+                uploadThreads.dec();
+                return true;
+            }
+        }
     }
 
     private void mainLoop() {
         while (!shutdown) {
+            if (retireWorker()) {
+                return;
+            }
             try {
                 waitWhileBroken();
                 if (shutdown) {
@@ -92,6 +226,79 @@ public class SegmentWriteQueue implements Closeable {
                 }
             }
         }
+        workers.decrementAndGet();
+        uploadThreads.dec();
+    }
+
+    private void adjustLoop() {
+        long lastAdded = 0;
+        long lastUploaded = 0;
+        long lastUploadNanos = 0;
+        long lastBackPressureNanos = 0;
+        double latency = 0;
+        long lastTime = System.nanoTime();
+        while (!shutdown) {
+            try {
+                Thread.sleep(ADJUST_INTERVAL);
+            } catch (InterruptedException e) {
+                log.warn("Interrupted", e);
+            }
+            long time = System.nanoTime();
+            long currentAdded = added.sum();
+            long currentUploaded = uploaded.sum();
+            long currentUploadNanos = uploadNanos.sum();
+            long currentBackPressureNanos = backPressureNanos.sum();
+
+            double arrivalRate = (currentAdded - lastAdded) / ((time - lastTime) / 1e9);
+            if (currentUploaded > lastUploaded) {
+                latency = (currentUploadNanos - lastUploadNanos) / 1e9 / (currentUploaded - lastUploaded);
+            }
+            int target = desiredWorkers(arrivalRate, latency, queue.size(), queueSize,
+                    currentBackPressureNanos > lastBackPressureNanos, targetWorkers, minThreads, maxThreads);
+            if (target != targetWorkers) {
+                log.debug("Adjusting the number of upload threads from {} to {}", targetWorkers, target);
+                targetWorkers = target;
+            }
+            while (!shutdown && workers.get() < targetWorkers) {
+                startWorker();
+            }
+
+            lastTime = time;
+            lastAdded = currentAdded;
+            lastUploaded = currentUploaded;
+            lastUploadNanos = currentUploadNanos;
+            lastBackPressureNanos = currentBackPressureNanos;
+        }
+    }
+
+    /**
+     * Compute the number of workers required to keep up with the new
+     * segments. By Little's law, the number of uploads in progress is the
+     * arrival rate multiplied by the upload latency. An additional worker is
+     * started while writers are blocked or the queue is more than half full.
+     * Workers are removed one at a time once the queue is drained.
+     *
+     * @param arrivalRate  number of new segments per second
+     * @param latency      average upload latency in seconds
+     * @param queued       number of segments in the queue
+     * @param queueSize    capacity of the queue
+     * @param backPressure whether writers waited for room in the queue
+     * @param current      current number of workers
+     * @param min          minimum number of workers
+     * @param max          maximum number of workers
+     * @return the number of workers to run
+     */
+    static int desiredWorkers(double arrivalRate, double latency, int queued, int queueSize,
+                              boolean backPressure, int current, int min, int max) {
+        int desired = (int) Math.ceil(arrivalRate * latency);
+        if (backPressure || queued > queueSize / 2) {
+            desired = Math.max(desired, current + 1);
+        } else if (queued > 0) {
+            desired = Math.max(desired, current);
+        } else if (desired < current) {
+            desired = current - 1;
+        }
+        return Math.max(min, Math.min(max, desired));
     }
 
     private void consume() throws SegmentConsumeException {
@@ -107,12 +314,17 @@ public class SegmentWriteQueue implements Closeable {
     }
 
     private void consume(SegmentWriteAction segment) throws SegmentConsumeException {
+        long start = System.nanoTime();
         try {
             segment.passTo(writer);
         } catch (IOException e) {
             setBroken(true);
             throw new SegmentConsumeException(segment, e);
         }
+        long elapsed = System.nanoTime() - start;
+        uploaded.increment();
+        uploadNanos.add(elapsed);
+        uploadTime.update(elapsed, TimeUnit.NANOSECONDS);
         synchronized (segmentsByUUID) {
             segmentsByUUID.remove(segment.getUuid());
             segmentsByUUID.notifyAll();
@@ -163,10 +375,19 @@ public class SegmentWriteQueue implements Closeable {
         flushLock.readLock().lock();
         try {
             segmentsByUUID.put(action.getUuid(), action);
-            if (!queue.offer(action, 1, TimeUnit.MINUTES)) {
-                segmentsByUUID.remove(action.getUuid());
-                throw new IOException("Can't add segment to the queue");
+            if (!queue.offer(action)) {
+                long start = System.nanoTime();
+                boolean offered = queue.offer(action, 1, TimeUnit.MINUTES);
+                long elapsed = System.nanoTime() - start;
+                backPressureNanos.add(elapsed);
+                backPressureTime.update(elapsed, TimeUnit.NANOSECONDS);
+                if (!offered) {
+                    segmentsByUUID.remove(action.getUuid());
+                    throw new IOException("Can't add segment to the queue");
+                }
             }
+            added.increment();
+            queueDepth.update(queue.size());
         } catch (InterruptedException e) {
             throw new IOException(e);
         } finally {
@@ -222,6 +443,10 @@ public class SegmentWriteQueue implements Closeable {
         return queue.size();
     }
 
+    int getWorkerCount() {
+        return workers.get();
+    }
+
     private void setBroken(boolean broken) {
         synchronized (brokenMonitor) {
             this.broken = broken;
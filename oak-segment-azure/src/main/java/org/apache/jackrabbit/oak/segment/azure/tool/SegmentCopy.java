@@ -29,6 +29,7 @@ import static org.apache.jackrabbit.oak.segment.azure.tool.ToolUtils.storeTypeFr
 import com.google.common.base.Stopwatch;
 
 import org.apache.jackrabbit.oak.segment.azure.tool.ToolUtils.SegmentStoreType;
+import org.apache.jackrabbit.oak.segment.file.tar.TarPersistence;
 import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitor;
 import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitorAdapter;
 import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
@@ -46,6 +47,7 @@ import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveWriter;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentNodeStorePersistence;
 import org.apache.jackrabbit.oak.segment.tool.Check;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.ByteBuffer;
@@ -85,6 +87,8 @@ public class SegmentCopy {
 
         private boolean verbose;
 
+        private boolean segmentCompression;
+
         private PrintWriter outWriter;
 
         private PrintWriter errWriter;
@@ -179,6 +183,21 @@ public class SegmentCopy {
             return this;
         }
 
+        /**
+         * Whether to compress the segments written to the destination. This is
+         * only supported when the destination is a TAR segment store, and it
+         * can be used to convert an existing store to compressed TAR files.
+         *
+         * @param segmentCompression
+         *            <code>true</code> to compress segments, <code>false</code>
+         *            otherwise.
+         * @return this builder.
+         */
+        public Builder withSegmentCompression(boolean segmentCompression) {
+            this.segmentCompression = segmentCompression;
+            return this;
+        }
+
         /**
          * Create an executable version of the {@link Check} command.
          *
@@ -199,6 +218,8 @@ public class SegmentCopy {
 
     private final boolean verbose;
 
+    private final boolean segmentCompression;
+
     private final PrintWriter outWriter;
 
     private final PrintWriter errWriter;
@@ -213,6 +234,7 @@ public class SegmentCopy {
         this.srcPersistence = builder.srcPersistence;
         this.destPersistence = builder.destPersistence;
         this.verbose = builder.verbose;
+        this.segmentCompression = builder.segmentCompression;
         this.outWriter = builder.outWriter;
         this.errWriter = builder.errWriter;
     }
@@ -230,6 +252,14 @@ public class SegmentCopy {
                 destPersistence = newSegmentNodeStorePersistence(destType, destination);
             }
 
+            if (segmentCompression) {
+                if (destType != SegmentStoreType.TAR) {
+                    throw new Exception(MessageFormat.format("Segment compression is not supported by {0}",
+                            storeDescription(destType, destination)));
+                }
+                destPersistence = new TarPersistence(new File(destination), true);
+            }
+
             printMessage(outWriter, "Started segment-copy transfer!");
             printMessage(outWriter, "Source: {0}", storeDescription(srcType, source));
             printMessage(outWriter, "Destination: {0}", storeDescription(destType, destination));
@@ -338,7 +368,6 @@ public class SegmentCopy {
             printMessage(outWriter, "    - {0}", new UUID(msb, lsb));
         }
 
-        int size = segmentEntry.getLength();
         int offset = 0;
         int generation = segmentEntry.getGeneration();
         int fullGeneration = segmentEntry.getFullGeneration();
@@ -347,6 +376,9 @@ public class SegmentCopy {
         ByteBuffer byteBuffer = archiveReader.readSegment(msb, lsb);
         byte[] data = fetchByteArray(byteBuffer);
 
+        // The entry length is the stored one, which differs from the length
+        // of the segment if the segment is compressed.
+        int size = data.length;
         archiveWriter.writeSegment(msb, lsb, data, offset, size, generation, fullGeneration, isCompacted);
         archiveWriter.flush();
     }
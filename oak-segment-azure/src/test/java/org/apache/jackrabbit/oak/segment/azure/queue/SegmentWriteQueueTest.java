@@ -17,6 +17,7 @@
 package org.apache.jackrabbit.oak.segment.azure.queue;
 
 import org.apache.jackrabbit.oak.segment.azure.AzureSegmentArchiveEntry;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.junit.After;
 import org.junit.Test;
 
@@ -220,6 +221,49 @@ public class SegmentWriteQueueTest {
         }
     }
 
+    @Test(timeout = 30000)
+    public void testAdaptiveWorkers() throws IOException, InterruptedException {
+        Set<UUID> added = Collections.synchronizedSet(new HashSet<>());
+        queue = new SegmentWriteQueue((tarEntry, data, offset, size) -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+            }
+            added.add(new UUID(tarEntry.getMsb(), tarEntry.getLsb()));
+        }, 10, 1, 8, StatisticsProvider.NOOP);
+        assertEquals(1, queue.getWorkerCount());
+
+        int maxWorkers = 0;
+        for (int i = 0; i < 300; i++) {
+            queue.addToQueue(tarEntry(i), EMPTY_DATA, 0, 0);
+            maxWorkers = Math.max(maxWorkers, queue.getWorkerCount());
+        }
+        queue.flush();
+        assertEquals("All segments should be consumed", 300, added.size());
+        assertTrue("The number of workers should grow under back-pressure", maxWorkers > 1);
+        assertTrue("The number of workers should be bounded", maxWorkers <= 8);
+
+        while (queue.getWorkerCount() > 1) {
+            Thread.sleep(100);
+        }
+        assertEquals("Idle workers should retire", 1, queue.getWorkerCount());
+    }
+
+    @Test
+    public void testDesiredWorkers() {
+        // Little's law: 100 segments/s uploaded in 50ms each
+        assertEquals(5, SegmentWriteQueue.desiredWorkers(100, 0.05, 0, 20, false, 5, 1, 10));
+        // back-pressure adds a worker
+        assertEquals(6, SegmentWriteQueue.desiredWorkers(0, 0, 0, 20, true, 5, 1, 10));
+        // a backlog keeps the current workers
+        assertEquals(5, SegmentWriteQueue.desiredWorkers(0, 0, 5, 20, false, 5, 1, 10));
+        // idle workers are removed one at a time
+        assertEquals(4, SegmentWriteQueue.desiredWorkers(0, 0, 0, 20, false, 5, 1, 10));
+        // the bounds are respected
+        assertEquals(10, SegmentWriteQueue.desiredWorkers(1000, 1, 0, 20, true, 10, 1, 10));
+        assertEquals(2, SegmentWriteQueue.desiredWorkers(0, 0, 0, 20, false, 2, 2, 10));
+    }
+
     private static AzureSegmentArchiveEntry tarEntry(long i) {
         return new AzureSegmentArchiveEntry(0, i, 0, 0, 0, 0, false);
     }
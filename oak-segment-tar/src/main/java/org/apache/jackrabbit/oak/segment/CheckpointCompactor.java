@@ -87,8 +87,24 @@ public class CheckpointCompactor {
             @NotNull SegmentWriter writer,
             @Nullable BlobStore blobStore,
             @NotNull GCNodeWriteMonitor compactionMonitor) {
+        this(gcListener, reader, writer, blobStore, new Compactor(reader, writer, blobStore, compactionMonitor));
+    }
+
+    /**
+     * Create a new instance based on the passed arguments.
+     * @param reader     segment reader used to read from the segments
+     * @param writer     segment writer used to serialise to segments
+     * @param blobStore  the blob store or {@code null} if none
+     * @param compactor  the compactor used to compact each of the roots
+     */
+    public CheckpointCompactor(
+            @NotNull GCMonitor gcListener,
+            @NotNull SegmentReader reader,
+            @NotNull SegmentWriter writer,
+            @Nullable BlobStore blobStore,
+            @NotNull Compactor compactor) {
         this.gcListener = gcListener;
-        this.compactor = new Compactor(reader, writer, blobStore, compactionMonitor);
+        this.compactor = compactor;
         this.nodeWriter = (node, stableId) -> {
             RecordId nodeId = writer.writeNode(node, stableId);
             return new SegmentNodeState(reader, writer, blobStore, nodeId);
@@ -0,0 +1,303 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.base.Predicate;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@code ConcurrentRecordCache} implements a partial mapping from keys of type
+ * {@code K} to {@link RecordId}s, shared by all the threads writing records.
+ * Mappings are associated with a generation and only looked up for the
+ * generation they were added for.
+ * <p>
+ * The mappings are kept in an open addressing table probed over a small number
+ * of slots, which is read and updated with atomic operations only. This cache
+ * is lossy: a mapping can be dropped when it clashes with a mapping of a later
+ * generation or of a higher cost, or when a concurrent update of the same slot
+ * wins the race.
+ * <p>
+ * The size of this cache is given in bytes, as estimated by a {@link Weigher}.
+ * When the weight of the mappings exceeds the maximum weight, mappings are
+ * evicted by a clock hand sweeping the table, which spares the mappings
+ * accessed since its last pass.
+ * <p>
+ * This cache is thread safe.
+ *
+ * @param <K> type of the keys
+ */
+public class ConcurrentRecordCache<K> {
+
+    /**
+     * Estimated average weight of a mapping, used to size the table.
+     */
+    private static final int AVERAGE_WEIGHT = 128;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    /**
+     * Number of slots probed to find or place a mapping.
+     */
+    private static final int PROBES = 4;
+
+    private final long maxWeight;
+
+    @NotNull
+    private final Weigher<K, RecordId> weigher;
+
+    @NotNull
+    private final AtomicReferenceArray<Entry<K>> entries;
+
+    private final int mask;
+
+    private final AtomicInteger clockHand = new AtomicInteger();
+
+    private final AtomicLong weight = new AtomicLong();
+
+    private final AtomicLong size = new AtomicLong();
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder loadCount = new LongAdder();
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    private static class Entry<K> {
+
+        final K key;
+
+        final int hash;
+
+        final int generation;
+
+        final RecordId value;
+
+        final byte cost;
+
+        final int weight;
+
+        volatile boolean accessed;
+
+        Entry(K key, int hash, int generation, RecordId value, byte cost, int weight) {
+            this.key = key;
+            this.hash = hash;
+            this.generation = generation;
+            this.value = value;
+            this.cost = cost;
+            this.weight = weight;
+        }
+
+        boolean matches(Object key, int hash, int generation) {
+            return this.hash == hash && this.generation == generation && this.key.equals(key);
+        }
+
+    }
+
+    /**
+     * Create a new instance of the given maximum weight.
+     *
+     * @param maxWeight maximum weight of the mappings in bytes. A cache of
+     *                  weight {@code 0} never retains any mapping.
+     * @param weigher   estimates the weight of a mapping in bytes
+     */
+    public ConcurrentRecordCache(long maxWeight, @NotNull Weigher<K, RecordId> weigher) {
+        checkArgument(maxWeight >= 0, "maxWeight must not be negative");
+        this.maxWeight = maxWeight;
+        this.weigher = checkNotNull(weigher);
+        long capacity = Long.highestOneBit(Math.max(MIN_CAPACITY, Math.min(MAX_CAPACITY, maxWeight / AVERAGE_WEIGHT)));
+        this.entries = new AtomicReferenceArray<>((int) capacity);
+        this.mask = (int) capacity - 1;
+    }
+
+    private static int hash(Object key, int generation) {
+        int h = key.hashCode() * 31 + generation;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Look up the mapping for {@code key} and {@code generation}.
+     *
+     * @return the value of the mapping or {@code null} if none.
+     */
+    @Nullable
+    public RecordId get(@NotNull K key, int generation) {
+        int hash = hash(key, generation);
+        for (int k = 0; k < PROBES; k++) {
+            Entry<K> entry = entries.get((hash + k) & mask);
+            if (entry != null && entry.matches(key, hash, generation)) {
+                if (!entry.accessed) {
+                    entry.accessed = true;
+                }
+                hitCount.increment();
+                return entry.value;
+            }
+        }
+        missCount.increment();
+        return null;
+    }
+
+    /**
+     * Add a mapping from {@code key} to {@code value} for {@code generation}.
+     * Among the probed slots this replaces, in order of preference, the
+     * previous mapping of the same key, an empty slot, the mapping of the
+     * earliest generation and the mapping of the lowest cost. The mapping is
+     * not added if the mapping to be replaced is of the same or a later
+     * generation and of a higher cost.
+     */
+    public void put(@NotNull K key, int generation, @NotNull RecordId value, byte cost) {
+        int weight = weigher.weigh(key, value);
+        if (weight > maxWeight) {
+            return;
+        }
+
+        int hash = hash(key, generation);
+        Entry<K> entry = new Entry<>(key, hash, generation, value, cost, weight);
+        loadCount.increment();
+
+        int slot = -1;
+        Entry<K> previous = null;
+        for (int k = 0; k < PROBES; k++) {
+            int s = (hash + k) & mask;
+            Entry<K> e = entries.get(s);
+            if (e == null || e.matches(key, hash, generation)) {
+                slot = s;
+                previous = e;
+                break;
+            }
+            if (slot < 0 || isBetterVictim(e, previous)) {
+                slot = s;
+                previous = e;
+            }
+        }
+
+        if (previous != null && !previous.matches(key, hash, generation)
+                && previous.generation >= generation && previous.cost > cost) {
+            return;
+        }
+
+        // Losing a race against a concurrent update of the slot simply drops
+        // the mapping, as any other clash would.
+        if (entries.compareAndSet(slot, previous, entry)) {
+            if (previous == null) {
+                size.incrementAndGet();
+                this.weight.addAndGet(weight);
+            } else {
+                this.weight.addAndGet(weight - previous.weight);
+                if (!previous.matches(key, hash, generation)) {
+                    evictionCount.increment();
+                }
+            }
+            if (this.weight.get() > maxWeight) {
+                evict();
+            }
+        }
+    }
+
+    private static boolean isBetterVictim(Entry<?> candidate, Entry<?> victim) {
+        if (candidate.generation != victim.generation) {
+            return candidate.generation < victim.generation;
+        }
+        return candidate.cost < victim.cost;
+    }
+
+    /**
+     * Sweep the table with the clock hand until the weight of this cache
+     * drops below its maximum weight. Mappings accessed since the last pass
+     * get a second chance. Gives up after two full passes, which can only
+     * happen while other threads keep adding mappings.
+     */
+    private void evict() {
+        int capacity = mask + 1;
+        for (int k = 0; k < 2 * capacity && weight.get() > maxWeight; k++) {
+            int slot = clockHand.getAndIncrement() & mask;
+            Entry<K> entry = entries.get(slot);
+            if (entry == null) {
+                continue;
+            }
+            if (entry.accessed) {
+                entry.accessed = false;
+                continue;
+            }
+            if (entries.compareAndSet(slot, entry, null)) {
+                size.decrementAndGet();
+                weight.addAndGet(-entry.weight);
+                evictionCount.increment();
+            }
+        }
+    }
+
+    /**
+     * Purge the mappings of all generations matching {@code purge}.
+     */
+    public void purgeGenerations(@NotNull Predicate<Integer> purge) {
+        for (int slot = 0; slot <= mask; slot++) {
+            Entry<K> entry = entries.get(slot);
+            if (entry != null && purge.apply(entry.generation) && entries.compareAndSet(slot, entry, null)) {
+                size.decrementAndGet();
+                weight.addAndGet(-entry.weight);
+            }
+        }
+    }
+
+    /**
+     * @return number of mappings
+     */
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * @return the estimated weight of the mappings in bytes
+     */
+    public long estimateCurrentWeight() {
+        return weight.get();
+    }
+
+    /**
+     * @return the maximum weight of the mappings in bytes
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * @return access statistics for this cache
+     */
+    @NotNull
+    public CacheStats getStats() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), loadCount.sum(), 0, 0, evictionCount.sum());
+    }
+
+}
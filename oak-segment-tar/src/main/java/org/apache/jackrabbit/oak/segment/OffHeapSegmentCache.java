@@ -0,0 +1,539 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import org.apache.jackrabbit.oak.cache.AbstractCacheStats;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link SegmentCache} keeping the content of the cached segments outside
+ * of the Java heap.
+ * <p>
+ * The bytes of the cached segments are stored in direct buffers. Only a
+ * bounded number of {@link Segment} instances wrapping those buffers is kept
+ * on the heap, and memoised in their {@link SegmentId}. When a wrapper is
+ * evicted, it is recreated from the cached bytes on the next access without
+ * reading the segment from the underlying store.
+ * <p>
+ * Optionally, segments evicted from the direct buffers are moved to an
+ * overflow tier backed by a memory-mapped local file. The overflow tier is
+ * organised as a ring buffer: when it is full, the oldest segments are
+ * overwritten. Segments found in the overflow tier are moved back to a direct
+ * buffer.
+ * <p>
+ * The weight of this cache is the number of bytes stored in direct buffers
+ * and in the overflow tier. A segment counts as a miss only if it has to be
+ * loaded from the underlying store, and as evicted only when it leaves the
+ * last tier of this cache.
+ */
+class OffHeapSegmentCache extends SegmentCache {
+
+    private static final Logger log = LoggerFactory.getLogger(OffHeapSegmentCache.class);
+
+    private static final String NAME = "Segment Cache";
+
+    /**
+     * Maximum number of {@link Segment} instances kept on the heap.
+     */
+    static final int WRAPPER_COUNT = Integer.getInteger("oak.segment.cache.offHeap.wrapperCount", 1024);
+
+    @NotNull
+    private final BiFunction<SegmentId, ByteBuffer, Segment> segmentFactory;
+
+    /**
+     * Segment instances recently accessed. These segments are memoised in
+     * their segment ids.
+     */
+    @NotNull
+    private final Cache<SegmentId, Segment> wrappers;
+
+    /**
+     * Content of the cached segments, stored in direct buffers.
+     */
+    @NotNull
+    private final Cache<UUID, ByteBuffer> buffers;
+
+    @Nullable
+    private final OverflowTier overflow;
+
+    @NotNull
+    private final Stats stats;
+
+    OffHeapSegmentCache(
+            long cacheSizeMB,
+            @Nullable File overflowFile,
+            long overflowSizeMB,
+            @NotNull BiFunction<SegmentId, ByteBuffer, Segment> segmentFactory
+    ) throws IOException {
+        this(cacheSizeMB, overflowFile, overflowSizeMB, segmentFactory, WRAPPER_COUNT);
+    }
+
+    /**
+     * Create a new cache.
+     *
+     * @param cacheSizeMB    size of the direct buffers in megabytes.
+     * @param overflowFile   file backing the overflow tier, or {@code null}
+     *                       to disable the overflow tier.
+     * @param overflowSizeMB size of the overflow tier in megabytes.
+     * @param segmentFactory creates a {@link Segment} from the id and the
+     *                       content of a cached segment.
+     * @param wrapperCount   maximum number of {@link Segment} instances kept
+     *                       on the heap.
+     */
+    OffHeapSegmentCache(
+            long cacheSizeMB,
+            @Nullable File overflowFile,
+            long overflowSizeMB,
+            @NotNull BiFunction<SegmentId, ByteBuffer, Segment> segmentFactory,
+            int wrapperCount
+    ) throws IOException {
+        checkArgument(cacheSizeMB > 0);
+        checkArgument(wrapperCount > 0);
+        this.segmentFactory = checkNotNull(segmentFactory);
+
+        long maximumWeight = cacheSizeMB * 1024 * 1024;
+        this.buffers = CacheBuilder.newBuilder()
+                .concurrencyLevel(concurrencyLevel(maximumWeight))
+                .maximumWeight(maximumWeight)
+                .<UUID, ByteBuffer>weigher((id, buffer) -> buffer.capacity())
+                .removalListener(this::onBufferRemoved)
+                .build();
+        this.wrappers = CacheBuilder.newBuilder()
+                .concurrencyLevel(16)
+                .maximumSize(wrapperCount)
+                .removalListener(this::onWrapperRemoved)
+                .build();
+
+        if (overflowFile != null && overflowSizeMB > 0) {
+            this.overflow = new OverflowTier(overflowFile, overflowSizeMB * 1024 * 1024);
+            maximumWeight += overflow.capacity();
+        } else {
+            this.overflow = null;
+        }
+
+        this.stats = new Stats(NAME, maximumWeight, this::getElementCount);
+    }
+
+    /**
+     * The underlying cache is partitioned by concurrency level, and each
+     * partition is bounded to its share of the maximum weight. Limit the
+     * number of partitions so that each of them can hold several segments of
+     * the maximum size.
+     */
+    private static int concurrencyLevel(long maximumWeight) {
+        long level = maximumWeight / (16L * Segment.MAX_SEGMENT_SIZE);
+        return (int) Math.max(1, Math.min(16, level));
+    }
+
+    private long getElementCount() {
+        long count = buffers.size();
+        if (overflow != null) {
+            count += overflow.size();
+        }
+        return count;
+    }
+
+    private void onWrapperRemoved(@NotNull RemovalNotification<SegmentId, Segment> notification) {
+        if (notification.getKey() != null) {
+            notification.getKey().unloaded();
+        }
+    }
+
+    private void onBufferRemoved(@NotNull RemovalNotification<UUID, ByteBuffer> notification) {
+        ByteBuffer buffer = notification.getValue();
+        if (buffer == null) {
+            return;
+        }
+        stats.currentWeight.addAndGet(-buffer.capacity());
+        if (overflow != null && notification.wasEvicted()) {
+            stats.evictionCount.addAndGet(overflow.put(notification.getKey(), buffer, stats));
+        } else if (notification.wasEvicted()) {
+            stats.evictionCount.incrementAndGet();
+        }
+    }
+
+    @Override
+    @NotNull
+    public Segment getSegment(@NotNull SegmentId id, @NotNull Callable<Segment> loader) throws ExecutionException {
+        if (!id.isDataSegmentId()) {
+            try {
+                return loader.call();
+            } catch (Exception e) {
+                throw new ExecutionException(e);
+            }
+        }
+        return wrappers.get(id, () -> {
+            Segment segment;
+            ByteBuffer buffer = getBuffer(id.asUUID());
+            if (buffer != null) {
+                stats.hitCount.incrementAndGet();
+                segment = segmentFactory.apply(id, buffer);
+            } else {
+                try {
+                    long t0 = System.nanoTime();
+                    segment = loader.call();
+                    stats.loadSuccessCount.incrementAndGet();
+                    stats.loadTime.addAndGet(System.nanoTime() - t0);
+                    stats.missCount.incrementAndGet();
+                } catch (Exception e) {
+                    stats.loadExceptionCount.incrementAndGet();
+                    throw e;
+                }
+                putBuffer(id.asUUID(), segment);
+            }
+            id.loaded(segment);
+            return segment;
+        });
+    }
+
+    /**
+     * Lookup the content of a segment in the direct buffers and in the
+     * overflow tier. Content found in the overflow tier is moved back to a
+     * direct buffer.
+     */
+    @Nullable
+    private ByteBuffer getBuffer(UUID id) {
+        ByteBuffer buffer = buffers.getIfPresent(id);
+        if (buffer == null && overflow != null) {
+            buffer = overflow.remove(id, stats);
+            if (buffer != null) {
+                stats.currentWeight.addAndGet(buffer.capacity());
+                buffers.put(id, buffer);
+            }
+        }
+        if (buffer == null) {
+            return null;
+        }
+        return buffer.duplicate();
+    }
+
+    private void putBuffer(UUID id, Segment segment) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(segment.size());
+        segment.writeTo(new OutputStream() {
+
+            @Override
+            public void write(int b) {
+                buffer.put((byte) b);
+            }
+
+            @Override
+            public void write(@NotNull byte[] b, int off, int len) {
+                buffer.put(b, off, len);
+            }
+
+        });
+        buffer.flip();
+
+        // Update the current weight *before* putting the buffer into the
+        // cache, so that it is only decremented after it was incremented.
+
+        stats.currentWeight.addAndGet(buffer.capacity());
+        buffers.put(id, buffer);
+    }
+
+    @Override
+    public void putSegment(@NotNull Segment segment) {
+        SegmentId id = segment.getSegmentId();
+
+        if (id.isDataSegmentId()) {
+            try {
+                putBuffer(id.asUUID(), segment);
+            } catch (IOException e) {
+                log.warn("Unable to cache segment {}", id, e);
+            }
+
+            // Putting the segment into the cache can cause it to be evicted
+            // right away again. Therefore we need to call loaded *before*
+            // putting the segment into the cache.
+
+            id.loaded(segment);
+            wrappers.put(id, segment);
+        }
+    }
+
+    @Override
+    public boolean containsSegment(@NotNull SegmentId id) {
+        return wrappers.asMap().containsKey(id) || buffers.asMap().containsKey(id.asUUID());
+    }
+
+    @Override
+    public void clear() {
+        wrappers.invalidateAll();
+        buffers.invalidateAll();
+        if (overflow != null) {
+            overflow.clear(stats);
+        }
+    }
+
+    @Override
+    public void close() {
+        clear();
+        if (overflow != null) {
+            overflow.close();
+        }
+    }
+
+    @Override
+    @NotNull
+    public AbstractCacheStats getCacheStats() {
+        return stats;
+    }
+
+    @Override
+    public void recordHit() {
+        stats.hitCount.incrementAndGet();
+    }
+
+    /**
+     * Ring buffer of segments backed by a memory-mapped file. The file is
+     * mapped in chunks, and segments never span two chunks.
+     */
+    private static class OverflowTier implements Closeable {
+
+        private static final int CHUNK_SIZE = 1 << 30;
+
+        private static class Entry {
+
+            final UUID id;
+
+            final long position;
+
+            final int length;
+
+            Entry(UUID id, long position, int length) {
+                this.id = id;
+                this.position = position;
+                this.length = length;
+            }
+
+        }
+
+        private final File file;
+
+        private final long capacity;
+
+        private final MappedByteBuffer[] chunks;
+
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        /**
+         * Segments in the ring buffer, by id.
+         */
+        private final Map<UUID, Entry> index = new HashMap<>();
+
+        /**
+         * Segments in the ring buffer, from the oldest to the newest. The
+         * oldest segment is the first one found after the write position.
+         */
+        private final Deque<Entry> entries = new ArrayDeque<>();
+
+        private long position;
+
+        OverflowTier(File file, long capacity) throws IOException {
+            this.file = file;
+            this.capacity = capacity;
+            this.chunks = new MappedByteBuffer[(int) ((capacity + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(capacity);
+                FileChannel channel = raf.getChannel();
+                for (int i = 0; i < chunks.length; i++) {
+                    long offset = (long) i * CHUNK_SIZE;
+                    chunks[i] = channel.map(MapMode.READ_WRITE, offset, Math.min(CHUNK_SIZE, capacity - offset));
+                }
+            }
+
+            log.info("Segment cache overflow tier of {} bytes created at {}", capacity, file);
+        }
+
+        long capacity() {
+            return capacity;
+        }
+
+        long size() {
+            lock.readLock().lock();
+            try {
+                return index.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Copy the content of a segment into a new direct buffer and remove
+         * the segment from this tier. The bytes of the segment stay in the
+         * ring buffer until they are overwritten, but they are no longer
+         * accounted for.
+         *
+         * @return the content of the segment, or {@code null} if the segment
+         * is not in this tier.
+         */
+        @Nullable
+        ByteBuffer remove(UUID id, Stats stats) {
+            lock.writeLock().lock();
+            try {
+                Entry entry = index.remove(id);
+                if (entry == null) {
+                    return null;
+                }
+                stats.currentWeight.addAndGet(-entry.length);
+                ByteBuffer source = chunks[(int) (entry.position / CHUNK_SIZE)].duplicate();
+                int offset = (int) (entry.position % CHUNK_SIZE);
+                source.position(offset);
+                source.limit(offset + entry.length);
+                ByteBuffer buffer = ByteBuffer.allocateDirect(entry.length);
+                buffer.put(source);
+                buffer.flip();
+                return buffer;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Write the content of a segment at the current write position,
+         * overwriting the oldest segments if needed.
+         *
+         * @return the number of segments evicted from the cache, including the
+         * segment being written if it can't be stored in this tier.
+         */
+        int put(UUID id, ByteBuffer buffer, Stats stats) {
+            int length = buffer.remaining();
+            if (length > Math.min(CHUNK_SIZE, capacity)) {
+                return 1;
+            }
+
+            lock.writeLock().lock();
+            try {
+                if (index.containsKey(id)) {
+                    return 0;
+                }
+
+                // Skip the end of the current chunk, or of the file, if the
+                // segment doesn't fit there.
+
+                long start = position;
+                int chunk = (int) (start / CHUNK_SIZE);
+                if (start % CHUNK_SIZE + length > chunks[chunk].capacity()) {
+                    start = (long) (chunk + 1) * CHUNK_SIZE;
+                    if (start >= capacity) {
+                        start = 0;
+                    }
+                }
+
+                // The bytes between the write position and the end of the new
+                // segment are reclaimed, including the skipped ones. They hold
+                // the oldest segments. Entries already moved back to a direct
+                // buffer are only dropped from the ring.
+
+                long reclaimed = distance(start) + length;
+                int evicted = 0;
+                while (!entries.isEmpty() && distance(entries.peekFirst().position) < reclaimed) {
+                    Entry oldest = entries.removeFirst();
+                    if (index.remove(oldest.id, oldest)) {
+                        stats.currentWeight.addAndGet(-oldest.length);
+                        evicted++;
+                    }
+                }
+
+                ByteBuffer target = chunks[(int) (start / CHUNK_SIZE)].duplicate();
+                target.position((int) (start % CHUNK_SIZE));
+                target.put(buffer.duplicate());
+
+                Entry entry = new Entry(id, start, length);
+                entries.addLast(entry);
+                index.put(id, entry);
+                stats.currentWeight.addAndGet(length);
+
+                position = start + length;
+                if (position >= capacity) {
+                    position = 0;
+                }
+                return evicted;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Distance of {@code p} from the write position, moving forward in
+         * the ring buffer.
+         */
+        private long distance(long p) {
+            long d = p - position;
+            return d < 0 ? d + capacity : d;
+        }
+
+        void clear(Stats stats) {
+            lock.writeLock().lock();
+            try {
+                for (Entry entry : index.values()) {
+                    stats.currentWeight.addAndGet(-entry.length);
+                }
+                entries.clear();
+                index.clear();
+                position = 0;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            // The mapped chunks are released when garbage collected. The file
+            // can't be used anymore, and removing it eagerly saves disk space
+            // on platforms allowing to remove mapped files.
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.Thread.currentThread;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeBuilder;
+import org.apache.jackrabbit.oak.segment.file.GCNodeWriteMonitor;
+import org.apache.jackrabbit.oak.segment.file.cancel.Canceller;
+import org.apache.jackrabbit.oak.spi.blob.BlobStore;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateDiff;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * This compactor splits the tree at a given depth and compacts the subtrees
+ * rooted at that depth concurrently on a fork-join pool. The nodes above the
+ * split depth are compacted on the calling thread once all their subtrees have
+ * been compacted.
+ * <p>
+ * The passed {@code SegmentWriter} must be thread safe, i.e. backed by a
+ * {@link SegmentBufferWriterPool}. This gives every worker thread its own
+ * {@link SegmentBufferWriter}, so that workers don't contend on the same
+ * segment buffer.
+ */
+public class ParallelCompactor extends Compactor {
+
+    private static final ForkJoinWorkerThreadFactory WORKER_FACTORY = pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("oak-compaction-worker-" + thread.getPoolIndex());
+        return thread;
+    };
+
+    @NotNull
+    private final SegmentWriter writer;
+
+    @NotNull
+    private final SegmentReader reader;
+
+    @Nullable
+    private final BlobStore blobStore;
+
+    @NotNull
+    private final GCNodeWriteMonitor compactionMonitor;
+
+    private final int concurrency;
+
+    private final int depth;
+
+    /**
+     * Create a new instance based on the passed arguments.
+     * @param reader     segment reader used to read from the segments
+     * @param writer     thread safe segment writer used to serialise to segments
+     * @param blobStore  the blob store or {@code null} if none
+     * @param compactionMonitor   notification call back for each compacted nodes,
+     *                            properties, and binaries
+     * @param concurrency  number of worker threads
+     * @param depth        depth at which the tree is split into subtrees that are
+     *                     compacted concurrently
+     */
+    public ParallelCompactor(
+            @NotNull SegmentReader reader,
+            @NotNull SegmentWriter writer,
+            @Nullable BlobStore blobStore,
+            @NotNull GCNodeWriteMonitor compactionMonitor,
+            int concurrency,
+            int depth) {
+        super(reader, writer, blobStore, compactionMonitor);
+        checkArgument(concurrency > 0, "concurrency must be positive");
+        checkArgument(depth > 0, "depth must be positive");
+        this.writer = checkNotNull(writer);
+        this.reader = checkNotNull(reader);
+        this.blobStore = blobStore;
+        this.compactionMonitor = checkNotNull(compactionMonitor);
+        this.concurrency = concurrency;
+        this.depth = depth;
+    }
+
+    @Nullable
+    @Override
+    public SegmentNodeState compact(
+        @NotNull NodeState before,
+        @NotNull NodeState after,
+        @NotNull NodeState onto,
+        Canceller canceller
+    ) throws IOException {
+        checkNotNull(before);
+        checkNotNull(after);
+        checkNotNull(onto);
+
+        AtomicBoolean failed = new AtomicBoolean();
+        Canceller workerCanceller = canceller.withCondition("parallel compaction failed", failed::get);
+        ForkJoinPool pool = new ForkJoinPool(concurrency, WORKER_FACTORY, null, false);
+
+        try {
+            CompactionTree tree = new CompactionTree(before, after, onto, 0, pool, workerCanceller);
+            SegmentNodeState compacted = tree.compactTree();
+            failed.set(compacted == null);
+            return compacted;
+        } catch (IOException | RuntimeException e) {
+            failed.set(true);
+            throw e;
+        } finally {
+            pool.shutdown();
+            awaitTermination(pool);
+        }
+    }
+
+    private static void awaitTermination(ForkJoinPool pool) throws IOException {
+        try {
+            while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                // Workers react to cancellation, so this only waits for
+                // subtrees that are currently being written to finish.
+            }
+        } catch (InterruptedException e) {
+            currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for compaction workers", e);
+        }
+    }
+
+    private interface PendingNode {
+
+        @Nullable
+        SegmentNodeState get() throws IOException;
+
+    }
+
+    /**
+     * Compacts the part of the tree above the split depth. Children above the
+     * split depth are compacted by nested instances of this class, children at
+     * the split depth are submitted to the pool as soon as they are found, so
+     * that all subtrees are in flight before this instance waits for them.
+     */
+    private class CompactionTree implements NodeStateDiff {
+
+        @NotNull
+        private final NodeState after;
+
+        @NotNull
+        private final NodeState onto;
+
+        private final int level;
+
+        @NotNull
+        private final ForkJoinPool pool;
+
+        @NotNull
+        private final Canceller canceller;
+
+        @NotNull
+        private final MemoryNodeBuilder builder;
+
+        private final Map<String, PendingNode> children = new LinkedHashMap<>();
+
+        private final boolean success;
+
+        CompactionTree(
+            @NotNull NodeState before,
+            @NotNull NodeState after,
+            @NotNull NodeState onto,
+            int level,
+            @NotNull ForkJoinPool pool,
+            @NotNull Canceller canceller
+        ) {
+            this.after = after;
+            this.onto = onto;
+            this.level = level;
+            this.pool = pool;
+            this.canceller = canceller;
+            this.builder = new MemoryNodeBuilder(onto);
+            this.success = after.compareAgainstBaseState(before, new CancelableDiff(this, () -> canceller.check().isCancelled()));
+        }
+
+        @Nullable
+        SegmentNodeState compactTree() throws IOException {
+            if (!success) {
+                return null;
+            }
+
+            for (Entry<String, PendingNode> child : children.entrySet()) {
+                SegmentNodeState compacted = child.getValue().get();
+                if (compacted == null) {
+                    return null;
+                }
+                builder.setChildNode(child.getKey(), compacted);
+            }
+
+            RecordId nodeId = writer.writeNode(builder.getNodeState(), getStableIdBytes(after));
+            compactionMonitor.onNode();
+            return new SegmentNodeState(reader, writer, blobStore, nodeId);
+        }
+
+        private void addChild(String name, NodeState before, NodeState after, NodeState onto) {
+            if (level + 1 < depth) {
+                CompactionTree child = new CompactionTree(before, after, onto, level + 1, pool, canceller);
+                children.put(name, child::compactTree);
+            } else {
+                Future<SegmentNodeState> child = pool.submit(() -> compactDiff(before, after, onto, canceller));
+                children.put(name, () -> getCompacted(child));
+            }
+        }
+
+        @Override
+        public boolean propertyAdded(@NotNull PropertyState after) {
+            builder.setProperty(compact(after));
+            return true;
+        }
+
+        @Override
+        public boolean propertyChanged(@NotNull PropertyState before, @NotNull PropertyState after) {
+            builder.setProperty(compact(after));
+            return true;
+        }
+
+        @Override
+        public boolean propertyDeleted(PropertyState before) {
+            builder.removeProperty(before.getName());
+            return true;
+        }
+
+        @Override
+        public boolean childNodeAdded(@NotNull String name, @NotNull NodeState after) {
+            addChild(name, EMPTY_NODE, after, EMPTY_NODE);
+            return true;
+        }
+
+        @Override
+        public boolean childNodeChanged(@NotNull String name, @NotNull NodeState before, @NotNull NodeState after) {
+            addChild(name, before, after, onto.getChildNode(name));
+            return true;
+        }
+
+        @Override
+        public boolean childNodeDeleted(String name, NodeState before) {
+            builder.getChildNode(name).remove();
+            return true;
+        }
+
+    }
+
+    @Nullable
+    private static SegmentNodeState getCompacted(Future<SegmentNodeState> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for compaction workers", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+}
@@ -23,6 +23,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.jackrabbit.oak.segment.CacheWeights.OBJECT_HEADER_SIZE;
 
 import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.jackrabbit.oak.cache.CacheLIRS;
 import org.apache.jackrabbit.oak.cache.CacheStats;
@@ -35,6 +36,13 @@ import com.google.common.cache.Weigher;
 /**
  * A cache consisting of a fast and slow component. The fast cache for small items is based
  * on an array, and a slow one uses a LIRS cache.
+ * <p>
+ * Admission into both components is guarded by a TinyLFU style policy, so
+ * that scans reading many entries only once don't evict the entries that are
+ * frequently read. The access frequency of the entries is estimated by a
+ * {@link FrequencySketch}. An entry replaces the entry occupying its slot of
+ * the fast cache only if it is accessed more frequently. Once the slow cache
+ * is full, an entry is admitted only if it was accessed recently before.
  */
 public abstract class ReaderCache<T> {
 
@@ -56,6 +64,28 @@ public abstract class ReaderCache<T> {
     @NotNull
     private final CacheLIRS<CacheKey, T> cache;
 
+    /**
+     * Minimum estimated frequency of an entry for being admitted into the
+     * slow cache once it is full.
+     */
+    private static final int ADMISSION_FREQUENCY = 2;
+
+    /**
+     * The estimated access frequency of the entries.
+     */
+    @NotNull
+    private final FrequencySketch sketch;
+
+    /**
+     * Number of hits in the fast cache, which aren't seen by the slow cache.
+     */
+    private final LongAdder fastHitCount = new LongAdder();
+
+    /**
+     * Number of loaded entries not admitted into the slow cache.
+     */
+    private final LongAdder rejectedCount = new LongAdder();
+
     /**
      * Create a new string cache.
      *
@@ -75,11 +105,36 @@ public abstract class ReaderCache<T> {
                 .averageWeight(averageWeight)
                 .weigher(weigher)
                 .build();
+        sketch = new FrequencySketch(Math.max(FastCache.CACHE_SIZE, maxWeight / Math.max(1, averageWeight)));
     }
 
+    /**
+     * The statistics of this cache. The hits include the hits in the fast
+     * cache.
+     */
     @NotNull
     public CacheStats getStats() {
-        return new CacheStats(cache, name, weigher, cache.getMaxMemory());
+        return new CacheStats(cache, name, weigher, cache.getMaxMemory()) {
+            @Override
+            protected com.google.common.cache.CacheStats getCurrentStats() {
+                com.google.common.cache.CacheStats stats = super.getCurrentStats();
+                return new com.google.common.cache.CacheStats(
+                        stats.hitCount() + fastHitCount.sum(),
+                        stats.missCount(),
+                        stats.loadSuccessCount(),
+                        stats.loadExceptionCount(),
+                        stats.totalLoadTime(),
+                        stats.evictionCount());
+            }
+        };
+    }
+
+    /**
+     * @return the number of loaded entries that were not admitted into the
+     * slow cache.
+     */
+    long getRejectedCount() {
+        return rejectedCount.sum();
     }
 
     private static int getEntryHash(long lsb, long msb, int offset) {
@@ -107,8 +162,10 @@ public abstract class ReaderCache<T> {
             return value;
         }
 
+        sketch.increment(hash);
         T value = fastCache.get(hash, msb, lsb, offset);
         if (value != null) {
+            fastHitCount.increment();
             return value;
         }
         CacheKey key = new CacheKey(hash, msb, lsb, offset);
@@ -116,14 +173,30 @@ public abstract class ReaderCache<T> {
         if (value == null) {
             value = loader.apply(offset);
             assert value != null;
-            cache.put(key, value);
+            if (admit(key, value)) {
+                cache.put(key, value);
+            } else {
+                rejectedCount.increment();
+            }
         }
         if (isSmall(value)) {
-            fastCache.put(hash, new FastCacheEntry<>(hash, msb, lsb, offset, value));
+            FastCacheEntry<T> victim = fastCache.getEntry(hash);
+            if (victim == null || sketch.frequency(hash) > sketch.frequency(victim.hash)) {
+                fastCache.put(hash, new FastCacheEntry<>(hash, msb, lsb, offset, value));
+            }
         }
         return value;
     }
 
+    /**
+     * Determine whether a loaded entry is admitted into the slow cache. Entries
+     * are always admitted while the cache isn't full.
+     */
+    private boolean admit(CacheKey key, T value) {
+        return cache.getUsedMemory() + weigher.weigh(key, value) <= cache.getMaxMemory()
+                || sketch.frequency(key.hash) >= ADMISSION_FREQUENCY;
+    }
+
     /**
      * Clear the cache.
      */
@@ -173,6 +246,16 @@ public abstract class ReaderCache<T> {
             return null;
         }
 
+        /**
+         * Get the entry stored in the slot of the given hash.
+         *
+         * @param hash the hash
+         * @return the entry, or null
+         */
+        FastCacheEntry<T> getEntry(int hash) {
+            return elements[hash & (CACHE_SIZE - 1)];
+        }
+
         void clear() {
             Arrays.fill(elements, null);
         }
@@ -19,34 +19,159 @@
 
 package org.apache.jackrabbit.oak.segment;
 
-import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.System.arraycopy;
 import static java.util.Arrays.binarySearch;
 
-import java.util.Map;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A memory optimised set of {@link RecordId}s.
  *
  * The set doesn't keep references to the actual record ids
- * it contains.
+ * it contains. Segments are identified by the two halves of
+ * their UUID in an open addressing table of primitive longs.
+ * The record numbers of each segment are kept in an {@link IntSet},
+ * which switches from a sorted array to a bitmap once the record
+ * numbers are dense enough.
+ * <p>
+ * A set created with a memory limit moves the record numbers of
+ * segments to a memory mapped spill file once the estimated heap
+ * used by the record numbers exceeds that limit. The spill file is
+ * deleted when the set is {@link #close() closed}.
  */
-public class RecordIdSet {
-    private final Map<String, IntSet> seenIds = newHashMap();
+public class RecordIdSet implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(RecordIdSet.class);
+
+    /**
+     * Record numbers above this value are never spilled, as their bitmap
+     * would not fit into a chunk of the spill file.
+     */
+    private static final int MAX_SPILLED_RECORD_NUMBER = 1 << 24;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final long memoryLimit;
+
+    @Nullable
+    private final File spillDirectory;
+
+    private long[] msbs = new long[INITIAL_CAPACITY];
+
+    private long[] lsbs = new long[INITIAL_CAPACITY];
+
+    /**
+     * The record numbers of each segment, or {@code null} if they have
+     * been spilled.
+     */
+    private IntSet[] recordNumbers = new IntSet[INITIAL_CAPACITY];
+
+    /**
+     * Offset of the record numbers of each segment in the spill file,
+     * if they have been spilled.
+     */
+    private long[] spillOffsets = new long[INITIAL_CAPACITY];
+
+    private int segmentCount;
+
+    /**
+     * Open addressing table of segment indexes plus one. Zero marks an
+     * empty slot.
+     */
+    private int[] table = new int[2 * INITIAL_CAPACITY];
+
+    /**
+     * Estimated heap used by the record numbers kept on the heap.
+     */
+    private long weight;
+
+    private long size;
+
+    private int spillCursor;
+
+    private SpillFile spillFile;
+
+    /**
+     * Create a new set keeping all record ids on the heap.
+     */
+    public RecordIdSet() {
+        this(Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Create a new set spilling record ids to disk once the record numbers
+     * kept on the heap exceed {@code memoryLimit} bytes. Only the record
+     * numbers are spilled: the set still uses a few tens of bytes of heap
+     * per distinct segment.
+     *
+     * @param memoryLimit    maximum number of bytes used for the record
+     *                       numbers kept on the heap
+     * @param spillDirectory directory of the spill file, or {@code null}
+     *                       for the default temporary-file directory
+     */
+    public RecordIdSet(long memoryLimit, @Nullable File spillDirectory) {
+        checkArgument(memoryLimit >= 0, "memoryLimit must not be negative");
+        this.memoryLimit = memoryLimit;
+        this.spillDirectory = spillDirectory;
+    }
 
     /**
      * Add {@code id} to this set if not already present
      * @param id  the record id to add
      * @return  {@code true} if added, {@code false} if already present
+     * @throws UncheckedIOException if spilling to disk failed
      */
     public boolean addIfNotPresent(RecordId id) {
-        String segmentId = id.getSegmentId().toString();
-        IntSet offsets = seenIds.get(segmentId);
+        SegmentId segmentId = id.getSegmentId();
+        int index = addSegment(segmentId.getMostSignificantBits(), segmentId.getLeastSignificantBits());
+        int number = id.getRecordNumber();
+
+        IntSet offsets = recordNumbers[index];
         if (offsets == null) {
-            offsets = new IntSet();
-            seenIds.put(segmentId, offsets);
+            if (spillFile.contains(spillOffsets[index], number)) {
+                return false;
+            }
+            if (spillFile.set(spillOffsets[index], number)) {
+                size++;
+                return true;
+            }
+            // The bitmap in the spill file is too small, move it back to the heap
+            offsets = new IntSet(spillFile.read(spillOffsets[index]));
+            spillFile.free(spillOffsets[index]);
+            recordNumbers[index] = offsets;
+            weight += offsets.weight();
+        }
+
+        long before = offsets.weight();
+        boolean added = offsets.add(number);
+        weight += offsets.weight() - before;
+
+        if (added) {
+            size++;
+            if (weight > memoryLimit) {
+                spill();
+            }
         }
-        return offsets.add(id.getRecordNumber());
+        return added;
     }
 
     /**
@@ -55,18 +180,169 @@ public class RecordIdSet {
      * @return  {@code true} iff {@code id} is present.
      */
     public boolean contains(RecordId id) {
-        String segmentId = id.getSegmentId().toString();
-        IntSet offsets = seenIds.get(segmentId);
-        return offsets != null && offsets.contains(id.getRecordNumber());
+        SegmentId segmentId = id.getSegmentId();
+        int index = indexOf(segmentId.getMostSignificantBits(), segmentId.getLeastSignificantBits());
+        if (index < 0) {
+            return false;
+        }
+        IntSet offsets = recordNumbers[index];
+        if (offsets == null) {
+            return spillFile.contains(spillOffsets[index], id.getRecordNumber());
+        }
+        return offsets.contains(id.getRecordNumber());
+    }
+
+    /**
+     * @return  the number of record ids in this set
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return  the number of bytes of the spill file, or {@code 0} if
+     *          nothing has been spilled to disk
+     */
+    public long getSpilledBytes() {
+        return spillFile == null ? 0 : spillFile.position;
+    }
+
+    /**
+     * Release the spill file of this set, if any. This set must not be used
+     * after it has been closed.
+     */
+    @Override
+    public void close() {
+        if (spillFile != null) {
+            spillFile.close();
+            spillFile = null;
+        }
+    }
+
+    private static int hash(long msb, long lsb) {
+        long h = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int indexOf(long msb, long lsb) {
+        int mask = table.length - 1;
+        int slot = hash(msb, lsb) & mask;
+        while (table[slot] != 0) {
+            int index = table[slot] - 1;
+            if (msbs[index] == msb && lsbs[index] == lsb) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int addSegment(long msb, long lsb) {
+        int mask = table.length - 1;
+        int slot = hash(msb, lsb) & mask;
+        while (table[slot] != 0) {
+            int index = table[slot] - 1;
+            if (msbs[index] == msb && lsbs[index] == lsb) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int index = segmentCount++;
+        if (index == msbs.length) {
+            int capacity = 2 * msbs.length;
+            msbs = Arrays.copyOf(msbs, capacity);
+            lsbs = Arrays.copyOf(lsbs, capacity);
+            recordNumbers = Arrays.copyOf(recordNumbers, capacity);
+            spillOffsets = Arrays.copyOf(spillOffsets, capacity);
+        }
+        msbs[index] = msb;
+        lsbs[index] = lsb;
+        recordNumbers[index] = new IntSet();
+        weight += recordNumbers[index].weight();
+        table[slot] = index + 1;
+
+        // Keep the load factor of the table below one half
+        if (2 * segmentCount > table.length) {
+            rehash(2 * table.length);
+        }
+        return index;
+    }
+
+    private void rehash(int capacity) {
+        int[] rehashed = new int[capacity];
+        int mask = capacity - 1;
+        for (int index = 0; index < segmentCount; index++) {
+            int slot = hash(msbs[index], lsbs[index]) & mask;
+            while (rehashed[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            rehashed[slot] = index + 1;
+        }
+        table = rehashed;
+    }
+
+    /**
+     * Move the record numbers of segments to the spill file until the heap
+     * used by the remaining ones is half the memory limit.
+     */
+    private void spill() {
+        try {
+            if (spillFile == null) {
+                spillFile = new SpillFile(spillDirectory);
+            }
+            for (int k = 0; k < segmentCount && weight > memoryLimit / 2; k++) {
+                int index = spillCursor;
+                spillCursor = (spillCursor + 1) % segmentCount;
+
+                IntSet offsets = recordNumbers[index];
+                if (offsets != null && offsets.isSpillable()) {
+                    spillOffsets[index] = spillFile.write(offsets.toBitmap());
+                    recordNumbers[index] = null;
+                    weight -= offsets.weight();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to spill record ids to disk", e);
+        }
     }
 
     static class IntSet {
+
+        /**
+         * Minimal number of elements before switching to a bitmap.
+         */
+        private static final int BITMAP_THRESHOLD = 16;
+
+        /**
+         * The sorted elements of this set, unless it is a bitmap.
+         */
         int[] elements;
 
+        /**
+         * The elements of this set as a bitmap, if they are all
+         * non-negative and dense enough.
+         */
+        long[] bits;
+
+        private int size;
+
+        IntSet() {}
+
+        IntSet(long[] bits) {
+            this.bits = bits;
+            for (long word : bits) {
+                size += Long.bitCount(word);
+            }
+        }
+
         boolean add(int n) {
-            if (elements == null) {
+            if (bits != null) {
+                return addToBitmap(n);
+            } else if (elements == null) {
                 elements = new int[1];
                 elements[0] = n;
+                size = 1;
                 return true;
             } else {
                 int k = binarySearch(elements, n);
@@ -80,6 +356,10 @@ public class RecordIdSet {
                         arraycopy(elements, l, e, l + 1, c);
                     }
                     elements = e;
+                    size++;
+                    if (size >= BITMAP_THRESHOLD && isDense(elements[0], elements[size - 1], size)) {
+                        toBitmapMode();
+                    }
                     return true;
                 } else {
                     return false;
@@ -88,8 +368,232 @@ public class RecordIdSet {
         }
 
         boolean contains(int n) {
+            if (bits != null) {
+                return n >= 0 && (n >>> 6) < bits.length && (bits[n >>> 6] & (1L << n)) != 0;
+            }
             return elements != null && binarySearch(elements, n) >= 0;
         }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * @return  an estimate of the heap used by this set
+         */
+        long weight() {
+            long weight = 32;
+            if (bits != null) {
+                weight += 16 + 8L * bits.length;
+            } else if (elements != null) {
+                weight += 16 + 4L * elements.length;
+            }
+            return weight;
+        }
+
+        boolean isSpillable() {
+            if (bits != null) {
+                return true;
+            }
+            return elements != null
+                    && elements[0] >= 0
+                    && elements[size - 1] < MAX_SPILLED_RECORD_NUMBER;
+        }
+
+        long[] toBitmap() {
+            if (bits != null) {
+                return bits;
+            }
+            long[] bitmap = new long[(elements[size - 1] >>> 6) + 1];
+            for (int n : elements) {
+                bitmap[n >>> 6] |= 1L << n;
+            }
+            return bitmap;
+        }
+
+        /**
+         * A bitmap pays off when it takes less memory than the array of the
+         * same elements.
+         */
+        private static boolean isDense(int min, int max, int count) {
+            return min >= 0 && ((long) (max >>> 6) + 1) * 8 < 4L * count;
+        }
+
+        private void toBitmapMode() {
+            bits = toBitmap();
+            elements = null;
+        }
+
+        private void toArrayMode() {
+            int[] e = new int[size];
+            int k = 0;
+            for (int w = 0; w < bits.length; w++) {
+                long word = bits[w];
+                while (word != 0) {
+                    e[k++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            elements = e;
+            bits = null;
+        }
+
+        private boolean addToBitmap(int n) {
+            if (contains(n)) {
+                return false;
+            }
+            int word = n >>> 6;
+            if (n < 0 || word >= bits.length && !isDense(0, n, size + 1)) {
+                toArrayMode();
+                return add(n);
+            }
+            if (word >= bits.length) {
+                bits = Arrays.copyOf(bits, Math.max(word + 1, bits.length + bits.length / 2));
+            }
+            bits[word] |= 1L << n;
+            size++;
+            return true;
+        }
+
+    }
+
+    /**
+     * A temporary file holding bitmaps of record numbers. The file is mapped
+     * into memory in chunks, so that the operating system rather than the
+     * Java heap is in charge of keeping the spilled record numbers in memory.
+     * Each bitmap is stored as the number of its words followed by the words.
+     * The regions of bitmaps moved back to the heap are reused by later
+     * bitmaps of a similar size, so that the file doesn't keep growing while
+     * the same segments are spilled over and over again.
+     * Chunks are never unmapped explicitly, this is left to the garbage
+     * collector.
+     */
+    static class SpillFile {
+
+        private static final int CHUNK_SIZE = 64 * 1024 * 1024;
+
+        private final File file;
+
+        private final RandomAccessFile access;
+
+        private final List<MappedByteBuffer> chunks = new ArrayList<>();
+
+        /**
+         * Offsets of the freed regions by the number of words they hold.
+         */
+        private final TreeMap<Integer, Deque<Long>> freeRegions = new TreeMap<>();
+
+        private long position;
+
+        SpillFile(@Nullable File directory) throws IOException {
+            this.file = File.createTempFile("record-ids-", ".tmp", directory);
+            this.file.deleteOnExit();
+            this.access = new RandomAccessFile(file, "rw");
+        }
+
+        /**
+         * Write a bitmap with some room for additional record numbers, which
+         * avoids moving it back to the heap as soon as it grows. The bitmap
+         * goes to a freed region of up to twice the required size, if there
+         * is one, and is appended to the file otherwise.
+         *
+         * @return the offset of the bitmap in this file
+         */
+        long write(@NotNull long[] bitmap) throws IOException {
+            int capacity = bitmap.length + bitmap.length / 4 + 1;
+
+            Entry<Integer, Deque<Long>> free = freeRegions.ceilingEntry(capacity);
+            if (free != null && free.getKey() <= 2 * capacity) {
+                long offset = free.getValue().pop();
+                if (free.getValue().isEmpty()) {
+                    freeRegions.remove(free.getKey());
+                }
+                MappedByteBuffer chunk = chunks.get((int) (offset / CHUNK_SIZE));
+                int p = (int) (offset % CHUNK_SIZE);
+                for (int k = 0; k < free.getKey(); k++) {
+                    chunk.putLong(p + 4 + 8 * k, k < bitmap.length ? bitmap[k] : 0);
+                }
+                return offset;
+            }
+
+            int length = 4 + 8 * capacity;
+            if (position % CHUNK_SIZE + length > CHUNK_SIZE) {
+                position = (position / CHUNK_SIZE + 1) * CHUNK_SIZE;
+            }
+            long offset = position;
+            int chunkIndex = (int) (offset / CHUNK_SIZE);
+            while (chunks.size() <= chunkIndex) {
+                long chunkOffset = (long) chunks.size() * CHUNK_SIZE;
+                chunks.add(access.getChannel().map(MapMode.READ_WRITE, chunkOffset, CHUNK_SIZE));
+            }
+            MappedByteBuffer chunk = chunks.get(chunkIndex);
+            int p = (int) (offset % CHUNK_SIZE);
+            chunk.putInt(p, capacity);
+            for (int k = 0; k < bitmap.length; k++) {
+                chunk.putLong(p + 4 + 8 * k, bitmap[k]);
+            }
+            position += length;
+            return offset;
+        }
+
+        long[] read(long offset) {
+            MappedByteBuffer chunk = chunks.get((int) (offset / CHUNK_SIZE));
+            int p = (int) (offset % CHUNK_SIZE);
+            long[] bitmap = new long[chunk.getInt(p)];
+            for (int k = 0; k < bitmap.length; k++) {
+                bitmap[k] = chunk.getLong(p + 4 + 8 * k);
+            }
+            return bitmap;
+        }
+
+        /**
+         * Release the region of the bitmap at {@code offset} for reuse by
+         * later {@link #write(long[]) writes}.
+         */
+        void free(long offset) {
+            MappedByteBuffer chunk = chunks.get((int) (offset / CHUNK_SIZE));
+            int capacity = chunk.getInt((int) (offset % CHUNK_SIZE));
+            freeRegions.computeIfAbsent(capacity, c -> new ArrayDeque<>()).push(offset);
+        }
+
+        boolean contains(long offset, int n) {
+            MappedByteBuffer chunk = chunks.get((int) (offset / CHUNK_SIZE));
+            int p = (int) (offset % CHUNK_SIZE);
+            if (n < 0 || (n >>> 6) >= chunk.getInt(p)) {
+                return false;
+            }
+            return (chunk.getLong(p + 4 + 8 * (n >>> 6)) & (1L << n)) != 0;
+        }
+
+        /**
+         * Set a bit in a bitmap, if the bitmap is large enough.
+         *
+         * @return {@code false} if {@code n} doesn't fit into the bitmap
+         */
+        boolean set(long offset, int n) {
+            MappedByteBuffer chunk = chunks.get((int) (offset / CHUNK_SIZE));
+            int p = (int) (offset % CHUNK_SIZE);
+            if (n < 0 || (n >>> 6) >= chunk.getInt(p)) {
+                return false;
+            }
+            int q = p + 4 + 8 * (n >>> 6);
+            chunk.putLong(q, chunk.getLong(q) | (1L << n));
+            return true;
+        }
+
+        void close() {
+            chunks.clear();
+            freeRegions.clear();
+            try {
+                access.close();
+            } catch (IOException e) {
+                log.warn("Unable to close spill file {}", file, e);
+            }
+            if (!file.delete()) {
+                log.debug("Unable to delete spill file {}, it will be deleted on exit", file);
+            }
+        }
+
     }
 
 }
@@ -566,6 +566,18 @@ public class Segment {
         data.binDump(stream);
     }
 
+    /**
+     * Return a read-only view of the content of this segment. Unlike {@link
+     * #writeTo(OutputStream)}, the content is not copied. If the segment was
+     * read from a memory mapped TAR file, the returned buffer is backed by
+     * the memory mapped region.
+     *
+     * @return the content of this segment.
+     */
+    public ByteBuffer asReadOnlyBuffer() {
+        return data.asReadOnlyBuffer();
+    }
+
     /**
      * Convert an offset into an address.
      * @param offset
@@ -22,10 +22,14 @@ package org.apache.jackrabbit.oak.segment;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.jackrabbit.oak.segment.CacheWeights.segmentWeight;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
 import java.util.function.Supplier;
 
 import com.google.common.cache.Cache;
@@ -35,6 +39,7 @@ import com.google.common.cache.RemovalNotification;
 import org.apache.jackrabbit.oak.cache.AbstractCacheStats;
 import org.apache.jackrabbit.oak.segment.CacheWeights.SegmentCacheWeigher;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * A cache for {@link SegmentId#isDataSegmentId() data} {@link Segment}
@@ -70,6 +75,36 @@ public abstract class SegmentCache {
         }
     }
 
+    /**
+     * Create a new segment cache keeping the content of the cached segments
+     * outside of the Java heap. Returns an always empty cache for {@code
+     * cacheSizeMB <= 0}.
+     *
+     * @param cacheSizeMB    size of the off-heap memory used by the cache in
+     *                       megabytes.
+     * @param overflowFile   file backing a memory-mapped overflow tier for
+     *                       segments evicted from the off-heap memory, or
+     *                       {@code null} to disable the overflow tier.
+     * @param overflowSizeMB size of the overflow tier in megabytes.
+     * @param segmentFactory creates a {@link Segment} from the id and the
+     *                       content of a cached segment.
+     * @throws IOException if the overflow tier can't be created.
+     * @see OffHeapSegmentCache
+     */
+    @NotNull
+    public static SegmentCache newOffHeapSegmentCache(
+            long cacheSizeMB,
+            @Nullable File overflowFile,
+            long overflowSizeMB,
+            @NotNull BiFunction<SegmentId, ByteBuffer, Segment> segmentFactory
+    ) throws IOException {
+        if (cacheSizeMB > 0) {
+            return new OffHeapSegmentCache(cacheSizeMB, overflowFile, overflowSizeMB, segmentFactory);
+        } else {
+            return new EmptyCache();
+        }
+    }
+
     /**
      * Retrieve an segment from the cache or load it and cache it if not yet in
      * the cache.
@@ -91,6 +126,16 @@ public abstract class SegmentCache {
      */
     public abstract void putSegment(@NotNull Segment segment);
 
+    /**
+     * Check whether a segment is in the cache, without loading it and without
+     * affecting the statistics of the cache.
+     *
+     * @param id the id of the segment
+     * @return {@code true} if the segment is in the cache, {@code false}
+     * otherwise.
+     */
+    public abstract boolean containsSegment(@NotNull SegmentId id);
+
     /**
      * Clear all segment from the cache
      */
@@ -109,6 +154,14 @@ public abstract class SegmentCache {
      */
     public abstract void recordHit();
 
+    /**
+     * Release the resources held by this cache. This implementation does
+     * nothing.
+     */
+    public void close() {
+        // Nothing to release
+    }
+
     private static class NonEmptyCache extends SegmentCache {
 
         /**
@@ -198,6 +251,11 @@ public abstract class SegmentCache {
             }
         }
 
+        @Override
+        public boolean containsSegment(@NotNull SegmentId id) {
+            return cache.asMap().containsKey(id);
+        }
+
         @Override
         public void clear() {
             cache.invalidateAll();
@@ -242,6 +300,11 @@ public abstract class SegmentCache {
             segment.getSegmentId().unloaded();
         }
 
+        @Override
+        public boolean containsSegment(@NotNull SegmentId id) {
+            return false;
+        }
+
         @Override
         public void clear() {}
 
@@ -262,7 +325,7 @@ public abstract class SegmentCache {
      * cache hits are taken by {@link SegmentId#getSegment()} and thus never
      * seen by the cache.
      */
-    private static class Stats extends AbstractCacheStats {
+    static class Stats extends AbstractCacheStats {
         private final long maximumWeight;
 
         @NotNull
@@ -18,9 +18,7 @@
  */
 package org.apache.jackrabbit.oak.segment;
 
-import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMapWithExpectedSize;
-import static java.util.Collections.nCopies;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
@@ -29,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
@@ -36,11 +35,14 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Hash table of weak references to segment identifiers.
+ * <p>
+ * Looking up an existing segment identifier doesn't require any lock. Only
+ * adding a new segment identifier and maintaining the table are serialized.
  */
 public class SegmentIdTable {
 
     /**
-     * The list of weak references to segment identifiers that are currently
+     * The table of weak references to segment identifiers that are currently
      * being accessed. This represents a hash table that uses open addressing
      * with linear probing. It is not a hash map, to speed up read access.
      * <p>
@@ -58,9 +60,16 @@ public class SegmentIdTable {
      * <p>
      * The array is not sorted (we could; lookup might be faster, but adding
      * entries would be slower).
+     * <p>
+     * Readers access the table without holding the monitor of this instance.
+     * The table is only modified while holding the monitor, and it is never
+     * cleared in place when rebuilt: a new table is built and published
+     * instead. A lookup that doesn't find an identifier without holding the
+     * monitor is repeated while holding it, so that a reader racing with a
+     * modification never creates a duplicate identifier.
      */
-    private final ArrayList<WeakReference<SegmentId>> references =
-            newArrayList(nCopies(1024, (WeakReference<SegmentId>) null));
+    private volatile AtomicReferenceArray<WeakReference<SegmentId>> references =
+            new AtomicReferenceArray<WeakReference<SegmentId>>(1024);
 
     private static final Logger LOG = LoggerFactory.getLogger(SegmentIdTable.class);
 
@@ -87,8 +96,51 @@ public class SegmentIdTable {
      * @return the segment id
      */
     @NotNull
-    synchronized SegmentId newSegmentId(long msb, long lsb, SegmentIdFactory maker) {
-        int index = getIndex(lsb);
+    SegmentId newSegmentId(long msb, long lsb, SegmentIdFactory maker) {
+        SegmentId id = findSegmentId(msb, lsb);
+        if (id != null) {
+            return id;
+        }
+        return addSegmentId(msb, lsb, maker);
+    }
+
+    /**
+     * Lookup a segment identifier without holding the monitor of this
+     * instance.
+     *
+     * @return the segment identifier, or {@code null} if it was not found.
+     * This method might return {@code null} if the table is concurrently
+     * modified, even if the segment identifier is tracked by this table.
+     */
+    private SegmentId findSegmentId(long msb, long lsb) {
+        AtomicReferenceArray<WeakReference<SegmentId>> references = this.references;
+        int size = references.length();
+        int index = getIndex(lsb, size);
+
+        // The probe is bounded by the size of the table, because this table
+        // might be concurrently modified.
+
+        for (int i = 0; i < size; i++) {
+            WeakReference<SegmentId> reference = references.get(index);
+            if (reference == null) {
+                return null;
+            }
+            SegmentId id = reference.get();
+            if (id != null
+                    && id.getMostSignificantBits() == msb
+                    && id.getLeastSignificantBits() == lsb) {
+                return id;
+            }
+            // open addressing / linear probing
+            index = (index + 1) & (size - 1);
+        }
+        return null;
+    }
+
+    @NotNull
+    private synchronized SegmentId addSegmentId(long msb, long lsb, SegmentIdFactory maker) {
+        int size = references.length();
+        int index = getIndex(lsb, size);
         boolean shouldRefresh = false;
 
         WeakReference<SegmentId> reference = references.get(index);
@@ -102,14 +154,14 @@ public class SegmentIdTable {
             // shouldRefresh if we have a garbage collected entry
             shouldRefresh = shouldRefresh || id == null;
             // open addressing / linear probing
-            index = (index + 1) % references.size();
+            index = (index + 1) & (size - 1);
             reference = references.get(index);
         }
 
         SegmentId id = maker.newSegmentId(msb, lsb);
         references.set(index, new WeakReference<SegmentId>(id));
         entryCount++;
-        if (entryCount > references.size() * 0.75) {
+        if (entryCount > size * 0.75) {
             // more than 75% full            
             shouldRefresh = true;
         }
@@ -129,7 +181,7 @@ public class SegmentIdTable {
     }
 
     private synchronized Collection<SegmentId> refresh() {
-        int size = references.size();
+        int size = references.length();
         Map<SegmentId, WeakReference<SegmentId>> ids =
                 newHashMapWithExpectedSize(size);
 
@@ -141,7 +193,7 @@ public class SegmentIdTable {
                 SegmentId id = reference.get();
                 if (id != null) {
                     ids.put(id, reference);
-                    hashCollisions = hashCollisions || (i != getIndex(id));
+                    hashCollisions = hashCollisions || (i != getIndex(id.getLeastSignificantBits(), size));
                 } else {
                     references.set(i, null);
                     entryCount--;
@@ -160,42 +212,47 @@ public class SegmentIdTable {
             entryCount = ids.size();
         }
 
-        while (2 * ids.size() > size) {
-            size *= 2;
+        int newSize = size;
+        while (2 * ids.size() > newSize) {
+            newSize *= 2;
         }
 
         // we need to re-build the table if the new size is different,
         // but also if we removed some of the entries (because an entry was
         // garbage collected) and there is at least one entry at the "wrong"
         // location (due to open addressing)
-        if ((hashCollisions && emptyReferences) || size != references.size()) {
+        if ((hashCollisions && emptyReferences) || newSize != size) {
             rebuildCount++;
-            references.clear();
-            references.addAll(nCopies(size, (WeakReference<SegmentId>) null));
+
+            // The new table is filled before being published, so that
+            // concurrent lookups never observe a partially built table.
+
+            AtomicReferenceArray<WeakReference<SegmentId>> rebuilt =
+                    new AtomicReferenceArray<WeakReference<SegmentId>>(newSize);
 
             for (Map.Entry<SegmentId, WeakReference<SegmentId>> entry
                     : ids.entrySet()) {
-                int index = getIndex(entry.getKey());
-                while (references.get(index) != null) {
-                    index = (index + 1) % size;
+                int index = getIndex(entry.getKey().getLeastSignificantBits(), newSize);
+                while (rebuilt.get(index) != null) {
+                    index = (index + 1) & (newSize - 1);
                 }
-                references.set(index, entry.getValue());
+                rebuilt.set(index, entry.getValue());
             }
+
+            references = rebuilt;
         }
 
         return ids.keySet();
     }
 
-    private int getIndex(SegmentId id) {
-        return getIndex(id.getLeastSignificantBits());
-    }
-
-    private int getIndex(long lsb) {
-        return ((int) lsb) & (references.size() - 1);
+    private static int getIndex(long lsb, int size) {
+        return ((int) lsb) & (size - 1);
     }
 
     synchronized void clearSegmentIdTables(@NotNull Set<UUID> reclaimed, @NotNull String gcInfo) {
-        for (WeakReference<SegmentId> reference : references) {
+        AtomicReferenceArray<WeakReference<SegmentId>> references = this.references;
+        for (int i = 0; i < references.length(); i++) {
+            WeakReference<SegmentId> reference = references.get(i);
             if (reference != null) {
                 SegmentId id = reference.get();
                 if (id != null && reclaimed.contains(id.asUUID())) {
@@ -210,7 +267,7 @@ public class SegmentIdTable {
      * 
      * @return the rebuild count
      */
-    int getMapRebuildCount() {
+    synchronized int getMapRebuildCount() {
         return rebuildCount;
     }
     
@@ -219,7 +276,7 @@ public class SegmentIdTable {
      * 
      * @return the entry count
      */
-    int getEntryCount() {
+    synchronized int getEntryCount() {
         return entryCount;
     }
     
@@ -229,7 +286,7 @@ public class SegmentIdTable {
      * @return the map size
      */
     int getMapSize() {
-        return references.size();
+        return references.length();
     }
     
     /**
@@ -238,8 +295,10 @@ public class SegmentIdTable {
      * @return the raw list
      */
     List<SegmentId> getRawSegmentIdList() {
+        AtomicReferenceArray<WeakReference<SegmentId>> references = this.references;
         ArrayList<SegmentId> list = new ArrayList<SegmentId>();
-        for (WeakReference<SegmentId> ref : references) {
+        for (int i = 0; i < references.length(); i++) {
+            WeakReference<SegmentId> ref = references.get(i);
             if (ref != null) {
                 SegmentId id = ref.get();
                 if (id != null) {
@@ -36,6 +36,7 @@ import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.plugins.blob.BlobStoreBlob;
 import org.apache.jackrabbit.oak.segment.scheduler.Commit;
 import org.apache.jackrabbit.oak.segment.scheduler.LockBasedScheduler;
+import org.apache.jackrabbit.oak.segment.scheduler.OptimisticScheduler;
 import org.apache.jackrabbit.oak.segment.scheduler.Scheduler;
 import org.apache.jackrabbit.oak.spi.blob.BlobStore;
 import org.apache.jackrabbit.oak.spi.commit.CommitHook;
@@ -79,6 +80,8 @@ public class SegmentNodeStore implements NodeStore, Observable {
         
         private boolean dispatchChanges = true;
 
+        private boolean optimisticScheduler = false;
+
         @NotNull
         private StatisticsProvider statsProvider = StatisticsProvider.NOOP;
         
@@ -100,6 +103,20 @@ public class SegmentNodeStore implements NodeStore, Observable {
             return this;
         }
         
+        /**
+         * Use an {@link OptimisticScheduler} instead of a {@link
+         * LockBasedScheduler}. The optimistic scheduler runs the commit hooks
+         * of concurrent commits in parallel and only serialises the update of
+         * the head state, rebasing and retrying commits that lose the race.
+         * @param optimisticScheduler
+         * @return this instance
+         */
+        @NotNull
+        public SegmentNodeStoreBuilder optimisticScheduler(boolean optimisticScheduler) {
+            this.optimisticScheduler = optimisticScheduler;
+            return this;
+        }
+
         /**
          * {@link StatisticsProvider} for collecting statistics related to SegmentStore
          * @param statisticsProvider
@@ -128,6 +145,7 @@ public class SegmentNodeStore implements NodeStore, Observable {
         public String toString() {
             return "SegmentNodeStoreBuilder{" +
                     getString(blobStore) +
+                    ", optimisticScheduler=" + optimisticScheduler +
                     '}';
         }
     }
@@ -161,9 +179,15 @@ public class SegmentNodeStore implements NodeStore, Observable {
         this.writer = builder.writer;
         this.blobStore = builder.blobStore;
         this.stats = new SegmentNodeStoreStats(builder.statsProvider);
-        this.scheduler = LockBasedScheduler.builder(builder.revisions, builder.reader, stats)
-                .dispatchChanges(builder.dispatchChanges)
-                .build();
+        if (builder.optimisticScheduler) {
+            this.scheduler = OptimisticScheduler.builder(builder.revisions, builder.reader, stats)
+                    .dispatchChanges(builder.dispatchChanges)
+                    .build();
+        } else {
+            this.scheduler = LockBasedScheduler.builder(builder.revisions, builder.reader, stats)
+                    .dispatchChanges(builder.dispatchChanges)
+                    .build();
+        }
     }
 
     @Override
@@ -116,6 +116,8 @@ class SegmentNodeStoreRegistrar {
 
         long getGCProcessLog();
 
+        int getCompactionConcurrency();
+
         File getSegmentDirectory();
 
         File getSplitPersistenceDirectory();
@@ -208,7 +210,8 @@ class SegmentNodeStoreRegistrar {
             .setGcSizeDeltaEstimation(cfg.getSizeDeltaEstimation())
             .setMemoryThreshold(cfg.getMemoryThreshold())
             .setEstimationDisabled(cfg.getDisableEstimation())
-            .setGCLogInterval(cfg.getGCProcessLog());
+            .setGCLogInterval(cfg.getGCProcessLog())
+            .setConcurrency(cfg.getCompactionConcurrency());
         if (cfg.isStandbyInstance()) {
             gcOptions.setRetainedGenerations(1);
         }
@@ -29,6 +29,7 @@ import static org.apache.jackrabbit.oak.segment.WriterCacheManager.DEFAULT_STRIN
 import static org.apache.jackrabbit.oak.segment.WriterCacheManager.DEFAULT_TEMPLATE_CACHE_SIZE_OSGi;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.DISABLE_ESTIMATION_DEFAULT;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.FORCE_TIMEOUT_DEFAULT;
+import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.CONCURRENCY_DEFAULT;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.GC_PROGRESS_LOG_DEFAULT;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.MEMORY_THRESHOLD_DEFAULT;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.PAUSE_DEFAULT;
@@ -224,6 +225,14 @@ public class SegmentNodeStoreService {
         )
         long compaction_progressLog() default GC_PROGRESS_LOG_DEFAULT;
 
+        @AttributeDefinition(
+            name = "Compaction concurrency",
+            description = "The number of threads used to compact the repository. Values greater than 1 " +
+                "compact independent subtrees concurrently. " +
+                "Default value is '" + CONCURRENCY_DEFAULT + "'."
+        )
+        int compaction_concurrency() default CONCURRENCY_DEFAULT;
+
         @AttributeDefinition(
             name = "Standby mode",
             description = "Flag indicating this component will not register as a NodeStore but as a " +
@@ -403,6 +412,11 @@ public class SegmentNodeStoreService {
                 return configuration.compaction_progressLog();
             }
 
+            @Override
+            public int getCompactionConcurrency() {
+                return configuration.compaction_concurrency();
+            }
+
             @Override
             public File getSegmentDirectory() {
                 return new File(getRepositoryHome(), "segmentstore");
@@ -34,6 +34,9 @@ import com.google.common.base.Predicate;
 import com.google.common.base.Supplier;
 import com.google.common.cache.CacheStats;
 import org.apache.jackrabbit.oak.api.jmx.CacheStatsMBean;
+import org.apache.jackrabbit.oak.segment.CacheWeights.NodeCacheWeigher;
+import org.apache.jackrabbit.oak.segment.CacheWeights.StringCacheWeigher;
+import org.apache.jackrabbit.oak.segment.CacheWeights.TemplateCacheWeigher;
 import org.apache.jackrabbit.oak.segment.file.PriorityCache;
 import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.jetbrains.annotations.NotNull;
@@ -435,6 +438,138 @@ public abstract class WriterCacheManager {
 
     }
 
+    /**
+     * This implementation of {@link WriterCacheManager} shares one {@link
+     * ConcurrentRecordCache} per record type across all generations. Unlike
+     * {@link Default}, lookups and updates don't synchronize the concurrent
+     * writers, and the size of the caches is given in bytes rather than in
+     * number of mappings.
+     */
+    public static class Concurrent extends WriterCacheManager {
+
+        @NotNull
+        private final ConcurrentRecordCache<String> stringCache;
+
+        @NotNull
+        private final ConcurrentRecordCache<Template> templateCache;
+
+        @NotNull
+        private final ConcurrentRecordCache<String> nodeCache;
+
+        /**
+         * New instance with caches of the given maximum weights.
+         *
+         * @param stringCacheWeight   maximum weight of the string cache in bytes
+         * @param templateCacheWeight maximum weight of the template cache in bytes
+         * @param nodeCacheWeight     maximum weight of the node cache in bytes
+         */
+        public Concurrent(long stringCacheWeight, long templateCacheWeight, long nodeCacheWeight) {
+            this.stringCache = new ConcurrentRecordCache<>(stringCacheWeight, new StringCacheWeigher());
+            this.templateCache = new ConcurrentRecordCache<>(templateCacheWeight, new TemplateCacheWeigher());
+            this.nodeCache = new ConcurrentRecordCache<>(nodeCacheWeight, new NodeCacheWeigher());
+        }
+
+        @NotNull
+        @Override
+        public Cache<String, RecordId> getStringCache(int generation) {
+            return new GenerationCache<>(stringCache, generation);
+        }
+
+        @NotNull
+        @Override
+        public Cache<Template, RecordId> getTemplateCache(int generation) {
+            return new GenerationCache<>(templateCache, generation);
+        }
+
+        @NotNull
+        @Override
+        public Cache<String, RecordId> getNodeCache(final int generation) {
+            return new Cache<String, RecordId>() {
+                @Override
+                public void put(@NotNull String stableId, @NotNull RecordId recordId, byte cost) {
+                    nodeCache.put(stableId, generation, recordId, cost);
+                }
+
+                @Override
+                public void put(@NotNull String key, @NotNull RecordId value) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Nullable
+                @Override
+                public RecordId get(@NotNull String stableId) {
+                    return nodeCache.get(stableId, generation);
+                }
+            };
+        }
+
+        @Nullable
+        @Override
+        public CacheStatsMBean getStringCacheStats() {
+            return newRecordCacheStats("String deduplication cache stats", stringCache);
+        }
+
+        @Nullable
+        @Override
+        public CacheStatsMBean getTemplateCacheStats() {
+            return newRecordCacheStats("Template deduplication cache stats", templateCache);
+        }
+
+        @Nullable
+        @Override
+        public CacheStatsMBean getNodeCacheStats() {
+            return newRecordCacheStats("Node deduplication cache stats", nodeCache);
+        }
+
+        @NotNull
+        private static RecordCacheStats newRecordCacheStats(@NotNull String name, @NotNull ConcurrentRecordCache<?> cache) {
+            return new RecordCacheStats(name, cache::getStats, cache::size, cache::estimateCurrentWeight);
+        }
+
+        /**
+         * Remove all mappings of the generations matching the passed {@code generations} predicate.
+         * @param generations
+         */
+        protected final void evictCaches(Predicate<Integer> generations) {
+            stringCache.purgeGenerations(generations);
+            templateCache.purgeGenerations(generations);
+            nodeCache.purgeGenerations(generations);
+        }
+
+        /**
+         * View of a {@link ConcurrentRecordCache} for a single generation.
+         */
+        private static class GenerationCache<K> implements Cache<K, RecordId> {
+
+            @NotNull
+            private final ConcurrentRecordCache<K> cache;
+
+            private final int generation;
+
+            GenerationCache(@NotNull ConcurrentRecordCache<K> cache, int generation) {
+                this.cache = cache;
+                this.generation = generation;
+            }
+
+            @Override
+            public void put(@NotNull K key, @NotNull RecordId value) {
+                cache.put(key, generation, value, (byte) 0);
+            }
+
+            @Override
+            public void put(@NotNull K key, @NotNull RecordId value, byte cost) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Nullable
+            @Override
+            public RecordId get(@NotNull K key) {
+                return cache.get(key, generation);
+            }
+        }
+
+    }
+
     /**
      * Wrapper wrapping all caches returned by a {@link WriterCacheManager}
      * into a {@link CacheAccessTracker}.
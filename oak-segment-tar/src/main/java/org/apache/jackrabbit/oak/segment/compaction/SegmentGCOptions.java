@@ -19,6 +19,8 @@
 
 package org.apache.jackrabbit.oak.segment.compaction;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -83,6 +85,16 @@ public class SegmentGCOptions {
      */
     public static final int MEMORY_THRESHOLD_DEFAULT = 15;
 
+    /**
+     * Default value for {@link #getConcurrency()}
+     */
+    public static final int CONCURRENCY_DEFAULT = 1;
+
+    /**
+     * Default value for {@link #getConcurrencyDepth()}
+     */
+    public static final int CONCURRENCY_DEPTH_DEFAULT = 2;
+
     private boolean paused = PAUSE_DEFAULT;
 
     /**
@@ -103,6 +115,10 @@ public class SegmentGCOptions {
 
     private int memoryThreshold = MEMORY_THRESHOLD_DEFAULT;
 
+    private int concurrency = CONCURRENCY_DEFAULT;
+
+    private int concurrencyDepth = CONCURRENCY_DEPTH_DEFAULT;
+
     private long gcSizeDeltaEstimation = Long.getLong(
             "oak.segment.compaction.gcSizeDeltaEstimation",
             SIZE_DELTA_ESTIMATION_DEFAULT);
@@ -244,7 +260,9 @@ public class SegmentGCOptions {
                     ", retryCount=" + retryCount +
                     ", forceTimeout=" + forceTimeout +
                     ", retainedGenerations=" + retainedGenerations +
-                    ", gcType=" + gcType + "}";
+                    ", gcType=" + gcType +
+                    ", concurrency=" + concurrency +
+                    ", concurrencyDepth=" + concurrencyDepth + "}";
         }
     }
 
@@ -341,4 +359,48 @@ public class SegmentGCOptions {
         return gcLogInterval;
     }
 
+    /**
+     * Get the number of threads used to compact the repository. A value of
+     * {@code 1} compacts the repository on a single thread.
+     * @return the number of compaction threads
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Set the number of threads used to compact the repository. Setting this
+     * to a value greater than {@code 1} splits the tree at {@link
+     * #getConcurrencyDepth()} and compacts the resulting subtrees
+     * concurrently.
+     * @param concurrency  the number of compaction threads
+     * @return this instance
+     */
+    public SegmentGCOptions setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * Get the depth in the tree below which subtrees are compacted
+     * concurrently when {@link #getConcurrency()} is greater than {@code 1}.
+     * @return the depth at which the tree is split
+     */
+    public int getConcurrencyDepth() {
+        return concurrencyDepth;
+    }
+
+    /**
+     * Set the depth in the tree below which subtrees are compacted
+     * concurrently when {@link #getConcurrency()} is greater than {@code 1}.
+     * @param concurrencyDepth  the depth at which the tree is split
+     * @return this instance
+     * @throws IllegalArgumentException if {@code concurrencyDepth < 1}
+     */
+    public SegmentGCOptions setConcurrencyDepth(int concurrencyDepth) {
+        checkArgument(concurrencyDepth > 0, "concurrencyDepth must be positive");
+        this.concurrencyDepth = concurrencyDepth;
+        return this;
+    }
+
 }
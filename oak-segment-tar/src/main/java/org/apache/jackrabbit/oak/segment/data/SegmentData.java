@@ -116,6 +116,8 @@ public interface SegmentData {
 
     void binDump(OutputStream stream) throws IOException;
 
+    ByteBuffer asReadOnlyBuffer();
+
     int estimateMemoryUsage();
 
 }
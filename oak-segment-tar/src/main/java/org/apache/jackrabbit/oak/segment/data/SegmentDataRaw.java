@@ -53,6 +53,11 @@ class SegmentDataRaw implements SegmentData {
         return buffer.remaining();
     }
 
+    @Override
+    public ByteBuffer asReadOnlyBuffer() {
+        return buffer.asReadOnlyBuffer();
+    }
+
     @Override
     public int estimateMemoryUsage() {
         return SegmentDataUtils.estimateMemoryUsage(buffer);
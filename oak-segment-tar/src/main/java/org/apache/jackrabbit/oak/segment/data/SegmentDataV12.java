@@ -240,6 +240,11 @@ class SegmentDataV12 implements SegmentData {
         return buffer.remaining();
     }
 
+    @Override
+    public ByteBuffer asReadOnlyBuffer() {
+        return buffer.asReadOnlyBuffer();
+    }
+
     @Override
     public void hexDump(OutputStream stream) throws IOException {
         SegmentDataUtils.hexDump(buffer, stream);
@@ -31,9 +31,12 @@ import java.io.IOException;
 
 import com.google.common.base.Function;
 import org.apache.jackrabbit.oak.segment.CheckpointCompactor;
+import org.apache.jackrabbit.oak.segment.Compactor;
+import org.apache.jackrabbit.oak.segment.ParallelCompactor;
 import org.apache.jackrabbit.oak.segment.RecordId;
 import org.apache.jackrabbit.oak.segment.SegmentNodeState;
 import org.apache.jackrabbit.oak.segment.SegmentWriter;
+import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions;
 import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.GCType;
 import org.apache.jackrabbit.oak.segment.file.cancel.Cancellation;
 import org.apache.jackrabbit.oak.segment.file.cancel.Canceller;
@@ -103,6 +106,28 @@ abstract class AbstractCompactionStrategy implements CompactionStrategy {
         return context.getRevisions().setHead(f, timeout(context.getGCOptions().getForceTimeout(), SECONDS));
     }
 
+    private static Compactor newCompactor(Context context, SegmentWriter writer) {
+        SegmentGCOptions gcOptions = context.getGCOptions();
+        if (gcOptions.getConcurrency() > 1) {
+            context.getGCListener().info("compacting with {} threads, splitting the tree at depth {}",
+                gcOptions.getConcurrency(), gcOptions.getConcurrencyDepth());
+            return new ParallelCompactor(
+                context.getSegmentReader(),
+                writer,
+                context.getBlobStore(),
+                context.getCompactionMonitor(),
+                gcOptions.getConcurrency(),
+                gcOptions.getConcurrencyDepth()
+            );
+        }
+        return new Compactor(
+            context.getSegmentReader(),
+            writer,
+            context.getBlobStore(),
+            context.getCompactionMonitor()
+        );
+    }
+
     private static String formatCompactionType(GCType compactionType) {
         switch (compactionType) {
             case FULL:
@@ -143,7 +168,7 @@ abstract class AbstractCompactionStrategy implements CompactionStrategy {
                 context.getSegmentReader(),
                 writer,
                 context.getBlobStore(),
-                context.getCompactionMonitor()
+                newCompactor(context, writer)
             );
 
             SegmentNodeState head = getHead(context);
@@ -18,6 +18,7 @@
  */
 package org.apache.jackrabbit.oak.segment.file;
 
+import static org.apache.jackrabbit.oak.segment.SegmentCache.newOffHeapSegmentCache;
 import static org.apache.jackrabbit.oak.segment.SegmentCache.newSegmentCache;
 import static org.apache.jackrabbit.oak.segment.data.SegmentData.newSegmentData;
 
@@ -29,6 +30,7 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.UUID;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 import org.apache.jackrabbit.oak.api.jmx.CacheStatsMBean;
 import org.apache.jackrabbit.oak.segment.CachingSegmentReader;
@@ -121,17 +123,29 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
 
     protected final IOMonitor ioMonitor;
 
-    AbstractFileStore(final FileStoreBuilder builder) {
+    AbstractFileStore(final FileStoreBuilder builder) throws IOException {
         this.directory = builder.getDirectory();
         this.tracker = new SegmentTracker(new SegmentIdFactory() {
             @Override @NotNull
             public SegmentId newSegmentId(long msb, long lsb) {
-                return new SegmentId(AbstractFileStore.this, msb, lsb, segmentCache::recordHit);
+                return new SegmentId(AbstractFileStore.this, msb, lsb, () -> {
+                    segmentCache.recordHit();
+                    onSegmentAccess(msb, lsb);
+                });
             }
         });
         this.blobStore = builder.getBlobStore();
-        this.segmentCache = newSegmentCache(builder.getSegmentCacheSize());
         this.segmentReader = new CachingSegmentReader(this::getWriter, blobStore, builder.getStringCacheSize(), builder.getTemplateCacheSize());
+        if (builder.getOffHeapSegmentCache()) {
+            this.segmentCache = newOffHeapSegmentCache(
+                    builder.getSegmentCacheSize(),
+                    builder.getSegmentCacheOverflowFile(),
+                    builder.getSegmentCacheOverflowSize(),
+                    (id, data) -> new Segment(tracker, segmentReader, id, data)
+            );
+        } else {
+            this.segmentCache = newSegmentCache(builder.getSegmentCacheSize());
+        }
         this.memoryMapping = builder.getMemoryMapping();
         this.ioMonitor = builder.getIOMonitor();
     }
@@ -263,6 +277,17 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
         }
     }
 
+    /**
+     * Called whenever a segment is accessed, including accesses served by
+     * the segment memoised in its id. This implementation does nothing.
+     *
+     * @param msb the most significant bits of the id of the segment
+     * @param lsb the least significant bits of the id of the segment
+     */
+    void onSegmentAccess(long msb, long lsb) {
+        // Nothing to track
+    }
+
     Segment readSegmentUncached(TarFiles tarFiles, SegmentId id) {
         ByteBuffer buffer = tarFiles.readSegment(id.getMostSignificantBits(), id.getLeastSignificantBits());
         if (buffer == null) {
@@ -271,6 +296,30 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
         return new Segment(tracker, segmentReader, id, buffer);
     }
 
+    /**
+     * Create the prefetcher of the segments referenced by the segments read
+     * from disk.
+     *
+     * @param builder the builder this store was created with
+     * @param loader  reads a segment from disk, bypassing the segment cache
+     * @return a new {@link SegmentPrefetcher}, or {@code null} if prefetching
+     * is disabled.
+     */
+    @Nullable
+    SegmentPrefetcher newSegmentPrefetcher(FileStoreBuilder builder, Function<SegmentId, Segment> loader) {
+        if (builder.getSegmentPrefetchThreads() <= 0 || builder.getSegmentCacheSize() <= 0) {
+            return null;
+        }
+        return new SegmentPrefetcher(
+                builder.getSegmentPrefetchThreads(),
+                builder.getSegmentPrefetchDepth(),
+                segmentCache,
+                tracker,
+                loader,
+                builder.getStatsProvider()
+        );
+    }
+
     /**
      * Finds all external blob references that are currently accessible
      * in this repository and adds them to the given collector. Useful
@@ -132,6 +132,12 @@ class CleanupFirstCompactionStrategy implements CompactionStrategy {
 
         context.getSegmentTracker().clearSegmentIdTables(cleanupResult.getReclaimedSegmentIds(), "[pre-compaction cleanup]");
         context.getGCListener().info("cleanup marking files for deletion: {}", toFileNames(cleanupResult.getRemovableFiles()));
+        context.getGCListener().info(
+            "cleanup phases: mark {} ms, sweep {} ms, swap {} ms",
+            cleanupResult.getMarkTime(),
+            cleanupResult.getSweepTime(),
+            cleanupResult.getSwapTime()
+        );
 
         long finalSize = context.getTarFiles().size();
         long reclaimedSize = cleanupResult.getReclaimedSize();
@@ -58,6 +58,12 @@ class DefaultCleanupStrategy implements CleanupStrategy {
         }
         context.getSegmentTracker().clearSegmentIdTables(cleanupResult.getReclaimedSegmentIds(), context.getSegmentEvictionReason());
         context.getGCListener().info("cleanup marking files for deletion: {}", toFileNames(cleanupResult.getRemovableFiles()));
+        context.getGCListener().info(
+            "cleanup phases: mark {} ms, sweep {} ms, swap {} ms",
+            cleanupResult.getMarkTime(),
+            cleanupResult.getSweepTime(),
+            cleanupResult.getSwapTime()
+        );
 
         long finalSize = size(context);
         long reclaimedSize = cleanupResult.getReclaimedSize();
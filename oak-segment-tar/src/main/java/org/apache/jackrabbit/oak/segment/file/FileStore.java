@@ -33,10 +33,12 @@ import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 import com.google.common.base.Supplier;
 import com.google.common.io.Closer;
 import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.jackrabbit.oak.segment.DefaultSegmentWriterBuilder;
 import org.apache.jackrabbit.oak.segment.RecordId;
 import org.apache.jackrabbit.oak.segment.Segment;
 import org.apache.jackrabbit.oak.segment.SegmentId;
@@ -53,6 +55,7 @@ import org.apache.jackrabbit.oak.segment.spi.persistence.RepositoryLock;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentNodeStorePersistence;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,6 +68,12 @@ public class FileStore extends AbstractFileStore {
 
     private static final int MB = 1024 * 1024;
 
+    /**
+     * Number of seconds between successive writes of the segment cache warmup
+     * trace.
+     */
+    private static final int WARMUP_TRACE_INTERVAL = Integer.getInteger("oak.segment.warmup.traceInterval", 300);
+
     private static GarbageCollectionStrategy newGarbageCollectionStrategy() {
         if (Boolean.getBoolean("gc.classic")) {
             return new SynchronizedGarbageCollectionStrategy(new DefaultGarbageCollectionStrategy());
@@ -112,6 +121,12 @@ public class FileStore extends AbstractFileStore {
 
     private final ShutDown shutDown = new ShutDown();
 
+    @Nullable
+    private final SegmentPrefetcher segmentPrefetcher;
+
+    @Nullable
+    private final SegmentCacheWarmup segmentCacheWarmup;
+
     @NotNull
     private final SegmentNotFoundExceptionListener snfeListener;
 
@@ -141,9 +156,21 @@ public class FileStore extends AbstractFileStore {
                 .withIOMonitor(ioMonitor)
                 .withFileStoreMonitor(stats)
                 .withMaxFileSize(builder.getMaxFileSize() * MB)
+                .withCleanupThreads(builder.getCleanupThreads())
+                .withBinaryReferencesSet(builder.isBinaryReferencesSet())
                 .withPersistence(builder.getPersistence());
 
         this.tarFiles = tarFilesBuilder.build();
+        this.segmentPrefetcher = newSegmentPrefetcher(builder, id -> {
+            try (ShutDownCloser ignored = shutDown.keepAlive()) {
+                return readSegmentUncached(tarFiles, id);
+            }
+        });
+        this.segmentCacheWarmup = newSegmentCacheWarmup(builder, id -> {
+            try (ShutDownCloser ignored = shutDown.keepAlive()) {
+                return readSegmentUncached(tarFiles, id);
+            }
+        });
         long size = this.tarFiles.size();
         this.stats.init(size);
 
@@ -168,12 +195,19 @@ public class FileStore extends AbstractFileStore {
                 .withCondition("not enough memory", () -> !sufficientMemory.get())
                 .withCondition("FileStore is shutting down", shutDown::isShutDown),
             this::flush,
-            generation ->
-                defaultSegmentWriterBuilder("c")
+            generation -> {
+                DefaultSegmentWriterBuilder writerBuilder = defaultSegmentWriterBuilder("c")
                     .with(builder.getCacheManager().withAccessTracking("COMPACT", builder.getStatsProvider()))
-                    .withGeneration(generation)
-                    .withoutWriterPool()
-                    .build(this)
+                    .withGeneration(generation);
+                // Parallel compaction needs a thread safe writer, where each
+                // worker thread writes to its own segment buffer.
+                if (builder.getGcOptions().getConcurrency() > 1) {
+                    writerBuilder.withWriterPool();
+                } else {
+                    writerBuilder.withoutWriterPool();
+                }
+                return writerBuilder.build(this);
+            }
         );
 
         this.snfeListener = builder.getSnfeListener();
@@ -194,6 +228,12 @@ public class FileStore extends AbstractFileStore {
            }
         });
 
+        if (segmentCacheWarmup != null) {
+            segmentCacheWarmup.start();
+            fileStoreScheduler.scheduleWithFixedDelay(format("TarMK segment cache warmup trace [%s]", directory),
+                    WARMUP_TRACE_INTERVAL, SECONDS, this::persistWarmupTrace);
+        }
+
         log.info("TarMK opened at {}, mmap={}, size={}",
             directory,
             memoryMapping,
@@ -202,6 +242,42 @@ public class FileStore extends AbstractFileStore {
         log.debug("TAR files: {}", tarFiles);
     }
 
+    /**
+     * Create the warmup of the segment cache.
+     *
+     * @param builder the builder this store was created with
+     * @param loader  reads a segment from disk, bypassing the segment cache
+     * @return a new {@link SegmentCacheWarmup}, or {@code null} if the warmup
+     * is disabled.
+     */
+    @Nullable
+    private SegmentCacheWarmup newSegmentCacheWarmup(FileStoreBuilder builder, Function<SegmentId, Segment> loader) {
+        if (builder.getSegmentCacheWarmupThreads() <= 0 || builder.getSegmentCacheSize() <= 0) {
+            return null;
+        }
+        return new SegmentCacheWarmup(
+                builder.getSegmentCacheWarmupThreads(),
+                builder.getSegmentCacheWarmupSegments(),
+                directory,
+                segmentCache,
+                tracker,
+                loader,
+                builder.getStatsProvider()
+        );
+    }
+
+    private void persistWarmupTrace() {
+        try (ShutDownCloser ignore = shutDown.tryKeepAlive()) {
+            if (shutDown.isShutDown()) {
+                log.debug("Shut down in progress, skipping segment cache warmup trace");
+            } else {
+                segmentCacheWarmup.persist();
+            }
+        } catch (IOException e) {
+            log.warn("Unable to persist the segment cache warmup trace", e);
+        }
+    }
+
     FileStore bind(TarRevisions revisions) throws IOException {
         try (ShutDownCloser ignored = shutDown.keepAlive()) {
             this.revisions = revisions;
@@ -292,11 +368,13 @@ public class FileStore extends AbstractFileStore {
             log.debug("No TarRevisions available, skipping flush");
             return;
         }
-        revisions.flush(() -> {
+        long start = System.nanoTime();
+        int batchSize = revisions.flush(() -> {
             segmentWriter.flush();
             tarFiles.flush();
             stats.flushed();
         });
+        stats.journalFlushed(System.nanoTime() - start, batchSize);
     }
 
     /**
@@ -430,11 +508,28 @@ public class FileStore extends AbstractFileStore {
 
     @Override
     public void close() {
+        // Stop prefetching before shutting down, as the prefetching threads
+        // would otherwise block on the shut down lock
+        if (segmentPrefetcher != null) {
+            segmentPrefetcher.close();
+        }
+        if (segmentCacheWarmup != null) {
+            segmentCacheWarmup.close();
+        }
+
         try (ShutDownCloser ignored = shutDown.shutDown()) {
             // avoid deadlocks by closing (and joining) the background
             // thread before acquiring the synchronization lock
             fileStoreScheduler.close();
 
+            if (segmentCacheWarmup != null) {
+                try {
+                    segmentCacheWarmup.persist();
+                } catch (IOException e) {
+                    log.warn("Unable to persist the segment cache warmup trace", e);
+                }
+            }
+
             try {
                 doFlush();
             } catch (IOException e) {
@@ -445,6 +540,7 @@ public class FileStore extends AbstractFileStore {
             closer.register(repositoryLock::unlock);
             closer.register(tarFiles) ;
             closer.register(revisions);
+            closer.register(segmentCache::close);
 
             closeAndLogOnFail(closer);
         }
@@ -463,11 +559,26 @@ public class FileStore extends AbstractFileStore {
         }
     }
 
+    @Override
+    void onSegmentAccess(long msb, long lsb) {
+        // Null while the super constructor runs
+        if (segmentCacheWarmup != null) {
+            segmentCacheWarmup.onSegmentAccess(msb, lsb);
+        }
+    }
+
     @Override
     @NotNull
     public Segment readSegment(final SegmentId id) {
         try (ShutDownCloser ignored = shutDown.keepAlive()) {
-            return segmentCache.getSegment(id, () -> readSegmentUncached(tarFiles, id));
+            onSegmentAccess(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            return segmentCache.getSegment(id, () -> {
+                Segment segment = readSegmentUncached(tarFiles, id);
+                if (segmentPrefetcher != null) {
+                    segmentPrefetcher.onSegmentLoaded(segment);
+                }
+                return segment;
+            });
         } catch (ExecutionException | UncheckedExecutionException e) {
             SegmentNotFoundException snfe = asSegmentNotFoundException(e, id);
             snfeListener.notify(id, snfe);
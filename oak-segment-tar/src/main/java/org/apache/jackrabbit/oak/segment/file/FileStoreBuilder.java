@@ -19,6 +19,7 @@
 
 package org.apache.jackrabbit.oak.segment.file;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Sets.newHashSet;
@@ -34,6 +35,7 @@ import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.defa
 import java.io.File;
 import java.io.IOException;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Predicate;
 import org.apache.jackrabbit.oak.segment.CacheWeights.NodeCacheWeigher;
@@ -83,6 +85,25 @@ public class FileStoreBuilder {
 
     private int segmentCacheSize = DEFAULT_SEGMENT_CACHE_MB;
 
+    private boolean offHeapSegmentCache;
+
+    @Nullable
+    private File segmentCacheOverflowFile;
+
+    private int segmentCacheOverflowSize;
+
+    private int segmentPrefetchThreads;
+
+    private int segmentPrefetchDepth;
+
+    private int segmentCacheWarmupThreads;
+
+    private int segmentCacheWarmupSegments;
+
+    private int cleanupThreads = 1;
+
+    private boolean binaryReferencesSet;
+
     private int stringCacheSize = DEFAULT_STRING_CACHE_MB;
 
     private int templateCacheSize = DEFAULT_TEMPLATE_CACHE_MB;
@@ -93,10 +114,26 @@ public class FileStoreBuilder {
 
     private int nodeDeduplicationCacheSize = DEFAULT_NODE_CACHE_SIZE;
 
+    private boolean concurrentDeduplicationCaches;
+
+    private int stringDeduplicationCacheMB;
+
+    private int templateDeduplicationCacheMB;
+
+    private int nodeDeduplicationCacheMB;
+
     private boolean memoryMapping = MEMORY_MAPPING_DEFAULT;
 
     private SegmentNodeStorePersistence persistence;
 
+    private boolean customPersistence;
+
+    private boolean segmentCompression;
+
+    private long journalGroupCommitWindow;
+
+    private int journalGroupCommitBatchSize = 1;
+
     @NotNull
     private StatisticsProvider statsProvider = StatisticsProvider.NOOP;
 
@@ -104,21 +141,21 @@ public class FileStoreBuilder {
     private SegmentGCOptions gcOptions = defaultGCOptions();
 
     @Nullable
-    private EvictingWriteCacheManager cacheManager;
+    private WriterCacheManager cacheManager;
 
     private class FileStoreGCListener extends DelegatingGCMonitor implements GCListener {
         @Override
         public void compactionSucceeded(@NotNull GCGeneration newGeneration) {
             compacted();
-            if (cacheManager != null) {
-                cacheManager.evictOldGeneration(newGeneration.getGeneration());
+            if (cacheManager instanceof GenerationEvictingCacheManager) {
+                ((GenerationEvictingCacheManager) cacheManager).evictOldGeneration(newGeneration.getGeneration());
             }
         }
 
         @Override
         public void compactionFailed(@NotNull GCGeneration failedGeneration) {
-            if (cacheManager != null) {
-                cacheManager.evictGeneration(failedGeneration.getGeneration());
+            if (cacheManager instanceof GenerationEvictingCacheManager) {
+                ((GenerationEvictingCacheManager) cacheManager).evictGeneration(failedGeneration.getGeneration());
             }
         }
     }
@@ -185,6 +222,152 @@ public class FileStoreBuilder {
         return this;
     }
 
+    /**
+     * Keep the content of the segment cache outside of the Java heap. The
+     * size of the off-heap memory used by the cache is the size set by
+     * {@link #withSegmentCacheSize(int)}.
+     * @param offHeapSegmentCache  {@code true} to keep the content of the
+     *                             segment cache off heap
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withOffHeapSegmentCache(boolean offHeapSegmentCache) {
+        this.offHeapSegmentCache = offHeapSegmentCache;
+        return this;
+    }
+
+    /**
+     * Memory-mapped file receiving the segments evicted from the off-heap
+     * segment cache. This setting has no effect unless the off-heap segment
+     * cache is enabled.
+     * @param overflowFile  local file backing the overflow tier. The file is
+     *                      overwritten and deleted when the store is closed.
+     * @param overflowSize  size of the overflow tier in MB. A size of zero
+     *                      disables the overflow tier.
+     * @return this instance
+     * @see #withOffHeapSegmentCache(boolean)
+     */
+    @NotNull
+    public FileStoreBuilder withSegmentCacheOverflow(@NotNull File overflowFile, int overflowSize) {
+        checkArgument(overflowSize >= 0);
+        this.segmentCacheOverflowFile = checkNotNull(overflowFile);
+        this.segmentCacheOverflowSize = overflowSize;
+        return this;
+    }
+
+    /**
+     * Asynchronously load into the segment cache the segments referenced by
+     * the segments read from disk. This reduces the impact of the read latency
+     * when traversing a repository whose segments are not cached yet. This
+     * setting has no effect if the segment cache is disabled.
+     * @param threads  number of prefetching threads. Zero disables prefetching.
+     * @param depth    number of levels of references followed from a segment
+     *                 read on demand
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withSegmentPrefetch(int threads, int depth) {
+        checkArgument(threads >= 0);
+        checkArgument(threads == 0 || depth > 0);
+        this.segmentPrefetchThreads = threads;
+        this.segmentPrefetchDepth = depth;
+        return this;
+    }
+
+    /**
+     * Warm up the segment cache when the store is opened. The ids of the most
+     * accessed segments are periodically persisted to a trace file in the
+     * directory of the store. When the store is opened again, the segments of
+     * the trace are loaded into the segment cache in the background, hottest
+     * first. This setting has no effect if the segment cache is disabled or
+     * if the store is read-only.
+     * @param threads   number of warmup threads. Zero disables the warmup.
+     * @param segments  maximum number of segments in the trace
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withSegmentCacheWarmup(int threads, int segments) {
+        checkArgument(threads >= 0);
+        checkArgument(threads == 0 || segments > 0);
+        this.segmentCacheWarmupThreads = threads;
+        this.segmentCacheWarmupSegments = segments;
+        return this;
+    }
+
+    /**
+     * Number of threads used by the cleanup phase of the garbage collection.
+     * The graphs of the TAR files are loaded ahead of the marking, and the
+     * TAR files containing reclaimable segments are rewritten concurrently by
+     * these threads. The marking itself remains sequential. Defaults to
+     * {@code 1}, which performs the cleanup in the garbage collection thread.
+     * @param threads  number of cleanup threads
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withCleanupThreads(int threads) {
+        checkArgument(threads > 0);
+        this.cleanupThreads = threads;
+        return this;
+    }
+
+    /**
+     * Maintain a persisted set of the binary references contained in the TAR
+     * files. The binary references of a TAR file are added to the set, grouped
+     * by generation and deduplicated, when the TAR file is closed. Collecting
+     * the binary references for the garbage collection of the blob store then
+     * streams this set instead of parsing the binary references index of
+     * every TAR file. This setting has no effect if the store is read-only.
+     * @param binaryReferencesSet  {@code true} to maintain the set
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withBinaryReferencesSet(boolean binaryReferencesSet) {
+        this.binaryReferencesSet = binaryReferencesSet;
+        return this;
+    }
+
+    /**
+     * Compress the segments written to new TAR files. Each segment is
+     * compressed individually and stored uncompressed if compression doesn't
+     * save enough space. TAR files containing compressed segments can't be
+     * read by versions of Oak not aware of the compressed index format. This
+     * setting has no effect when a custom persistence is used.
+     * @param segmentCompression  {@code true} to compress segments
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withSegmentCompression(boolean segmentCompression) {
+        this.segmentCompression = segmentCompression;
+        if (!customPersistence) {
+            this.persistence = new TarPersistence(directory, segmentCompression);
+        }
+        return this;
+    }
+
+    /**
+     * Group commit the journal writes of concurrent calls to {@link
+     * FileStore#flush()}. The thread performing a flush waits up to {@code
+     * window} for more calls to join the same journal write, or until {@code
+     * batchSize} calls are pending. This trades a higher flush latency for
+     * fewer journal writes and syncs under high flush rates. The durability
+     * guarantee is unchanged: a flush returns only once the head at the time
+     * of the call is persisted.
+     * @param window     maximum time to wait for more flushes. Zero disables
+     *                   the waiting.
+     * @param unit       time unit of {@code window}
+     * @param batchSize  number of pending flushes after which the journal is
+     *                   written without waiting for the window to elapse
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withJournalGroupCommit(long window, @NotNull TimeUnit unit, int batchSize) {
+        checkArgument(window >= 0);
+        checkArgument(batchSize > 0);
+        this.journalGroupCommitWindow = unit.toNanos(window);
+        this.journalGroupCommitBatchSize = batchSize;
+        return this;
+    }
+
     /**
      * Size of the string cache in MB.
      * @param stringCacheSize  None negative cache size
@@ -240,6 +423,34 @@ public class FileStoreBuilder {
         return this;
     }
 
+    /**
+     * Use deduplication caches shared by all concurrent writers and sized in
+     * megabytes instead of the deduplication caches sized in number of items.
+     * The sizes passed to {@link #withStringDeduplicationCacheSize(int)},
+     * {@link #withTemplateDeduplicationCacheSize(int)} and {@link
+     * #withNodeDeduplicationCacheSize(int)} are ignored when this option is
+     * set.
+     * @param stringDeduplicationCacheMB    None negative size of the string deduplication cache
+     * @param templateDeduplicationCacheMB  None negative size of the template deduplication cache
+     * @param nodeDeduplicationCacheMB      None negative size of the node deduplication cache
+     * @return this instance
+     * @see WriterCacheManager.Concurrent
+     */
+    @NotNull
+    public FileStoreBuilder withConcurrentDeduplicationCaches(
+            int stringDeduplicationCacheMB,
+            int templateDeduplicationCacheMB,
+            int nodeDeduplicationCacheMB) {
+        checkArgument(stringDeduplicationCacheMB >= 0, "stringDeduplicationCacheMB must not be negative");
+        checkArgument(templateDeduplicationCacheMB >= 0, "templateDeduplicationCacheMB must not be negative");
+        checkArgument(nodeDeduplicationCacheMB >= 0, "nodeDeduplicationCacheMB must not be negative");
+        this.concurrentDeduplicationCaches = true;
+        this.stringDeduplicationCacheMB = stringDeduplicationCacheMB;
+        this.templateDeduplicationCacheMB = templateDeduplicationCacheMB;
+        this.nodeDeduplicationCacheMB = nodeDeduplicationCacheMB;
+        return this;
+    }
+
     /**
      * Turn memory mapping on or off
      * @param memoryMapping
@@ -340,6 +551,7 @@ public class FileStoreBuilder {
     
     public FileStoreBuilder withCustomPersistence(SegmentNodeStorePersistence persistence) throws IOException {
         this.persistence = persistence;
+        this.customPersistence = true;
         return this;
     }
 
@@ -369,7 +581,7 @@ public class FileStoreBuilder {
         checkState(!built, "Cannot re-use builder");
         built = true;
         directory.mkdirs();
-        TarRevisions revisions = new TarRevisions(persistence);
+        TarRevisions revisions = new TarRevisions(persistence, journalGroupCommitWindow, journalGroupCommitBatchSize);
         LOG.info("Creating file store {}", this);
         FileStore store;
         try {
@@ -444,6 +656,19 @@ public class FileStoreBuilder {
         return segmentCacheSize;
     }
 
+    boolean getOffHeapSegmentCache() {
+        return offHeapSegmentCache;
+    }
+
+    @Nullable
+    File getSegmentCacheOverflowFile() {
+        return segmentCacheOverflowFile;
+    }
+
+    int getSegmentCacheOverflowSize() {
+        return segmentCacheOverflowSize;
+    }
+
     int getStringCacheSize() {
         return stringCacheSize;
     }
@@ -487,12 +712,18 @@ public class FileStoreBuilder {
      * @see #withNodeDeduplicationCacheSize(int)
      * @see #withStringDeduplicationCacheSize(int)
      * @see #withTemplateDeduplicationCacheSize(int)
+     * @see #withConcurrentDeduplicationCaches(int, int, int)
      */
     @NotNull
     public WriterCacheManager getCacheManager() {
         if (cacheManager == null) {
-            cacheManager = new EvictingWriteCacheManager(stringDeduplicationCacheSize,
-                    templateDeduplicationCacheSize, nodeDeduplicationCacheSize);
+            if (concurrentDeduplicationCaches) {
+                cacheManager = new EvictingConcurrentWriteCacheManager(stringDeduplicationCacheMB,
+                        templateDeduplicationCacheMB, nodeDeduplicationCacheMB);
+            } else {
+                cacheManager = new EvictingWriteCacheManager(stringDeduplicationCacheSize,
+                        templateDeduplicationCacheSize, nodeDeduplicationCacheSize);
+            }
         }
         return cacheManager;
     }
@@ -503,6 +734,30 @@ public class FileStoreBuilder {
             : new CompositeIOMonitor(ioMonitors);
     }
 
+    int getSegmentPrefetchThreads() {
+        return segmentPrefetchThreads;
+    }
+
+    int getSegmentPrefetchDepth() {
+        return segmentPrefetchDepth;
+    }
+
+    int getSegmentCacheWarmupThreads() {
+        return segmentCacheWarmupThreads;
+    }
+
+    int getSegmentCacheWarmupSegments() {
+        return segmentCacheWarmupSegments;
+    }
+
+    int getCleanupThreads() {
+        return cleanupThreads;
+    }
+
+    boolean isBinaryReferencesSet() {
+        return binaryReferencesSet;
+    }
+
     boolean getStrictVersionCheck() {
         return strictVersionCheck;
     }
@@ -515,17 +770,42 @@ public class FileStoreBuilder {
                 ", blobStore=" + blobStore +
                 ", maxFileSize=" + maxFileSize +
                 ", segmentCacheSize=" + segmentCacheSize +
+                ", offHeapSegmentCache=" + offHeapSegmentCache +
+                ", segmentCacheOverflowFile=" + segmentCacheOverflowFile +
+                ", segmentCacheOverflowSize=" + segmentCacheOverflowSize +
+                ", segmentPrefetchThreads=" + segmentPrefetchThreads +
+                ", segmentPrefetchDepth=" + segmentPrefetchDepth +
+                ", segmentCacheWarmupThreads=" + segmentCacheWarmupThreads +
+                ", segmentCacheWarmupSegments=" + segmentCacheWarmupSegments +
+                ", cleanupThreads=" + cleanupThreads +
+                ", binaryReferencesSet=" + binaryReferencesSet +
+                ", segmentCompression=" + segmentCompression +
+                ", journalGroupCommitWindow=" + journalGroupCommitWindow +
+                ", journalGroupCommitBatchSize=" + journalGroupCommitBatchSize +
                 ", stringCacheSize=" + stringCacheSize +
                 ", templateCacheSize=" + templateCacheSize +
                 ", stringDeduplicationCacheSize=" + stringDeduplicationCacheSize +
                 ", templateDeduplicationCacheSize=" + templateDeduplicationCacheSize +
                 ", nodeDeduplicationCacheSize=" + nodeDeduplicationCacheSize +
+                ", concurrentDeduplicationCaches=" + concurrentDeduplicationCaches +
+                ", stringDeduplicationCacheMB=" + stringDeduplicationCacheMB +
+                ", templateDeduplicationCacheMB=" + templateDeduplicationCacheMB +
+                ", nodeDeduplicationCacheMB=" + nodeDeduplicationCacheMB +
                 ", memoryMapping=" + memoryMapping +
                 ", gcOptions=" + gcOptions +
                 '}';
     }
 
-    private static class EvictingWriteCacheManager extends WriterCacheManager.Default {
+    private interface GenerationEvictingCacheManager {
+
+        void evictOldGeneration(int newGeneration);
+
+        void evictGeneration(int newGeneration);
+
+    }
+
+    private static class EvictingWriteCacheManager extends WriterCacheManager.Default
+            implements GenerationEvictingCacheManager {
         public EvictingWriteCacheManager(
                 int stringCacheSize,
                 int templateCacheSize,
@@ -535,7 +815,8 @@ public class FileStoreBuilder {
                 PriorityCache.factory(nodeCacheSize, new NodeCacheWeigher()));
         }
 
-        void evictOldGeneration(final int newGeneration) {
+        @Override
+        public void evictOldGeneration(final int newGeneration) {
             evictCaches(new Predicate<Integer>() {
                 @Override
                 public boolean apply(Integer generation) {
@@ -544,7 +825,8 @@ public class FileStoreBuilder {
             });
         }
 
-        void evictGeneration(final int newGeneration) {
+        @Override
+        public void evictGeneration(final int newGeneration) {
             evictCaches(new Predicate<Integer>() {
                 @Override
                 public boolean apply(Integer generation) {
@@ -553,4 +835,26 @@ public class FileStoreBuilder {
             });
         }
     }
+
+    private static class EvictingConcurrentWriteCacheManager extends WriterCacheManager.Concurrent
+            implements GenerationEvictingCacheManager {
+        public EvictingConcurrentWriteCacheManager(
+                int stringCacheMB,
+                int templateCacheMB,
+                int nodeCacheMB) {
+            super(stringCacheMB * 1024L * 1024L,
+                templateCacheMB * 1024L * 1024L,
+                nodeCacheMB * 1024L * 1024L);
+        }
+
+        @Override
+        public void evictOldGeneration(final int newGeneration) {
+            evictCaches(generation -> generation < newGeneration);
+        }
+
+        @Override
+        public void evictGeneration(final int newGeneration) {
+            evictCaches(generation -> generation == newGeneration);
+        }
+    }
 }
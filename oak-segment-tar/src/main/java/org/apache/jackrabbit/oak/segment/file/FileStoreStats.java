@@ -19,6 +19,7 @@
 
 package org.apache.jackrabbit.oak.segment.file;
 
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static org.apache.jackrabbit.stats.TimeSeriesStatsUtil.asCompositeData;
 
 import javax.management.openmbean.CompositeData;
@@ -27,21 +28,27 @@ import org.apache.jackrabbit.api.stats.TimeSeries;
 import org.apache.jackrabbit.oak.commons.IOUtils;
 import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitor;
 import org.apache.jackrabbit.oak.stats.CounterStats;
+import org.apache.jackrabbit.oak.stats.HistogramStats;
 import org.apache.jackrabbit.oak.stats.MeterStats;
 import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.apache.jackrabbit.oak.stats.StatsOptions;
+import org.apache.jackrabbit.oak.stats.TimerStats;
 import org.jetbrains.annotations.NotNull;
 
 public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor {
     public static final String SEGMENT_REPO_SIZE = "SEGMENT_REPO_SIZE";
     public static final String SEGMENT_WRITES = "SEGMENT_WRITES";
     public static final String JOURNAL_WRITES = "JOURNAL_WRITES";
+    public static final String JOURNAL_FLUSH_TIME = "JOURNAL_FLUSH_TIME";
+    public static final String JOURNAL_FLUSH_BATCH_SIZE = "JOURNAL_FLUSH_BATCH_SIZE";
     
     private final StatisticsProvider statisticsProvider;
     private final FileStore store;
     private final MeterStats writeStats;
     private final CounterStats repoSize;
     private final MeterStats journalWriteStats;
+    private final TimerStats journalFlushTime;
+    private final HistogramStats journalFlushBatchSize;
     
     public FileStoreStats(StatisticsProvider statisticsProvider, FileStore store, long initialSize) {
         this.statisticsProvider = statisticsProvider;
@@ -49,6 +56,8 @@ public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor {
         this.writeStats = statisticsProvider.getMeter(SEGMENT_WRITES, StatsOptions.DEFAULT);
         this.repoSize = statisticsProvider.getCounterStats(SEGMENT_REPO_SIZE, StatsOptions.DEFAULT);
         this.journalWriteStats = statisticsProvider.getMeter(JOURNAL_WRITES, StatsOptions.DEFAULT);
+        this.journalFlushTime = statisticsProvider.getTimer(JOURNAL_FLUSH_TIME, StatsOptions.METRICS_ONLY);
+        this.journalFlushBatchSize = statisticsProvider.getHistogram(JOURNAL_FLUSH_BATCH_SIZE, StatsOptions.METRICS_ONLY);
         repoSize.inc(initialSize);
     }
 
@@ -74,6 +83,21 @@ public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor {
         journalWriteStats.mark();
     }
 
+    /**
+     * Record a call to {@link FileStore#flush()}.
+     *
+     * @param elapsed   time in nanoseconds until the head was persisted
+     * @param batchSize number of flush requests satisfied by the journal
+     *                  write performed by this call, zero if the call was
+     *                  satisfied by a concurrent one.
+     */
+    void journalFlushed(long elapsed, int batchSize) {
+        journalFlushTime.update(elapsed, NANOSECONDS);
+        if (batchSize > 0) {
+            journalFlushBatchSize.update(batchSize);
+        }
+    }
+
     //~--------------------------------< FileStoreStatsMBean >
 
     @Override
@@ -18,6 +18,14 @@
  */
 package org.apache.jackrabbit.oak.segment.file;
 
+import static java.lang.Thread.currentThread;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
 import org.apache.jackrabbit.oak.spi.gc.GCMonitor;
 import org.jetbrains.annotations.NotNull;
 
@@ -25,6 +33,8 @@ import org.jetbrains.annotations.NotNull;
  * Monitors the compaction cycle and keeps a compacted nodes counter, in order
  * to provide a best effort progress log based on extrapolating the previous
  * size and node count and current size to deduce current node count.
+ * The counters are updated without locking, so that the threads of a
+ * parallel compaction don't contend on this monitor.
  */
 public class GCNodeWriteMonitor {
     public static final GCNodeWriteMonitor EMPTY = new GCNodeWriteMonitor(
@@ -40,29 +50,34 @@ public class GCNodeWriteMonitor {
     /**
      * Start timestamp of compaction (reset at each {@code init()} call).
      */
-    private long start = 0;
+    private volatile long start = 0;
 
     /**
      * Estimated nodes to compact per cycle (reset at each {@code init()} call).
      */
-    private long estimated = -1;
+    private volatile long estimated = -1;
 
     /**
      * Number of compacted nodes
      */
-    private long nodes;
+    private final AtomicLong nodes = new AtomicLong();
 
     /**
      * Number of compacted properties
      */
-    private long properties;
+    private final LongAdder properties = new LongAdder();
 
     /**
      * Number of compacted binaries
      */
-    private long binaries;
+    private final LongAdder binaries = new LongAdder();
+
+    /**
+     * Number of compacted nodes per compaction thread
+     */
+    private final Map<String, LongAdder> workers = new ConcurrentHashMap<>();
 
-    private boolean running = false;
+    private volatile boolean running = false;
 
     public GCNodeWriteMonitor(long gcProgressLog, @NotNull GCMonitor gcMonitor) {
         this.gcProgressLog = gcProgressLog;
@@ -87,43 +102,58 @@ public class GCNodeWriteMonitor {
         } else {
             gcMonitor.info("unable to estimate number of nodes for compaction, missing gc history.");
         }
-        nodes = 0;
+        nodes.set(0);
+        workers.clear();
         start = System.currentTimeMillis();
         running = true;
     }
 
-    public synchronized void onNode() {
-        nodes++;
-        if (gcProgressLog > 0 && nodes % gcProgressLog == 0) {
+    public void onNode() {
+        long compacted = nodes.incrementAndGet();
+        workers.computeIfAbsent(currentThread().getName(), name -> new LongAdder()).increment();
+        if (gcProgressLog > 0 && compacted % gcProgressLog == 0) {
             gcMonitor.info("compacted {} nodes, {} properties, {} binaries in {} ms. {}",
-                nodes, properties, binaries, System.currentTimeMillis() - start, getPercentageDone());
+                compacted, properties.sum(), binaries.sum(), System.currentTimeMillis() - start, getPercentageDone());
+            if (workers.size() > 1) {
+                gcMonitor.info("compacted nodes per worker: {}", getCompactedNodesPerWorker());
+            }
         }
     }
 
-    public synchronized void onProperty() {
-        properties++;
+    public void onProperty() {
+        properties.increment();
     }
 
-    public synchronized void onBinary() {
-        binaries++;
+    public void onBinary() {
+        binaries.increment();
     }
 
-    public synchronized void finished() {
+    public void finished() {
         running = false;
     }
 
     /**
      * Compacted nodes in current cycle
      */
-    public synchronized long getCompactedNodes() {
-        return nodes;
+    public long getCompactedNodes() {
+        return nodes.get();
+    }
+
+    /**
+     * Compacted nodes in current cycle, keyed by the name of the thread that
+     * compacted them.
+     */
+    public Map<String, Long> getCompactedNodesPerWorker() {
+        Map<String, Long> compacted = new TreeMap<>();
+        workers.forEach((name, count) -> compacted.put(name, count.sum()));
+        return compacted;
     }
 
     /**
      * Estimated nodes to compact in current cycle. Can be {@code -1} if the
      * estimation could not be performed.
      */
-    public synchronized long getEstimatedTotal() {
+    public long getEstimatedTotal() {
         return estimated;
     }
 
@@ -138,18 +168,19 @@ public class GCNodeWriteMonitor {
      * Estimated completion percentage. Can be {@code -1} if the estimation
      * could not be performed.
      */
-    public synchronized int getEstimatedPercentage() {
+    public int getEstimatedPercentage() {
+        long estimated = this.estimated;
         if (estimated > 0) {
             if (!running) {
                 return 100;
             } else {
-                return Math.min((int) (100 * ((double) nodes / estimated)), 99);
+                return Math.min((int) (100 * ((double) nodes.get() / estimated)), 99);
             }
         }
         return -1;
     }
 
-    public synchronized boolean isCompactionRunning() {
+    public boolean isCompactionRunning() {
         return running;
     }
 
@@ -23,6 +23,7 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.List;
 
+import org.apache.jackrabbit.oak.segment.file.tar.LocalJournalFile;
 import org.apache.jackrabbit.oak.segment.spi.persistence.JournalFile;
 import org.apache.jackrabbit.oak.segment.spi.persistence.JournalFileReader;
 import org.slf4j.Logger;
@@ -40,8 +41,31 @@ public final class JournalReader extends AbstractIterator<JournalEntry> implemen
 
     private final JournalFileReader reader;
 
+    private final long maxTimestamp;
+
     public JournalReader(JournalFile journal) throws IOException {
         this.reader = journal.openJournalReader();
+        this.maxTimestamp = Long.MAX_VALUE;
+    }
+
+    /**
+     * Create an iterator over the revisions persisted at or before the given
+     * time. For a {@link LocalJournalFile} the newer revisions are skipped
+     * using the index of the journal, otherwise they are read and discarded.
+     * The index is neither consulted nor created for {@code Long.MAX_VALUE},
+     * which doesn't bound the revisions. This reader doesn't write the index
+     * next to the journal, so that it can be used on a store opened read-only.
+     *
+     * @param journal      the journal
+     * @param maxTimestamp the time in milliseconds since the epoch
+     */
+    public JournalReader(JournalFile journal, long maxTimestamp) throws IOException {
+        if (maxTimestamp != Long.MAX_VALUE && journal instanceof LocalJournalFile) {
+            this.reader = ((LocalJournalFile) journal).openJournalReader(maxTimestamp, false);
+        } else {
+            this.reader = journal.openJournalReader();
+        }
+        this.maxTimestamp = maxTimestamp;
     }
 
     /**
@@ -68,6 +92,9 @@ public final class JournalReader extends AbstractIterator<JournalEntry> implemen
                         LOG.warn("Timestamp information is missing for revision {}", revision);
                     }
 
+                    if (timestamp > maxTimestamp) {
+                        continue;
+                    }
                     return new JournalEntry(revision, timestamp);
                 } else {
                     LOG.warn("Skipping invalid journal entry: {}", line);
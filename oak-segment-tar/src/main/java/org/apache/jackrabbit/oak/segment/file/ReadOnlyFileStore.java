@@ -40,6 +40,7 @@ import org.apache.jackrabbit.oak.segment.SegmentWriter;
 import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions;
 import org.apache.jackrabbit.oak.segment.file.tar.TarFiles;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,6 +61,9 @@ public class ReadOnlyFileStore extends AbstractFileStore {
     private final SegmentWriter writer;
     private final int gcRetainedGenerations;
 
+    @Nullable
+    private final SegmentPrefetcher segmentPrefetcher;
+
     private ReadOnlyRevisions revisions;
 
     private RecordId currentHead;
@@ -77,6 +81,7 @@ public class ReadOnlyFileStore extends AbstractFileStore {
                 .withReadOnly()
                 .withPersistence(builder.getPersistence())
                 .build();
+        segmentPrefetcher = newSegmentPrefetcher(builder, id -> readSegmentUncached(tarFiles, id));
 
         writer = defaultSegmentWriterBuilder("read-only").withoutCache().build(this);
         gcRetainedGenerations = builder.getGcOptions().getRetainedGenerations();
@@ -121,7 +126,11 @@ public class ReadOnlyFileStore extends AbstractFileStore {
             return segmentCache.getSegment(id, new Callable<Segment>() {
                 @Override
                 public Segment call() throws Exception {
-                    return readSegmentUncached(tarFiles, id);
+                    Segment segment = readSegmentUncached(tarFiles, id);
+                    if (segmentPrefetcher != null) {
+                        segmentPrefetcher.onSegmentLoaded(segment);
+                    }
+                    return segment;
                 }
             });
         } catch (ExecutionException | UncheckedExecutionException e) {
@@ -134,6 +143,11 @@ public class ReadOnlyFileStore extends AbstractFileStore {
         Closer closer = Closer.create();
         closer.register(tarFiles);
         closer.register(revisions);
+        closer.register(segmentCache::close);
+        if (segmentPrefetcher != null) {
+            // Closed first, before the files it reads from
+            closer.register(segmentPrefetcher);
+        }
         closeAndLogOnFail(closer);
         System.gc(); // for any memory-mappings that are no longer used
         log.info("TarMK closed: {}", directory);
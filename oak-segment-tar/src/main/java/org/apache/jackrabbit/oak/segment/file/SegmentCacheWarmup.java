@@ -0,0 +1,376 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Thread.currentThread;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.concurrent.Executors.defaultThreadFactory;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.apache.jackrabbit.oak.segment.Segment;
+import org.apache.jackrabbit.oak.segment.SegmentCache;
+import org.apache.jackrabbit.oak.segment.SegmentId;
+import org.apache.jackrabbit.oak.segment.SegmentIdProvider;
+import org.apache.jackrabbit.oak.stats.MeterStats;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.apache.jackrabbit.oak.stats.StatsOptions;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Warms up the {@link SegmentCache} when a {@link FileStore} is opened, so
+ * that the first requests after a restart or a failover don't pay the
+ * latency of reading their segments from disk.
+ * <p>
+ * While the store is in use, accesses to data segments are counted, both the
+ * ones served by the segment memoised in its id and the ones going through
+ * the segment cache. The ids of the most accessed segments are periodically
+ * persisted, hottest first, to a trace file in the directory of the store.
+ * Counts are halved
+ * whenever the number of tracked segments grows too large, so that the trace
+ * favours the recently accessed segments. When the store is opened again,
+ * the segments of the trace are loaded into the segment cache in the order
+ * of the trace by background threads, until either the trace is exhausted or
+ * the loaded segments fill the cache.
+ * <p>
+ * The trace file starts with {@link #MAGIC}, followed by the number of
+ * segments and by the most and least significant bits of the id of each
+ * segment.
+ * <p>
+ * The following metrics are registered with the {@link StatisticsProvider}:
+ * <ul>
+ *     <li>{@link #OAK_SEGMENT_WARMUP_SEGMENTS}: a meter of the segments
+ *          loaded by the warmup</li>
+ * </ul>
+ */
+class SegmentCacheWarmup implements Closeable {
+
+    static final String OAK_SEGMENT_WARMUP_SEGMENTS = "oak.segment.warmup-segments";
+
+    /**
+     * Name of the trace file in the directory of the store.
+     */
+    static final String TRACE_FILE_NAME = "segment-warmup.trace";
+
+    static final int MAGIC = ('w' << 24) + ('a' << 16) + ('r' << 8) + '1';
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentCacheWarmup.class);
+
+    private final int threads;
+
+    private final int maxSegments;
+
+    @NotNull
+    private final File traceFile;
+
+    @NotNull
+    private final SegmentCache segmentCache;
+
+    @NotNull
+    private final SegmentIdProvider segmentIdProvider;
+
+    /**
+     * Reads a segment from the persistence, bypassing the cache.
+     */
+    @NotNull
+    private final Function<SegmentId, Segment> loader;
+
+    /**
+     * Number of accesses to each data segment since the counts were last
+     * halved.
+     */
+    private final Map<UUID, AtomicInteger> accessCounts = new ConcurrentHashMap<>();
+
+    /**
+     * The trace read when the store was opened. It completes the persisted
+     * trace as long as not enough segments were accessed.
+     */
+    private volatile List<UUID> previousTrace = Collections.emptyList();
+
+    private final MeterStats warmedUp;
+
+    private ExecutorService executor;
+
+    /**
+     * @param threads           number of warmup threads
+     * @param maxSegments       maximum number of segments in the trace
+     * @param directory         directory of the store, containing the trace
+     * @param segmentCache      the cache receiving the loaded segments
+     * @param segmentIdProvider provider of the ids of the traced segments
+     * @param loader            reads a segment from the persistence, bypassing
+     *                          the cache
+     * @param statsProvider     the statistics provider for the metrics of
+     *                          the warmup
+     */
+    SegmentCacheWarmup(
+            int threads,
+            int maxSegments,
+            @NotNull File directory,
+            @NotNull SegmentCache segmentCache,
+            @NotNull SegmentIdProvider segmentIdProvider,
+            @NotNull Function<SegmentId, Segment> loader,
+            @NotNull StatisticsProvider statsProvider
+    ) {
+        checkArgument(threads > 0, "threads must be positive");
+        checkArgument(maxSegments > 0, "maxSegments must be positive");
+        this.threads = threads;
+        this.maxSegments = maxSegments;
+        this.traceFile = new File(directory, TRACE_FILE_NAME);
+        this.segmentCache = segmentCache;
+        this.segmentIdProvider = segmentIdProvider;
+        this.loader = loader;
+        this.warmedUp = statsProvider.getMeter(OAK_SEGMENT_WARMUP_SEGMENTS, StatsOptions.METRICS_ONLY);
+    }
+
+    /**
+     * Read the trace persisted by a previous instance of the store and start
+     * loading its segments into the cache in the background. This method
+     * returns immediately.
+     */
+    synchronized void start() {
+        List<UUID> trace;
+        try {
+            trace = readTrace(traceFile);
+        } catch (IOException e) {
+            log.warn("Unable to read segment cache warmup trace {}", traceFile, e);
+            return;
+        }
+        if (trace.isEmpty()) {
+            return;
+        }
+        previousTrace = trace;
+
+        long maxWeight = segmentCache.getCacheStats().getMaxTotalWeight();
+        AtomicInteger next = new AtomicInteger();
+        AtomicLong loadedBytes = new AtomicLong();
+        AtomicInteger running = new AtomicInteger(threads);
+        long t0 = System.nanoTime();
+
+        executor = Executors.newFixedThreadPool(threads, new WarmupThreadFactory());
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                int index;
+                while (!currentThread().isInterrupted()
+                        && loadedBytes.get() < maxWeight
+                        && (index = next.getAndIncrement()) < trace.size()) {
+                    loadedBytes.addAndGet(warmUp(trace.get(index)));
+                }
+                if (running.decrementAndGet() == 0) {
+                    log.info("Segment cache warmup loaded {} bytes in {} ms",
+                            loadedBytes.get(), NANOSECONDS.toMillis(System.nanoTime() - t0));
+                }
+            });
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * @return the number of bytes loaded into the cache.
+     */
+    private long warmUp(UUID uuid) {
+        SegmentId id = segmentIdProvider.newSegmentId(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        if (segmentCache.containsSegment(id)) {
+            return 0;
+        }
+        try {
+            long[] size = {0};
+            segmentCache.getSegment(id, () -> {
+                Segment segment = loader.apply(id);
+                size[0] = segment.size();
+                warmedUp.mark();
+                return segment;
+            });
+            return size[0];
+        } catch (Exception e) {
+            // The segment might have been removed by garbage collection
+            log.debug("Unable to warm up segment {}", id, e);
+            return 0;
+        }
+    }
+
+    /**
+     * Notify the warmup that a segment was accessed, either from the segment
+     * memoised in its id or from the segment cache.
+     *
+     * @param msb the most significant bits of the id of the segment
+     * @param lsb the least significant bits of the id of the segment
+     */
+    void onSegmentAccess(long msb, long lsb) {
+        if (!SegmentId.isDataSegmentId(lsb)) {
+            return;
+        }
+        UUID uuid = new UUID(msb, lsb);
+        AtomicInteger count = accessCounts.get(uuid);
+        if (count == null) {
+            if (accessCounts.size() >= 4 * maxSegments) {
+                age();
+            }
+            count = accessCounts.computeIfAbsent(uuid, k -> new AtomicInteger());
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * Halve the access counts, and forget the segments whose count drops to
+     * zero. If this doesn't free enough room, forget the least accessed
+     * segments.
+     */
+    private synchronized void age() {
+        if (accessCounts.size() < 4 * maxSegments) {
+            return;
+        }
+        accessCounts.values().removeIf(count -> count.updateAndGet(c -> c / 2) == 0);
+        if (accessCounts.size() >= 2 * maxSegments) {
+            Set<UUID> hottest = new LinkedHashSet<>(hottest(maxSegments));
+            accessCounts.keySet().retainAll(hottest);
+        }
+    }
+
+    private List<UUID> hottest(int n) {
+        List<Entry<UUID, AtomicInteger>> entries = new ArrayList<>(accessCounts.entrySet());
+        entries.sort((a, b) -> Integer.compare(b.getValue().get(), a.getValue().get()));
+        List<UUID> hottest = new ArrayList<>(Math.min(n, entries.size()));
+        for (Entry<UUID, AtomicInteger> entry : entries) {
+            if (hottest.size() >= n) {
+                break;
+            }
+            hottest.add(entry.getKey());
+        }
+        return hottest;
+    }
+
+    /**
+     * Persist the ids of the most accessed segments, hottest first. If not
+     * enough segments were accessed yet, the trace is completed with the
+     * segments of the trace read when the store was opened.
+     *
+     * @throws IOException if the trace can't be written
+     */
+    void persist() throws IOException {
+        Set<UUID> trace = new LinkedHashSet<>(hottest(maxSegments));
+        for (UUID uuid : previousTrace) {
+            if (trace.size() >= maxSegments) {
+                break;
+            }
+            trace.add(uuid);
+        }
+        writeTrace(traceFile, trace);
+    }
+
+    /**
+     * Stop the warmup threads, discarding the segments not loaded yet.
+     */
+    @Override
+    public synchronized void close() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(10, SECONDS)) {
+                log.warn("Segment cache warmup threads didn't terminate");
+            }
+        } catch (InterruptedException e) {
+            log.warn("Interrupted while shutting down the segment cache warmup threads", e);
+            currentThread().interrupt();
+        }
+    }
+
+    @NotNull
+    static List<UUID> readTrace(@NotNull File file) throws IOException {
+        if (!file.exists()) {
+            return Collections.emptyList();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Invalid segment cache warmup trace " + file);
+            }
+            int count = in.readInt();
+            if (count < 0 || count > file.length() / 16) {
+                throw new IOException("Invalid segment cache warmup trace " + file);
+            }
+            List<UUID> trace = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                trace.add(new UUID(in.readLong(), in.readLong()));
+            }
+            return trace;
+        }
+    }
+
+    static void writeTrace(@NotNull File file, @NotNull Set<UUID> trace) throws IOException {
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(trace.size());
+            for (UUID uuid : trace) {
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+    }
+
+    private static class WarmupThreadFactory implements ThreadFactory {
+
+        private final ThreadFactory threadFactory = defaultThreadFactory();
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+            Thread thread = threadFactory.newThread(runnable);
+            thread.setName("TarMK segment cache warmup " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.Executors.defaultThreadFactory;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.Closeable;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.apache.jackrabbit.oak.segment.Segment;
+import org.apache.jackrabbit.oak.segment.SegmentCache;
+import org.apache.jackrabbit.oak.segment.SegmentId;
+import org.apache.jackrabbit.oak.segment.SegmentIdProvider;
+import org.apache.jackrabbit.oak.stats.MeterStats;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.apache.jackrabbit.oak.stats.StatsOptions;
+import org.apache.jackrabbit.oak.stats.TimerStats;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronously loads into the {@link SegmentCache} the segments referenced
+ * by a segment that was just read from the persistence. Traversals of a cold
+ * repository otherwise pay the latency of every segment read one after the
+ * other, which is particularly expensive with remote persistence.
+ * <p>
+ * Prefetching follows the reference table of the loaded segments up to a
+ * maximum depth. Only data segments that are not yet cached are prefetched.
+ * Prefetch requests are dropped when the queue of the prefetching threads is
+ * full, so that prefetching never slows down the thread that triggered it.
+ * <p>
+ * The following metrics are registered with the {@link StatisticsProvider}:
+ * <ul>
+ *     <li>{@link #OAK_SEGMENT_PREFETCH_SEGMENTS}: a meter of the segments
+ *          loaded by the prefetcher</li>
+ *     <li>{@link #OAK_SEGMENT_PREFETCH_DROPPED}: a meter of the prefetch
+ *          requests dropped because the queue was full</li>
+ *     <li>{@link #OAK_SEGMENT_PREFETCH_FAILED}: a meter of the prefetch
+ *          requests that failed to load a segment</li>
+ *     <li>{@link #OAK_SEGMENT_PREFETCH_TIME}: a timer of the time spent
+ *          loading prefetched segments</li>
+ * </ul>
+ */
+class SegmentPrefetcher implements Closeable {
+
+    static final String OAK_SEGMENT_PREFETCH_SEGMENTS = "oak.segment.prefetch-segments";
+    static final String OAK_SEGMENT_PREFETCH_DROPPED = "oak.segment.prefetch-dropped";
+    static final String OAK_SEGMENT_PREFETCH_FAILED = "oak.segment.prefetch-failed";
+    static final String OAK_SEGMENT_PREFETCH_TIME = "oak.segment.prefetch-time";
+
+    /**
+     * Maximum number of prefetch requests waiting for a prefetching thread.
+     */
+    static final int QUEUE_SIZE = Integer.getInteger("oak.segment.prefetch.queueSize", 1024);
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentPrefetcher.class);
+
+    private final int maxDepth;
+
+    @NotNull
+    private final SegmentCache segmentCache;
+
+    @NotNull
+    private final SegmentIdProvider segmentIdProvider;
+
+    /**
+     * Reads a segment from the persistence, bypassing the cache.
+     */
+    @NotNull
+    private final Function<SegmentId, Segment> loader;
+
+    /**
+     * Segments currently queued or being prefetched.
+     */
+    private final Set<SegmentId> pending = ConcurrentHashMap.newKeySet();
+
+    @NotNull
+    private final ThreadPoolExecutor executor;
+
+    private final MeterStats prefetched;
+
+    private final MeterStats dropped;
+
+    private final MeterStats failed;
+
+    private final TimerStats prefetchTime;
+
+    /**
+     * @param threads           number of prefetching threads
+     * @param maxDepth          number of levels of references to follow from
+     *                          a segment read on demand
+     * @param segmentCache      the cache receiving the prefetched segments
+     * @param segmentIdProvider provider of the ids of referenced segments
+     * @param loader            reads a segment from the persistence, bypassing
+     *                          the cache
+     * @param statsProvider     the statistics provider for the metrics of
+     *                          the prefetcher
+     */
+    SegmentPrefetcher(
+            int threads,
+            int maxDepth,
+            @NotNull SegmentCache segmentCache,
+            @NotNull SegmentIdProvider segmentIdProvider,
+            @NotNull Function<SegmentId, Segment> loader,
+            @NotNull StatisticsProvider statsProvider
+    ) {
+        checkArgument(threads > 0, "threads must be positive");
+        checkArgument(maxDepth > 0, "maxDepth must be positive");
+        this.maxDepth = maxDepth;
+        this.segmentCache = segmentCache;
+        this.segmentIdProvider = segmentIdProvider;
+        this.loader = loader;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, SECONDS,
+                new LinkedBlockingQueue<>(QUEUE_SIZE), new PrefetchThreadFactory());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.prefetched = statsProvider.getMeter(OAK_SEGMENT_PREFETCH_SEGMENTS, StatsOptions.METRICS_ONLY);
+        this.dropped = statsProvider.getMeter(OAK_SEGMENT_PREFETCH_DROPPED, StatsOptions.METRICS_ONLY);
+        this.failed = statsProvider.getMeter(OAK_SEGMENT_PREFETCH_FAILED, StatsOptions.METRICS_ONLY);
+        this.prefetchTime = statsProvider.getTimer(OAK_SEGMENT_PREFETCH_TIME, StatsOptions.METRICS_ONLY);
+    }
+
+    /**
+     * Notify the prefetcher that a segment was read from the persistence on
+     * demand. This schedules the prefetching of the segments it references
+     * and returns immediately.
+     *
+     * @param segment the segment read from the persistence
+     */
+    void onSegmentLoaded(@NotNull Segment segment) {
+        prefetchReferences(segment, 1);
+    }
+
+    private void prefetchReferences(Segment segment, int depth) {
+        if (depth > maxDepth || !segment.getSegmentId().isDataSegmentId() || executor.isShutdown()) {
+            return;
+        }
+        for (int i = 0; i < segment.getReferencedSegmentIdCount(); i++) {
+            UUID uuid = segment.getReferencedSegmentId(i);
+            SegmentId id = segmentIdProvider.newSegmentId(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            if (!id.isDataSegmentId() || segmentCache.containsSegment(id) || !pending.add(id)) {
+                continue;
+            }
+            try {
+                executor.execute(() -> prefetch(id, depth));
+            } catch (RejectedExecutionException e) {
+                pending.remove(id);
+                dropped.mark();
+            }
+        }
+    }
+
+    private void prefetch(SegmentId id, int depth) {
+        try {
+            segmentCache.getSegment(id, () -> {
+                long t0 = System.nanoTime();
+                Segment segment = loader.apply(id);
+                prefetchTime.update(System.nanoTime() - t0, NANOSECONDS);
+                prefetched.mark();
+                prefetchReferences(segment, depth + 1);
+                return segment;
+            });
+        } catch (Exception e) {
+            // The segment is read again on demand if it's actually needed
+            failed.mark();
+            log.debug("Unable to prefetch segment {}", id, e);
+        } finally {
+            pending.remove(id);
+        }
+    }
+
+    /**
+     * @return the number of segments queued or being prefetched.
+     */
+    int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Stop the prefetching threads, discarding the queued prefetch requests.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(10, SECONDS)) {
+                log.warn("Segment prefetching threads didn't terminate");
+            }
+        } catch (InterruptedException e) {
+            log.warn("Interrupted while shutting down the segment prefetching threads", e);
+            currentThread().interrupt();
+        }
+    }
+
+    private static class PrefetchThreadFactory implements ThreadFactory {
+
+        private final ThreadFactory threadFactory = defaultThreadFactory();
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+            Thread thread = threadFactory.newThread(runnable);
+            thread.setName("TarMK segment prefetch " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
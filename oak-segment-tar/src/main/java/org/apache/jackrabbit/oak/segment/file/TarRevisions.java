@@ -22,11 +22,13 @@ package org.apache.jackrabbit.oak.segment.file;
 import static com.google.common.base.Preconditions.checkState;
 import static java.lang.Long.MAX_VALUE;
 import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static org.apache.jackrabbit.oak.segment.file.FileStoreUtil.findPersistedRecordId;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -58,6 +60,13 @@ import org.slf4j.LoggerFactory;
  * <p>
  * Instance of this class must be {@link #bind(SegmentStore, SegmentIdProvider, Supplier)} bound} to
  * a {@code SegmentStore} otherwise its method throw {@code IllegalStateException}s.
+ * <p>
+ * Concurrent calls to {@link #flush(Flusher)} are group committed: a call
+ * returns without writing to the journal if a flush that started after it
+ * was issued already persisted the head. Optionally, the thread performing
+ * the flush waits for a short window to let more calls join the same journal
+ * write. In every case {@code flush} only returns once the head at the time
+ * of the call, or a later one, is persisted.
  */
 public class TarRevisions implements Revisions, Closeable {
     private static final Logger LOG = LoggerFactory.getLogger(TarRevisions.class);
@@ -90,6 +99,34 @@ public class TarRevisions implements Revisions, Closeable {
     @NotNull
     private final ReadWriteLock rwLock = new ReentrantReadWriteLock(true);
 
+    /**
+     * Time in nanoseconds a flush waits for more flush requests to join the
+     * same journal write.
+     */
+    private final long groupCommitWindow;
+
+    /**
+     * Number of flush requests after which a flush stops waiting for the
+     * group commit window to elapse.
+     */
+    private final int groupCommitBatchSize;
+
+    /**
+     * Number of calls to {@link #flush(Flusher)} issued so far.
+     */
+    private final AtomicLong flushRequests = new AtomicLong();
+
+    /**
+     * Number of calls to {@link #flush(Flusher)} satisfied by the flushes
+     * performed so far. It is protected by {@link #journalFileLock}.
+     */
+    private volatile long flushedRequests;
+
+    /**
+     * Monitor notified when the group commit batch is full.
+     */
+    private final Object groupCommitMonitor = new Object();
+
     private static class TimeOutOption implements Option {
         private final long time;
 
@@ -141,6 +178,23 @@ public class TarRevisions implements Revisions, Closeable {
      * @throws IOException
      */
     public TarRevisions(SegmentNodeStorePersistence persistence) throws IOException {
+        this(persistence, 0, 1);
+    }
+
+    /**
+     * Create a new instance placing the journal log file into the passed
+     * {@code directory} and group committing the flushes.
+     * @param persistence          object representing the segment persistence
+     * @param groupCommitWindow    time in nanoseconds a flush waits for more
+     *                             flush requests to join the same journal write.
+     *                             Zero to write the journal immediately.
+     * @param groupCommitBatchSize number of flush requests after which a flush
+     *                             stops waiting for the window to elapse.
+     * @throws IOException
+     */
+    public TarRevisions(SegmentNodeStorePersistence persistence, long groupCommitWindow, int groupCommitBatchSize) throws IOException {
+        this.groupCommitWindow = groupCommitWindow;
+        this.groupCommitBatchSize = groupCommitBatchSize;
         this.journalFile = persistence.getJournalFile();
         this.journalFileWriter = journalFile.openJournalWriter();
         this.head = new AtomicReference<>(null);
@@ -179,25 +233,60 @@ public class TarRevisions implements Revisions, Closeable {
      * Flush the id of the current head to the journal after a call to {@code
      * persisted}. Differently from {@link #tryFlush(Flusher)}, this method
      * does not return early if a concurrent call is in progress. Instead, it
-     * blocks the caller until the requested flush operation is performed.
+     * blocks the caller until the requested flush operation is performed,
+     * either by this call or by a concurrent one that started later.
      *
      * @param flusher call back for upstream dependencies to ensure the current
      *                head state is actually persisted before its id is written
      *                to the head state.
+     * @return the number of flush requests satisfied by the flush performed
+     * by this call, or zero if a concurrent call already satisfied it.
      */
-    void flush(Flusher flusher) throws IOException {
+    int flush(Flusher flusher) throws IOException {
         if (head.get() == null) {
             LOG.debug("No head available, skipping flush");
-            return;
+            return 0;
+        }
+        long request = flushRequests.incrementAndGet();
+        if (groupCommitWindow > 0 && request - flushedRequests >= groupCommitBatchSize) {
+            synchronized (groupCommitMonitor) {
+                groupCommitMonitor.notifyAll();
+            }
         }
         journalFileLock.lock();
         try {
-            doFlush(flusher);
+            if (flushedRequests >= request) {
+                LOG.debug("Flush request already satisfied by a concurrent flush");
+                return 0;
+            }
+            awaitGroupCommit();
+            return doFlush(flusher);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return doFlush(flusher);
         } finally {
             journalFileLock.unlock();
         }
     }
 
+    /**
+     * Wait until the group commit window elapses or enough flush requests are
+     * pending. Callers must hold {@link #journalFileLock}.
+     */
+    private void awaitGroupCommit() throws InterruptedException {
+        if (groupCommitWindow <= 0) {
+            return;
+        }
+        long deadline = System.nanoTime() + groupCommitWindow;
+        synchronized (groupCommitMonitor) {
+            long remaining = groupCommitWindow;
+            while (remaining > 0 && flushRequests.get() - flushedRequests < groupCommitBatchSize) {
+                NANOSECONDS.timedWait(groupCommitMonitor, remaining);
+                remaining = deadline - System.nanoTime();
+            }
+        }
+    }
+
     /**
      * Flush the id of the current head to the journal after a call to {@code
      * persisted}. This method does nothing and returns immediately if called
@@ -223,21 +312,32 @@ public class TarRevisions implements Revisions, Closeable {
         }
     }
 
-    private void doFlush(Flusher flusher) throws IOException {
+    /**
+     * Callers of this method must hold {@link #journalFileLock}.
+     *
+     * @return the number of flush requests satisfied by this flush.
+     */
+    private int doFlush(Flusher flusher) throws IOException {
+        // Requests issued so far are satisfied by the head read below
+        long requests = flushRequests.get();
+        int satisfied = (int) (requests - flushedRequests);
         if (journalFileWriter == null) {
             LOG.debug("No journal file available, skipping flush");
-            return;
+            return 0;
         }
         RecordId before = persistedHead.get();
         RecordId after = getHead();
         if (after.equals(before)) {
             LOG.debug("Head state did not change, skipping flush");
-            return;
+            flushedRequests = requests;
+            return satisfied;
         }
         flusher.flush();
         LOG.debug("TarMK journal update {} -> {}", before, after);
         journalFileWriter.writeLine(after.toString10() + " root " + System.currentTimeMillis());
         persistedHead.set(after);
+        flushedRequests = requests;
+        return satisfied;
     }
 
     @NotNull
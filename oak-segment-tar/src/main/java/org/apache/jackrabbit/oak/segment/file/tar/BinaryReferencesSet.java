@@ -0,0 +1,451 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.apache.jackrabbit.oak.segment.file.tar.GCGeneration.newGCGeneration;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import com.google.common.base.Predicate;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import org.apache.jackrabbit.oak.segment.file.tar.binaries.BinaryReferencesIndex.GenerationConsumer;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persisted set of the binary references contained in the TAR files. The
+ * set is stored in a single file, as a sequence of records. Every record
+ * contains the binary references of one TAR file, grouped by generation and
+ * deduplicated across the segments of that TAR file. Records are appended
+ * when a TAR file is closed by its {@link TarWriter}, so that collecting the
+ * binary references doesn't have to parse the binary references index of
+ * every TAR file.
+ * <p>
+ * Records of TAR files that are not part of the repository anymore are
+ * skipped when collecting the binary references, and removed when they
+ * make up most of the file. A record is protected by a checksum. Torn or
+ * corrupted records are ignored, and the binary references of the
+ * corresponding TAR files are then read from their index instead.
+ */
+class BinaryReferencesSet {
+
+    static final String FILE_NAME = "binary-references.set";
+
+    private static final Logger log = LoggerFactory.getLogger(BinaryReferencesSet.class);
+
+    private static final int MAGIC = ('\n' << 24) + ('0' << 16) + ('R' << 8) + '\n';
+
+    private static final int MAX_NAME_LENGTH = 1024;
+
+    private static class Record {
+
+        final String name;
+
+        final byte[] payload;
+
+        final int checksum;
+
+        final long length;
+
+        Record(String name, byte[] payload, int checksum, long length) {
+            this.name = name;
+            this.payload = payload;
+            this.checksum = checksum;
+            this.length = length;
+        }
+
+        boolean isValid() {
+            return payload != null && checksum(payload) == checksum;
+        }
+
+    }
+
+    private final File file;
+
+    /**
+     * Serializes the removal of stale records.
+     */
+    private final Object compactionMonitor = new Object();
+
+    /**
+     * Names of the TAR files with a record in {@link #file}. Guarded by this.
+     */
+    private final Set<String> archives = new HashSet<>();
+
+    /**
+     * Length of the valid prefix of {@link #file}. New records are written
+     * at this position. Guarded by this.
+     */
+    private long length;
+
+    /**
+     * Number of times {@link #file} was rewritten by a compaction. Guarded by
+     * this.
+     */
+    private long compactions;
+
+    private BinaryReferencesSet(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Open the set of binary references stored in the given directory, or
+     * create an empty one.
+     *
+     * @param directory the directory of the repository
+     * @return an instance of {@link BinaryReferencesSet}
+     * @throws IOException if the set couldn't be read or created
+     */
+    static BinaryReferencesSet open(@NotNull File directory) throws IOException {
+        BinaryReferencesSet set = new BinaryReferencesSet(new File(directory, FILE_NAME));
+        set.load();
+        return set;
+    }
+
+    private synchronized void load() throws IOException {
+        if (!file.exists()) {
+            reset();
+            return;
+        }
+        long valid = 0;
+        try (DataInputStream in = newInputStream(file.length())) {
+            if (readMagic(in)) {
+                valid = 4;
+                Record record;
+                while ((record = readRecord(in, name -> false)) != null) {
+                    archives.add(record.name);
+                    valid += record.length;
+                }
+            }
+        }
+        if (valid == 0) {
+            log.warn("Invalid binary references set {}, creating a new one", file);
+            reset();
+            return;
+        }
+        if (valid < file.length()) {
+            log.warn("Discarding the last {} bytes of the binary references set {}", file.length() - valid, file);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(valid);
+            }
+        }
+        length = valid;
+    }
+
+    private void reset() throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(MAGIC);
+        }
+        archives.clear();
+        length = 4;
+    }
+
+    /**
+     * @param archiveName the name of a TAR file
+     * @return {@code true} if this set has a record for the TAR file
+     */
+    synchronized boolean contains(String archiveName) {
+        return archives.contains(archiveName);
+    }
+
+    /**
+     * Append a record for a TAR file.
+     *
+     * @param archiveName the name of the TAR file
+     * @param references  feeds the binary references of the TAR file, grouped
+     *                    by generation, to the given consumer
+     * @throws IOException if the record couldn't be written
+     */
+    void add(@NotNull String archiveName, @NotNull Consumer<GenerationConsumer> references) throws IOException {
+        ByteArrayDataOutput body = ByteStreams.newDataOutput();
+        int[] generations = {0};
+        references.accept((generation, full, compacted, refs) -> {
+            body.writeInt(generation);
+            body.writeInt(full);
+            body.writeByte(compacted ? 1 : 0);
+            body.writeInt(refs.size());
+            for (String reference : refs) {
+                byte[] bytes = reference.getBytes(UTF_8);
+                body.writeInt(bytes.length);
+                body.write(bytes);
+            }
+            generations[0]++;
+        });
+
+        ByteArrayDataOutput payload = ByteStreams.newDataOutput();
+        payload.writeInt(generations[0]);
+        payload.write(body.toByteArray());
+        byte[] payloadBytes = payload.toByteArray();
+
+        byte[] name = archiveName.getBytes(UTF_8);
+        ByteArrayDataOutput record = ByteStreams.newDataOutput();
+        record.writeInt(name.length);
+        record.write(name);
+        record.writeInt(payloadBytes.length);
+        record.write(payloadBytes);
+        record.writeInt(checksum(payloadBytes));
+        byte[] recordBytes = record.toByteArray();
+
+        synchronized (this) {
+            // Writing at the end of the valid prefix overwrites the remains
+            // of a previously failed write, if any.
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.seek(length);
+                raf.write(recordBytes);
+            }
+            length += recordBytes.length;
+            archives.add(archiveName);
+        }
+    }
+
+    /**
+     * Pass the binary references of the given TAR files to the collector.
+     * Records appended while this method is running are ignored.
+     *
+     * @param archiveNames   the names of the TAR files in the repository
+     * @param skipGeneration binary references of the generations accepted by
+     *                       this predicate are skipped
+     * @param collector      receives the binary references
+     * @return the names of the TAR files without a valid record. The binary
+     * references of these TAR files have to be collected by other means.
+     * @throws IOException if the set couldn't be read
+     */
+    Set<String> collect(
+            @NotNull Set<String> archiveNames,
+            @NotNull Predicate<GCGeneration> skipGeneration,
+            @NotNull Consumer<String> collector
+    ) throws IOException {
+        long limit;
+        long compacted;
+
+        synchronized (this) {
+            limit = length;
+            compacted = compactions;
+        }
+
+        Set<String> missing = new HashSet<>(archiveNames);
+        long liveLength = 0;
+        long staleLength = 0;
+        boolean corrupted = false;
+
+        try (DataInputStream in = newInputStream(limit)) {
+            if (!readMagic(in)) {
+                return missing;
+            }
+            Record record;
+            while ((record = readRecord(in, missing::contains)) != null) {
+                if (record.payload == null) {
+                    staleLength += record.length;
+                } else if (!record.isValid()) {
+                    log.warn("Invalid record for {} in the binary references set {}", record.name, file);
+                    corrupted = true;
+                } else if (emit(record, skipGeneration, collector)) {
+                    missing.remove(record.name);
+                    liveLength += record.length;
+                } else {
+                    corrupted = true;
+                }
+            }
+        }
+
+        if (corrupted || staleLength > liveLength) {
+            try {
+                compact(archiveNames, limit, compacted);
+            } catch (IOException e) {
+                log.warn("Unable to compact the binary references set {}", file, e);
+            }
+        }
+
+        return missing;
+    }
+
+    private boolean emit(Record record, Predicate<GCGeneration> skipGeneration, Consumer<String> collector) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(record.payload);
+            int generations = buffer.getInt();
+            for (int i = 0; i < generations; i++) {
+                int generation = buffer.getInt();
+                int full = buffer.getInt();
+                boolean compacted = buffer.get() != 0;
+                int count = buffer.getInt();
+                boolean skip = skipGeneration.apply(newGCGeneration(generation, full, compacted));
+                for (int j = 0; j < count; j++) {
+                    int size = buffer.getInt();
+                    if (!skip) {
+                        collector.accept(new String(record.payload, buffer.position(), size, UTF_8));
+                    }
+                    buffer.position(buffer.position() + size);
+                }
+            }
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Unable to parse the record for {} in the binary references set {}", record.name, file, e);
+            return false;
+        }
+    }
+
+    /**
+     * Rewrite the file without the records of the TAR files not in {@code
+     * archiveNames}, and without duplicate and invalid records. Only the
+     * records before {@code limit} are inspected. The records after {@code
+     * limit} were appended after {@code archiveNames} was computed, and are
+     * kept as they are. Nothing is done if the file was compacted since {@code
+     * limit} was read, because {@code limit} doesn't match the file anymore.
+     */
+    private void compact(Set<String> archiveNames, long limit, long compacted) throws IOException {
+        synchronized (compactionMonitor) {
+            synchronized (this) {
+                if (compactions != compacted) {
+                    log.debug("Binary references set {} already compacted", file);
+                    return;
+                }
+            }
+            File temp = new File(file.getParentFile(), FILE_NAME + ".tmp");
+            Set<String> kept = new HashSet<>();
+            long written = 4;
+
+            // Rewriting the records before the limit doesn't need to block
+            // concurrent additions, which are only appended after the limit.
+
+            try (
+                DataInputStream in = newInputStream(limit);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))
+            ) {
+                if (!readMagic(in)) {
+                    return;
+                }
+                out.writeInt(MAGIC);
+                Record record;
+                while ((record = readRecord(in, name -> true)) != null) {
+                    if (archiveNames.contains(record.name) && record.isValid() && kept.add(record.name)) {
+                        written += writeRecord(out, record);
+                    }
+                }
+            }
+
+            synchronized (this) {
+                try (
+                    InputStream tail = new FileInputStream(file);
+                    FileOutputStream out = new FileOutputStream(temp, true)
+                ) {
+                    ByteStreams.skipFully(tail, limit);
+                    written += ByteStreams.copy(ByteStreams.limit(tail, length - limit), out);
+                }
+                try (DataInputStream in = newInputStream(length)) {
+                    ByteStreams.skipFully(in, limit);
+                    Record record;
+                    while ((record = readRecord(in, name -> false)) != null) {
+                        kept.add(record.name);
+                    }
+                }
+                Files.move(temp.toPath(), file.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+                log.info("Compacted the binary references set {} from {} to {} bytes", file, length, written);
+                archives.clear();
+                archives.addAll(kept);
+                length = written;
+                compactions++;
+            }
+        }
+    }
+
+    private DataInputStream newInputStream(long limit) throws IOException {
+        return new DataInputStream(ByteStreams.limit(new BufferedInputStream(new FileInputStream(file)), limit));
+    }
+
+    private static boolean readMagic(DataInputStream in) throws IOException {
+        try {
+            return in.readInt() == MAGIC;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Read the next record. The payload of the record is only read if the
+     * name of the record is accepted by {@code readPayload}.
+     *
+     * @return the next record, or {@code null} at the end of the valid
+     * records.
+     */
+    private static Record readRecord(DataInputStream in, Predicate<String> readPayload) throws IOException {
+        try {
+            int nameLength = in.readInt();
+            if (nameLength <= 0 || nameLength > MAX_NAME_LENGTH) {
+                return null;
+            }
+            byte[] name = new byte[nameLength];
+            in.readFully(name);
+            String archiveName = new String(name, UTF_8);
+            int payloadLength = in.readInt();
+            if (payloadLength < 4) {
+                return null;
+            }
+            byte[] payload = null;
+            if (readPayload.apply(archiveName)) {
+                payload = new byte[payloadLength];
+                in.readFully(payload);
+            } else {
+                ByteStreams.skipFully(in, payloadLength);
+            }
+            int checksum = in.readInt();
+            return new Record(archiveName, payload, checksum, 4L + nameLength + 4 + payloadLength + 4);
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static long writeRecord(DataOutputStream out, Record record) throws IOException {
+        byte[] name = record.name.getBytes(UTF_8);
+        out.writeInt(name.length);
+        out.write(name);
+        out.writeInt(record.payload.length);
+        out.write(record.payload);
+        out.writeInt(record.checksum);
+        return record.length;
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+}
@@ -0,0 +1,392 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import static java.nio.charset.Charset.defaultCharset;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A sparse index of the entries of a local journal file, persisted in a
+ * sidecar file next to the journal. The index records the offset following
+ * every {@link #INTERVAL}th entry of the journal together with the timestamp
+ * of that entry, so that the entries persisted up to a given time can be
+ * found without reading the whole journal.
+ * <p>
+ * The sidecar file is only a cache. It is validated against the content of
+ * the journal when loaded, extended with the entries appended to the journal
+ * since it was written and rebuilt from scratch if the journal was truncated
+ * or rewritten.
+ */
+class JournalIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalIndex.class);
+
+    /**
+     * Suffix appended to the name of the journal file to form the name of
+     * the index file.
+     */
+    static final String INDEX_SUFFIX = ".idx";
+
+    /**
+     * Number of journal entries between two entries of the index.
+     */
+    static final int INTERVAL = 1024;
+
+    private static final int MAGIC = 0x4A494458; // JIDX
+
+    /**
+     * Number of bytes preceding {@link #length} whose checksum is used to
+     * detect whether the journal changed since the index was written.
+     */
+    private static final int CHECKSUM_RANGE = 256;
+
+    private final File journal;
+
+    /**
+     * Number of bytes of the journal covered by this index. This is always
+     * the offset following a line terminator.
+     */
+    private final long length;
+
+    /**
+     * Number of journal entries covered by this index.
+     */
+    private final long count;
+
+    /**
+     * Offsets following the indexed entries.
+     */
+    private final long[] ends;
+
+    /**
+     * Timestamps of the indexed entries.
+     */
+    private final long[] timestamps;
+
+    private JournalIndex(File journal, long length, long count, long[] ends, long[] timestamps) {
+        this.journal = journal;
+        this.length = length;
+        this.count = count;
+        this.ends = ends;
+        this.timestamps = timestamps;
+    }
+
+    /**
+     * Load the index of a journal file from its sidecar file, bringing it up
+     * to date with the content of the journal. The sidecar file is written
+     * back if it was updated. Failing to write it doesn't prevent the index
+     * from being used.
+     *
+     * @param journal the journal file
+     * @return the index of the journal
+     * @throws IOException if the journal can't be read
+     */
+    @NotNull
+    static JournalIndex load(@NotNull File journal) throws IOException {
+        return load(journal, true);
+    }
+
+    /**
+     * Same as {@link #load(File)}, but the sidecar file is only written back
+     * if {@code persist} is {@code true}. This allows read-only callers to
+     * use the index without writing next to the journal.
+     *
+     * @param journal the journal file
+     * @param persist whether to write back the updated index
+     * @return the index of the journal
+     * @throws IOException if the journal can't be read
+     */
+    @NotNull
+    static JournalIndex load(@NotNull File journal, boolean persist) throws IOException {
+        File file = indexFile(journal);
+        JournalIndex index = read(journal, file);
+        JournalIndex updated = index.update();
+        if (persist && updated != index) {
+            try {
+                updated.write(file);
+            } catch (IOException e) {
+                log.debug("Unable to write the journal index {}", file, e);
+            }
+        }
+        return updated;
+    }
+
+    @NotNull
+    static File indexFile(@NotNull File journal) {
+        return new File(journal.getParentFile(), journal.getName() + INDEX_SUFFIX);
+    }
+
+    private static JournalIndex empty(File journal) {
+        return new JournalIndex(journal, 0, 0, new long[0], new long[0]);
+    }
+
+    private static JournalIndex read(File journal, File file) throws IOException {
+        if (!file.exists()) {
+            return empty(journal);
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != INTERVAL) {
+                log.info("Ignoring journal index {} with an unknown format", file);
+                return empty(journal);
+            }
+            long length = in.readLong();
+            long count = in.readLong();
+            long checksum = in.readLong();
+            int size = in.readInt();
+            long[] ends = new long[size];
+            long[] timestamps = new long[size];
+            for (int i = 0; i < size; i++) {
+                ends[i] = in.readLong();
+                timestamps[i] = in.readLong();
+            }
+            if (length > journal.length() || checksum(journal, length) != checksum) {
+                log.info("Journal {} changed since its index was written, rebuilding the index", journal);
+                return empty(journal);
+            }
+            return new JournalIndex(journal, length, count, ends, timestamps);
+        } catch (IOException e) {
+            log.warn("Unable to read the journal index {}, rebuilding it", file, e);
+            return empty(journal);
+        }
+    }
+
+    private void write(File file) throws IOException {
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(INTERVAL);
+            out.writeLong(length);
+            out.writeLong(count);
+            out.writeLong(checksum(journal, length));
+            out.writeInt(ends.length);
+            for (int i = 0; i < ends.length; i++) {
+                out.writeLong(ends[i]);
+                out.writeLong(timestamps[i]);
+            }
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp.toPath());
+            throw e;
+        }
+    }
+
+    private static long checksum(File journal, long length) throws IOException {
+        CRC32 crc = new CRC32();
+        int size = (int) Math.min(length, CHECKSUM_RANGE);
+        if (size > 0) {
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            try (RandomAccessFile file = new RandomAccessFile(journal, "r")) {
+                FileChannel channel = file.getChannel();
+                long position = length - size;
+                while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+                    // Read until the buffer is full
+                }
+            }
+            crc.update(buffer.array(), 0, buffer.position());
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Index the entries appended to the journal since this index was built.
+     *
+     * @return a new index if new entries were indexed, this instance
+     * otherwise.
+     */
+    private JournalIndex update() throws IOException {
+        long journalLength = journal.length();
+        if (journalLength <= length) {
+            return this;
+        }
+        long[] newEnds = Arrays.copyOf(ends, ends.length + 16);
+        long[] newTimestamps = Arrays.copyOf(timestamps, timestamps.length + 16);
+        int size = ends.length;
+        long newLength = length;
+        long newCount = count;
+        try (RandomAccessFile file = new RandomAccessFile(journal, "r")) {
+            LineScanner scanner = new LineScanner(file.getChannel(), length, journalLength);
+            String line;
+            while ((line = scanner.next()) != null) {
+                if (newCount % INTERVAL == 0) {
+                    if (size == newEnds.length) {
+                        newEnds = Arrays.copyOf(newEnds, size * 2);
+                        newTimestamps = Arrays.copyOf(newTimestamps, size * 2);
+                    }
+                    newEnds[size] = scanner.position();
+                    newTimestamps[size] = timestamp(line);
+                    size++;
+                }
+                newCount++;
+                newLength = scanner.position();
+            }
+        }
+        if (newLength == length) {
+            return this;
+        }
+        return new JournalIndex(journal, newLength, newCount,
+                Arrays.copyOf(newEnds, size), Arrays.copyOf(newTimestamps, size));
+    }
+
+    /**
+     * Find the end of the last entry persisted at or before a given time,
+     * assuming that the timestamps of the entries don't decrease along the
+     * journal. Entries without a timestamp are considered older than any
+     * time.
+     *
+     * @param timestamp the time in milliseconds since the epoch
+     * @return the offset following the last entry with a timestamp not
+     * greater than {@code timestamp}, or zero if there's no such entry.
+     * @throws IOException if the journal can't be read
+     */
+    long findEnd(long timestamp) throws IOException {
+        int i = Arrays.binarySearch(timestamps, timestamp);
+        if (i < 0) {
+            i = -i - 2;
+        } else {
+            // Move to the last of several entries with the same timestamp
+            while (i + 1 < timestamps.length && timestamps[i + 1] == timestamp) {
+                i++;
+            }
+        }
+        long end = i < 0 ? 0 : ends[i];
+        long limit = i + 1 < ends.length ? ends[i + 1] : length;
+        try (RandomAccessFile file = new RandomAccessFile(journal, "r")) {
+            LineScanner scanner = new LineScanner(file.getChannel(), end, limit);
+            String line;
+            while ((line = scanner.next()) != null && timestamp(line) <= timestamp) {
+                end = scanner.position();
+            }
+        }
+        return end;
+    }
+
+    /**
+     * @return the number of journal entries covered by this index.
+     */
+    long getEntryCount() {
+        return count;
+    }
+
+    /**
+     * @return the number of bytes of the journal covered by this index.
+     */
+    long getLength() {
+        return length;
+    }
+
+    /**
+     * Parse the timestamp of a journal entry of the form {@code "<revision>
+     * root <timestamp>"}.
+     *
+     * @return the timestamp of the entry, or {@code -1} if it doesn't have a
+     * valid one.
+     */
+    static long timestamp(String line) {
+        int first = line.indexOf(' ');
+        int second = first < 0 ? -1 : line.indexOf(' ', first + 1);
+        if (second < 0) {
+            return -1;
+        }
+        int third = line.indexOf(' ', second + 1);
+        try {
+            return Long.parseLong(third < 0 ? line.substring(second + 1) : line.substring(second + 1, third));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Reads the complete lines in a range of a file, from the beginning to
+     * the end of the range.
+     */
+    private static class LineScanner {
+
+        private final InputStream in;
+
+        private final long limit;
+
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        private long position;
+
+        LineScanner(FileChannel channel, long start, long limit) throws IOException {
+            this.in = new BufferedInputStream(Channels.newInputStream(channel.position(start)), 64 * 1024);
+            this.position = start;
+            this.limit = limit;
+        }
+
+        /**
+         * @return the next complete line, or {@code null} if there are no
+         * more terminated lines in the range.
+         */
+        String next() throws IOException {
+            line.reset();
+            long p = position;
+            while (p < limit) {
+                int b = in.read();
+                if (b < 0) {
+                    return null;
+                }
+                p++;
+                if (b == '\n') {
+                    position = p;
+                    return line.toString(defaultCharset().name()).trim();
+                }
+                line.write(b);
+            }
+            return null;
+        }
+
+        /**
+         * @return the offset following the last line returned by {@link
+         * #next()}.
+         */
+        long position() {
+            return position;
+        }
+
+    }
+
+}
@@ -46,6 +46,38 @@ public class LocalJournalFile implements JournalFile {
         return new LocalJournalFileReader(journalFile);
     }
 
+    /**
+     * Open a reader returning the entries of the journal persisted at or
+     * before the given time, in reverse order. The newer entries are skipped
+     * with the help of an index of the journal, which is stored next to the
+     * journal and updated as needed.
+     *
+     * @param timestamp the time in milliseconds since the epoch
+     * @return a reader starting at the last entry persisted at or before
+     * {@code timestamp}
+     * @throws IOException
+     */
+    public JournalFileReader openJournalReader(long timestamp) throws IOException {
+        return openJournalReader(timestamp, true);
+    }
+
+    /**
+     * Same as {@link #openJournalReader(long)}, but the index of the journal
+     * is only written next to the journal if {@code persistIndex} is {@code
+     * true}. Read-only callers pass {@code false}: an existing index is still
+     * used, but a missing or outdated one is only brought up to date in
+     * memory.
+     *
+     * @param timestamp    the time in milliseconds since the epoch
+     * @param persistIndex whether to write back the updated index
+     * @return a reader starting at the last entry persisted at or before
+     * {@code timestamp}
+     * @throws IOException
+     */
+    public JournalFileReader openJournalReader(long timestamp, boolean persistIndex) throws IOException {
+        return new ReverseJournalFileReader(journalFile, JournalIndex.load(journalFile, persistIndex).findEnd(timestamp));
+    }
+
     @Override
     public JournalFileWriter openJournalWriter() throws IOException {
         return new LocalJournalFileWriter(journalFile);
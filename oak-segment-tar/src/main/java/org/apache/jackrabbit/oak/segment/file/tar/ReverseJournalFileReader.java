@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import static java.nio.charset.Charset.defaultCharset;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.jackrabbit.oak.segment.spi.persistence.JournalFileReader;
+
+/**
+ * Reads the lines of a local journal file in reverse order, from a given
+ * offset to the beginning of the file. The file is read in blocks of {@link
+ * #BLOCK_SIZE} bytes into a buffer, moving towards the beginning of the file.
+ * <p>
+ * Like {@link java.io.BufferedReader}, this reader doesn't return an empty
+ * line for the line terminator at the end of the file.
+ */
+class ReverseJournalFileReader implements JournalFileReader {
+
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    private final RandomAccessFile file;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+
+    private long blockStart;
+
+    private int blockLength;
+
+    /**
+     * Offset of the end of the next line to return, including its terminator.
+     */
+    private long position;
+
+    /**
+     * @param file the journal file
+     * @param end  offset at which to start reading backwards. It should be
+     *             either the length of the file or the offset following the
+     *             line terminator of an entry.
+     */
+    ReverseJournalFileReader(File file, long end) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        this.channel = this.file.getChannel();
+        this.position = Math.min(end, channel.size());
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        if (position <= 0) {
+            return null;
+        }
+        long end = position;
+        if (byteAt(end - 1) == '\n') {
+            end--;
+        }
+        long start = end;
+        while (start > 0 && byteAt(start - 1) != '\n') {
+            start--;
+        }
+        position = start;
+        if (end > start && byteAt(end - 1) == '\r') {
+            end--;
+        }
+        byte[] line = new byte[(int) (end - start)];
+        // Copy backwards, so that the bytes are read in the block direction
+        for (int i = line.length - 1; i >= 0; i--) {
+            line[i] = byteAt(start + i);
+        }
+        return new String(line, defaultCharset());
+    }
+
+    private byte byteAt(long offset) throws IOException {
+        if (offset < blockStart || offset >= blockStart + blockLength) {
+            long start = Math.max(0, offset + 1 - BLOCK_SIZE);
+            block.clear();
+            block.limit((int) (offset + 1 - start));
+            while (block.hasRemaining()) {
+                if (channel.read(block, start + block.position()) < 0) {
+                    throw new EOFException("Unexpected end of the journal file");
+                }
+            }
+            blockStart = start;
+            blockLength = block.position();
+        }
+        return block.get((int) (offset - blockStart));
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+}
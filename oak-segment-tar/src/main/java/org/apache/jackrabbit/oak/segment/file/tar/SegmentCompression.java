@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression of individual segments stored in a TAR file. The compression
+ * format of a segment is recorded in the index of the TAR file together with
+ * the uncompressed length of the segment. Compressed entries carry the {@link
+ * #DEFLATE_SUFFIX} in their TAR entry name, so that they can be told apart
+ * when recovering a TAR file without an index.
+ */
+final class SegmentCompression {
+
+    private SegmentCompression() {
+        // Prevent instantiation.
+    }
+
+    /**
+     * The segment is stored as is.
+     */
+    static final int NONE = 0;
+
+    /**
+     * The segment is stored as a zlib stream produced by {@link Deflater} at
+     * {@link Deflater#BEST_SPEED}.
+     */
+    static final int DEFLATE = 1;
+
+    /**
+     * Suffix appended to the name of TAR entries containing a compressed
+     * segment.
+     */
+    static final String DEFLATE_SUFFIX = ".z";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Compress a segment. Compression is only worth the additional work on
+     * the read path if it saves at least an eighth of the original size, so
+     * this method gives up as soon as the compressed output exceeds that
+     * threshold.
+     *
+     * @param data   The buffer containing the segment.
+     * @param offset The offset of the segment in the buffer.
+     * @param size   The size of the segment.
+     * @return The compressed segment, or {@code null} if compressing the
+     * segment doesn't pay off.
+     */
+    static byte[] compress(byte[] data, int offset, int size) {
+        byte[] buffer = new byte[size - size / 8];
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data, offset, size);
+            deflater.finish();
+            int length = 0;
+            while (!deflater.finished() && length < buffer.length) {
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            if (!deflater.finished()) {
+                return null;
+            }
+            return Arrays.copyOf(buffer, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompress a segment whose uncompressed length is known, as it is the
+     * case when the segment is read through the TAR index.
+     *
+     * @param compression The compression format of the segment.
+     * @param data        The compressed segment. Its position is not
+     *                    modified.
+     * @param length      The uncompressed length of the segment.
+     * @return A buffer containing the uncompressed segment.
+     * @throws IOException If the compression format is unknown or if the
+     *                     segment can't be decompressed.
+     */
+    static ByteBuffer decompress(int compression, ByteBuffer data, int length) throws IOException {
+        if (compression != DEFLATE) {
+            throw new IOException("Unsupported segment compression " + compression);
+        }
+
+        byte[] input = new byte[data.remaining()];
+        data.duplicate().get(input);
+
+        // One spare byte to detect segments longer than expected
+        byte[] output = new byte[length + 1];
+        int n = inflate(input, output);
+        if (n != length) {
+            throw new IOException("Invalid length of decompressed segment: expected " + length + ", got " + n);
+        }
+        return ByteBuffer.wrap(output, 0, length).slice();
+    }
+
+    /**
+     * Decompress a segment whose uncompressed length is not known. This is
+     * used when recovering entries from a TAR file without an index.
+     *
+     * @param data The compressed segment.
+     * @return The uncompressed segment.
+     * @throws IOException If the segment can't be decompressed.
+     */
+    static byte[] decompress(byte[] data) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated compressed segment");
+                }
+                output.write(buffer, 0, n);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid compressed segment", e);
+        } finally {
+            inflater.end();
+        }
+        return output.toByteArray();
+    }
+
+    private static int inflate(byte[] input, byte[] output) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            int length = 0;
+            while (!inflater.finished() && length < output.length) {
+                int n = inflater.inflate(output, length, output.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated compressed segment");
+                }
+                length += n;
+            }
+            return length;
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid compressed segment", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+}
@@ -51,7 +51,7 @@ public class SegmentTarManager implements SegmentArchiveManager {
      * Pattern of the segment entry names. Note the trailing (\\..*)? group
      * that's included for compatibility with possible future extensions.
      */
-    private static final Pattern NAME_PATTERN = Pattern.compile(
+    static final Pattern NAME_PATTERN = Pattern.compile(
             "([0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12})"
                     + "(\\.([0-9a-f]{8}))?(\\..*)?");
 
@@ -65,11 +65,18 @@ public class SegmentTarManager implements SegmentArchiveManager {
 
     private final boolean memoryMapping;
 
+    private final boolean compressSegments;
+
     public SegmentTarManager(File segmentstoreDir, FileStoreMonitor fileStoreMonitor, IOMonitor ioMonitor, boolean memoryMapping) {
+        this(segmentstoreDir, fileStoreMonitor, ioMonitor, memoryMapping, false);
+    }
+
+    public SegmentTarManager(File segmentstoreDir, FileStoreMonitor fileStoreMonitor, IOMonitor ioMonitor, boolean memoryMapping, boolean compressSegments) {
         this.segmentstoreDir = segmentstoreDir;
         this.fileStoreMonitor = fileStoreMonitor;
         this.ioMonitor = ioMonitor;
         this.memoryMapping = memoryMapping;
+        this.compressSegments = compressSegments;
     }
 
     @Override
@@ -122,7 +129,7 @@ public class SegmentTarManager implements SegmentArchiveManager {
 
     @Override
     public SegmentArchiveWriter create(String archiveName) {
-        return new SegmentTarWriter(new File(segmentstoreDir, archiveName), fileStoreMonitor, ioMonitor);
+        return new SegmentTarWriter(new File(segmentstoreDir, archiveName), fileStoreMonitor, ioMonitor, compressSegments);
     }
 
     @Override
@@ -245,6 +252,16 @@ public class SegmentTarManager implements SegmentArchiveManager {
                         }
                     }
 
+                    if (SegmentCompression.DEFLATE_SUFFIX.equals(matcher.group(4))) {
+                        try {
+                            data = SegmentCompression.decompress(data);
+                        } catch (IOException e) {
+                            log.warn("Unable to decompress entry {} of tar file {}, skipping...",
+                                    name, file, e);
+                            continue;
+                        }
+                    }
+
                     entries.put(id, data);
                 }
             } else if (!name.equals(file.getName() + ".idx")) {
@@ -38,8 +38,13 @@ import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.zip.CRC32;
 
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.apache.jackrabbit.oak.segment.file.tar.SegmentTarManager.NAME_PATTERN;
 import static org.apache.jackrabbit.oak.segment.file.tar.SegmentTarWriter.getPaddingSize;
 import static org.apache.jackrabbit.oak.segment.file.tar.TarConstants.BLOCK_SIZE;
 import static org.apache.jackrabbit.oak.segment.file.tar.index.IndexLoader.newIndexLoader;
@@ -82,9 +87,56 @@ public class SegmentTarReader implements SegmentArchiveReader {
         ByteBuffer buffer = access.read(indexEntry.getPosition(), indexEntry.getLength());
         long elapsed = stopwatch.elapsed(TimeUnit.NANOSECONDS);
         ioMonitor.afterSegmentRead(file, msb, lsb, indexEntry.getLength(), elapsed);
+        if (indexEntry.getCompression() != SegmentCompression.NONE) {
+            return SegmentCompression.decompress(indexEntry.getCompression(), buffer, indexEntry.getUncompressedLength());
+        }
         return buffer;
     }
 
+    /**
+     * Verify the content of a segment against the CRC32 checksum recorded in
+     * the name of its TAR entry. The checksum is computed over the content
+     * as stored, i.e. before decompression.
+     *
+     * @param msb the most significant bits of the segment id
+     * @param lsb the least significant bits of the segment id
+     * @return {@code null} if the content matches the checksum or if the
+     * entry doesn't record a checksum, a description of the mismatch
+     * otherwise.
+     * @throws IOException if the entry can't be read
+     */
+    String verifySegment(long msb, long lsb) throws IOException {
+        int i = index.findEntry(msb, lsb);
+        if (i == -1) {
+            return "Segment not found";
+        }
+        IndexEntry indexEntry = index.entry(i);
+
+        ByteBuffer header = access.read(indexEntry.getPosition() - BLOCK_SIZE, BLOCK_SIZE);
+        byte[] name = new byte[100];
+        header.get(name);
+        int n = 0;
+        while (n < name.length && name[n] != 0) {
+            n++;
+        }
+        String entryName = new String(name, 0, n, US_ASCII);
+        Matcher matcher = NAME_PATTERN.matcher(entryName);
+        if (!matcher.matches() || !matcher.group(1).equals(new UUID(msb, lsb).toString())) {
+            return "Unexpected entry name " + entryName;
+        }
+        if (matcher.group(3) == null) {
+            return null;
+        }
+
+        CRC32 checksum = new CRC32();
+        checksum.update(access.read(indexEntry.getPosition(), indexEntry.getLength()));
+        long expected = Long.parseLong(matcher.group(3), 16);
+        if (checksum.getValue() != expected) {
+            return String.format("Checksum mismatch: expected %08x, actual %08x", expected, checksum.getValue());
+        }
+        return null;
+    }
+
     @Override
     public boolean containsSegment(long msb, long lsb) {
         return index.findEntry(msb, lsb) != -1;
@@ -84,18 +84,42 @@ public class SegmentTarWriter implements SegmentArchiveWriter {
 
     private volatile long length;
 
+    /**
+     * Whether segments should be compressed before being written, see {@link
+     * SegmentCompression}.
+     */
+    private final boolean compressSegments;
+
     public SegmentTarWriter(File file, FileStoreMonitor monitor, IOMonitor ioMonitor) {
+        this(file, monitor, ioMonitor, false);
+    }
+
+    public SegmentTarWriter(File file, FileStoreMonitor monitor, IOMonitor ioMonitor, boolean compressSegments) {
         this.file = file;
         this.monitor = monitor;
         this.ioMonitor = ioMonitor;
+        this.compressSegments = compressSegments;
     }
 
     @Override
     public void writeSegment(long msb, long lsb, byte[] data, int offset, int size, int generation, int fullGeneration, boolean compacted) throws IOException {
         UUID uuid = new UUID(msb, lsb);
+        int uncompressedSize = size;
+        int compression = SegmentCompression.NONE;
+        String suffix = "";
+
+        byte[] compressed = compressSegments ? SegmentCompression.compress(data, offset, size) : null;
+        if (compressed != null) {
+            data = compressed;
+            offset = 0;
+            size = compressed.length;
+            compression = SegmentCompression.DEFLATE;
+            suffix = SegmentCompression.DEFLATE_SUFFIX;
+        }
+
         CRC32 checksum = new CRC32();
         checksum.update(data, offset, size);
-        String entryName = String.format("%s.%08x", uuid, checksum.getValue());
+        String entryName = String.format("%s.%08x%s", uuid, checksum.getValue(), suffix);
         byte[] header = newEntryHeader(entryName, size);
 
         log.debug("Writing segment {} to {}", uuid, file);
@@ -127,7 +151,7 @@ public class SegmentTarWriter implements SegmentArchiveWriter {
 
         length = currentLength;
 
-        index.put(new UUID(msb, lsb), new SimpleIndexEntry(msb, lsb, (int) dataOffset, size, generation, fullGeneration, compacted));
+        index.put(new UUID(msb, lsb), new SimpleIndexEntry(msb, lsb, (int) dataOffset, size, generation, fullGeneration, compacted, compression, uncompressedSize));
     }
 
     @Override
@@ -140,6 +164,9 @@ public class SegmentTarWriter implements SegmentArchiveWriter {
         ByteBuffer data = ByteBuffer.allocate(indexEntry.getLength());
         channel.read(data, indexEntry.getPosition());
         data.rewind();
+        if (indexEntry.getCompression() != SegmentCompression.NONE) {
+            return SegmentCompression.decompress(indexEntry.getCompression(), data, indexEntry.getUncompressedLength());
+        }
         return data;
     }
 
@@ -197,7 +224,9 @@ public class SegmentTarWriter implements SegmentArchiveWriter {
                     entry.getLength(),
                     entry.getGeneration(),
                     entry.getFullGeneration(),
-                    entry.isCompacted()
+                    entry.isCompacted(),
+                    entry.getCompression(),
+                    entry.getUncompressedLength()
             );
         }
 
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Verification of the content of the segments stored in an archive. This
+ * reads the segments straight from the archive, bypassing the segment cache
+ * and without parsing records, and is therefore suited to scanning a whole
+ * segment store. Distinct archives can be verified concurrently.
+ */
+public final class TarChecksums {
+
+    /**
+     * Receives the outcome of the verification of each segment.
+     */
+    public interface Listener {
+
+        /**
+         * Called once for every segment of the archive being verified.
+         *
+         * @param id      the id of the segment
+         * @param length  the length of the segment as stored in the archive
+         * @param failure {@code null} if the segment was verified
+         *                successfully, a description of the failure otherwise
+         */
+        void onSegment(@NotNull UUID id, int length, @Nullable String failure);
+
+    }
+
+    private TarChecksums() {
+        // Prevent instantiation.
+    }
+
+    /**
+     * Verify every segment of an archive. The archive is opened read-only and
+     * is never recovered or rewritten, even if its index is invalid.
+     *
+     * @param archiveManager the manager of the archives of the segment store
+     * @param archiveName    the name of the archive to verify
+     * @param listener       receives the outcome of the verification of each
+     *                       segment
+     * @throws IOException if the archive can't be opened
+     */
+    public static void verify(
+            @NotNull SegmentArchiveManager archiveManager,
+            @NotNull String archiveName,
+            @NotNull Listener listener
+    ) throws IOException {
+        try (TarReader reader = TarReader.open(archiveName, archiveManager)) {
+            reader.verifyEntries(listener);
+        }
+    }
+
+}
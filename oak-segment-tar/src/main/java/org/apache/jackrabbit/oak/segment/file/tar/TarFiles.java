@@ -22,12 +22,19 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.base.Throwables.propagateIfPossible;
+import static com.google.common.collect.Sets.newConcurrentHashSet;
 import static com.google.common.collect.Sets.newHashSet;
+import static java.lang.Thread.currentThread;
 import static java.util.Collections.emptySet;
+import static java.util.concurrent.Executors.defaultThreadFactory;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -41,6 +48,13 @@ import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
@@ -50,6 +64,7 @@ import java.util.regex.Pattern;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import org.apache.jackrabbit.oak.segment.file.FileReaper;
+import org.apache.jackrabbit.oak.segment.file.tar.binaries.BinaryReferencesIndex;
 import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitor;
 import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitorAdapter;
 import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
@@ -84,6 +99,12 @@ public class TarFiles implements Closeable {
 
         private Set<UUID> reclaimedSegmentIds;
 
+        private long markTime;
+
+        private long sweepTime;
+
+        private long swapTime;
+
         private CleanupResult() {
             // Prevent external instantiation.
         }
@@ -104,6 +125,30 @@ public class TarFiles implements Closeable {
             return interrupted;
         }
 
+        /**
+         * @return the time in milliseconds spent loading the graphs of the TAR
+         * files and marking the reclaimable segments.
+         */
+        public long getMarkTime() {
+            return markTime;
+        }
+
+        /**
+         * @return the time in milliseconds spent rewriting the TAR files
+         * containing reclaimable segments.
+         */
+        public long getSweepTime() {
+            return sweepTime;
+        }
+
+        /**
+         * @return the time in milliseconds spent replacing the swept TAR files
+         * and closing the replaced ones.
+         */
+        public long getSwapTime() {
+            return swapTime;
+        }
+
     }
 
     public static class Builder {
@@ -124,6 +169,10 @@ public class TarFiles implements Closeable {
 
         private SegmentNodeStorePersistence persistence;
 
+        private int cleanupThreads = 1;
+
+        private boolean binaryReferencesSet;
+
         private Builder() {
             // Prevent external instantiation.
         }
@@ -169,6 +218,27 @@ public class TarFiles implements Closeable {
             return this;
         }
 
+        /**
+         * Number of threads used by {@link TarFiles#cleanup(CleanupContext)}
+         * to load the graphs of the TAR files and to rewrite them. Defaults
+         * to {@code 1}, which performs the cleanup in the calling thread.
+         */
+        public Builder withCleanupThreads(int cleanupThreads) {
+            checkArgument(cleanupThreads > 0);
+            this.cleanupThreads = cleanupThreads;
+            return this;
+        }
+
+        /**
+         * Maintain a persisted set of the binary references of the TAR files
+         * in the directory, to speed up {@link TarFiles#collectBlobReferences(Consumer,
+         * Predicate)}. This setting has no effect in read-only mode.
+         */
+        public Builder withBinaryReferencesSet(boolean binaryReferencesSet) {
+            this.binaryReferencesSet = binaryReferencesSet;
+            return this;
+        }
+
         public TarFiles build() throws IOException {
             checkState(directory != null, "Directory not specified");
             checkState(tarRecovery != null, "TAR recovery strategy not specified");
@@ -209,6 +279,14 @@ public class TarFiles implements Closeable {
             return readOnly;
         }
 
+        public int getCleanupThreads() {
+            return cleanupThreads;
+        }
+
+        public boolean isBinaryReferencesSet() {
+            return binaryReferencesSet;
+        }
+
         private SegmentArchiveManager buildArchiveManager() throws IOException {
             return persistence.createArchiveManager(memoryMapping, ioMonitor, readOnly && fileStoreMonitor == null ? new FileStoreMonitorAdapter() : fileStoreMonitor);
         }
@@ -284,12 +362,29 @@ public class TarFiles implements Closeable {
         return dataFiles;
     }
 
+    private static BinaryReferencesSet openBinaryReferencesSet(File directory) {
+        try {
+            return BinaryReferencesSet.open(directory);
+        } catch (IOException e) {
+            log.warn("Unable to open the binary references set, binary references will be read from the TAR files", e);
+            return null;
+        }
+    }
+
     public static Builder builder() {
         return new Builder();
     }
 
     private final long maxFileSize;
 
+    private final int cleanupThreads;
+
+    /**
+     * Persisted binary references of the TAR files, or {@code null} if
+     * disabled.
+     */
+    private final BinaryReferencesSet binaryReferencesSet;
+
     private SegmentArchiveManager archiveManager;
 
     /**
@@ -315,6 +410,13 @@ public class TarFiles implements Closeable {
      */
     private TarWriter writer;
 
+    /**
+     * Maps every segment in {@link #readers} to the TAR reader containing it.
+     * It must be kept consistent with {@link #readers}, and its access is
+     * protected by {@link #lock}.
+     */
+    private final TarReaderIndex segmentIndex = new TarReaderIndex();
+
     /**
      * If {@code true}, a user requested this instance to close. This flag is
      * used in long running, background operations - like {@link
@@ -324,6 +426,7 @@ public class TarFiles implements Closeable {
 
     private TarFiles(Builder builder) throws IOException {
         maxFileSize = builder.maxFileSize;
+        cleanupThreads = builder.cleanupThreads;
         archiveManager = builder.buildArchiveManager();
 
         Map<Integer, Map<Character, String>> map = collectFiles(archiveManager);
@@ -343,15 +446,18 @@ public class TarFiles implements Closeable {
                 r = TarReader.open(map.get(index), builder.tarRecovery, archiveManager);
             }
             readers = new Node(r, readers);
+            segmentIndex.addAll(r);
         }
         if (builder.readOnly) {
+            binaryReferencesSet = null;
             return;
         }
+        binaryReferencesSet = builder.binaryReferencesSet ? openBinaryReferencesSet(builder.directory) : null;
         int writeNumber = 0;
         if (indices.length > 0) {
             writeNumber = indices[indices.length - 1] + 1;
         }
-        writer = new TarWriter(archiveManager, writeNumber);
+        writer = new TarWriter(archiveManager, writeNumber, binaryReferencesSet);
     }
 
     public void close() throws IOException {
@@ -479,8 +585,6 @@ public class TarFiles implements Closeable {
     }
 
     public boolean containsSegment(long msb, long lsb) {
-        Node head;
-
         lock.readLock().lock();
         try {
             if (writer != null) {
@@ -488,22 +592,15 @@ public class TarFiles implements Closeable {
                     return true;
                 }
             }
-            head = readers;
+            return segmentIndex.get(msb, lsb) != null;
         } finally {
             lock.readLock().unlock();
         }
-
-        for (TarReader reader : iterable(head)) {
-            if (reader.containsEntry(msb, lsb)) {
-                return true;
-            }
-        }
-        return false;
     }
 
     public ByteBuffer readSegment(long msb, long lsb) {
         try {
-            Node head;
+            TarReader reader;
 
             lock.readLock().lock();
             try {
@@ -513,16 +610,13 @@ public class TarFiles implements Closeable {
                         return b;
                     }
                 }
-                head = readers;
+                reader = segmentIndex.get(msb, lsb);
             } finally {
                 lock.readLock().unlock();
             }
 
-            for (TarReader reader : iterable(head)) {
-                ByteBuffer b = reader.readEntry(msb, lsb);
-                if (b != null) {
-                    return b;
-                }
+            if (reader != null) {
+                return reader.readEntry(msb, lsb);
             }
         } catch (IOException e) {
             log.warn("Unable to read from TAR file", e);
@@ -565,7 +659,8 @@ public class TarFiles implements Closeable {
      * TAR writer as a TAR reader, and adds the TAR reader to the linked list.
      * <p>
      * This method must be invoked while holding {@link #lock} in write mode,
-     * because it modifies the references {@link #writer} and {@link #readers}.
+     * because it modifies the references {@link #writer} and {@link #readers}
+     * and the {@link #segmentIndex}.
      *
      * @throws IOException If an error occurs while operating on the TAR readers
      *                     or the TAR writer.
@@ -575,7 +670,9 @@ public class TarFiles implements Closeable {
         if (newWriter == writer) {
             return;
         }
-        readers = new Node(TarReader.open(writer.getFileName(), archiveManager), readers);
+        TarReader reader = TarReader.open(writer.getFileName(), archiveManager);
+        readers = new Node(reader, readers);
+        segmentIndex.addAll(reader);
         writer = newWriter;
     }
 
@@ -591,7 +688,7 @@ public class TarFiles implements Closeable {
     public CleanupResult cleanup(CleanupContext context) throws IOException {
         CleanupResult result = new CleanupResult();
         result.removableFiles = new ArrayList<>();
-        result.reclaimedSegmentIds = new HashSet<>();
+        result.reclaimedSegmentIds = newConcurrentHashSet();
 
         Set<UUID> references;
         Node head;
@@ -619,22 +716,33 @@ public class TarFiles implements Closeable {
 
         Set<UUID> reclaim = newHashSet();
 
-        for (TarReader reader : cleaned.keySet()) {
-            if (shutdown) {
+        ExecutorService executor = null;
+        if (cleanupThreads > 1) {
+            executor = newFixedThreadPool(cleanupThreads, new CleanupThreadFactory());
+        }
+
+        try {
+            long t0 = System.nanoTime();
+            if (!mark(new ArrayList<>(cleaned.keySet()), references, reclaim, context, executor)) {
                 result.interrupted = true;
                 return result;
             }
-            reader.mark(references, reclaim, context);
-        }
-
-        for (TarReader reader : cleaned.keySet()) {
-            if (shutdown) {
+            long t1 = System.nanoTime();
+            if (!sweep(cleaned, reclaim, result.reclaimedSegmentIds, executor)) {
                 result.interrupted = true;
                 return result;
             }
-            cleaned.put(reader, reader.sweep(reclaim, result.reclaimedSegmentIds));
+            long t2 = System.nanoTime();
+            result.markTime = NANOSECONDS.toMillis(t1 - t0);
+            result.sweepTime = NANOSECONDS.toMillis(t2 - t1);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
         }
 
+        long t0 = System.nanoTime();
+
         Node closeables;
         long reclaimed;
 
@@ -705,6 +813,7 @@ public class TarFiles implements Closeable {
             try {
                 if (readers == head) {
                     readers = swept;
+                    updateSegmentIndex(cleaned, swept);
                     break;
                 } else {
                     head = readers;
@@ -725,9 +834,106 @@ public class TarFiles implements Closeable {
             result.removableFiles.add(closeable.getFileName());
         }
 
+        result.swapTime = NANOSECONDS.toMillis(System.nanoTime() - t0);
+
         return result;
     }
 
+    /**
+     * Mark the reclaimable segments of the TAR readers, from the newest to the
+     * oldest. References to bulk segments propagate from newer to older TAR
+     * readers, so the marking itself is sequential. The graphs of the TAR
+     * readers are instead loaded concurrently, up to {@link #cleanupThreads}
+     * TAR readers ahead of the one being marked.
+     *
+     * @return {@code false} if the marking was interrupted by a shutdown.
+     */
+    private boolean mark(List<TarReader> readers, Set<UUID> references, Set<UUID> reclaim, CleanupContext context, ExecutorService executor) throws IOException {
+        List<Future<Map<UUID, List<UUID>>>> graphs = new ArrayList<>(readers.size());
+        for (int i = 0; i < readers.size(); i++) {
+            while (graphs.size() < readers.size() && graphs.size() <= i + cleanupThreads - 1) {
+                TarReader reader = readers.get(graphs.size());
+                graphs.add(submit(executor, reader::getGraph));
+            }
+            if (shutdown) {
+                return false;
+            }
+            Map<UUID, List<UUID>> graph = await(graphs.get(i));
+            graphs.set(i, null);
+            readers.get(i).mark(graph, references, reclaim, context);
+        }
+        return true;
+    }
+
+    /**
+     * Sweep the reclaimable segments from the TAR readers. Every TAR reader is
+     * rewritten independently, so the TAR readers are swept concurrently if
+     * an executor is provided.
+     *
+     * @return {@code false} if the sweeping was interrupted by a shutdown.
+     */
+    private boolean sweep(Map<TarReader, TarReader> cleaned, Set<UUID> reclaim, Set<UUID> reclaimed, ExecutorService executor) throws IOException {
+        Map<TarReader, Future<TarReader>> swept = new LinkedHashMap<>();
+        for (TarReader reader : cleaned.keySet()) {
+            swept.put(reader, submit(executor, () -> shutdown ? reader : reader.sweep(reclaim, reclaimed)));
+        }
+        for (Entry<TarReader, Future<TarReader>> entry : swept.entrySet()) {
+            cleaned.put(entry.getKey(), await(entry.getValue()));
+        }
+        return !shutdown;
+    }
+
+    /**
+     * Run the task with the executor, or in the calling thread if the executor
+     * is {@code null}.
+     */
+    private static <T> Future<T> submit(ExecutorService executor, Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(task);
+        if (executor == null) {
+            future.run();
+        } else {
+            executor.execute(future);
+        }
+        return future;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a cleanup task");
+        } catch (ExecutionException e) {
+            propagateIfPossible(e.getCause(), IOException.class);
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Point the {@link #segmentIndex} to the swept TAR readers. The mappings
+     * of the replaced TAR readers are removed first. The TAR readers created
+     * by the cleanup are then added from the newest to the oldest, without
+     * overriding existing mappings, so that segments contained in more than
+     * one TAR reader keep pointing to the newest one. This method must be
+     * invoked while holding {@link #lock} in write mode.
+     */
+    private void updateSegmentIndex(Map<TarReader, TarReader> cleaned, Node swept) {
+        Set<TarReader> added = new HashSet<>();
+        for (Entry<TarReader, TarReader> entry : cleaned.entrySet()) {
+            if (entry.getValue() != entry.getKey()) {
+                segmentIndex.removeAll(entry.getKey());
+                if (entry.getValue() != null) {
+                    added.add(entry.getValue());
+                }
+            }
+        }
+        for (TarReader reader : iterable(swept)) {
+            if (added.contains(reader)) {
+                segmentIndex.addAllIfAbsent(reader);
+            }
+        }
+    }
+
     public void collectBlobReferences(Consumer<String> collector, Predicate<GCGeneration> reclaim) throws IOException {
         Node head;
         lock.writeLock().lock();
@@ -740,8 +946,43 @@ public class TarFiles implements Closeable {
             lock.writeLock().unlock();
         }
 
+        if (binaryReferencesSet == null) {
+            for (TarReader reader : iterable(head)) {
+                reader.collectBlobReferences(collector, reclaim);
+            }
+            return;
+        }
+
+        // TAR files written before the binary references set was enabled, or
+        // rewritten by a cleanup, are added to the set the first time their
+        // binary references are collected.
+
+        Map<String, TarReader> archives = new LinkedHashMap<>();
         for (TarReader reader : iterable(head)) {
-            reader.collectBlobReferences(collector, reclaim);
+            archives.put(reader.getFileName(), reader);
+            if (binaryReferencesSet.contains(reader.getFileName())) {
+                continue;
+            }
+            BinaryReferencesIndex index = reader.getBinaryReferences();
+            if (index == null) {
+                continue;
+            }
+            try {
+                binaryReferencesSet.add(reader.getFileName(), index::forEachGeneration);
+            } catch (IOException e) {
+                log.warn("Unable to add the binary references of {} to the binary references set", reader.getFileName(), e);
+            }
+        }
+
+        Set<String> missing;
+        try {
+            missing = binaryReferencesSet.collect(archives.keySet(), reclaim, collector);
+        } catch (IOException e) {
+            log.warn("Unable to read the binary references set, reading the binary references of every TAR file instead", e);
+            missing = archives.keySet();
+        }
+        for (String name : missing) {
+            archives.get(name).collectBlobReferences(collector, reclaim);
         }
     }
 
@@ -817,4 +1058,21 @@ public class TarFiles implements Closeable {
     public FileReaper createFileReaper() {
         return new FileReaper(archiveManager);
     }
+
+    private static class CleanupThreadFactory implements ThreadFactory {
+
+        private final ThreadFactory threadFactory = defaultThreadFactory();
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+            Thread thread = threadFactory.newThread(runnable);
+            thread.setName("TarMK cleanup " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
 }
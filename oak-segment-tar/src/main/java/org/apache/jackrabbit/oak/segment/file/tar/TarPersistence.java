@@ -49,13 +49,27 @@ public class TarPersistence implements SegmentNodeStorePersistence {
 
     private final File directory;
 
+    private final boolean compressSegments;
+
     public TarPersistence(File directory) {
+        this(directory, false);
+    }
+
+    /**
+     * @param directory        The directory containing the TAR files.
+     * @param compressSegments Whether segments written to new TAR files should
+     *                         be compressed. Compressed TAR files can't be
+     *                         read by versions not aware of the compressed
+     *                         index format.
+     */
+    public TarPersistence(File directory, boolean compressSegments) {
         this.directory = directory;
+        this.compressSegments = compressSegments;
     }
 
     @Override
     public SegmentArchiveManager createArchiveManager(boolean memoryMapping, IOMonitor ioMonitor, FileStoreMonitor fileStoreMonitor) {
-        return new SegmentTarManager(directory, fileStoreMonitor, ioMonitor, memoryMapping);
+        return new SegmentTarManager(directory, fileStoreMonitor, ioMonitor, memoryMapping, compressSegments);
     }
 
     @Override
@@ -42,6 +42,7 @@ import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import com.google.common.base.Predicate;
+import org.apache.jackrabbit.oak.segment.SegmentId;
 import org.apache.jackrabbit.oak.segment.file.tar.binaries.BinaryReferencesIndexLoader;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveEntry;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
@@ -320,6 +321,46 @@ public class TarReader implements Closeable {
         return entryList.toArray(new SegmentArchiveEntry[entryList.size()]);
     }
 
+    /**
+     * Read every segment of this TAR file and verify its content. Segments
+     * of TAR files are verified against the checksum recorded in their TAR
+     * entry. For other archives, data segments are checked to be readable and
+     * to start with a valid segment signature.
+     *
+     * @param listener receives the outcome of the verification of each
+     *                 segment.
+     */
+    void verifyEntries(TarChecksums.Listener listener) {
+        for (SegmentArchiveEntry entry : archive.listSegments()) {
+            String failure;
+            try {
+                failure = verifyEntry(entry.getMsb(), entry.getLsb());
+            } catch (IOException | RuntimeException e) {
+                failure = e.toString();
+            }
+            listener.onSegment(new UUID(entry.getMsb(), entry.getLsb()), entry.getLength(), failure);
+        }
+    }
+
+    private String verifyEntry(long msb, long lsb) throws IOException {
+        if (archive instanceof SegmentTarReader) {
+            return ((SegmentTarReader) archive).verifySegment(msb, lsb);
+        }
+        ByteBuffer buffer = archive.readSegment(msb, lsb);
+        if (buffer == null) {
+            return "Segment not found";
+        }
+        if (SegmentId.isDataSegmentId(lsb)) {
+            if (buffer.remaining() < 3
+                    || buffer.get(buffer.position()) != '0'
+                    || buffer.get(buffer.position() + 1) != 'a'
+                    || buffer.get(buffer.position() + 2) != 'K') {
+                return "Invalid segment signature";
+            }
+        }
+        return null;
+    }
+
     /**
      * Read the references of an entry in this TAR file.
      *
@@ -404,7 +445,21 @@ public class TarReader implements Closeable {
      * @param context     An instance of {@link CleanupContext}.
      */
     void mark(Set<UUID> references, Set<UUID> reclaimable, CleanupContext context) throws IOException {
-        Map<UUID, List<UUID>> graph = getGraph();
+        mark(getGraph(), references, reclaimable, context);
+    }
+
+    /**
+     * Same as {@link #mark(Set, Set, CleanupContext)}, but using a graph
+     * previously loaded by {@link #getGraph()}. This allows the graphs of
+     * multiple TAR files to be loaded concurrently, while the marking itself
+     * still happens one TAR file at a time.
+     *
+     * @param graph       The graph of this TAR file.
+     * @param references  The set of bulk segments to keep.
+     * @param reclaimable The set of segments to remove.
+     * @param context     An instance of {@link CleanupContext}.
+     */
+    void mark(Map<UUID, List<UUID>> graph, Set<UUID> references, Set<UUID> reclaimable, CleanupContext context) {
         SegmentArchiveEntry[] entries = getEntries();
         for (int i = entries.length - 1; i >= 0; i--) {
             // A bulk segments is *always* written before any data segment referencing it.
@@ -517,10 +572,13 @@ public class TarReader implements Closeable {
             if (entry != null) {
                 long msb = entry.getMsb();
                 long lsb = entry.getLsb();
-                int size = entry.getLength();
                 GCGeneration gen = GCGeneration.newGCGeneration(entry);
+                ByteBuffer buffer = archive.readSegment(msb, lsb);
+                // The entry length is the stored one, which differs from the
+                // length of the segment if the segment is compressed.
+                int size = buffer.remaining();
                 byte[] data = new byte[size];
-                archive.readSegment(msb, lsb).get(data);
+                buffer.get(data);
                 writer.writeEntry(msb, lsb, data, 0, size, gen);
             }
         }
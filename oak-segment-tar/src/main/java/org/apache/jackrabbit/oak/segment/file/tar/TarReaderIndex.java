@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import java.util.UUID;
+
+/**
+ * Store-wide lookup table mapping segment identifiers to the {@link
+ * TarReader} containing them. This allows {@link TarFiles} to locate a
+ * segment with a single probe instead of querying the index of every TAR
+ * reader in turn.
+ * <p>
+ * The table uses open addressing with linear probing. Segment identifiers are
+ * kept in primitive arrays, so no objects are allocated per entry.
+ * <p>
+ * Instances of this class are <em>not</em> thread safe. {@link TarFiles}
+ * guards every access with its own lock.
+ */
+class TarReaderIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] msbs = new long[INITIAL_CAPACITY];
+
+    private long[] lsbs = new long[INITIAL_CAPACITY];
+
+    private TarReader[] readers = new TarReader[INITIAL_CAPACITY];
+
+    private int size;
+
+    /**
+     * Map every segment contained in {@code reader} to {@code reader},
+     * replacing existing mappings for the same segments.
+     */
+    void addAll(TarReader reader) {
+        for (UUID id : reader.getUUIDs()) {
+            put(id.getMostSignificantBits(), id.getLeastSignificantBits(), reader);
+        }
+    }
+
+    /**
+     * Map every segment contained in {@code reader} to {@code reader}, unless
+     * the segment is already mapped to a different reader.
+     */
+    void addAllIfAbsent(TarReader reader) {
+        for (UUID id : reader.getUUIDs()) {
+            long msb = id.getMostSignificantBits();
+            long lsb = id.getLeastSignificantBits();
+            if (get(msb, lsb) == null) {
+                put(msb, lsb, reader);
+            }
+        }
+    }
+
+    /**
+     * Remove the mappings of every segment contained in {@code reader}, unless
+     * the segment has been mapped to a different reader in the meantime.
+     */
+    void removeAll(TarReader reader) {
+        for (UUID id : reader.getUUIDs()) {
+            remove(id.getMostSignificantBits(), id.getLeastSignificantBits(), reader);
+        }
+    }
+
+    void put(long msb, long lsb, TarReader reader) {
+        if (size + 1 > readers.length * 3 / 4) {
+            resize(readers.length * 2);
+        }
+
+        int i = find(msb, lsb);
+
+        if (readers[i] == null) {
+            msbs[i] = msb;
+            lsbs[i] = lsb;
+            size++;
+        }
+
+        readers[i] = reader;
+    }
+
+    TarReader get(long msb, long lsb) {
+        return readers[find(msb, lsb)];
+    }
+
+    void remove(long msb, long lsb, TarReader reader) {
+        int i = find(msb, lsb);
+
+        if (readers[i] == null || readers[i] != reader) {
+            return;
+        }
+
+        readers[i] = null;
+        size--;
+
+        // Shift back the entries following the removed one, so that every
+        // remaining entry stays reachable from its home slot.
+
+        int mask = readers.length - 1;
+        int j = i;
+
+        while (true) {
+            j = (j + 1) & mask;
+
+            if (readers[j] == null) {
+                return;
+            }
+
+            int home = slot(msbs[j], lsbs[j], mask);
+
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                msbs[i] = msbs[j];
+                lsbs[i] = lsbs[j];
+                readers[i] = readers[j];
+                readers[j] = null;
+                i = j;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int find(long msb, long lsb) {
+        int mask = readers.length - 1;
+        int i = slot(msb, lsb, mask);
+
+        while (readers[i] != null && (msbs[i] != msb || lsbs[i] != lsb)) {
+            i = (i + 1) & mask;
+        }
+
+        return i;
+    }
+
+    private void resize(int capacity) {
+        long[] oldMsbs = msbs;
+        long[] oldLsbs = lsbs;
+        TarReader[] oldReaders = readers;
+
+        msbs = new long[capacity];
+        lsbs = new long[capacity];
+        readers = new TarReader[capacity];
+
+        for (int i = 0; i < oldReaders.length; i++) {
+            if (oldReaders[i] != null) {
+                int j = find(oldMsbs[i], oldLsbs[i]);
+                msbs[j] = oldMsbs[i];
+                lsbs[j] = oldLsbs[i];
+                readers[j] = oldReaders[i];
+            }
+        }
+    }
+
+    private static int slot(long msb, long lsb, int mask) {
+        long h = msb ^ (lsb * 0x9E3779B97F4A7C15L);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+}
@@ -75,6 +75,12 @@ class TarWriter implements Closeable {
 
     private final SegmentArchiveWriter archive;
 
+    /**
+     * Receives the binary references of this TAR file when it is closed, or
+     * {@code null}.
+     */
+    private final BinaryReferencesSet binaryReferencesSet;
+
     /** This object is used as an additional
      *  synchronization point by {@link #flush()} and {@link #close()} to
      *  allow {@link #flush()} to work concurrently with normal reads and
@@ -89,12 +95,18 @@ class TarWriter implements Closeable {
         this.archiveManager = archiveManager;
         this.archive = archiveManager.create(archiveName);
         this.writeIndex = -1;
+        this.binaryReferencesSet = null;
     }
 
     TarWriter(SegmentArchiveManager archiveManager, int writeIndex) throws IOException {
+        this(archiveManager, writeIndex, null);
+    }
+
+    TarWriter(SegmentArchiveManager archiveManager, int writeIndex, BinaryReferencesSet binaryReferencesSet) throws IOException {
         this.archiveManager = archiveManager;
         this.archive = archiveManager.create(format(FILE_NAME_FORMAT, writeIndex, "a"));
         this.writeIndex = writeIndex;
+        this.binaryReferencesSet = binaryReferencesSet;
     }
 
     synchronized boolean containsEntry(long msb, long lsb) {
@@ -209,6 +221,14 @@ class TarWriter implements Closeable {
 
             archive.close();
         }
+
+        if (binaryReferencesSet != null) {
+            try {
+                binaryReferencesSet.add(archive.getName(), binaryReferences::forEachGeneration);
+            } catch (IOException e) {
+                log.warn("Unable to add the binary references of {} to the binary references set", archive.getName(), e);
+            }
+        }
     }
 
     /**
@@ -227,7 +247,7 @@ class TarWriter implements Closeable {
         }
         close();
         int newIndex = writeIndex + 1;
-        return new TarWriter(archiveManager, newIndex);
+        return new TarWriter(archiveManager, newIndex, binaryReferencesSet);
     }
 
     private void writeBinaryReferences() throws IOException {
@@ -17,6 +17,7 @@
 
 package org.apache.jackrabbit.oak.segment.file.tar.binaries;
 
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -48,6 +49,27 @@ public class BinaryReferencesIndex {
 
     }
 
+    /**
+     * A consumer of the binary references from an index, grouped by
+     * generation and deduplicated across segments.
+     */
+    public interface GenerationConsumer {
+
+        /**
+         * Consume the binary references of a generation.
+         *
+         * @param generation The generation of the segments containing the
+         *                   binary references.
+         * @param full       The full generation of the segments containing
+         *                   the binary references.
+         * @param compacted  {@code true} if the segments were created by a
+         *                   compaction operation.
+         * @param references The distinct binary references of the generation.
+         */
+        void consume(int generation, int full, boolean compacted, Set<String> references);
+
+    }
+
     private final Map<Generation, Map<UUID, Set<String>>> references;
 
     BinaryReferencesIndex(Map<Generation, Map<UUID, Set<String>>> references) {
@@ -75,4 +97,17 @@ public class BinaryReferencesIndex {
         });
     }
 
+    /**
+     * Iterate over the binary references in this index, once per generation.
+     *
+     * @param consumer An instance of {@link GenerationConsumer}.
+     */
+    public void forEachGeneration(GenerationConsumer consumer) {
+        references.forEach((generation, entries) -> {
+            Set<String> distinct = new HashSet<>();
+            entries.values().forEach(distinct::addAll);
+            consumer.consume(generation.generation, generation.full, generation.compacted, distinct);
+        });
+    }
+
 }
@@ -69,6 +69,20 @@ public class BinaryReferencesIndexWriter {
             .add(reference);
     }
 
+    /**
+     * Iterate over the binary references added so far, once per generation.
+     *
+     * @param consumer An instance of {@link BinaryReferencesIndex.GenerationConsumer}.
+     */
+    public void forEachGeneration(BinaryReferencesIndex.GenerationConsumer consumer) {
+        for (Entry<Generation, Map<UUID, Set<String>>> be : entries.entrySet()) {
+            Generation generation = be.getKey();
+            Set<String> distinct = new HashSet<>();
+            be.getValue().values().forEach(distinct::addAll);
+            consumer.consume(generation.generation, generation.full, generation.compacted, distinct);
+        }
+    }
+
     /**
      * Write the current state of this instance to an array of bytes.
      *
@@ -75,6 +75,22 @@ public interface IndexEntry extends SegmentArchiveEntry {
      */
     boolean isCompacted();
 
+    /**
+     * Return the compression format of this entry. A value of {@code 0} means
+     * that the entry is stored uncompressed.
+     *
+     * @return the compression format of this entry.
+     */
+    int getCompression();
+
+    /**
+     * Return the length of this entry once decompressed. For uncompressed
+     * entries this is the same as {@link #getLength()}.
+     *
+     * @return the length of this entry once decompressed.
+     */
+    int getUncompressedLength();
+
     Comparator<IndexEntry> POSITION_ORDER = new Comparator<IndexEntry>() {
         @Override
         public int compare(IndexEntry a, IndexEntry b) {
@@ -67,4 +67,14 @@ class IndexEntryV1 implements IndexEntry {
         return true;
     }
 
+    @Override
+    public int getCompression() {
+        return 0;
+    }
+
+    @Override
+    public int getUncompressedLength() {
+        return getLength();
+    }
+
 }
@@ -67,4 +67,14 @@ class IndexEntryV2 implements IndexEntry {
         return index.get(position + 32) != 0;
     }
 
+    @Override
+    public int getCompression() {
+        return 0;
+    }
+
+    @Override
+    public int getUncompressedLength() {
+        return getLength();
+    }
+
 }
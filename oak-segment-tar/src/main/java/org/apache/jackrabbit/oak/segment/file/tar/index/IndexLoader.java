@@ -44,9 +44,12 @@ public class IndexLoader {
 
     private final IndexLoaderV2 v2;
 
+    private final IndexLoaderV3 v3;
+
     private IndexLoader(int blockSize) {
         this.v1 = new IndexLoaderV1(blockSize);
         this.v2 = new IndexLoaderV2(blockSize);
+        this.v3 = new IndexLoaderV3(blockSize);
     }
 
     private static int readMagic(ReaderAtEnd reader) throws IOException {
@@ -71,6 +74,8 @@ public class IndexLoader {
                 return v1.loadIndex(reader);
             case IndexLoaderV2.MAGIC:
                 return v2.loadIndex(reader);
+            case IndexLoaderV3.MAGIC:
+                return v3.loadIndex(reader);
             default:
                 throw new InvalidIndexException("Unrecognized magic number");
         }
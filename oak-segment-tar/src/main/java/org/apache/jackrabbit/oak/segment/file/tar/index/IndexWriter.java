@@ -46,6 +46,10 @@ public class IndexWriter {
 
         boolean isCompacted;
 
+        int compression;
+
+        int uncompressedSize;
+
     }
 
     /**
@@ -84,6 +88,30 @@ public class IndexWriter {
      *                       compaction operation.
      */
     public void addEntry(long msb, long lsb, int offset, int size, int generation, int fullGeneration, boolean isCompacted) {
+        addEntry(msb, lsb, offset, size, generation, fullGeneration, isCompacted, 0, size);
+    }
+
+    /**
+     * Add a possibly compressed entry to this index. As soon as one compressed
+     * entry is added, the index is serialized in a format that older versions
+     * are not able to read.
+     *
+     * @param msb              The most significant bits of the entry
+     *                         identifier.
+     * @param lsb              The least significant bits of the entry
+     *                         identifier.
+     * @param offset           The position of the entry in the file.
+     * @param size             The size of the entry as stored in the file.
+     * @param generation       The generation of the entry.
+     * @param fullGeneration   The full generation of the entry.
+     * @param isCompacted      Whether the entry is generated as part of a
+     *                         compaction operation.
+     * @param compression      The compression format of the entry, or {@code
+     *                         0} if the entry is not compressed.
+     * @param uncompressedSize The size of the entry once decompressed.
+     */
+    public void addEntry(long msb, long lsb, int offset, int size, int generation, int fullGeneration, boolean isCompacted, int compression, int uncompressedSize) {
+        checkArgument(compression >= 0 && compression <= Byte.MAX_VALUE, "Invalid compression");
         Entry entry = new Entry();
         entry.msb = msb;
         entry.lsb = lsb;
@@ -92,6 +120,8 @@ public class IndexWriter {
         entry.generation = generation;
         entry.fullGeneration = fullGeneration;
         entry.isCompacted = isCompacted;
+        entry.compression = compression;
+        entry.uncompressedSize = uncompressedSize;
         entries.add(entry);
     }
 
@@ -103,7 +133,15 @@ public class IndexWriter {
      * @return the serialized content of the index.
      */
     public byte[] write() {
-        int dataSize = entries.size() * IndexEntryV2.SIZE + IndexV2.FOOTER_SIZE;
+        // Stick to the previous format unless it can't represent the entries,
+        // so that uncompressed archives remain readable by older versions.
+        boolean compressed = false;
+        for (Entry entry : entries) {
+            compressed |= entry.compression != 0;
+        }
+
+        int entrySize = compressed ? IndexEntryV3.SIZE : IndexEntryV2.SIZE;
+        int dataSize = entries.size() * entrySize + IndexV2.FOOTER_SIZE;
         int totalSize = ((dataSize + blockSize - 1) / blockSize) * blockSize;
 
         ByteBuffer buffer = ByteBuffer.allocate(totalSize);
@@ -133,6 +171,10 @@ public class IndexWriter {
             buffer.putInt(entry.generation);
             buffer.putInt(entry.fullGeneration);
             buffer.put((byte) (entry.isCompacted ? 1 : 0));
+            if (compressed) {
+                buffer.put((byte) entry.compression);
+                buffer.putInt(entry.uncompressedSize);
+            }
         }
 
         CRC32 checksum = new CRC32();
@@ -141,7 +183,7 @@ public class IndexWriter {
         buffer.putInt((int) checksum.getValue());
         buffer.putInt(entries.size());
         buffer.putInt(totalSize);
-        buffer.putInt(IndexLoaderV2.MAGIC);
+        buffer.putInt(compressed ? IndexLoaderV3.MAGIC : IndexLoaderV2.MAGIC);
 
         return buffer.array();
     }
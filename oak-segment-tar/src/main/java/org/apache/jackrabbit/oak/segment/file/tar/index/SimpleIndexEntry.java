@@ -32,7 +32,15 @@ public class SimpleIndexEntry implements IndexEntry {
 
     private final boolean compacted;
 
+    private final int compression;
+
+    private final int uncompressedLength;
+
     public SimpleIndexEntry(long msb, long lsb, int position, int length, int generation, int fullGeneration, boolean compacted) {
+        this(msb, lsb, position, length, generation, fullGeneration, compacted, 0, length);
+    }
+
+    public SimpleIndexEntry(long msb, long lsb, int position, int length, int generation, int fullGeneration, boolean compacted, int compression, int uncompressedLength) {
         this.msb = msb;
         this.lsb = lsb;
         this.position = position;
@@ -40,6 +48,8 @@ public class SimpleIndexEntry implements IndexEntry {
         this.generation = generation;
         this.fullGeneration = fullGeneration;
         this.compacted = compacted;
+        this.compression = compression;
+        this.uncompressedLength = uncompressedLength;
     }
 
     @Override
@@ -76,4 +86,14 @@ public class SimpleIndexEntry implements IndexEntry {
     public boolean isCompacted() {
         return compacted;
     }
+
+    @Override
+    public int getCompression() {
+        return compression;
+    }
+
+    @Override
+    public int getUncompressedLength() {
+        return uncompressedLength;
+    }
 }
@@ -36,22 +36,40 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
 import java.text.MessageFormat;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import com.google.common.collect.Sets;
 import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.segment.RecordId;
+import org.apache.jackrabbit.oak.segment.RecordIdSet;
 import org.apache.jackrabbit.oak.segment.SegmentBlob;
 import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.segment.SegmentNodeState;
 import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
 import org.apache.jackrabbit.oak.segment.file.FileStore;
 import org.apache.jackrabbit.oak.segment.file.FileStoreBuilder;
@@ -59,8 +77,12 @@ import org.apache.jackrabbit.oak.segment.file.InvalidFileStoreVersionException;
 import org.apache.jackrabbit.oak.segment.file.JournalEntry;
 import org.apache.jackrabbit.oak.segment.file.JournalReader;
 import org.apache.jackrabbit.oak.segment.file.ReadOnlyFileStore;
+import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitorAdapter;
 import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitorAdapter;
 import org.apache.jackrabbit.oak.segment.file.tar.LocalJournalFile;
+import org.apache.jackrabbit.oak.segment.file.tar.TarChecksums;
+import org.apache.jackrabbit.oak.segment.file.tar.TarPersistence;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
 import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 
@@ -75,6 +97,27 @@ public class ConsistencyChecker implements Closeable {
 
     private static final String NO_INDENT = "";
 
+    /**
+     * Maximum heap used to track the binaries whose content was already
+     * scanned. Beyond this limit the tracked binaries spill to a temporary
+     * file.
+     */
+    private static final long CHECKED_BINARIES_MEMORY = Long.getLong("oak.segment.check.binariesMemory", 64 * 1024 * 1024);
+
+    /**
+     * Maximum heap used to track the nodes whose subtree was already checked
+     * by a parallel traversal. Beyond this limit the tracked nodes spill to
+     * temporary files.
+     */
+    private static final long CHECKED_NODES_MEMORY = Long.getLong("oak.segment.check.nodesMemory", 64 * 1024 * 1024);
+
+    /**
+     * Number of child nodes a parallel traversal forks before waiting for
+     * their completion. This bounds the number of pending tasks for nodes
+     * with many children.
+     */
+    private static final int FORK_BATCH_SIZE = 256;
+
     private static class StatisticsIOMonitor extends IOMonitorAdapter {
 
         private final AtomicLong ioOperations = new AtomicLong(0);
@@ -102,12 +145,33 @@ public class ConsistencyChecker implements Closeable {
     
     private final PrintWriter errWriter;
 
-    private int nodeCount;
+    private final AtomicLong nodeCount = new AtomicLong();
     
-    private int propertyCount;
+    private final AtomicLong propertyCount = new AtomicLong();
     
     private int checkCount;
 
+    /**
+     * Binaries shared between revisions, checkpoints and paths are scanned
+     * only once.
+     */
+    private final ConcurrentRecordIdSet checkedBinaries = new ConcurrentRecordIdSet(CHECKED_BINARIES_MEMORY);
+
+    /**
+     * Pool of the threads of a parallel traversal, or {@code null} if the
+     * traversal is sequential.
+     */
+    private final ForkJoinPool traversalPool;
+
+    /**
+     * Nodes whose subtree was found consistent by a parallel traversal.
+     * Subtrees shared between revisions, checkpoints and paths are then
+     * checked only once. Nodes are added only once their whole subtree is
+     * checked, so that an inconsistency is reported for every path it
+     * affects.
+     */
+    private final ConcurrentRecordIdSet checkedNodes;
+
     /**
      * Run a full traversal consistency check.
      *
@@ -121,6 +185,20 @@ public class ConsistencyChecker implements Closeable {
      * @param filterPaths      collection of repository paths to be checked                         
      * @param ioStatistics     if {@code true} prints I/O statistics gathered while consistency 
      *                         check was performed
+     * @param maxTimestamp     only revisions persisted at or before this time, in
+     *                         milliseconds since the epoch, are checked
+     * @param probeThreads     number of threads probing the upcoming revisions of
+     *                         the journal in parallel, so that revisions in which
+     *                         none of the paths still to check can be read are
+     *                         skipped without a full check. Zero disables probing.
+     * @param threads          number of threads traversing the content and
+     *                         verifying the segments. With more than one thread
+     *                         the traversal is partitioned across the threads
+     *                         and subtrees already found consistent are
+     *                         skipped. One traverses sequentially.
+     * @param verifyChecksums  if {@code true} the segments of every tar file
+     *                         are verified against their checksums before the
+     *                         traversal
      * @param outWriter        text output stream writer
      * @param errWriter        text error stream writer                        
      * @throws IOException
@@ -135,13 +213,21 @@ public class ConsistencyChecker implements Closeable {
             Set<String> checkpoints,
             Set<String> filterPaths,
             boolean ioStatistics,
+            long maxTimestamp,
+            int probeThreads,
+            int threads,
+            boolean verifyChecksums,
             PrintWriter outWriter,
             PrintWriter errWriter
     ) throws IOException, InvalidFileStoreVersionException {
         try (
-                JournalReader journal = new JournalReader(new LocalJournalFile(directory, journalFileName));
-                ConsistencyChecker checker = new ConsistencyChecker(directory, debugInterval, ioStatistics, outWriter, errWriter)
+                JournalReader journal = new JournalReader(new LocalJournalFile(directory, journalFileName), maxTimestamp);
+                ConsistencyChecker checker = new ConsistencyChecker(directory, debugInterval, ioStatistics, threads, outWriter, errWriter)
         ) {
+            if (verifyChecksums) {
+                checker.verifyChecksums(directory, threads);
+            }
+
             Set<String> checkpointsSet = Sets.newLinkedHashSet();
             List<PathToCheck> headPaths = new ArrayList<>();
             Map<String, List<PathToCheck>> checkpointPaths = new HashMap<>();
@@ -177,63 +263,83 @@ public class ConsistencyChecker implements Closeable {
 
             int initialCount = checker.checkCount;
             JournalEntry lastValidJournalEntry = null;
+
+            List<PathToCheck> probePaths = new ArrayList<>(headPaths);
+            for (String checkpoint : checkpointsSet) {
+                List<PathToCheck> pathList = checkpointPaths.get(checkpoint);
+                if (pathList != null) {
+                    probePaths.addAll(pathList);
+                }
+            }
+            RevisionProbes probes = new RevisionProbes(journal, probeThreads,
+                    revision -> checker.probeRevision(revision, probePaths));
             
-            while (journal.hasNext() && checker.checkCount > 0) {
-                JournalEntry journalEntry = journal.next();
-                String revision = journalEntry.getRevision();
+            try {
+                while (probes.hasNext() && checker.checkCount > 0) {
+                    RevisionProbe probe = probes.next();
+                    JournalEntry journalEntry = probe.getKey();
+                    String revision = journalEntry.getRevision();
                 
-                try {
-                    revisionCount++;
-                    checker.store.setRevision(revision);
-                    boolean overallValid = true;
+                    try {
+                        revisionCount++;
+                        String failure = probe.getFailure(probePaths);
+                        if (failure != null) {
+                            checker.printError("Skipping revision {0}: {1}", revision, failure);
+                            continue;
+                        }
+                        checker.store.setRevision(revision);
+                        boolean overallValid = true;
                     
-                    SegmentNodeStore sns = SegmentNodeStoreBuilders.builder(checker.store).build();
+                        SegmentNodeStore sns = SegmentNodeStoreBuilders.builder(checker.store).build();
                     
-                    checker.print("\nChecking revision {0}", revision);
+                        checker.print("\nChecking revision {0}", revision);
 
-                    if (checkHead) {
-                        boolean mustCheck = headPaths.stream().anyMatch(p -> p.journalEntry == null);
+                        if (checkHead) {
+                            boolean mustCheck = headPaths.stream().anyMatch(p -> p.journalEntry == null);
                         
-                        if (mustCheck) {
-                            checker.print("\nChecking head\n");
-                            NodeState root = sns.getRoot();
-                            overallValid = overallValid && checker.checkPathsAtRoot(headPaths, root, journalEntry, checkBinaries);
+                            if (mustCheck) {
+                                checker.print("\nChecking head\n");
+                                NodeState root = sns.getRoot();
+                                overallValid = overallValid && checker.checkPathsAtRoot(headPaths, root, journalEntry, checkBinaries);
+                            }
                         }
-                    }
                     
-                    if (!checkpointsSet.isEmpty()) {
-                        Map<String, Boolean> checkpointsToCheck = checkpointPaths.entrySet().stream().collect(Collectors.toMap(
-                                Map.Entry::getKey, e -> e.getValue().stream().anyMatch(p -> p.journalEntry == null)));
-                        boolean mustCheck = checkpointsToCheck.values().stream().anyMatch(v -> v == true);
+                        if (!checkpointsSet.isEmpty()) {
+                            Map<String, Boolean> checkpointsToCheck = checkpointPaths.entrySet().stream().collect(Collectors.toMap(
+                                    Map.Entry::getKey, e -> e.getValue().stream().anyMatch(p -> p.journalEntry == null)));
+                            boolean mustCheck = checkpointsToCheck.values().stream().anyMatch(v -> v == true);
                         
-                        if (mustCheck) {
-                            checker.print("\nChecking checkpoints");
-
-                            for (String checkpoint : checkpointsSet) {
-                                if (checkpointsToCheck.get(checkpoint)) {
-                                    checker.print("\nChecking checkpoint {0}", checkpoint);
-
-                                    List<PathToCheck> pathList = checkpointPaths.get(checkpoint);
-                                    NodeState root = sns.retrieve(checkpoint);
-
-                                    if (root == null) {
-                                        checker.printError("Checkpoint {0} not found in this revision!", checkpoint);
-                                        overallValid = false;
-                                    } else {
-                                        overallValid = overallValid && checker.checkPathsAtRoot(pathList, root,
-                                                journalEntry, checkBinaries);
+                            if (mustCheck) {
+                                checker.print("\nChecking checkpoints");
+
+                                for (String checkpoint : checkpointsSet) {
+                                    if (checkpointsToCheck.get(checkpoint)) {
+                                        checker.print("\nChecking checkpoint {0}", checkpoint);
+
+                                        List<PathToCheck> pathList = checkpointPaths.get(checkpoint);
+                                        NodeState root = sns.retrieve(checkpoint);
+
+                                        if (root == null) {
+                                            checker.printError("Checkpoint {0} not found in this revision!", checkpoint);
+                                            overallValid = false;
+                                        } else {
+                                            overallValid = overallValid && checker.checkPathsAtRoot(pathList, root,
+                                                    journalEntry, checkBinaries);
+                                        }
                                     }
                                 }
                             }
                         }
-                    }
                     
-                    if (overallValid) {
-                        lastValidJournalEntry = journalEntry;
+                        if (overallValid) {
+                            lastValidJournalEntry = journalEntry;
+                        }
+                    } catch (IllegalArgumentException e) {
+                        checker.printError("Skipping invalid record id {0}", revision);
                     }
-                } catch (IllegalArgumentException e) {
-                    checker.printError("Skipping invalid record id {0}", revision);
                 }
+            } finally {
+                probes.close();
             }
             
             checker.print("\nSearched through {0} revisions and {1} checkpoints", revisionCount, checkpointsSet.size());
@@ -325,6 +431,25 @@ public class ConsistencyChecker implements Closeable {
      */
     public ConsistencyChecker(File directory, long debugInterval, boolean ioStatistics, PrintWriter outWriter,
             PrintWriter errWriter) throws IOException, InvalidFileStoreVersionException {
+        this(directory, debugInterval, ioStatistics, 1, outWriter, errWriter);
+    }
+
+    /**
+     * Create a new consistency checker instance
+     *
+     * @param directory        directory containing the tar files
+     * @param debugInterval    number of seconds between printing progress information to
+     *                         the console during the full traversal phase.
+     * @param ioStatistics     if {@code true} prints I/O statistics gathered while consistency 
+     *                         check was performed
+     * @param threads          number of threads traversing the content. One
+     *                         traverses sequentially.
+     * @param outWriter        text output stream writer
+     * @param errWriter        text error stream writer                        
+     * @throws IOException
+     */
+    public ConsistencyChecker(File directory, long debugInterval, boolean ioStatistics, int threads,
+            PrintWriter outWriter, PrintWriter errWriter) throws IOException, InvalidFileStoreVersionException {
         FileStoreBuilder builder = fileStoreBuilder(directory);
         if (ioStatistics) {
             builder.withIOMonitor(statisticsIOMonitor);
@@ -333,6 +458,138 @@ public class ConsistencyChecker implements Closeable {
         this.debugInterval = debugInterval;
         this.outWriter = outWriter;
         this.errWriter = errWriter;
+        if (threads > 1) {
+            this.traversalPool = new ForkJoinPool(threads);
+            this.checkedNodes = new ConcurrentRecordIdSet(CHECKED_NODES_MEMORY);
+        } else {
+            this.traversalPool = null;
+            this.checkedNodes = null;
+        }
+    }
+
+    /**
+     * Verify the segments of every tar file against their checksums. The tar
+     * files are verified in parallel, each of them by a single thread reading
+     * it sequentially. Progress is printed whenever a tar file is completed.
+     *
+     * @param directory directory containing the tar files
+     * @param threads   number of tar files verified concurrently
+     */
+    private void verifyChecksums(File directory, int threads) throws IOException {
+        SegmentArchiveManager archiveManager = new TarPersistence(directory)
+                .createArchiveManager(false, new IOMonitorAdapter(), new FileStoreMonitorAdapter());
+        List<String> archives = archiveManager.listArchives();
+
+        print("\nVerifying checksums of {0} tar files", archives.size());
+
+        AtomicLong invalidSegments = new AtomicLong();
+        long segments = 0;
+        long bytes = 0;
+        int completed = 0;
+        int failed = 0;
+        long start = System.nanoTime();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            CompletionService<ArchiveVerification> completion = new ExecutorCompletionService<>(executor);
+            for (String archive : archives) {
+                completion.submit(() -> {
+                    ArchiveVerification verification = new ArchiveVerification(archive);
+                    TarChecksums.verify(archiveManager, archive, (id, length, failure) -> {
+                        verification.segments++;
+                        verification.bytes += length;
+                        if (failure != null) {
+                            invalidSegments.incrementAndGet();
+                            printError("Invalid segment {0} in {1}: {2}", id, archive, failure);
+                        }
+                    });
+                    return verification;
+                });
+            }
+
+            for (int i = 0; i < archives.size(); i++) {
+                completed++;
+                try {
+                    ArchiveVerification verification = completion.take().get();
+                    segments += verification.segments;
+                    bytes += verification.bytes;
+                    print("Verified {0} ({1}/{2})", verification.archive, completed, archives.size());
+                } catch (ExecutionException e) {
+                    failed++;
+                    printError("Unable to verify tar file: {0}", e.getCause());
+                }
+                printThroughput(segments, bytes, start);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while verifying checksums", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        print("Verified {0} segments in {1} tar files", segments, archives.size() - failed);
+        printThroughput(segments, bytes, start);
+        if (invalidSegments.get() > 0 || failed > 0) {
+            printError("Found {0} invalid segments and {1} unreadable tar files", invalidSegments.get(), failed);
+        }
+    }
+
+    private void printThroughput(long segments, long bytes, long start) {
+        long elapsed = Math.max(1, (System.nanoTime() - start) / 1000000);
+        print("[Checksums] {0} segments, {1} read in {2} ms ({3}/s)",
+                segments, humanReadableByteCount(bytes), elapsed, humanReadableByteCount(bytes * 1000 / elapsed));
+    }
+
+    /**
+     * Probe a revision by reading the node at each of the given paths, its
+     * properties and its children. This is cheap compared to a full check,
+     * and can be called concurrently for several revisions. Paths that don't
+     * exist in the revision are left to the full check.
+     *
+     * @param revision the revision to probe
+     * @param paths    the paths to probe, under the head or under a checkpoint
+     * @return the paths that failed the probe, mapped to a description of
+     * the failure.
+     */
+    private Map<PathToCheck, String> probeRevision(String revision, List<PathToCheck> paths) {
+        Map<PathToCheck, String> failures = new IdentityHashMap<>();
+        RecordId id;
+        try {
+            id = RecordId.fromString(store.getSegmentIdProvider(), revision);
+        } catch (IllegalArgumentException e) {
+            // Reported when the revision is checked
+            return failures;
+        }
+        NodeState superRoot;
+        try {
+            superRoot = store.getReader().readNode(id);
+        } catch (RuntimeException e) {
+            for (PathToCheck ptc : paths) {
+                failures.put(ptc, e.toString());
+            }
+            return failures;
+        }
+        for (PathToCheck ptc : paths) {
+            try {
+                NodeState root = superRoot.getChildNode("root");
+                if (ptc.checkpoint != null) {
+                    root = superRoot.getChildNode("checkpoints").getChildNode(ptc.checkpoint).getChildNode("root");
+                }
+                probeNode(getNode(root, ptc.path));
+            } catch (RuntimeException e) {
+                failures.put(ptc, e.toString());
+            }
+        }
+        return failures;
+    }
+
+    private static void probeNode(NodeState node) {
+        for (PropertyState property : node.getProperties()) {
+            property.getValue(property.getType());
+        }
+        for (ChildNodeEntry child : node.getChildNodeEntries()) {
+            child.getNodeState().getPropertyCount();
+        }
     }
 
     /**
@@ -391,15 +648,15 @@ public class ConsistencyChecker implements Closeable {
             }
         }
 
-        nodeCount = 0;
-        propertyCount = 0;
+        nodeCount.set(0);
+        propertyCount.set(0);
 
         print("Checking {0}", ptc.path);
         
         try {        
             NodeWrapper wrapper = NodeWrapper.deriveTraversableNodeOnPath(root, ptc.path);
             result = checkNodeAndDescendants(wrapper.node, wrapper.path, checkBinaries);
-            print("Checked {0} nodes and {1} properties", nodeCount, propertyCount);
+            print("Checked {0} nodes and {1} properties", nodeCount.get(), propertyCount.get());
             
             return result;
         } catch (IllegalArgumentException e) {
@@ -420,7 +677,7 @@ public class ConsistencyChecker implements Closeable {
     private String checkNode(NodeState node, String path, boolean checkBinaries) {
         try {
             debug("Traversing {0}", path);
-            nodeCount++;
+            nodeCount.incrementAndGet();
             for (PropertyState propertyState : node.getProperties()) {
                 Type<?> type = propertyState.getType();
                 boolean checked = false;
@@ -433,7 +690,7 @@ public class ConsistencyChecker implements Closeable {
                     }
                 } else {
                     propertyState.getValue(type);
-                    propertyCount++;
+                    propertyCount.incrementAndGet();
                     checked = true;
                 }
                 
@@ -458,6 +715,10 @@ public class ConsistencyChecker implements Closeable {
      *                      or the path of the first inconsistency otherwise.
      */
     private String checkNodeAndDescendants(NodeState node, String path, boolean checkBinaries) {
+        if (traversalPool != null) {
+            return traversalPool.invoke(new CheckNodeTask(node, path, checkBinaries));
+        }
+
         String result = checkNode(node, path, checkBinaries);
         if (result != null) {
             return result;
@@ -480,6 +741,89 @@ public class ConsistencyChecker implements Closeable {
         }
     }
     
+    /**
+     * Checks a node and, in parallel, its descendants. Child nodes are forked
+     * as long as the worker threads are short of work, and checked by the
+     * current thread otherwise. Subtrees already found consistent are skipped.
+     */
+    private class CheckNodeTask extends RecursiveTask<String> {
+
+        private final NodeState node;
+
+        private final String path;
+
+        private final boolean checkBinaries;
+
+        CheckNodeTask(NodeState node, String path, boolean checkBinaries) {
+            this.node = node;
+            this.path = path;
+            this.checkBinaries = checkBinaries;
+        }
+
+        @Override
+        protected String compute() {
+            RecordId id = node instanceof SegmentNodeState ? ((SegmentNodeState) node).getRecordId() : null;
+            if (id != null && checkedNodes.contains(id)) {
+                return null;
+            }
+
+            String result = checkNode(node, path, checkBinaries);
+            if (result != null) {
+                return result;
+            }
+
+            List<CheckNodeTask> forked = new ArrayList<>();
+            try {
+                for (ChildNodeEntry cne : node.getChildNodeEntries()) {
+                    CheckNodeTask task = new CheckNodeTask(cne.getNodeState(), concat(path, cne.getName()), checkBinaries);
+                    if (getSurplusQueuedTaskCount() > 2) {
+                        result = task.compute();
+                    } else {
+                        task.fork();
+                        forked.add(task);
+                        if (forked.size() >= FORK_BATCH_SIZE) {
+                            result = joinAll(forked);
+                        }
+                    }
+                    if (result != null) {
+                        break;
+                    }
+                }
+            } catch (RuntimeException e) {
+                printError("Error while traversing {0}: {1}", path, e.getMessage());
+                result = path;
+            }
+
+            String forkedResult = joinAll(forked);
+            if (result == null) {
+                result = forkedResult;
+            }
+            if (result == null && id != null) {
+                checkedNodes.addIfNotPresent(id);
+            }
+            return result;
+        }
+
+        /**
+         * Wait for the completion of the given tasks and clear the list.
+         *
+         * @return the result of the first inconsistent task, or {@code null}
+         * if all of them are consistent.
+         */
+        private String joinAll(List<CheckNodeTask> tasks) {
+            String result = null;
+            for (CheckNodeTask task : tasks) {
+                String r = task.join();
+                if (result == null) {
+                    result = r;
+                }
+            }
+            tasks.clear();
+            return result;
+        }
+
+    }
+    
     static class NodeWrapper {
         final NodeState node;
         final String path;
@@ -542,18 +886,26 @@ public class ConsistencyChecker implements Closeable {
 
     private boolean traverse(Blob blob, boolean checkBinaries) throws IOException {
         if (checkBinaries && !isExternal(blob)) {
-            InputStream s = blob.getNewStream();
-            try {
-                byte[] buffer = new byte[8192];
-                int l = s.read(buffer, 0, buffer.length);
-                while (l >= 0) {
-                    l = s.read(buffer, 0, buffer.length);
+            RecordId id = blob instanceof SegmentBlob ? ((SegmentBlob) blob).getRecordId() : null;
+
+            if (id == null || !checkedBinaries.contains(id)) {
+                InputStream s = blob.getNewStream();
+                try {
+                    byte[] buffer = new byte[8192];
+                    int l = s.read(buffer, 0, buffer.length);
+                    while (l >= 0) {
+                        l = s.read(buffer, 0, buffer.length);
+                    }
+                } finally {
+                    s.close();
+                }
+
+                if (id != null) {
+                    checkedBinaries.addIfNotPresent(id);
                 }
-            } finally {
-                s.close();
             }
             
-            propertyCount++;
+            propertyCount.incrementAndGet();
             return true;
         }
         
@@ -569,9 +921,178 @@ public class ConsistencyChecker implements Closeable {
 
     @Override
     public void close() {
+        if (traversalPool != null) {
+            traversalPool.shutdownNow();
+            checkedNodes.close();
+        }
+        checkedBinaries.close();
         store.close();
     }
 
+    /**
+     * The outcome of the verification of the checksums of a tar file.
+     */
+    private static class ArchiveVerification {
+
+        final String archive;
+
+        long segments;
+
+        long bytes;
+
+        ArchiveVerification(String archive) {
+            this.archive = archive;
+        }
+
+    }
+
+    /**
+     * A thread safe set of record ids, striped over several {@link
+     * RecordIdSet}s by segment.
+     */
+    private static class ConcurrentRecordIdSet implements Closeable {
+
+        private static final int STRIPES = 16;
+
+        private final RecordIdSet[] sets = new RecordIdSet[STRIPES];
+
+        private final Lock[] locks = new Lock[STRIPES];
+
+        ConcurrentRecordIdSet(long memoryLimit) {
+            for (int i = 0; i < STRIPES; i++) {
+                sets[i] = new RecordIdSet(memoryLimit / STRIPES, null);
+                locks[i] = new ReentrantLock();
+            }
+        }
+
+        boolean addIfNotPresent(RecordId id) {
+            int stripe = stripe(id);
+            locks[stripe].lock();
+            try {
+                return sets[stripe].addIfNotPresent(id);
+            } finally {
+                locks[stripe].unlock();
+            }
+        }
+
+        boolean contains(RecordId id) {
+            int stripe = stripe(id);
+            locks[stripe].lock();
+            try {
+                return sets[stripe].contains(id);
+            } finally {
+                locks[stripe].unlock();
+            }
+        }
+
+        private static int stripe(RecordId id) {
+            return (id.getSegmentId().hashCode() & 0x7fffffff) % STRIPES;
+        }
+
+        @Override
+        public void close() {
+            for (RecordIdSet set : sets) {
+                set.close();
+            }
+        }
+
+    }
+
+    /**
+     * A journal entry and the pending result of its probe.
+     */
+    private static class RevisionProbe extends SimpleImmutableEntry<JournalEntry, Future<Map<PathToCheck, String>>> {
+
+        RevisionProbe(JournalEntry entry, Future<Map<PathToCheck, String>> failures) {
+            super(entry, failures);
+        }
+
+        /**
+         * The revision can be skipped only if every path not yet found
+         * consistent failed the probe. A full check of the revision would
+         * then fail for each of them, and wouldn't change the result.
+         *
+         * @param paths the probed paths
+         * @return the failure of the first path still to check, or {@code
+         * null} if the revision must be fully checked.
+         */
+        String getFailure(List<PathToCheck> paths) {
+            if (getValue() == null) {
+                return null;
+            }
+            Map<PathToCheck, String> failures;
+            try {
+                failures = getValue().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                return null;
+            }
+            String failure = null;
+            for (PathToCheck ptc : paths) {
+                if (ptc.journalEntry != null) {
+                    continue;
+                }
+                if (!failures.containsKey(ptc)) {
+                    return null;
+                }
+                if (failure == null) {
+                    failure = failures.get(ptc);
+                }
+            }
+            return failure;
+        }
+
+    }
+
+    /**
+     * Iterates over the entries of the journal while probing the upcoming
+     * entries in parallel.
+     */
+    private static class RevisionProbes {
+
+        private final JournalReader journal;
+
+        private final int lookahead;
+
+        private final ExecutorService executor;
+
+        private final Function<String, Map<PathToCheck, String>> prober;
+
+        private final Deque<RevisionProbe> probes = new ArrayDeque<>();
+
+        RevisionProbes(JournalReader journal, int threads, Function<String, Map<PathToCheck, String>> prober) {
+            this.journal = journal;
+            this.lookahead = Math.max(1, 2 * threads);
+            this.executor = threads > 0 ? Executors.newFixedThreadPool(threads) : null;
+            this.prober = prober;
+        }
+
+        boolean hasNext() {
+            return !probes.isEmpty() || journal.hasNext();
+        }
+
+        RevisionProbe next() {
+            while (probes.size() < lookahead && journal.hasNext()) {
+                JournalEntry entry = journal.next();
+                Future<Map<PathToCheck, String>> failures = null;
+                if (executor != null) {
+                    failures = executor.submit(() -> prober.apply(entry.getRevision()));
+                }
+                probes.add(new RevisionProbe(entry, failures));
+            }
+            return probes.remove();
+        }
+
+        void close() {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+    }
+
     private void print(String format) {
         outWriter.println(format);
     }
@@ -584,6 +1105,10 @@ public class ConsistencyChecker implements Closeable {
         outWriter.println(MessageFormat.format(format, arg1, arg2));
     }
     
+    private void print(String format, Object arg1, Object arg2, Object arg3) {
+        outWriter.println(MessageFormat.format(format, arg1, arg2, arg3));
+    }
+    
     private void print(String format, Object arg1, Object arg2, Object arg3, Object arg4) {
         outWriter.println(MessageFormat.format(format, arg1, arg2, arg3, arg4));
     }
@@ -596,6 +1121,10 @@ public class ConsistencyChecker implements Closeable {
         errWriter.println(MessageFormat.format(format, arg1, arg2));
     }
 
+    private void printError(String format, Object arg1, Object arg2, Object arg3) {
+        errWriter.println(MessageFormat.format(format, arg1, arg2, arg3));
+    }
+
     private long ts;
 
     private void debug(String format, Object arg) {
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.segment.persistentcache;
+
+import java.io.IOException;
+
+import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitor;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
+import org.apache.jackrabbit.oak.segment.spi.persistence.GCJournalFile;
+import org.apache.jackrabbit.oak.segment.spi.persistence.JournalFile;
+import org.apache.jackrabbit.oak.segment.spi.persistence.ManifestFile;
+import org.apache.jackrabbit.oak.segment.spi.persistence.RepositoryLock;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentNodeStorePersistence;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link SegmentNodeStorePersistence} keeping a copy of the segments read
+ * from or written to another persistence in a {@link DiskSegmentCache}. This
+ * gives remote persistences a local second tier below the segment cache on
+ * the heap, which is still warm after a restart.
+ * <p>
+ * Only segments go through the disk cache. The journal, the GC journal, the
+ * manifest and the repository lock are those of the wrapped persistence.
+ */
+public class CachingPersistence implements SegmentNodeStorePersistence {
+
+    private final SegmentNodeStorePersistence delegate;
+
+    private final DiskSegmentCache cache;
+
+    public CachingPersistence(@NotNull SegmentNodeStorePersistence delegate, @NotNull DiskSegmentCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @NotNull
+    public DiskSegmentCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public SegmentArchiveManager createArchiveManager(boolean memoryMapping, IOMonitor ioMonitor, FileStoreMonitor fileStoreMonitor) throws IOException {
+        return new CachingSegmentArchiveManager(delegate.createArchiveManager(memoryMapping, ioMonitor, fileStoreMonitor), cache);
+    }
+
+    @Override
+    public boolean segmentFilesExist() {
+        return delegate.segmentFilesExist();
+    }
+
+    @Override
+    public JournalFile getJournalFile() {
+        return delegate.getJournalFile();
+    }
+
+    @Override
+    public GCJournalFile getGCJournalFile() throws IOException {
+        return delegate.getGCJournalFile();
+    }
+
+    @Override
+    public ManifestFile getManifestFile() throws IOException {
+        return delegate.getManifestFile();
+    }
+
+    @Override
+    public RepositoryLock lockRepository() throws IOException {
+        return delegate.lockRepository();
+    }
+
+}
@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.segment.persistentcache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A size bounded cache of segments in a local directory. Each segment is
+ * stored in a file named after the segment UUID. Segments are written to a
+ * temporary file first and then atomically renamed, so that the directory
+ * never contains partially written segments.
+ * <p>
+ * The least recently used segments are evicted when the size of the cached
+ * segments exceeds the maximum size. The access order is tracked in memory
+ * and persisted through the modification time of the files, so that the
+ * content of the cache and the eviction order survive restarts.
+ * <p>
+ * This class is thread safe.
+ */
+public class DiskSegmentCache {
+
+    private static final Logger log = LoggerFactory.getLogger(DiskSegmentCache.class);
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    @NotNull
+    private final File directory;
+
+    private final long maxSize;
+
+    /**
+     * The size of the cached segments, in access order.
+     */
+    private final LinkedHashMap<UUID, Integer> segments = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long size;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private final AtomicLong tempFileCount = new AtomicLong();
+
+    /**
+     * Create a new cache in {@code directory}, picking up the segments cached
+     * in this directory by a previous instance.
+     *
+     * @param directory the directory of the cache, created if necessary
+     * @param maxSize   maximum size of the cached segments in bytes
+     * @throws IOException if the directory can't be created or listed
+     */
+    public DiskSegmentCache(@NotNull File directory, long maxSize) throws IOException {
+        checkArgument(maxSize >= 0, "maxSize must not be negative");
+        this.directory = directory;
+        this.maxSize = maxSize;
+        Files.createDirectories(directory.toPath());
+        load();
+    }
+
+    private void load() throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Unable to list " + directory);
+        }
+
+        List<File> cached = new ArrayList<>();
+        for (File file : files) {
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                // Left over by a process that didn't complete a write
+                Files.deleteIfExists(file.toPath());
+            } else if (file.isFile() && toUUID(file.getName()) != null) {
+                cached.add(file);
+            }
+        }
+        cached.sort(Comparator.comparingLong(File::lastModified));
+
+        synchronized (segments) {
+            for (File file : cached) {
+                segments.put(toUUID(file.getName()), (int) file.length());
+                size += file.length();
+            }
+        }
+        evict();
+        log.info("Loaded {} segments ({} bytes) from the disk cache in {}", getElementCount(), getSize(), directory);
+    }
+
+    @Nullable
+    private static UUID toUUID(String name) {
+        try {
+            return UUID.fromString(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private File getFile(UUID id) {
+        return new File(directory, id.toString());
+    }
+
+    /**
+     * Read a segment from this cache.
+     *
+     * @return a buffer containing the segment, or {@code null} if the segment
+     * isn't cached.
+     */
+    @Nullable
+    public ByteBuffer readSegment(long msb, long lsb) {
+        UUID id = new UUID(msb, lsb);
+        synchronized (segments) {
+            if (segments.get(id) == null) {
+                missCount.incrementAndGet();
+                return null;
+            }
+        }
+
+        File file = getFile(id);
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            if (!file.setLastModified(System.currentTimeMillis())) {
+                log.debug("Unable to update the access time of {}", file);
+            }
+            hitCount.incrementAndGet();
+            return buffer;
+        } catch (IOException e) {
+            // The segment was evicted concurrently or the file is unreadable
+            log.debug("Unable to read segment {} from the disk cache", id, e);
+            remove(id);
+            missCount.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Check whether a segment is in this cache.
+     */
+    public boolean containsSegment(long msb, long lsb) {
+        synchronized (segments) {
+            return segments.containsKey(new UUID(msb, lsb));
+        }
+    }
+
+    /**
+     * Add a segment to this cache. Failures to write the segment are logged
+     * and otherwise ignored, as the segment can always be read again from
+     * the persistence.
+     *
+     * @param buffer the segment. Its position is not modified.
+     */
+    public void writeSegment(long msb, long lsb, @NotNull ByteBuffer buffer) {
+        int length = buffer.remaining();
+        if (length > maxSize) {
+            return;
+        }
+
+        UUID id = new UUID(msb, lsb);
+        synchronized (segments) {
+            if (segments.containsKey(id)) {
+                return;
+            }
+        }
+
+        File temp = new File(directory, id + "." + tempFileCount.incrementAndGet() + TEMP_SUFFIX);
+        try {
+            try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                ByteBuffer data = buffer.duplicate();
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+            }
+            Files.move(temp.toPath(), getFile(id).toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Unable to write segment {} to the disk cache", id, e);
+            try {
+                Files.deleteIfExists(temp.toPath());
+            } catch (IOException f) {
+                log.debug("Unable to delete {}", temp, f);
+            }
+            return;
+        }
+
+        synchronized (segments) {
+            if (segments.put(id, length) == null) {
+                size += length;
+            }
+        }
+        evict();
+    }
+
+    private void remove(UUID id) {
+        synchronized (segments) {
+            Integer length = segments.remove(id);
+            if (length != null) {
+                size -= length;
+            }
+        }
+    }
+
+    private void evict() {
+        List<UUID> evicted = new ArrayList<>();
+        synchronized (segments) {
+            Iterator<Map.Entry<UUID, Integer>> it = segments.entrySet().iterator();
+            while (size > maxSize && it.hasNext()) {
+                Map.Entry<UUID, Integer> eldest = it.next();
+                size -= eldest.getValue();
+                evicted.add(eldest.getKey());
+                it.remove();
+            }
+        }
+        for (UUID id : evicted) {
+            evictionCount.incrementAndGet();
+            try {
+                Files.deleteIfExists(getFile(id).toPath());
+            } catch (IOException e) {
+                log.warn("Unable to evict segment {} from the disk cache", id, e);
+            }
+        }
+    }
+
+    /**
+     * @return the number of cached segments
+     */
+    public long getElementCount() {
+        synchronized (segments) {
+            return segments.size();
+        }
+    }
+
+    /**
+     * @return the size of the cached segments in bytes
+     */
+    public long getSize() {
+        synchronized (segments) {
+            return size;
+        }
+    }
+
+    /**
+     * @return the maximum size of the cached segments in bytes
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+}
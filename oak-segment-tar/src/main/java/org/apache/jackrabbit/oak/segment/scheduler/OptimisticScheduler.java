@@ -0,0 +1,404 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.segment.scheduler;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.jackrabbit.oak.api.Type.LONG;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.segment.Revisions;
+import org.apache.jackrabbit.oak.segment.SegmentNodeBuilder;
+import org.apache.jackrabbit.oak.segment.SegmentNodeState;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreStats;
+import org.apache.jackrabbit.oak.segment.SegmentOverflowException;
+import org.apache.jackrabbit.oak.segment.SegmentReader;
+import org.apache.jackrabbit.oak.spi.commit.ChangeDispatcher;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.Observable;
+import org.apache.jackrabbit.oak.spi.commit.Observer;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Scheduler} that lets commits run concurrently. Each commit applies
+ * its changes and runs its commit hooks against a snapshot of the head state
+ * without holding any lock. The lock is only taken to compare-and-set the head
+ * state in {@link Revisions}. If the head state moved in the meantime, the
+ * commit is rebased onto the new head state and the commit hooks run again.
+ * <p>
+ * Compared to {@link LockBasedScheduler}, this scheduler scales with the
+ * number of writers as long as their changes rarely overlap. Under heavy
+ * contention on the same content, commits may be retried several times and
+ * eventually fail.
+ */
+public class OptimisticScheduler implements Scheduler {
+
+    public static class OptimisticSchedulerBuilder {
+        @NotNull
+        private final SegmentReader reader;
+
+        @NotNull
+        private final Revisions revisions;
+
+        @NotNull
+        private final SegmentNodeStoreStats stats;
+
+        private boolean dispatchChanges = true;
+
+        private int maxRetries = MAX_RETRIES_DEFAULT;
+
+        private OptimisticSchedulerBuilder(@NotNull Revisions revisions, @NotNull SegmentReader reader,
+                @NotNull SegmentNodeStoreStats stats) {
+            this.revisions = revisions;
+            this.reader = reader;
+            this.stats = stats;
+        }
+
+        @NotNull
+        public OptimisticSchedulerBuilder dispatchChanges(boolean dispatchChanges) {
+            this.dispatchChanges = dispatchChanges;
+            return this;
+        }
+
+        /**
+         * Maximum number of times a commit is rebased and retried after
+         * losing the race for the head state before it fails.
+         */
+        @NotNull
+        public OptimisticSchedulerBuilder withMaxRetries(int maxRetries) {
+            checkArgument(maxRetries >= 0);
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        @NotNull
+        public OptimisticScheduler build() {
+            if (dispatchChanges) {
+                return new ObservableOptimisticScheduler(this);
+            } else {
+                return new OptimisticScheduler(this);
+            }
+        }
+
+    }
+
+    public static OptimisticSchedulerBuilder builder(@NotNull Revisions revisions, @NotNull SegmentReader reader,
+            @NotNull SegmentNodeStoreStats stats) {
+        return new OptimisticSchedulerBuilder(checkNotNull(revisions), checkNotNull(reader), checkNotNull(stats));
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(OptimisticScheduler.class);
+
+    static final int MAX_RETRIES_DEFAULT = Integer.getInteger("oak.scheduler.optimistic.maxRetries", 100);
+
+    /**
+     * Maximum number of microseconds to wait before retrying a commit that
+     * lost the race for the head state.
+     */
+    private static final int MAXIMUM_BACKOFF = 10_000;
+
+    /**
+     * Sets the number of seconds to wait for the attempt to grab the lock to
+     * create a checkpoint
+     */
+    private final int checkpointsLockWaitTime = Integer.getInteger("oak.checkpoints.lockWaitTime", 10);
+
+    static final String ROOT = "root";
+
+    /**
+     * Lock protecting the update of the head state. It is held only for the
+     * compare-and-set of the head state and for dispatching the changes, never
+     * while commit hooks are running.
+     */
+    private final Lock headLock = new ReentrantLock();
+
+    @NotNull
+    private final SegmentReader reader;
+
+    @NotNull
+    private final Revisions revisions;
+
+    protected final AtomicReference<SegmentNodeState> head;
+
+    private final SegmentNodeStoreStats stats;
+
+    private final int maxRetries;
+
+    public OptimisticScheduler(OptimisticSchedulerBuilder builder) {
+        this.reader = builder.reader;
+        this.revisions = builder.revisions;
+        this.stats = builder.stats;
+        this.maxRetries = builder.maxRetries;
+        this.head = new AtomicReference<SegmentNodeState>(reader.readHeadState(revisions));
+    }
+
+    @Override
+    public NodeState getHeadNodeState() {
+        if (headLock.tryLock()) {
+            try {
+                refreshHead(true);
+            } finally {
+                headLock.unlock();
+            }
+        }
+        return head.get();
+    }
+
+    /**
+     * Refreshes the head state. Should only be called while holding the
+     * {@link #headLock}.
+     *
+     * @param dispatchChanges
+     *            if set to true the changes would also be dispatched
+     */
+    private void refreshHead(boolean dispatchChanges) {
+        SegmentNodeState state = reader.readHeadState(revisions);
+        if (!state.getRecordId().equals(head.get().getRecordId())) {
+            head.set(state);
+            if (dispatchChanges) {
+                contentChanged(state.getChildNode(ROOT), CommitInfo.EMPTY_EXTERNAL);
+            }
+        }
+    }
+
+    protected void contentChanged(NodeState root, CommitInfo info) {
+        // do nothing without a change dispatcher
+    }
+
+    @Override
+    public NodeState schedule(@NotNull Commit commit, SchedulerOption... schedulingOptions)
+            throws CommitFailedException {
+        // only do the merge if there are some changes to commit
+        if (!commit.hasChanges()) {
+            return getHeadNodeState().getChildNode(ROOT);
+        }
+
+        try {
+            long start = System.nanoTime();
+
+            for (int attempt = 0; attempt <= maxRetries; attempt++) {
+                if (attempt > 0) {
+                    backoff(attempt);
+                }
+
+                // Apply the changes and run the commit hooks outside of the
+                // lock. If `before` is not the base state of the changes, the
+                // changes are rebased onto it.
+
+                SegmentNodeState before = reader.readHeadState(revisions);
+                SegmentNodeState after = commit.apply(before);
+
+                if (setHead(commit, before, after)) {
+                    SegmentNodeState merged = (SegmentNodeState) after.getChildNode(ROOT);
+                    commit.applied(merged);
+                    stats.onCommit(currentThread(), System.nanoTime() - start);
+                    return merged;
+                }
+            }
+
+            String message = String.format(
+                    "The commit could not be executed after %d attempts. Total time: %d ms",
+                    maxRetries + 1, NANOSECONDS.toMillis(System.nanoTime() - start));
+            throw new CommitFailedException("Segment", 3, message);
+        } catch (InterruptedException e) {
+            currentThread().interrupt();
+            throw new CommitFailedException("Segment", 2, "Merge interrupted", e);
+        } catch (SegmentOverflowException e) {
+            throw new CommitFailedException("Segment", 3, "Merge failed", e);
+        }
+    }
+
+    /**
+     * Atomically replace the head state {@code before} with {@code after}.
+     *
+     * @return {@code true} if the head state was updated, {@code false} if
+     * the head state is not {@code before} anymore.
+     */
+    private boolean setHead(Commit commit, SegmentNodeState before, SegmentNodeState after) {
+        long queuedTime = -1;
+
+        if (!headLock.tryLock()) {
+            queuedTime = System.nanoTime();
+            stats.onCommitQueued(currentThread());
+            headLock.lock();
+            stats.onCommitDequeued(currentThread(), System.nanoTime() - queuedTime);
+        }
+
+        try {
+            refreshHead(true);
+
+            if (!head.get().getRecordId().equals(before.getRecordId())) {
+                return false;
+            }
+
+            if (revisions.setHead(before.getRecordId(), after.getRecordId())) {
+                head.set(after);
+                contentChanged(after.getChildNode(ROOT), commit.info());
+                return true;
+            }
+
+            return false;
+        } finally {
+            headLock.unlock();
+        }
+    }
+
+    private static void backoff(int attempt) throws InterruptedException {
+        int bound = Math.min(MAXIMUM_BACKOFF, 1 << Math.min(attempt, 20));
+        long micros = ThreadLocalRandom.current().nextInt(bound) + 1;
+        log.debug("Scheduler detected concurrent commits. Retrying after {} us", micros);
+        NANOSECONDS.sleep(micros * 1000);
+    }
+
+    @Override
+    public String checkpoint(long lifetime, @NotNull Map<String, String> properties) {
+        checkArgument(lifetime > 0);
+        checkNotNull(properties);
+        String name = UUID.randomUUID().toString();
+        try {
+            if (headLock.tryLock(checkpointsLockWaitTime, SECONDS)) {
+                try {
+                    if (createCheckpoint(name, lifetime, properties)) {
+                        return name;
+                    }
+                } finally {
+                    // Explicitly give up reference to the previous root state
+                    // otherwise they would block cleanup. See OAK-3347
+                    refreshHead(true);
+                    headLock.unlock();
+                }
+            }
+            log.warn("Failed to create checkpoint {} in {} seconds.", name, checkpointsLockWaitTime);
+        } catch (InterruptedException e) {
+            currentThread().interrupt();
+            log.error("Failed to create checkpoint {}.", name, e);
+        } catch (Exception e) {
+            log.error("Failed to create checkpoint {}.", name, e);
+        }
+        return name;
+    }
+
+    /**
+     * Creates the checkpoint {@code name}. Should only be called while
+     * holding the {@link #headLock}.
+     */
+    private boolean createCheckpoint(String name, long lifetime, Map<String, String> properties) {
+        long now = System.currentTimeMillis();
+
+        refreshHead(true);
+
+        SegmentNodeState state = head.get();
+        SegmentNodeBuilder builder = state.builder();
+
+        NodeBuilder checkpoints = builder.child("checkpoints");
+        for (String n : checkpoints.getChildNodeNames()) {
+            NodeBuilder cp = checkpoints.getChildNode(n);
+            PropertyState ts = cp.getProperty("timestamp");
+            if (ts == null || ts.getType() != LONG || now > ts.getValue(LONG)) {
+                cp.remove();
+            }
+        }
+
+        NodeBuilder cp = checkpoints.child(name);
+        if (Long.MAX_VALUE - now > lifetime) {
+            cp.setProperty("timestamp", now + lifetime);
+        } else {
+            cp.setProperty("timestamp", Long.MAX_VALUE);
+        }
+        cp.setProperty("created", now);
+
+        NodeBuilder props = cp.setChildNode("properties");
+        for (Entry<String, String> p : properties.entrySet()) {
+            props.setProperty(p.getKey(), p.getValue());
+        }
+        cp.setChildNode(ROOT, state.getChildNode(ROOT));
+
+        SegmentNodeState newState = builder.getNodeState();
+        if (revisions.setHead(state.getRecordId(), newState.getRecordId())) {
+            refreshHead(false);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean removeCheckpoint(String name) {
+        checkNotNull(name);
+
+        // try 5 times
+        for (int i = 0; i < 5; i++) {
+            if (headLock.tryLock()) {
+                try {
+                    refreshHead(true);
+
+                    SegmentNodeState state = head.get();
+                    SegmentNodeBuilder builder = state.builder();
+
+                    NodeBuilder cp = builder.child("checkpoints").child(name);
+                    if (cp.exists()) {
+                        cp.remove();
+                        SegmentNodeState newState = builder.getNodeState();
+                        if (revisions.setHead(state.getRecordId(), newState.getRecordId())) {
+                            refreshHead(false);
+                            return true;
+                        }
+                    }
+                } finally {
+                    headLock.unlock();
+                }
+            }
+        }
+        return false;
+    }
+
+    private static class ObservableOptimisticScheduler extends OptimisticScheduler implements Observable {
+        private final ChangeDispatcher changeDispatcher;
+
+        public ObservableOptimisticScheduler(OptimisticSchedulerBuilder builder) {
+            super(builder);
+            this.changeDispatcher = new ChangeDispatcher(head.get().getChildNode(ROOT));
+        }
+
+        @Override
+        protected void contentChanged(NodeState root, CommitInfo info) {
+            changeDispatcher.contentChanged(root, info);
+        }
+
+        @Override
+        public Closeable addObserver(Observer observer) {
+            return changeDispatcher.addObserver(observer);
+        }
+    }
+}
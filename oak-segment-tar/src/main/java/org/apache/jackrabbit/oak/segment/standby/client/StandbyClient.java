@@ -19,6 +19,7 @@ package org.apache.jackrabbit.oak.segment.standby.client;
 
 import java.io.File;
 import java.io.InputStream;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
@@ -53,6 +54,10 @@ import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesResponse;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentRequest;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentRequestEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentResponse;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentsReferencesRequest;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentsReferencesRequestEncoder;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentsRequest;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentsRequestEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.ResponseDecoder;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
@@ -115,6 +120,8 @@ class StandbyClient implements AutoCloseable {
                     p.addLast(new GetSegmentRequestEncoder());
                     p.addLast(new GetBlobRequestEncoder());
                     p.addLast(new GetReferencesRequestEncoder());
+                    p.addLast(new GetSegmentsRequestEncoder());
+                    p.addLast(new GetSegmentsReferencesRequestEncoder());
 
                     // Handlers
 
@@ -164,7 +171,7 @@ class StandbyClient implements AutoCloseable {
 
         GetSegmentResponse response = segmentQueue.poll(readTimeoutMs, TimeUnit.MILLISECONDS);
 
-        if (response == null) {
+        if (response == null || !response.isFound()) {
             return null;
         }
 
@@ -190,13 +197,41 @@ class StandbyClient implements AutoCloseable {
 
         GetReferencesResponse response = referencesQueue.poll(readTimeoutMs, TimeUnit.MILLISECONDS);
 
-        if (response == null) {
+        if (response == null || !response.isFound()) {
             return null;
         }
 
         return response.getReferences();
     }
 
+    /**
+     * Sends a 'get segments' request without waiting for the responses. The
+     * responses have to be consumed, in request order, by calling {@link
+     * #receiveSegment()} once per requested segment.
+     */
+    void requestSegments(List<String> segmentIds) {
+        channel.writeAndFlush(new GetSegmentsRequest(clientId, segmentIds));
+    }
+
+    @Nullable
+    GetSegmentResponse receiveSegment() throws InterruptedException {
+        return segmentQueue.poll(readTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends a 'get segments references' request without waiting for the
+     * responses. The responses have to be consumed, in request order, by
+     * calling {@link #receiveReferences()} once per requested segment.
+     */
+    void requestReferences(List<String> segmentIds) {
+        channel.writeAndFlush(new GetSegmentsReferencesRequest(clientId, segmentIds));
+    }
+
+    @Nullable
+    GetReferencesResponse receiveReferences() throws InterruptedException {
+        return referencesQueue.poll(readTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
     public int getReadTimeoutMs() {
         return readTimeoutMs;
     }
@@ -17,13 +17,29 @@
 
 package org.apache.jackrabbit.oak.segment.standby.client;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
+import org.apache.jackrabbit.core.data.util.NamedThreadFactory;
 import org.apache.jackrabbit.oak.segment.RecordId;
 import org.apache.jackrabbit.oak.segment.SegmentId;
 import org.apache.jackrabbit.oak.segment.SegmentIdProvider;
@@ -31,6 +47,8 @@ import org.apache.jackrabbit.oak.segment.SegmentNodeBuilder;
 import org.apache.jackrabbit.oak.segment.SegmentNodeState;
 import org.apache.jackrabbit.oak.segment.SegmentNotFoundException;
 import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesResponse;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentResponse;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,16 +63,50 @@ class StandbyClientSyncExecution {
 
     private static final Logger log = LoggerFactory.getLogger(StandbyClientSyncExecution.class);
 
+    /**
+     * Number of batched requests kept in flight while transferring a segment
+     * hierarchy from the primary. A value of zero (the default) disables
+     * pipelining and transfers one segment per round trip.
+     */
+    static final String PIPELINE_WINDOW = "standby.client.pipelineWindow";
+
+    /**
+     * Number of segments requested by a single batched request. The value is
+     * capped at {@link #MAX_PIPELINE_BATCH_SIZE}.
+     */
+    static final String PIPELINE_BATCH_SIZE = "standby.client.pipelineBatchSize";
+
+    /**
+     * Upper bound for the batch size. The primary splits requests at line
+     * boundaries of at most 8192 characters, each segment identifier takes up
+     * 37 of them.
+     */
+    static final int MAX_PIPELINE_BATCH_SIZE = 200;
+
+    private static final GetSegmentResponse END_OF_SEGMENTS = new GetSegmentResponse(null, null, (ByteBuffer) null);
+
     private final FileStore store;
 
     private final SegmentIdProvider idProvider;
 
     private final Supplier<Boolean> running;
 
+    private final int pipelineWindow;
+
+    private final int pipelineBatchSize;
+
     StandbyClientSyncExecution(FileStore store, Supplier<Boolean> running) {
+        this(store, running, Integer.getInteger(PIPELINE_WINDOW, 0), Integer.getInteger(PIPELINE_BATCH_SIZE, 64));
+    }
+
+    StandbyClientSyncExecution(FileStore store, Supplier<Boolean> running, int pipelineWindow, int pipelineBatchSize) {
+        checkArgument(pipelineWindow >= 0, "Pipeline window must not be negative");
+        checkArgument(pipelineBatchSize > 0, "Pipeline batch size must be positive");
         this.store = store;
         this.idProvider = store.getSegmentIdProvider();
         this.running = running;
+        this.pipelineWindow = pipelineWindow;
+        this.pipelineBatchSize = Math.min(pipelineBatchSize, MAX_PIPELINE_BATCH_SIZE);
     }
 
     void execute(StandbyClient client) throws Exception {
@@ -104,6 +156,11 @@ class StandbyClientSyncExecution {
     }
 
     private void copySegmentHierarchyFromPrimary(StandbyClient client, UUID segmentId) throws Exception {
+        if (pipelineWindow > 0) {
+            copySegmentHierarchyPipelined(client, segmentId);
+            return;
+        }
+
         LinkedList<UUID> batch = new LinkedList<>();
 
         batch.offer(segmentId);
@@ -137,62 +194,241 @@ class StandbyClientSyncExecution {
             for (String s : readReferences(client, current)) {
                 UUID referenced = UUID.fromString(s);
 
-                // Short circuit for the "backward reference". The segment graph
-                // is not guaranteed to be acyclic, so there might be segments
-                // pointing back to a previously visited (but locally
-                // unavailable) segment.
+                if (isMissing(referenced, visited, queued, local)) {
+                    log.debug("Found reference from {} to {}", current, referenced);
+                    batch.add(referenced);
+                    queued.add(referenced);
+                }
+            }
+        }
+
+        for (UUID id : bulk) {
+            log.info("Copying bulk segment {} from primary", id);
+            copySegmentFromPrimary(client, id);
+        }
+
+        for (UUID id : data) {
+            log.info("Copying data segment {} from primary", id);
+            copySegmentFromPrimary(client, id);
+        }
+    }
+
+    /**
+     * Variant of {@link #copySegmentHierarchyFromPrimary(StandbyClient, UUID)}
+     * that keeps up to {@code pipelineWindow} batched requests in flight on
+     * the channel, instead of paying a full round trip per segment. The
+     * segment graph is discovered in the same breadth-first order and the
+     * segments are persisted in the same topological order as in the
+     * sequential variant.
+     */
+    private void copySegmentHierarchyPipelined(StandbyClient client, UUID segmentId) throws Exception {
+        LinkedList<UUID> batch = new LinkedList<>();
+
+        batch.offer(segmentId);
+
+        LinkedList<UUID> bulk = new LinkedList<>();
+        LinkedList<UUID> data = new LinkedList<>();
+
+        Set<UUID> visited = new HashSet<>();
+        Set<UUID> queued = new HashSet<>();
+        Set<UUID> local = new HashSet<>();
+
+        Deque<List<UUID>> inFlight = new ArrayDeque<>();
 
-                if (visited.contains(referenced)) {
-                    continue;
+        while (!batch.isEmpty() || !inFlight.isEmpty()) {
+            while (!batch.isEmpty() && inFlight.size() < pipelineWindow) {
+                List<UUID> request = new ArrayList<>(pipelineBatchSize);
+
+                while (!batch.isEmpty() && request.size() < pipelineBatchSize) {
+                    UUID current = batch.remove();
+
+                    log.debug("Inspecting segment {}", current);
+                    visited.add(current);
+
+                    // Bulk segments don't reference any other segment, so
+                    // there is no need to ask the primary for their
+                    // references.
+
+                    if (SegmentId.isDataSegmentId(current.getLeastSignificantBits())) {
+                        data.addFirst(current);
+                        request.add(current);
+                    } else {
+                        bulk.addFirst(current);
+                    }
+                }
+
+                if (!request.isEmpty()) {
+                    client.requestReferences(toStrings(request));
+                    inFlight.add(request);
                 }
+            }
+
+            if (inFlight.isEmpty()) {
+                continue;
+            }
 
-                // Short circuit for the "diamond problem". Imagine that segment
-                // S1 references S2 and S3 and both S2 and S3 reference S4.
-                // These references form the shape of a diamond. If the segments
-                // are processed in the order S1, S2, S3, then S4 is added twice
-                // to the 'batch' queue. The following check prevents processing
-                // S4 twice or more.
+            for (UUID current : inFlight.remove()) {
+                for (String s : receiveReferences(client, current)) {
+                    UUID referenced = UUID.fromString(s);
 
-                if (queued.contains(referenced)) {
-                    continue;
+                    if (isMissing(referenced, visited, queued, local)) {
+                        log.debug("Found reference from {} to {}", current, referenced);
+                        batch.add(referenced);
+                        queued.add(referenced);
+                    }
                 }
+            }
+        }
 
-                // Short circuit for the "sharing-is-caring problem". If many
-                // new segments are sharing segments that are already locally
-                // available, we should not issue a request for it to the
-                // server. Moreover, if a segment was visited and persisted
-                // during this synchronization process, it will end up in the
-                // 'local' set as well.
+        List<UUID> segments = new ArrayList<>(bulk.size() + data.size());
+        segments.addAll(bulk);
+        segments.addAll(data);
+        copySegmentsPipelined(client, segments);
+    }
 
-                if (local.contains(referenced)) {
-                    continue;
+    /**
+     * Transfers the given segments from the primary, keeping up to {@code
+     * pipelineWindow} batched requests in flight. The received segments are
+     * handed over to a dedicated writer thread, which persists them in the
+     * order they were requested while the next batches are still on the wire.
+     */
+    private void copySegmentsPipelined(StandbyClient client, List<UUID> segments) throws Exception {
+        BlockingQueue<GetSegmentResponse> pending = new ArrayBlockingQueue<>(pipelineWindow * pipelineBatchSize);
+        ExecutorService executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("standby-segment-writer"));
+
+        try {
+            Future<?> writer = executor.submit(() -> {
+                writeSegments(pending);
+                return null;
+            });
+
+            Iterator<UUID> remaining = segments.iterator();
+            Deque<List<UUID>> inFlight = new ArrayDeque<>();
+
+            while (remaining.hasNext() || !inFlight.isEmpty()) {
+                while (remaining.hasNext() && inFlight.size() < pipelineWindow) {
+                    List<UUID> request = new ArrayList<>(pipelineBatchSize);
+
+                    while (remaining.hasNext() && request.size() < pipelineBatchSize) {
+                        request.add(remaining.next());
+                    }
+
+                    log.info("Copying {} segments from primary", request.size());
+                    client.requestSegments(toStrings(request));
+                    inFlight.add(request);
                 }
 
-                if (isLocal(referenced)) {
-                    local.add(referenced);
-                    continue;
+                for (UUID id : inFlight.remove()) {
+                    enqueue(pending, receiveSegment(client, id), writer);
                 }
+            }
 
-                // If we arrive at this point, the referenced segment is 1) not
-                // present locally, 2) not already queued for retrieval and 3)
-                // never visited before. We can safely add the reference to the
-                // queue and transfer the segment later.
+            enqueue(pending, END_OF_SEGMENTS, writer);
+            writer.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-                log.debug("Found reference from {} to {}", current, referenced);
-                batch.add(referenced);
-                queued.add(referenced);
+    private void writeSegments(BlockingQueue<GetSegmentResponse> pending) throws Exception {
+        while (true) {
+            GetSegmentResponse response = pending.take();
+
+            if (response == END_OF_SEGMENTS) {
+                return;
             }
+
+            writeSegment(UUID.fromString(response.getSegmentId()), response.getSegmentData());
         }
+    }
 
-        for (UUID id : bulk) {
-            log.info("Copying bulk segment {} from primary", id);
-            copySegmentFromPrimary(client, id);
+    private static void enqueue(BlockingQueue<GetSegmentResponse> pending, GetSegmentResponse response, Future<?> writer) throws Exception {
+        while (!pending.offer(response, 100, TimeUnit.MILLISECONDS)) {
+            if (writer.isDone()) {
+                writer.get();
+                throw new IllegalStateException("Segment writer terminated unexpectedly");
+            }
         }
+    }
 
-        for (UUID id : data) {
-            log.info("Copying data segment {} from primary", id);
-            copySegmentFromPrimary(client, id);
+    private static Iterable<String> receiveReferences(StandbyClient client, UUID id) throws InterruptedException {
+        GetReferencesResponse response = client.receiveReferences();
+
+        if (response == null || !id.equals(UUID.fromString(response.getSegmentId()))) {
+            throw new IllegalStateException(String.format("Unable to read references of segment %s from primary", id));
         }
+
+        if (!response.isFound()) {
+            throw new IllegalStateException(String.format("References of segment %s not found on primary", id));
+        }
+
+        return response.getReferences();
+    }
+
+    private static GetSegmentResponse receiveSegment(StandbyClient client, UUID id) throws InterruptedException {
+        GetSegmentResponse response = client.receiveSegment();
+
+        if (response == null || !id.equals(UUID.fromString(response.getSegmentId()))) {
+            throw new IllegalStateException("Unable to read segment " + id);
+        }
+
+        if (!response.isFound()) {
+            throw new IllegalStateException("Segment " + id + " not found on primary");
+        }
+
+        return response;
+    }
+
+    private static List<String> toStrings(List<UUID> ids) {
+        List<String> strings = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            strings.add(id.toString());
+        }
+        return strings;
+    }
+
+    private boolean isMissing(UUID referenced, Set<UUID> visited, Set<UUID> queued, Set<UUID> local) {
+
+        // Short circuit for the "backward reference". The segment graph is not
+        // guaranteed to be acyclic, so there might be segments pointing back
+        // to a previously visited (but locally unavailable) segment.
+
+        if (visited.contains(referenced)) {
+            return false;
+        }
+
+        // Short circuit for the "diamond problem". Imagine that segment S1
+        // references S2 and S3 and both S2 and S3 reference S4. These
+        // references form the shape of a diamond. If the segments are
+        // processed in the order S1, S2, S3, then S4 is added twice to the
+        // 'batch' queue. The following check prevents processing S4 twice or
+        // more.
+
+        if (queued.contains(referenced)) {
+            return false;
+        }
+
+        // Short circuit for the "sharing-is-caring problem". If many new
+        // segments are sharing segments that are already locally available,
+        // we should not issue a request for it to the server. Moreover, if a
+        // segment was visited and persisted during this synchronization
+        // process, it will end up in the 'local' set as well.
+
+        if (local.contains(referenced)) {
+            return false;
+        }
+
+        if (isLocal(referenced)) {
+            local.add(referenced);
+            return false;
+        }
+
+        // If we arrive at this point, the referenced segment is 1) not present
+        // locally, 2) not already queued for retrieval and 3) never visited
+        // before. We can safely add the reference to the queue and transfer
+        // the segment later.
+
+        return true;
     }
 
     private Iterable<String> readReferences(StandbyClient client, UUID id) throws InterruptedException {
@@ -219,6 +455,10 @@ class StandbyClientSyncExecution {
             throw new IllegalStateException("Unable to read segment " + uuid);
         }
 
+        writeSegment(uuid, data);
+    }
+
+    private void writeSegment(UUID uuid, byte[] data) throws IOException {
         long msb = uuid.getMostSignificantBits();
         long lsb = uuid.getLeastSignificantBits();
         SegmentId segmentId = idProvider.newSegmentId(msb, lsb);
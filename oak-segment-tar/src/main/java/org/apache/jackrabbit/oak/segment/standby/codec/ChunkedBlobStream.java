@@ -19,13 +19,16 @@ package org.apache.jackrabbit.oak.segment.standby.codec;
 
 import static org.apache.jackrabbit.oak.segment.standby.server.FileStoreUtil.roundDiv;
 
+import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.PushbackInputStream;
+import java.nio.channels.FileChannel;
 
 import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.stream.ChunkedInput;
 import org.slf4j.Logger;
@@ -40,6 +43,13 @@ public class ChunkedBlobStream implements ChunkedInput<ByteBuf> {
     private final PushbackInputStream in;
     private final int chunkSize;
 
+    /**
+     * The channel of the blob file, if the blob stream reads from a file.
+     * Chunks are then read from the channel directly into the buffers sent
+     * to the client, without going through a heap array.
+     */
+    private final FileChannel channel;
+
     private long offset;
     private boolean closed;
 
@@ -68,6 +78,12 @@ public class ChunkedBlobStream implements ChunkedInput<ByteBuf> {
             throw new IllegalArgumentException("chunkSize: " + chunkSize + " (expected: a positive integer)");
         }
 
+        if (in instanceof FileInputStream) {
+            this.channel = ((FileInputStream) in).getChannel();
+        } else {
+            this.channel = null;
+        }
+
         if (in instanceof PushbackInputStream) {
             this.in = (PushbackInputStream) in;
         } else {
@@ -90,6 +106,10 @@ public class ChunkedBlobStream implements ChunkedInput<ByteBuf> {
             return true;
         }
 
+        if (channel != null) {
+            return channel.position() >= channel.size();
+        }
+
         int b = in.read();
         if (b < 0) {
             return true;
@@ -117,12 +137,20 @@ public class ChunkedBlobStream implements ChunkedInput<ByteBuf> {
         }
 
         boolean release = true;
-        ByteBuf decorated = allocator.buffer();
+        ByteBuf buffer = allocator.buffer((int) Math.max(1, Math.min(chunkSize, length - offset)));
 
         try {
-            ByteBuf buffer = allocator.buffer();
-            int written = buffer.writeBytes(in, chunkSize);
-            decorated = decorateRawBuffer(allocator, buffer);
+            int written;
+            if (channel != null) {
+                written = buffer.writeBytes(channel, chunkSize);
+            } else {
+                written = buffer.writeBytes(in, chunkSize);
+            }
+            if (written < 0) {
+                return null;
+            }
+
+            ByteBuf decorated = decorateRawBuffer(allocator, buffer);
 
             offset += written;
             log.debug("Sending chunk {}/{} of size {} from blob {} to client {}", roundDiv(offset, chunkSize),
@@ -132,33 +160,35 @@ public class ChunkedBlobStream implements ChunkedInput<ByteBuf> {
             return decorated;
         } finally {
             if (release) {
-                decorated.release();
+                buffer.release();
             }
         }
     }
 
+    /**
+     * Prepend the header of a chunk to the chunk data. The chunk data is not
+     * copied: the returned buffer is a composite of a header buffer and of
+     * the chunk buffer, and takes ownership of the latter.
+     */
     private ByteBuf decorateRawBuffer(ByteBufAllocator allocator, ByteBuf buffer) {
-        byte[] data = new byte[buffer.readableBytes()];
-        buffer.readBytes(data);
-        buffer.release();
+        int size = buffer.readableBytes();
 
-        byte mask = createMask(data.length);
-        Hasher hasher = Hashing.murmur3_32().newHasher();
-        long hash = hasher.putByte(mask).putLong(length).putBytes(data).hash().padToLong();
+        byte mask = createMask(size);
+        Hasher hasher = Hashing.murmur3_32().newHasher().putByte(mask).putLong(length);
+        long hash = Messages.putBytes(hasher, buffer).hash().padToLong();
 
         byte[] blobIdBytes = blobId.getBytes();
 
-        ByteBuf out = allocator.buffer();
-        out.writeInt(1 + 1 + 8 + 4 + blobIdBytes.length + 8 + data.length);
-        out.writeByte(Messages.HEADER_BLOB);
-        out.writeByte(mask);
-        out.writeLong(length);
-        out.writeInt(blobIdBytes.length);
-        out.writeBytes(blobIdBytes);
-        out.writeLong(hash);
-        out.writeBytes(data);
-
-        return out;
+        ByteBuf header = allocator.buffer(4 + 1 + 1 + 8 + 4 + blobIdBytes.length + 8);
+        header.writeInt(1 + 1 + 8 + 4 + blobIdBytes.length + 8 + size);
+        header.writeByte(Messages.HEADER_BLOB);
+        header.writeByte(mask);
+        header.writeLong(length);
+        header.writeInt(blobIdBytes.length);
+        header.writeBytes(blobIdBytes);
+        header.writeLong(hash);
+
+        return Unpooled.wrappedBuffer(header, buffer);
     }
 
     private byte createMask(int bytesRead) {
@@ -31,6 +31,18 @@ public class GetReferencesResponse {
         this.references = references;
     }
 
+    /**
+     * Create a response telling that the references of a segment requested
+     * as part of a batch are not available on the primary.
+     */
+    public static GetReferencesResponse notFound(String clientId, String segmentId) {
+        return new GetReferencesResponse(clientId, segmentId, null);
+    }
+
+    public boolean isFound() {
+        return references != null;
+    }
+
     public String getClientId() {
         return clientId;
     }
@@ -17,6 +17,8 @@
 
 package org.apache.jackrabbit.oak.segment.standby.codec;
 
+import java.util.UUID;
+
 import com.google.common.base.Charsets;
 import com.google.common.base.Joiner;
 import io.netty.buffer.ByteBuf;
@@ -31,10 +33,23 @@ public class GetReferencesResponseEncoder extends MessageToByteEncoder<GetRefere
 
     @Override
     protected void encode(ChannelHandlerContext ctx, GetReferencesResponse msg, ByteBuf out) throws Exception {
+        if (!msg.isFound()) {
+            log.debug("Sending 'references not found' for segment {} to client {}", msg.getSegmentId(), msg.getClientId());
+            encodeNotFound(msg.getSegmentId(), out);
+            return;
+        }
         log.debug("Sending references of segment {} to client {}", msg.getSegmentId(), msg.getClientId());
         encode(msg.getSegmentId(), msg.getReferences(), out);
     }
 
+    private static void encodeNotFound(String segmentId, ByteBuf out) {
+        UUID id = UUID.fromString(segmentId);
+        out.writeInt(17);
+        out.writeByte(Messages.HEADER_REFERENCES_NOT_FOUND);
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
     private static void encode(String segmentId, Iterable<String> references, ByteBuf out) {
         byte[] data = serialize(segmentId, references).getBytes(Charsets.UTF_8);
         out.writeInt(data.length + 1);
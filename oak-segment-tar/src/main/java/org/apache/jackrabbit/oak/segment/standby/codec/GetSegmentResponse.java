@@ -17,20 +17,38 @@
 
 package org.apache.jackrabbit.oak.segment.standby.codec;
 
+import java.nio.ByteBuffer;
+
 public class GetSegmentResponse {
 
     private final String clientId;
 
     private final String segmentId;
 
-    private final byte[] segmentData;
+    private final ByteBuffer segmentData;
 
     public GetSegmentResponse(String clientId, String segmentId, byte[] segmentData) {
+        this(clientId, segmentId, ByteBuffer.wrap(segmentData));
+    }
+
+    /**
+     * Create a response for the content of a segment held in a buffer. The
+     * content is not copied, and is encoded directly from the buffer.
+     */
+    public GetSegmentResponse(String clientId, String segmentId, ByteBuffer segmentData) {
         this.clientId = clientId;
         this.segmentId = segmentId;
         this.segmentData = segmentData;
     }
 
+    /**
+     * Create a response telling that a segment requested as part of a batch
+     * is not available on the primary.
+     */
+    public static GetSegmentResponse notFound(String clientId, String segmentId) {
+        return new GetSegmentResponse(clientId, segmentId, (ByteBuffer) null);
+    }
+
     public String getClientId() {
         return clientId;
     }
@@ -39,8 +57,26 @@ public class GetSegmentResponse {
         return segmentId;
     }
 
+    public boolean isFound() {
+        return segmentData != null;
+    }
+
     public byte[] getSegmentData() {
-        return segmentData;
+        ByteBuffer buffer = segmentData.duplicate();
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0 && buffer.remaining() == buffer.array().length) {
+            return buffer.array();
+        }
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
+    public ByteBuffer getSegmentBuffer() {
+        return segmentData.duplicate();
+    }
+
+    public int getSegmentSize() {
+        return segmentData.remaining();
     }
 
 }
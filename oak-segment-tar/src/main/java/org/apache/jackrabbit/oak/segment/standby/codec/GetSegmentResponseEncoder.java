@@ -17,20 +17,25 @@
 
 package org.apache.jackrabbit.oak.segment.standby.codec;
 
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.UUID;
 
-import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.codec.MessageToMessageEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Encodes a 'get segment' response.
+ * Encodes a 'get segment' response. The content of the segment is not copied:
+ * the encoded message is a composite of a header and of a buffer wrapping the
+ * content of the segment, as returned by the store.
  */
-public class GetSegmentResponseEncoder extends MessageToByteEncoder<GetSegmentResponse> {
+public class GetSegmentResponseEncoder extends MessageToMessageEncoder<GetSegmentResponse> {
 
     private static final Logger log = LoggerFactory.getLogger(GetSegmentResponseEncoder.class);
 
@@ -39,24 +44,42 @@ public class GetSegmentResponseEncoder extends MessageToByteEncoder<GetSegmentRe
     private static final int EXTRA_HEADERS_WO_SIZE = EXTRA_HEADERS_LEN - 4;
 
     @Override
-    protected void encode(ChannelHandlerContext ctx, GetSegmentResponse msg, ByteBuf out) throws Exception {
+    protected void encode(ChannelHandlerContext ctx, GetSegmentResponse msg, List<Object> out) throws Exception {
+        if (!msg.isFound()) {
+            log.debug("Sending 'segment not found' for {} to client {}", msg.getSegmentId(), msg.getClientId());
+            out.add(encodeNotFound(ctx.alloc(), msg.getSegmentId()));
+            return;
+        }
         log.debug("Sending segment {} to client {}", msg.getSegmentId(), msg.getClientId());
-        encode(msg.getSegmentId(), msg.getSegmentData(), out);
+        out.add(encode(ctx.alloc(), msg.getSegmentId(), msg.getSegmentBuffer()));
     }
 
-    private static void encode(String segmentId, byte[] data, ByteBuf out) {
+    private static ByteBuf encodeNotFound(ByteBufAllocator allocator, String segmentId) {
         UUID id = UUID.fromString(segmentId);
 
-        Hasher hasher = Hashing.murmur3_32().newHasher();
-        long hash = hasher.putBytes(data).hash().padToLong();
+        ByteBuf buffer = allocator.buffer(21);
+        buffer.writeInt(17);
+        buffer.writeByte(Messages.HEADER_SEGMENT_NOT_FOUND);
+        buffer.writeLong(id.getMostSignificantBits());
+        buffer.writeLong(id.getLeastSignificantBits());
 
-        int len = data.length + EXTRA_HEADERS_WO_SIZE;
-        out.writeInt(len);
-        out.writeByte(Messages.HEADER_SEGMENT);
-        out.writeLong(id.getMostSignificantBits());
-        out.writeLong(id.getLeastSignificantBits());
-        out.writeLong(hash);
-        out.writeBytes(data);
+        return buffer;
+    }
+
+    private static ByteBuf encode(ByteBufAllocator allocator, String segmentId, ByteBuffer data) {
+        UUID id = UUID.fromString(segmentId);
+
+        ByteBuf content = Unpooled.wrappedBuffer(data);
+        long hash = Messages.putBytes(Hashing.murmur3_32().newHasher(), content).hash().padToLong();
+
+        ByteBuf header = allocator.buffer(EXTRA_HEADERS_LEN);
+        header.writeInt(content.readableBytes() + EXTRA_HEADERS_WO_SIZE);
+        header.writeByte(Messages.HEADER_SEGMENT);
+        header.writeLong(id.getMostSignificantBits());
+        header.writeLong(id.getLeastSignificantBits());
+        header.writeLong(hash);
+
+        return Unpooled.wrappedBuffer(header, content);
     }
 
 }
@@ -19,6 +19,12 @@
 
 package org.apache.jackrabbit.oak.segment.standby.codec;
 
+import java.util.List;
+
+import com.google.common.base.Joiner;
+import com.google.common.hash.Hasher;
+import io.netty.buffer.ByteBuf;
+
 final class Messages {
 
     static final byte HEADER_RECORD = 0x00;
@@ -29,6 +35,10 @@ final class Messages {
 
     static final byte HEADER_REFERENCES = 0x03;
 
+    static final byte HEADER_SEGMENT_NOT_FOUND = 0x04;
+
+    static final byte HEADER_REFERENCES_NOT_FOUND = 0x05;
+
     static final String GET_HEAD = "h";
 
     static final String GET_SEGMENT = "s.";
@@ -37,12 +47,50 @@ final class Messages {
 
     static final String GET_REFERENCES = "r.";
 
+    static final String GET_SEGMENTS = "ss.";
+
+    static final String GET_SEGMENTS_REFERENCES = "rs.";
+
+    static final String LIST_SEPARATOR = ",";
+
     private static final String MAGIC = "Standby-CMD@";
 
     private static final String SEPARATOR = ":";
 
+    /**
+     * Size of the chunks used to hash buffers without a backing array.
+     */
+    private static final int HASH_CHUNK_SIZE = 8192;
+
     private Messages() {}
 
+    /**
+     * Feed the readable bytes of a buffer to a hasher, without changing the
+     * reader index of the buffer. Buffers without a backing array, like
+     * direct or memory mapped buffers, are hashed in small chunks instead of
+     * being copied to the heap at once.
+     */
+    static Hasher putBytes(Hasher hasher, ByteBuf buffer) {
+        int index = buffer.readerIndex();
+        int length = buffer.readableBytes();
+
+        if (buffer.hasArray()) {
+            return hasher.putBytes(buffer.array(), buffer.arrayOffset() + index, length);
+        }
+
+        byte[] chunk = new byte[Math.min(length, HASH_CHUNK_SIZE)];
+
+        while (length > 0) {
+            int n = Math.min(length, chunk.length);
+            buffer.getBytes(index, chunk, 0, n);
+            hasher.putBytes(chunk, 0, n);
+            index += n;
+            length -= n;
+        }
+
+        return hasher;
+    }
+
     private static String newRequest(String clientId, String body, boolean delimited) {
         StringBuilder builder = new StringBuilder(MAGIC);
 
@@ -84,6 +132,22 @@ final class Messages {
         return newGetReferencesRequest(clientId, segmentId, true);
     }
 
+    static String newGetSegmentsRequest(String clientId, List<String> segmentIds, boolean delimited) {
+        return newRequest(clientId, GET_SEGMENTS + Joiner.on(LIST_SEPARATOR).join(segmentIds), delimited);
+    }
+
+    static String newGetSegmentsRequest(String clientId, List<String> segmentIds) {
+        return newGetSegmentsRequest(clientId, segmentIds, true);
+    }
+
+    static String newGetSegmentsReferencesRequest(String clientId, List<String> segmentIds, boolean delimited) {
+        return newRequest(clientId, GET_SEGMENTS_REFERENCES + Joiner.on(LIST_SEPARATOR).join(segmentIds), delimited);
+    }
+
+    static String newGetSegmentsReferencesRequest(String clientId, List<String> segmentIds) {
+        return newGetSegmentsReferencesRequest(clientId, segmentIds, true);
+    }
+
     static String newGetBlobRequest(String clientId, String blobId, boolean delimited) {
         return newRequest(clientId, GET_BLOB + blobId, delimited);
     }
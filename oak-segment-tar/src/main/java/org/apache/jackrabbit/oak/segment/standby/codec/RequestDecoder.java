@@ -17,6 +17,9 @@
 
 package org.apache.jackrabbit.oak.segment.standby.codec;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+
 import java.util.List;
 
 import io.netty.channel.ChannelHandlerContext;
@@ -47,9 +50,22 @@ public class RequestDecoder extends MessageToMessageDecoder<String> {
         } else if (request.startsWith(Messages.GET_REFERENCES)) {
             log.debug("Parsed 'get references' message");
             out.add(new GetReferencesRequest(Messages.extractClientFrom(msg), request.substring(Messages.GET_REFERENCES.length())));
+        } else if (request.startsWith(Messages.GET_SEGMENTS)) {
+            log.debug("Parsed 'get segments' message");
+            out.add(new GetSegmentsRequest(Messages.extractClientFrom(msg), splitList(request.substring(Messages.GET_SEGMENTS.length()))));
+        } else if (request.startsWith(Messages.GET_SEGMENTS_REFERENCES)) {
+            log.debug("Parsed 'get segments references' message");
+            out.add(new GetSegmentsReferencesRequest(Messages.extractClientFrom(msg), splitList(request.substring(Messages.GET_SEGMENTS_REFERENCES.length()))));
         } else {
             log.debug("Received unrecognizable message {}, dropping", msg);
         }
     }
 
+    private static List<String> splitList(String list) {
+        if (list.isEmpty()) {
+            return emptyList();
+        }
+        return asList(list.split(Messages.LIST_SEPARATOR));
+    }
+
 }
@@ -96,6 +96,14 @@ public class ResponseDecoder extends ByteToMessageDecoder {
                 log.debug("Decoding 'get references' response");
                 decodeGetReferencesResponse(length, in, out);
                 break;
+            case Messages.HEADER_SEGMENT_NOT_FOUND:
+                log.debug("Decoding 'segment not found' response");
+                out.add(GetSegmentResponse.notFound(null, decodeSegmentId(in)));
+                break;
+            case Messages.HEADER_REFERENCES_NOT_FOUND:
+                log.debug("Decoding 'references not found' response");
+                out.add(GetReferencesResponse.notFound(null, decodeSegmentId(in)));
+                break;
             default:
                 log.debug("Invalid type, dropping message");
         }
@@ -202,6 +210,12 @@ public class ResponseDecoder extends ByteToMessageDecoder {
         out.add(new GetReferencesResponse(null, segmentId, references));
     }
 
+    private static String decodeSegmentId(ByteBuf in) {
+        long msb = in.readLong();
+        long lsb = in.readLong();
+        return new UUID(msb, lsb).toString();
+    }
+
     private static long hash(byte[] data) {
         return Hashing.murmur3_32().newHasher().putBytes(data).hash().padToLong();
     }
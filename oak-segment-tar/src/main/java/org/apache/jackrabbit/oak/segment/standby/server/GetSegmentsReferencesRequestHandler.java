@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jackrabbit.oak.segment.standby.server;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesResponse;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentsReferencesRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Answers a 'get segments references' request with one 'get references'
+ * response per requested segment, in the order of the request. A segment
+ * whose references can't be read is answered with a 'references not found'
+ * response, so that the client is never left waiting for it.
+ */
+class GetSegmentsReferencesRequestHandler extends SimpleChannelInboundHandler<GetSegmentsReferencesRequest> {
+
+    private static final Logger log = LoggerFactory.getLogger(GetSegmentsReferencesRequestHandler.class);
+
+    private final StandbyReferencesReader reader;
+
+    GetSegmentsReferencesRequestHandler(StandbyReferencesReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, GetSegmentsReferencesRequest msg) throws Exception {
+        log.debug("Reading references of {} segments for client {}", msg.getSegmentIds().size(), msg.getClientId());
+
+        for (String segmentId : msg.getSegmentIds()) {
+            Iterable<String> references = reader.readReferences(segmentId);
+
+            if (references == null) {
+                log.warn("References for segment {} not found, answering client {} with 'references not found'", segmentId, msg.getClientId());
+                ctx.write(GetReferencesResponse.notFound(msg.getClientId(), segmentId));
+                continue;
+            }
+
+            ctx.write(new GetReferencesResponse(msg.getClientId(), segmentId, references));
+        }
+
+        ctx.flush();
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jackrabbit.oak.segment.standby.server;
+
+import java.nio.ByteBuffer;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentResponse;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentsRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Answers a 'get segments' request with one 'get segment' response per
+ * requested segment. The responses are written in the order of the request
+ * and flushed at once, so that the whole batch costs a single round trip. A
+ * segment that can't be read is answered with a 'segment not found'
+ * response, so that the client is never left waiting for it.
+ */
+class GetSegmentsRequestHandler extends SimpleChannelInboundHandler<GetSegmentsRequest> {
+
+    private static final Logger log = LoggerFactory.getLogger(GetSegmentsRequestHandler.class);
+
+    private final StandbySegmentReader reader;
+
+    GetSegmentsRequestHandler(StandbySegmentReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, GetSegmentsRequest msg) throws Exception {
+        log.debug("Reading {} segments for client {}", msg.getSegmentIds().size(), msg.getClientId());
+
+        for (String segmentId : msg.getSegmentIds()) {
+            ByteBuffer data = reader.readSegment(segmentId);
+
+            if (data == null) {
+                log.warn("Segment {} not found, answering client {} with 'segment not found'", segmentId, msg.getClientId());
+                ctx.write(GetSegmentResponse.notFound(msg.getClientId(), segmentId));
+                continue;
+            }
+
+            ctx.write(new GetSegmentResponse(msg.getClientId(), segmentId, data));
+        }
+
+        ctx.flush();
+    }
+
+}
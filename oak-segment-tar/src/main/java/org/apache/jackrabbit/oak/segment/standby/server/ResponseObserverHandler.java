@@ -48,7 +48,10 @@ class ResponseObserverHandler extends ChannelOutboundHandlerAdapter {
     }
 
     private void onGetSegmentResponse(GetSegmentResponse response) {
-        observer.didSendSegmentBytes(response.getClientId(), response.getSegmentData().length);
+        if (!response.isFound()) {
+            return;
+        }
+        observer.didSendSegmentBytes(response.getClientId(), response.getSegmentSize());
     }
 
     private void onGetBlobResponse(GetBlobResponse response) {
@@ -17,8 +17,18 @@
 
 package org.apache.jackrabbit.oak.segment.standby.server;
 
+import java.nio.ByteBuffer;
+
 interface StandbySegmentReader {
 
-    byte[] readSegment(String segmentId);
+    /**
+     * Read the content of a segment. The returned buffer may be a view of
+     * the content cached by the store, or of a memory mapped TAR file, and
+     * must not be modified.
+     *
+     * @param segmentId the identifier of the segment
+     * @return the content of the segment, or {@code null} if not found.
+     */
+    ByteBuffer readSegment(String segmentId);
 
 }
@@ -193,6 +193,8 @@ class StandbyServer implements AutoCloseable {
                 p.addLast(new GetSegmentRequestHandler(new DefaultStandbySegmentReader(store)));
                 p.addLast(new GetBlobRequestHandler(new DefaultStandbyBlobReader(store.getBlobStore())));
                 p.addLast(new GetReferencesRequestHandler(new DefaultStandbyReferencesReader(store)));
+                p.addLast(new GetSegmentsRequestHandler(new DefaultStandbySegmentReader(store)));
+                p.addLast(new GetSegmentsReferencesRequestHandler(new DefaultStandbyReferencesReader(store)));
 
                 // Exception handler
 
@@ -60,6 +60,14 @@ public class Check {
         private Set<String> filterPaths;
 
         private boolean ioStatistics;
+
+        private long maxTimestamp = Long.MAX_VALUE;
+
+        private int probeThreads;
+
+        private int threads = 1;
+
+        private boolean verifyChecksums;
         
         private PrintWriter outWriter;
         
@@ -169,6 +177,66 @@ public class Check {
             this.ioStatistics = ioStatistics;
             return this;
         }
+
+        /**
+         * Only check the revisions persisted at or before the given time. The
+         * newer revisions are skipped using an index of the journal, which is
+         * created next to the journal if needed. This parameter is not
+         * required and defaults to {@code Long.MAX_VALUE}.
+         *
+         * @param maxTimestamp the time in milliseconds since the epoch.
+         * @return this builder.
+         */
+        public Builder withMaxTimestamp(long maxTimestamp) {
+            this.maxTimestamp = maxTimestamp;
+            return this;
+        }
+
+        /**
+         * Number of threads probing the upcoming revisions of the journal in
+         * parallel. A revision in which none of the paths still to check can
+         * be read is skipped without performing a full check. This parameter
+         * is not required and defaults to {@code 0}, which disables probing.
+         *
+         * @param probeThreads the number of probing threads.
+         * @return this builder.
+         */
+        public Builder withProbeThreads(int probeThreads) {
+            checkArgument(probeThreads >= 0);
+            this.probeThreads = probeThreads;
+            return this;
+        }
+
+        /**
+         * Number of threads traversing the content. With more than one thread
+         * the traversal is partitioned across the threads, and subtrees shared
+         * between revisions, checkpoints and paths are checked only once. The
+         * same number of tar files is verified concurrently when checksums are
+         * verified. This parameter is not required and defaults to {@code 1},
+         * which traverses sequentially.
+         *
+         * @param threads the number of threads.
+         * @return this builder.
+         */
+        public Builder withThreads(int threads) {
+            checkArgument(threads > 0);
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Instruct the command to verify the segments of every tar file
+         * against their checksums before traversing the content. This
+         * parameter is not required and defaults to {@code false}.
+         *
+         * @param verifyChecksums {@code true} if the checksums of the segments
+         *                        should be verified, {@code false} otherwise.
+         * @return this builder.
+         */
+        public Builder withVerifyChecksums(boolean verifyChecksums) {
+            this.verifyChecksums = verifyChecksums;
+            return this;
+        }
         
         /**
          * The text output stream writer used to print normal output.
@@ -220,6 +288,14 @@ public class Check {
     private final Set<String> filterPaths;
 
     private final boolean ioStatistics;
+
+    private final long maxTimestamp;
+
+    private final int probeThreads;
+
+    private final int threads;
+
+    private final boolean verifyChecksums;
     
     private final PrintWriter outWriter;
     
@@ -234,6 +310,10 @@ public class Check {
         this.checkpoints = builder.checkpoints;
         this.filterPaths = builder.filterPaths;
         this.ioStatistics = builder.ioStatistics;
+        this.maxTimestamp = builder.maxTimestamp;
+        this.probeThreads = builder.probeThreads;
+        this.threads = builder.threads;
+        this.verifyChecksums = builder.verifyChecksums;
         this.outWriter = builder.outWriter;
         this.errWriter = builder.errWriter;
     }
@@ -249,6 +329,10 @@ public class Check {
                 checkpoints,
                 filterPaths,
                 ioStatistics,
+                maxTimestamp,
+                probeThreads,
+                threads,
+                verifyChecksums,
                 outWriter,
                 errWriter
             );
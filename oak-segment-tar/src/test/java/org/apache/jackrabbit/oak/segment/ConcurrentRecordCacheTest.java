@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static org.apache.jackrabbit.oak.segment.TestUtils.newRecordId;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.jackrabbit.oak.segment.CacheWeights.StringCacheWeigher;
+import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.junit.Test;
+
+public class ConcurrentRecordCacheTest {
+    private final Random rnd = new Random();
+    private final MemoryStore store = new MemoryStore();
+    private final SegmentIdProvider idProvider = store.getSegmentIdProvider();
+
+    public ConcurrentRecordCacheTest() throws IOException {}
+
+    @Test
+    public void emptyCache() {
+        ConcurrentRecordCache<String> cache = new ConcurrentRecordCache<>(0, new StringCacheWeigher());
+        assertNull(cache.get("any", 0));
+
+        cache.put("key", 0, newRecordId(idProvider, rnd), (byte) 0);
+        assertNull(cache.get("key", 0));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void putAndGet() {
+        ConcurrentRecordCache<String> cache = new ConcurrentRecordCache<>(1024 * 1024, new StringCacheWeigher());
+        assertNull(cache.get("any", 0));
+
+        RecordId value = newRecordId(idProvider, rnd);
+        cache.put("key", 0, value, (byte) 0);
+        assertEquals(value, cache.get("key", 0));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getStats().hitCount());
+        assertEquals(1, cache.getStats().missCount());
+    }
+
+    @Test
+    public void replace() {
+        ConcurrentRecordCache<String> cache = new ConcurrentRecordCache<>(1024 * 1024, new StringCacheWeigher());
+        cache.put("key", 0, newRecordId(idProvider, rnd), (byte) 0);
+
+        RecordId value = newRecordId(idProvider, rnd);
+        cache.put("key", 0, value, (byte) 0);
+        assertEquals(value, cache.get("key", 0));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void generations() {
+        ConcurrentRecordCache<String> cache = new ConcurrentRecordCache<>(1024 * 1024, new StringCacheWeigher());
+        RecordId value0 = newRecordId(idProvider, rnd);
+        RecordId value1 = newRecordId(idProvider, rnd);
+        cache.put("key", 0, value0, (byte) 0);
+        cache.put("key", 1, value1, (byte) 0);
+        assertEquals(value0, cache.get("key", 0));
+        assertEquals(value1, cache.get("key", 1));
+        assertNull(cache.get("key", 2));
+
+        cache.purgeGenerations(generation -> generation < 1);
+        assertNull(cache.get("key", 0));
+        assertEquals(value1, cache.get("key", 1));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void maxWeight() {
+        long maxWeight = 64 * 1024;
+        StringCacheWeigher weigher = new StringCacheWeigher();
+        ConcurrentRecordCache<String> cache = new ConcurrentRecordCache<>(maxWeight, weigher);
+        long weight = 0;
+        for (int k = 0; k < 10000; k++) {
+            String key = "key-" + k;
+            RecordId value = newRecordId(idProvider, rnd);
+            weight += weigher.weigh(key, value);
+            cache.put(key, 0, value, (byte) 0);
+            assertTrue(cache.estimateCurrentWeight() <= maxWeight);
+        }
+        assertTrue(weight > maxWeight);
+        assertTrue(cache.size() > 0);
+        assertTrue(cache.getStats().evictionCount() > 0);
+    }
+
+    @Test
+    public void concurrentAccess() throws Exception {
+        final ConcurrentRecordCache<String> cache = new ConcurrentRecordCache<>(256 * 1024, new StringCacheWeigher());
+        final RecordId[] values = new RecordId[5000];
+        for (int k = 0; k < values.length; k++) {
+            values[k] = newRecordId(idProvider, rnd);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    Random random = new Random();
+                    for (int k = 0; k < 100000; k++) {
+                        int i = random.nextInt(values.length);
+                        RecordId value = cache.get("key-" + i, 0);
+                        if (value == null) {
+                            cache.put("key-" + i, 0, values[i], (byte) 0);
+                        } else {
+                            assertEquals(values[i], value);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertTrue(cache.estimateCurrentWeight() <= cache.getMaxWeight());
+        assertTrue(cache.size() <= values.length);
+    }
+
+}
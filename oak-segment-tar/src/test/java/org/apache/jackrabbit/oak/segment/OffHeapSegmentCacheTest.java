@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment;
+
+import static org.apache.jackrabbit.oak.segment.SegmentStore.EMPTY_STORE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.jackrabbit.oak.cache.AbstractCacheStats;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OffHeapSegmentCacheTest {
+
+    private static final int KB = 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    /**
+     * Content of the segments passed to the segment factory, by segment id.
+     */
+    private final Map<SegmentId, byte[]> created = new HashMap<>();
+
+    private Segment newSegment(SegmentId id, ByteBuffer data) {
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        created.put(id, bytes);
+        return mockSegment(id, bytes);
+    }
+
+    private static Segment mockSegment(SegmentId id, byte[] bytes) {
+        Segment segment = mock(Segment.class);
+        when(segment.getSegmentId()).thenReturn(id);
+        when(segment.size()).thenReturn(bytes.length);
+        try {
+            doAnswer(invocation -> {
+                OutputStream stream = invocation.getArgument(0);
+                stream.write(bytes, 0, bytes.length);
+                return null;
+            }).when(segment).writeTo(any(OutputStream.class));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return segment;
+    }
+
+    private static byte[] bytes(int size, int value) {
+        byte[] bytes = new byte[size];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+
+    private static SegmentId newSegmentId(SegmentCache cache, long msb) {
+        return new SegmentId(EMPTY_STORE, msb, 0xa000000000000000L | msb, cache::recordHit);
+    }
+
+    private static Segment failToLoad(SegmentId id) {
+        fail("Cache should not need to load " + id);
+        return null;
+    }
+
+    @Test
+    public void wrapperRecreatedFromOffHeapContent() throws Exception {
+        SegmentCache cache = new OffHeapSegmentCache(1, null, 0, this::newSegment, 1);
+        SegmentId id1 = newSegmentId(cache, 1);
+        SegmentId id2 = newSegmentId(cache, 2);
+        byte[] bytes1 = bytes(100, 1);
+
+        Segment segment1 = mockSegment(id1, bytes1);
+        cache.putSegment(segment1);
+        assertSame(segment1, id1.getSegment());
+
+        // Putting another segment evicts the wrapper of the first one
+        cache.putSegment(mockSegment(id2, bytes(100, 2)));
+
+        Segment recreated = cache.getSegment(id1, () -> failToLoad(id1));
+        assertArrayEquals(bytes1, created.get(id1));
+        assertSame(recreated, id1.getSegment());
+
+        AbstractCacheStats stats = cache.getCacheStats();
+        assertEquals(0, stats.getMissCount());
+        assertTrue(stats.getHitCount() > 0);
+        assertEquals(200, stats.estimateCurrentWeight());
+    }
+
+    @Test
+    public void loadOnMiss() throws Exception {
+        SegmentCache cache = new OffHeapSegmentCache(1, null, 0, this::newSegment, 1);
+        SegmentId id1 = newSegmentId(cache, 1);
+        Segment segment1 = mockSegment(id1, bytes(100, 1));
+
+        assertSame(segment1, cache.getSegment(id1, () -> segment1));
+        assertSame(segment1, cache.getSegment(id1, () -> failToLoad(id1)));
+
+        AbstractCacheStats stats = cache.getCacheStats();
+        assertEquals(1, stats.getMissCount());
+        assertEquals(1, stats.getLoadCount());
+        assertEquals(1, stats.getElementCount());
+        assertEquals(100, stats.estimateCurrentWeight());
+    }
+
+    @Test
+    public void overflowTier() throws Exception {
+        File overflowFile = folder.newFile();
+        SegmentCache cache = new OffHeapSegmentCache(1, overflowFile, 2, this::newSegment, 1);
+        SegmentId[] ids = new SegmentId[3];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = newSegmentId(cache, i + 1);
+            cache.putSegment(mockSegment(ids[i], bytes(400 * KB, i + 1)));
+        }
+
+        // The first segment was moved to the overflow tier, not evicted
+        AbstractCacheStats stats = cache.getCacheStats();
+        assertEquals(0, stats.getEvictionCount());
+        assertEquals(3, stats.getElementCount());
+
+        cache.getSegment(ids[0], () -> failToLoad(ids[0]));
+        assertArrayEquals(bytes(400 * KB, 1), created.get(ids[0]));
+        assertEquals(0, stats.getMissCount());
+
+        cache.close();
+    }
+
+    @Test
+    public void overflowTierEviction() throws Exception {
+        File overflowFile = folder.newFile();
+        SegmentCache cache = new OffHeapSegmentCache(1, overflowFile, 1, this::newSegment, 1);
+        SegmentId[] ids = new SegmentId[8];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = newSegmentId(cache, i + 1);
+            cache.putSegment(mockSegment(ids[i], bytes(400 * KB, i + 1)));
+        }
+
+        // At most two segments fit in the off-heap memory and two in the
+        // overflow tier. The oldest segments must have been evicted.
+        AbstractCacheStats stats = cache.getCacheStats();
+        assertTrue(stats.getEvictionCount() >= 4);
+        assertTrue(stats.estimateCurrentWeight() <= 2 * 1024 * KB);
+
+        Segment reloaded = mockSegment(ids[0], bytes(400 * KB, 1));
+        assertSame(reloaded, cache.getSegment(ids[0], () -> reloaded));
+        assertEquals(1, stats.getMissCount());
+
+        // The newest segment is still cached
+        cache.getSegment(ids[7], () -> failToLoad(ids[7]));
+        assertEquals(1, stats.getMissCount());
+
+        cache.close();
+    }
+
+    @Test
+    public void overflowTierPromotion() throws Exception {
+        File overflowFile = folder.newFile();
+        SegmentCache cache = new OffHeapSegmentCache(1, overflowFile, 2, this::newSegment, 1);
+        SegmentId[] ids = new SegmentId[4];
+        for (int i = 0; i < 3; i++) {
+            ids[i] = newSegmentId(cache, i + 1);
+            cache.putSegment(mockSegment(ids[i], bytes(400 * KB, i + 1)));
+        }
+
+        // Promoting the first segment out of the overflow tier moves the
+        // second one there. Every segment is accounted for exactly once.
+        AbstractCacheStats stats = cache.getCacheStats();
+        cache.getSegment(ids[0], () -> failToLoad(ids[0]));
+        assertEquals(3, stats.getElementCount());
+        assertEquals(1200 * KB, stats.estimateCurrentWeight());
+
+        ids[3] = newSegmentId(cache, 4);
+        cache.putSegment(mockSegment(ids[3], bytes(400 * KB, 4)));
+        assertEquals(4, stats.getElementCount());
+        assertEquals(1600 * KB, stats.estimateCurrentWeight());
+
+        // Evicting the promoted segment again writes it back to the overflow
+        // tier, which still has room for all of them
+        cache.getSegment(ids[1], () -> failToLoad(ids[1]));
+        assertEquals(4, stats.getElementCount());
+        assertEquals(1600 * KB, stats.estimateCurrentWeight());
+        assertEquals(0, stats.getEvictionCount());
+
+        for (SegmentId id : ids) {
+            cache.getSegment(id, () -> failToLoad(id));
+        }
+        assertEquals(0, stats.getMissCount());
+        assertEquals(0, stats.getEvictionCount());
+
+        cache.close();
+    }
+
+    @Test
+    public void clear() throws Exception {
+        File overflowFile = folder.newFile();
+        SegmentCache cache = new OffHeapSegmentCache(1, overflowFile, 2, this::newSegment, 1);
+        for (int i = 0; i < 3; i++) {
+            cache.putSegment(mockSegment(newSegmentId(cache, i + 1), bytes(400 * KB, i + 1)));
+        }
+
+        cache.clear();
+
+        AbstractCacheStats stats = cache.getCacheStats();
+        assertEquals(0, stats.getElementCount());
+        assertEquals(0, stats.estimateCurrentWeight());
+
+        cache.close();
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void loadFailure() throws Exception {
+        SegmentCache cache = new OffHeapSegmentCache(1, null, 0, this::newSegment, 1);
+        SegmentId id1 = newSegmentId(cache, 1);
+        cache.getSegment(id1, () -> {
+            throw new IOException("Unable to load " + id1);
+        });
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static org.apache.jackrabbit.oak.segment.DefaultSegmentWriterBuilder.defaultSegmentWriterBuilder;
+import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.defaultGCOptions;
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.apache.jackrabbit.oak.segment.file.tar.GCGeneration.newGCGeneration;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.file.GCNodeWriteMonitor;
+import org.apache.jackrabbit.oak.segment.file.InvalidFileStoreVersionException;
+import org.apache.jackrabbit.oak.segment.file.cancel.Canceller;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.gc.GCMonitor;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ParallelCompactorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private FileStore fileStore;
+
+    private SegmentNodeStore nodeStore;
+
+    @Before
+    public void setup() throws IOException, InvalidFileStoreVersionException {
+        fileStore = fileStoreBuilder(folder.getRoot()).build();
+        nodeStore = SegmentNodeStoreBuilders.builder(fileStore).build();
+    }
+
+    @After
+    public void tearDown() {
+        fileStore.close();
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+        Compactor compactor = createCompactor(fileStore, GCNodeWriteMonitor.EMPTY, 2);
+        addTestContent(nodeStore);
+
+        SegmentNodeState uncompacted = (SegmentNodeState) nodeStore.getRoot();
+        SegmentNodeState compacted = compactor.compact(uncompacted, Canceller.newCanceller());
+        assertNotNull(compacted);
+        assertFalse(uncompacted == compacted);
+        assertEquals(uncompacted, compacted);
+        assertEquals(uncompacted.getSegment().getGcGeneration().nextFull(), compacted.getSegment().getGcGeneration());
+
+        modifyTestContent(nodeStore);
+        NodeState modified = nodeStore.getRoot();
+        compacted = compactor.compact(uncompacted, modified, compacted, Canceller.newCanceller());
+        assertNotNull(compacted);
+        assertFalse(modified == compacted);
+        assertEquals(modified, compacted);
+        assertEquals(uncompacted.getSegment().getGcGeneration().nextFull(), compacted.getSegment().getGcGeneration());
+    }
+
+    @Test
+    public void testCompactBelowSplitDepth() throws Exception {
+        Compactor compactor = createCompactor(fileStore, GCNodeWriteMonitor.EMPTY, 5);
+        addTestContent(nodeStore);
+
+        SegmentNodeState uncompacted = (SegmentNodeState) nodeStore.getRoot();
+        SegmentNodeState compacted = compactor.compact(uncompacted, Canceller.newCanceller());
+        assertNotNull(compacted);
+        assertEquals(uncompacted, compacted);
+    }
+
+    @Test
+    public void testWorkerProgress() throws Exception {
+        GCNodeWriteMonitor monitor = new GCNodeWriteMonitor(-1, GCMonitor.EMPTY);
+        monitor.init(0, 0, 0);
+        Compactor compactor = createCompactor(fileStore, monitor, 1);
+        addTestContent(nodeStore);
+
+        assertNotNull(compactor.compact(nodeStore.getRoot(), Canceller.newCanceller()));
+
+        long total = 0;
+        for (long nodes : monitor.getCompactedNodesPerWorker().values()) {
+            total += nodes;
+        }
+        assertEquals(monitor.getCompactedNodes(), total);
+        assertTrue(monitor.getCompactedNodesPerWorker().keySet().stream()
+            .anyMatch(name -> name.startsWith("oak-compaction-worker-")));
+    }
+
+    @Test
+    public void testCancel() throws IOException, CommitFailedException {
+        Compactor compactor = createCompactor(fileStore, GCNodeWriteMonitor.EMPTY, 1);
+        addTestContent(nodeStore);
+
+        assertNull(compactor.compact(nodeStore.getRoot(), Canceller.newCanceller().withCondition("reason", () -> true)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidConcurrencyDepth() {
+        defaultGCOptions().setConcurrencyDepth(0);
+    }
+
+    @NotNull
+    private static Compactor createCompactor(FileStore fileStore, GCNodeWriteMonitor monitor, int depth) {
+        SegmentWriter writer = defaultSegmentWriterBuilder("c")
+                .withGeneration(newGCGeneration(1, 1, true))
+                .withWriterPool()
+                .build(fileStore);
+        return new ParallelCompactor(fileStore.getReader(), writer, fileStore.getBlobStore(), monitor, 4, depth);
+    }
+
+    private static void addTestContent(SegmentNodeStore nodeStore) throws CommitFailedException {
+        NodeBuilder builder = nodeStore.getRoot().builder();
+        for (int i = 0; i < 10; i++) {
+            NodeBuilder child = builder.setChildNode("n-" + i);
+            child.setProperty("p", i);
+            for (int j = 0; j < 10; j++) {
+                child.setChildNode("c-" + j).setChildNode("cc").setProperty("q", "v" + j);
+            }
+        }
+        nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+    }
+
+    private static void modifyTestContent(SegmentNodeStore nodeStore) throws CommitFailedException {
+        NodeBuilder builder = nodeStore.getRoot().builder();
+        builder.getChildNode("n-0").remove();
+        builder.getChildNode("n-1").setProperty("p", "changed");
+        builder.getChildNode("n-2").getChildNode("c-3").remove();
+        builder.getChildNode("n-3").getChildNode("c-4").getChildNode("cc").setProperty("added", true);
+        builder.setChildNode("n-new").setChildNode("c-new");
+        nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+    }
+
+}
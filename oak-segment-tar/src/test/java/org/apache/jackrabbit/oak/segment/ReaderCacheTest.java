@@ -125,5 +125,41 @@ public class ReaderCacheTest {
             assertEquals(loader.apply(offset), x);
         }
     }
-    
+
+    @Test
+    public void scanResistance() {
+        final AtomicInteger hotLoads = new AtomicInteger();
+        Function<Integer, String> hotLoader = new Function<Integer, String>() {
+            @Override @Nullable
+            public String apply(@Nullable Integer input) {
+                hotLoads.incrementAndGet();
+                return "hot " + input;
+            }
+        };
+        Function<Integer, String> scanLoader = new Function<Integer, String>() {
+            @Override @Nullable
+            public String apply(@Nullable Integer input) {
+                return "scan " + input;
+            }
+        };
+        StringCache c = new StringCache(64 * 1024);
+        for (int repeat = 0; repeat < 5; repeat++) {
+            for (int i = 0; i < 100; i++) {
+                assertEquals("hot " + i, c.get(1, 1, i, hotLoader));
+            }
+        }
+        // a scan reading many entries only once doesn't evict the hot entries
+        for (int i = 0; i < 100000; i++) {
+            assertEquals("scan " + i, c.get(2, 2, i, scanLoader));
+            if (i % 1000 == 0) {
+                for (int j = 0; j < 100; j++) {
+                    assertEquals("hot " + j, c.get(1, 1, j, hotLoader));
+                }
+            }
+        }
+        assertTrue(valueOf(hotLoads), hotLoads.get() < 200);
+        assertTrue(c.getRejectedCount() > 0);
+        assertTrue(c.getStats().getHitCount() > 0);
+    }
+
 }
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RecordIdSetTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private final SegmentStore store = SegmentStore.EMPTY_STORE;
+
+    private final SegmentId[] segmentIds = new SegmentId[100];
+
+    private final Random rnd = new Random(42);
+
+    {
+        for (int k = 0; k < segmentIds.length; k++) {
+            segmentIds[k] = new SegmentId(store, rnd.nextLong(), 0xa000000000000000L | rnd.nextInt());
+        }
+    }
+
+    @Test
+    public void empty() {
+        RecordIdSet set = new RecordIdSet();
+        assertFalse(set.contains(new RecordId(segmentIds[0], 0)));
+        assertEquals(0, set.size());
+    }
+
+    @Test
+    public void addIfNotPresent() {
+        RecordIdSet set = new RecordIdSet();
+        RecordId id = new RecordId(segmentIds[0], 42);
+        assertTrue(set.addIfNotPresent(id));
+        assertFalse(set.addIfNotPresent(id));
+        assertTrue(set.contains(id));
+        assertTrue(set.contains(new RecordId(segmentIds[0], 42)));
+        assertFalse(set.contains(new RecordId(segmentIds[0], 43)));
+        assertFalse(set.contains(new RecordId(segmentIds[1], 42)));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    public void addMany() {
+        addAndCheck(new RecordIdSet());
+    }
+
+    @Test
+    public void spillToDisk() throws Exception {
+        try (RecordIdSet set = new RecordIdSet(4096, folder.getRoot())) {
+            addAndCheck(set);
+            assertTrue(set.getSpilledBytes() > 0);
+        }
+        assertEquals(0, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void reuseFreedSpillRegions() throws Exception {
+        RecordIdSet.SpillFile spillFile = new RecordIdSet.SpillFile(folder.getRoot());
+        try {
+            long[] bitmap = new long[10];
+            Arrays.fill(bitmap, -1L);
+            long first = spillFile.write(bitmap);
+            long second = spillFile.write(new long[] {1L});
+
+            spillFile.free(first);
+            assertEquals(first, spillFile.write(new long[] {2L, 4L, 8L, 16L, 32L, 64L, 128L, 256L}));
+            assertTrue(spillFile.contains(first, 1));
+            assertFalse(spillFile.contains(first, 0));
+            assertFalse(spillFile.contains(first, 8 * 64 + 1));
+
+            // A region more than twice as large as required is not reused
+            spillFile.free(first);
+            assertTrue(spillFile.write(new long[] {1L}) > second);
+        } finally {
+            spillFile.close();
+        }
+    }
+
+    private void addAndCheck(RecordIdSet set) {
+        Set<RecordId> expected = new HashSet<>();
+        for (int k = 0; k < 100000; k++) {
+            SegmentId segmentId = segmentIds[rnd.nextInt(segmentIds.length)];
+            // Mostly dense record numbers with a few outliers
+            int number = rnd.nextInt(10) == 0 ? rnd.nextInt(100000) : rnd.nextInt(2000);
+            RecordId id = new RecordId(segmentId, number);
+            assertEquals(expected.add(id), set.addIfNotPresent(id));
+        }
+
+        assertEquals(expected.size(), set.size());
+        for (SegmentId segmentId : segmentIds) {
+            for (int number = 0; number < 100000; number++) {
+                RecordId id = new RecordId(segmentId, number);
+                assertEquals(expected.contains(id), set.contains(id));
+            }
+        }
+    }
+
+}
@@ -20,6 +20,8 @@ package org.apache.jackrabbit.oak.segment;
 
 import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
@@ -46,6 +48,93 @@ public class SegmentIdTableBenchmark {
         test();
         test();
         test();
+        for (int threads = 1; threads <= 32; threads *= 2) {
+            testContention(threads);
+        }
+    }
+
+    /**
+     * Resolve the same segment identifiers from {@code threads} threads,
+     * comparing the lock-free lookup of {@link SegmentIdTable} with a lookup
+     * serialized on the monitor of the table.
+     */
+    private static void testContention(int threads) throws IOException {
+        MemoryStore store = new MemoryStore();
+        SegmentIdFactory maker = newSegmentIdMaker(store);
+
+        long[] msbs = new long[10000];
+        long[] lsbs = new long[10000];
+        Random r = new Random(1);
+        for (int i = 0; i < msbs.length; i++) {
+            msbs[i] = r.nextLong();
+            lsbs[i] = r.nextLong();
+        }
+
+        long time = runContention(new SegmentIdTable(), maker, msbs, lsbs, threads);
+        System.out.println("SegmentIdTable, " + threads + " threads: " + time);
+
+        time = runContention(new SynchronizedSegmentIdTable(), maker, msbs, lsbs, threads);
+        System.out.println("SynchronizedSegmentIdTable, " + threads + " threads: " + time);
+    }
+
+    private static long runContention(final SegmentIdTable tbl, final SegmentIdFactory maker,
+            final long[] msbs, final long[] lsbs, int threads) {
+        final List<SegmentId> refs = new ArrayList<SegmentId>();
+        for (int i = 0; i < msbs.length; i++) {
+            refs.add(tbl.newSegmentId(msbs[i], lsbs[i], maker));
+        }
+
+        final int repeat = 1000;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int offset = t * 997;
+            workers[t] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int i = 0; i < repeat; i++) {
+                        for (int j = 0; j < msbs.length; j++) {
+                            int k = (j + offset) % msbs.length;
+                            tbl.newSegmentId(msbs[k], lsbs[k], maker);
+                        }
+                    }
+                }
+
+            });
+        }
+
+        long time = System.currentTimeMillis();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        time = System.currentTimeMillis() - time;
+
+        // Keep the segment identifiers strongly referenced until the end
+        if (refs.size() != msbs.length) {
+            throw new IllegalStateException();
+        }
+        return time;
+    }
+
+    /**
+     * A {@link SegmentIdTable} serializing every lookup, like the
+     * implementation preceding the lock-free lookup did.
+     */
+    private static class SynchronizedSegmentIdTable extends SegmentIdTable {
+
+        @NotNull
+        @Override
+        synchronized SegmentId newSegmentId(long msb, long lsb, SegmentIdFactory maker) {
+            return super.newSegmentId(msb, lsb, maker);
+        }
+
     }
 
     private static void test() throws IOException {
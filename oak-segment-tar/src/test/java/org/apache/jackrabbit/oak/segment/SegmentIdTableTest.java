@@ -32,6 +32,7 @@ import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -216,4 +217,48 @@ public class SegmentIdTableTest {
         }
         assertEquals(2, tbl.getMapRebuildCount());
     }
+
+    @Test
+    public void concurrentLookups() throws Exception {
+        final SegmentIdFactory maker = newSegmentIdMaker();
+        final SegmentIdTable tbl = new SegmentIdTable();
+
+        final long[] lsbs = new long[8 * 1024];
+        Random r = new Random(1);
+        for (int i = 0; i < lsbs.length; i++) {
+            lsbs[i] = r.nextLong();
+        }
+
+        Callable<List<SegmentId>> c = new Callable<List<SegmentId>>() {
+
+            @Override
+            public List<SegmentId> call() throws Exception {
+                List<SegmentId> ids = new ArrayList<SegmentId>();
+                for (int i = 0; i < lsbs.length; i++) {
+                    ids.add(tbl.newSegmentId(i, lsbs[i], maker));
+                }
+                return ids;
+            }
+
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<SegmentId>>> futures = new ArrayList<Future<List<SegmentId>>>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(c));
+            }
+            List<SegmentId> expected = futures.get(0).get();
+            for (Future<List<SegmentId>> future : futures) {
+                List<SegmentId> ids = future.get();
+                for (int i = 0; i < ids.size(); i++) {
+                    // every thread must see the same instance
+                    assertTrue(expected.get(i) == ids.get(i));
+                }
+            }
+            assertEquals(lsbs.length, tbl.getEntryCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.apache.jackrabbit.oak.segment.DefaultSegmentWriterBuilder.defaultSegmentWriterBuilder;
+import static org.apache.jackrabbit.oak.segment.file.tar.GCGeneration.newGCGeneration;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+
+/**
+ * Compares the write throughput of {@link WriterCacheManager.Default} and
+ * {@link WriterCacheManager.Concurrent} with concurrent writers sharing the
+ * deduplication caches. The writers rewrite nodes of an older generation
+ * picked from a common pool, as compaction does. The stable ids of these
+ * nodes make the writers put them into the node cache and find those
+ * already rewritten by another writer there. Nodes have property names and
+ * values drawn from a common vocabulary, so that most strings and templates
+ * are found in the deduplication caches.
+ */
+public class WriterCacheManagerBenchmark {
+
+    private static final int THREADS = 32;
+
+    private static final int NODES = 2000;
+
+    private static final int VOCABULARY = 5000;
+
+    private static final int POOL = 20000;
+
+    public static void main(String... args) throws Exception {
+        for (int run = 0; run < 5; run++) {
+            report("Default", run(new WriterCacheManager.Default()));
+            report("Concurrent", run(new WriterCacheManager.Concurrent(
+                    16 * 1024 * 1024, 4 * 1024 * 1024, 64 * 1024 * 1024)));
+        }
+    }
+
+    private static void report(String name, long nanos) {
+        long nodes = (long) THREADS * NODES;
+        System.out.printf("%s, %d writers: %d nodes in %d ms, %d nodes/s%n",
+                name, THREADS, nodes, nanos / 1000000, nodes * 1000000000L / nanos);
+    }
+
+    private static long run(WriterCacheManager cacheManager) throws Exception {
+        MemoryStore store = new MemoryStore();
+        final SegmentNodeState[] pool = createPool(store);
+        final SegmentWriter writer = defaultSegmentWriterBuilder("benchmark")
+                .withGeneration(newGCGeneration(1, 1, true))
+                .with(cacheManager)
+                .withWriterPool()
+                .build(store);
+
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread[] writers = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final long seed = t;
+            writers[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    for (int k = 0; k < NODES; k++) {
+                        writer.writeNode(pool[random.nextInt(POOL)]);
+                    }
+                } catch (IOException e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+        }
+
+        long time = System.nanoTime();
+        for (Thread t : writers) {
+            t.start();
+        }
+        for (Thread t : writers) {
+            t.join();
+        }
+        time = System.nanoTime() - time;
+
+        writer.flush();
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return time;
+    }
+
+    /**
+     * Write the nodes the benchmark rewrites with a writer of the initial
+     * generation.
+     */
+    private static SegmentNodeState[] createPool(MemoryStore store) throws IOException {
+        SegmentWriter writer = defaultSegmentWriterBuilder("pool").build(store);
+        Random random = new Random(-1);
+        RecordId[] ids = new RecordId[POOL];
+        for (int k = 0; k < POOL; k++) {
+            NodeBuilder builder = EMPTY_NODE.builder();
+            for (int p = 0; p < 5; p++) {
+                builder.setProperty("p-" + random.nextInt(20), "value-" + random.nextInt(VOCABULARY));
+            }
+            ids[k] = writer.writeNode(builder.getNodeState());
+        }
+        writer.flush();
+
+        SegmentNodeState[] pool = new SegmentNodeState[POOL];
+        for (int k = 0; k < POOL; k++) {
+            pool[k] = store.getReader().readNode(ids[k]);
+        }
+        return pool;
+    }
+
+}
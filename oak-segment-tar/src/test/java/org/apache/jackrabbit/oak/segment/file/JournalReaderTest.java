@@ -142,6 +142,21 @@ public class JournalReaderTest {
         }
     }
 
+    @Test
+    public void testMaxTimestamp() throws IOException {
+        File journalFile = folder.newFile("jrt-ts");
+        write(journalFile, "one 1 100\ntwo 2 200\nthree 3 300\n");
+        try (JournalReader journalReader = new JournalReader(new LocalJournalFile(journalFile), 250)) {
+            assertTrue(journalReader.hasNext());
+            assertEquals(new JournalEntry("two", 200L), journalReader.next());
+            assertEquals(new JournalEntry("one", 100L), journalReader.next());
+            assertFalse(journalReader.hasNext());
+        }
+        try (JournalReader journalReader = new JournalReader(new LocalJournalFile(journalFile), 50)) {
+            assertFalse(journalReader.hasNext());
+        }
+    }
+
     protected JournalReader createJournalReader(String s) throws IOException {
         File journalFile = folder.newFile("jrt");
         write(journalFile, s);
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
+import org.apache.jackrabbit.oak.segment.SegmentId;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.stats.DefaultStatisticsProvider;
+import org.apache.jackrabbit.oak.stats.MeterStats;
+import org.apache.jackrabbit.oak.stats.StatsOptions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SegmentCacheWarmupTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = folder.newFolder();
+
+        // Spread the content over many segments
+        try (FileStore store = fileStoreBuilder(directory).build()) {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            for (int i = 0; i < 20; i++) {
+                NodeBuilder root = nodeStore.getRoot().builder();
+                NodeBuilder parent = root.child("p" + i);
+                for (int j = 0; j < 1000; j++) {
+                    parent.child("c" + j).setProperty("value", "value of child " + j + " in commit " + i);
+                }
+                nodeStore.merge(root, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+                store.flush();
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        new ExecutorCloser(executor).close();
+    }
+
+    private static void traverse(NodeState node) {
+        node.getPropertyCount();
+        for (ChildNodeEntry child : node.getChildNodeEntries()) {
+            traverse(child.getNodeState());
+        }
+    }
+
+    private static void awaitCount(MeterStats meter, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (meter.getCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void traceRoundTrip() throws Exception {
+        File file = new File(directory, "test.trace");
+        Set<UUID> trace = new LinkedHashSet<>();
+        for (int i = 0; i < 10; i++) {
+            trace.add(UUID.randomUUID());
+        }
+        SegmentCacheWarmup.writeTrace(file, trace);
+
+        List<UUID> read = SegmentCacheWarmup.readTrace(file);
+        assertEquals(trace.size(), read.size());
+        assertEquals(trace, new LinkedHashSet<>(read));
+    }
+
+    @Test
+    public void warmUpFromTrace() throws Exception {
+        File traceFile = new File(directory, SegmentCacheWarmup.TRACE_FILE_NAME);
+
+        try (FileStore store = fileStoreBuilder(directory)
+                .withSegmentCacheWarmup(2, 1000)
+                .build()) {
+            traverse(store.getHead());
+        }
+
+        assertTrue(traceFile.exists());
+        assertFalse(SegmentCacheWarmup.readTrace(traceFile).isEmpty());
+
+        DefaultStatisticsProvider statsProvider = new DefaultStatisticsProvider(executor);
+        try (FileStore store = fileStoreBuilder(directory)
+                .withStatisticsProvider(statsProvider)
+                .withSegmentCacheWarmup(2, 1000)
+                .build()) {
+            MeterStats warmedUp = statsProvider.getMeter(SegmentCacheWarmup.OAK_SEGMENT_WARMUP_SEGMENTS, StatsOptions.METRICS_ONLY);
+            awaitCount(warmedUp, 10000);
+            assertTrue(warmedUp.getCount() > 0);
+        }
+    }
+
+    @Test
+    public void cachedAccessesRankHottest() throws Exception {
+        File traceFile = new File(directory, SegmentCacheWarmup.TRACE_FILE_NAME);
+        SegmentId hot;
+
+        try (FileStore store = fileStoreBuilder(directory)
+                .withSegmentCacheWarmup(2, 1000)
+                .build()) {
+            traverse(store.getHead());
+
+            // Served by the memoised segment, without a segment cache miss
+            hot = store.getHead().getRecordId().getSegmentId();
+            for (int i = 0; i < 100; i++) {
+                hot.getSegment();
+            }
+        }
+
+        List<UUID> trace = SegmentCacheWarmup.readTrace(traceFile);
+        assertEquals(hot.asUUID(), trace.get(0));
+    }
+
+    @Test
+    public void noWarmupByDefault() throws Exception {
+        try (FileStore store = fileStoreBuilder(directory).build()) {
+            traverse(store.getHead());
+        }
+
+        assertFalse(new File(directory, SegmentCacheWarmup.TRACE_FILE_NAME).exists());
+    }
+
+}
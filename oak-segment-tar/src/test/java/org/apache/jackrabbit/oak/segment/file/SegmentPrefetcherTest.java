@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.stats.DefaultStatisticsProvider;
+import org.apache.jackrabbit.oak.stats.MeterStats;
+import org.apache.jackrabbit.oak.stats.StatsOptions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SegmentPrefetcherTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = folder.newFolder();
+
+        // Spread the content over many segments referencing each other
+        try (FileStore store = fileStoreBuilder(directory).build()) {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            for (int i = 0; i < 20; i++) {
+                NodeBuilder root = nodeStore.getRoot().builder();
+                NodeBuilder parent = root.child("p" + i);
+                for (int j = 0; j < 1000; j++) {
+                    parent.child("c" + j).setProperty("value", "value of child " + j + " in commit " + i);
+                }
+                nodeStore.merge(root, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+                store.flush();
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        new ExecutorCloser(executor).close();
+    }
+
+    private static void readRoot(FileStore store) {
+        // Only load the segment of the root node. Its children live in other
+        // segments which are only loaded by the prefetcher.
+        store.getHead().getChildNodeCount(Long.MAX_VALUE);
+    }
+
+    private static void awaitCount(MeterStats meter, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (meter.getCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void prefetchReferencedSegments() throws Exception {
+        DefaultStatisticsProvider statsProvider = new DefaultStatisticsProvider(executor);
+        try (FileStore store = fileStoreBuilder(directory)
+                .withStatisticsProvider(statsProvider)
+                .withSegmentPrefetch(2, 2)
+                .build()) {
+            readRoot(store);
+
+            MeterStats prefetched = statsProvider.getMeter(SegmentPrefetcher.OAK_SEGMENT_PREFETCH_SEGMENTS, StatsOptions.METRICS_ONLY);
+            awaitCount(prefetched, 10000);
+            assertTrue(prefetched.getCount() > 0);
+        }
+    }
+
+    @Test
+    public void prefetchReadOnlyStore() throws Exception {
+        DefaultStatisticsProvider statsProvider = new DefaultStatisticsProvider(executor);
+        try (ReadOnlyFileStore store = fileStoreBuilder(directory)
+                .withStatisticsProvider(statsProvider)
+                .withSegmentPrefetch(2, 2)
+                .buildReadOnly()) {
+            readRoot(store);
+
+            MeterStats prefetched = statsProvider.getMeter(SegmentPrefetcher.OAK_SEGMENT_PREFETCH_SEGMENTS, StatsOptions.METRICS_ONLY);
+            awaitCount(prefetched, 10000);
+            assertTrue(prefetched.getCount() > 0);
+        }
+    }
+
+    @Test
+    public void noPrefetchByDefault() throws Exception {
+        DefaultStatisticsProvider statsProvider = new DefaultStatisticsProvider(executor);
+        try (FileStore store = fileStoreBuilder(directory)
+                .withStatisticsProvider(statsProvider)
+                .build()) {
+            readRoot(store);
+
+            MeterStats prefetched = statsProvider.getMeter(SegmentPrefetcher.OAK_SEGMENT_PREFETCH_SEGMENTS, StatsOptions.METRICS_ONLY);
+            assertEquals(0, prefetched.getCount());
+        }
+    }
+
+}
@@ -22,6 +22,8 @@ package org.apache.jackrabbit.oak.segment.file;
 import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
 import static java.util.concurrent.Executors.newFixedThreadPool;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -30,6 +32,8 @@ import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
@@ -232,4 +236,54 @@ public class TarRevisionsTest {
         }
     }
 
+    private int countJournalEntries() throws IOException {
+        int count = 0;
+        try (JournalReader reader = createJournalReader()) {
+            while (reader.hasNext()) {
+                reader.next();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void groupCommitFlush() throws Exception {
+        store.close();
+        store = FileStoreBuilder.fileStoreBuilder(getFileStoreFolder())
+                .withCustomPersistence(getPersistence())
+                .withJournalGroupCommit(1, MINUTES, 4)
+                .build();
+        revisions = store.getRevisions();
+        reader = store.getReader();
+        int entries = countJournalEntries();
+
+        ListeningExecutorService executor = listeningDecorator(newFixedThreadPool(4));
+        try {
+            List<ListenableFuture<?>> flushes = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                String name = "c" + i;
+                flushes.add(executor.submit(() -> {
+                    revisions.setHead(headId -> addChild(reader.readNode(headId), name).getRecordId());
+                    store.flush();
+                    return null;
+                }));
+            }
+            for (ListenableFuture<?> flush : flushes) {
+                flush.get(30, SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals("Concurrent flushes should share a journal write", entries + 1, countJournalEntries());
+        try (JournalReader reader = createJournalReader()) {
+            assertEquals(revisions.getHead().toString10(), reader.next().getRevision());
+        }
+        SegmentNodeState root = reader.readNode(revisions.getPersistedHead());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(root.hasChildNode("c" + i));
+        }
+    }
+
 }
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static org.apache.jackrabbit.oak.segment.file.tar.GCGeneration.newGCGeneration;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BinaryReferencesSetTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.newFolder();
+    }
+
+    private static void add(BinaryReferencesSet set, String archiveName, String... references) throws IOException {
+        set.add(archiveName, consumer -> consumer.consume(1, 1, false, new HashSet<>(asList(references))));
+    }
+
+    private static Set<String> collect(BinaryReferencesSet set, String... archiveNames) throws IOException {
+        Set<String> references = new HashSet<>();
+        Set<String> missing = set.collect(new HashSet<>(asList(archiveNames)), gen -> false, references::add);
+        assertEquals(emptySet(), missing);
+        return references;
+    }
+
+    @Test
+    public void testCollect() throws Exception {
+        BinaryReferencesSet set = BinaryReferencesSet.open(directory);
+        add(set, "data00000a.tar", "a", "b");
+        add(set, "data00001a.tar", "b", "c");
+
+        assertTrue(set.contains("data00000a.tar"));
+        assertTrue(set.contains("data00001a.tar"));
+        assertEquals(new HashSet<>(asList("a", "b", "c")), collect(set, "data00000a.tar", "data00001a.tar"));
+        assertEquals(new HashSet<>(asList("b", "c")), collect(set, "data00001a.tar"));
+    }
+
+    @Test
+    public void testCollectWithGenerationFilter() throws Exception {
+        GCGeneration ko = newGCGeneration(2, 2, false);
+
+        BinaryReferencesSet set = BinaryReferencesSet.open(directory);
+        set.add("data00000a.tar", consumer -> {
+            consumer.consume(1, 1, false, singleton("ok"));
+            consumer.consume(2, 2, false, singleton("ko"));
+        });
+
+        Set<String> references = new HashSet<>();
+        set.collect(singleton("data00000a.tar"), ko::equals, references::add);
+        assertEquals(singleton("ok"), references);
+    }
+
+    @Test
+    public void testMissingArchives() throws Exception {
+        BinaryReferencesSet set = BinaryReferencesSet.open(directory);
+        add(set, "data00000a.tar", "a");
+
+        Set<String> references = new HashSet<>();
+        Set<String> missing = set.collect(new HashSet<>(asList("data00000a.tar", "data00001a.tar")), gen -> false, references::add);
+        assertEquals(singleton("data00001a.tar"), missing);
+        assertEquals(singleton("a"), references);
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        BinaryReferencesSet set = BinaryReferencesSet.open(directory);
+        add(set, "data00000a.tar", "a");
+        add(set, "data00001a.tar", "b");
+
+        set = BinaryReferencesSet.open(directory);
+        assertTrue(set.contains("data00000a.tar"));
+        assertTrue(set.contains("data00001a.tar"));
+        assertEquals(new HashSet<>(asList("a", "b")), collect(set, "data00000a.tar", "data00001a.tar"));
+    }
+
+    @Test
+    public void testStaleRecordsAreRemoved() throws Exception {
+        BinaryReferencesSet set = BinaryReferencesSet.open(directory);
+        add(set, "data00000a.tar", "a", "b", "c");
+        add(set, "data00001a.tar", "d");
+        long length = new File(directory, BinaryReferencesSet.FILE_NAME).length();
+
+        assertEquals(singleton("d"), collect(set, "data00001a.tar"));
+        assertFalse(set.contains("data00000a.tar"));
+        assertTrue(new File(directory, BinaryReferencesSet.FILE_NAME).length() < length);
+
+        set = BinaryReferencesSet.open(directory);
+        assertFalse(set.contains("data00000a.tar"));
+        assertEquals(singleton("d"), collect(set, "data00001a.tar"));
+    }
+
+    @Test
+    public void testConcurrentCompactions() throws Exception {
+        BinaryReferencesSet set = BinaryReferencesSet.open(directory);
+        for (int i = 0; i < 100; i++) {
+            add(set, String.format("data%05da.tar", i), "stale-" + i);
+        }
+        add(set, "live.tar", "a");
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Set<String>>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return collect(set, "live.tar");
+                }));
+            }
+            start.countDown();
+            for (Future<Set<String>> result : results) {
+                assertEquals(singleton("a"), result.get());
+            }
+        } finally {
+            new ExecutorCloser(executor).close();
+        }
+
+        assertFalse(set.contains("data00000a.tar"));
+        assertEquals(singleton("a"), collect(BinaryReferencesSet.open(directory), "live.tar"));
+    }
+
+    @Test
+    public void testTornRecordIsDiscarded() throws Exception {
+        BinaryReferencesSet set = BinaryReferencesSet.open(directory);
+        add(set, "data00000a.tar", "a");
+
+        try (FileOutputStream out = new FileOutputStream(new File(directory, BinaryReferencesSet.FILE_NAME), true)) {
+            out.write(new byte[] {0, 0, 0, 14, 'd', 'a', 't', 'a'});
+        }
+
+        set = BinaryReferencesSet.open(directory);
+        assertTrue(set.contains("data00000a.tar"));
+        add(set, "data00001a.tar", "b");
+
+        set = BinaryReferencesSet.open(directory);
+        assertEquals(new HashSet<>(asList("a", "b")), collect(set, "data00000a.tar", "data00001a.tar"));
+    }
+
+}
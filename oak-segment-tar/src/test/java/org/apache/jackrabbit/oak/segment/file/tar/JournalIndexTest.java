@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import static java.util.Arrays.asList;
+import static org.apache.commons.io.FileUtils.write;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jackrabbit.oak.segment.spi.persistence.JournalFileReader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JournalIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private static String journal(int from, int to) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            builder.append("r").append(i).append(" root ").append(1000 + 10 * i).append('\n');
+        }
+        return builder.toString();
+    }
+
+    private static List<String> readAll(File file, long end) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (JournalFileReader reader = new ReverseJournalFileReader(file, end)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    public void reverseRead() throws IOException {
+        File file = folder.newFile();
+        write(file, "a\r\nb\n\nc");
+        assertEquals(asList("c", "", "b", "a"), readAll(file, file.length()));
+        assertEquals(asList("", "b", "a"), readAll(file, 6));
+        assertEquals(asList("b", "a"), readAll(file, 5));
+    }
+
+    @Test
+    public void reverseReadAcrossBlocks() throws IOException {
+        int count = 3 * ReverseJournalFileReader.BLOCK_SIZE / 16;
+        File file = folder.newFile();
+        write(file, journal(0, count));
+        List<String> lines = readAll(file, file.length());
+        assertEquals(count, lines.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals("r" + i + " root " + (1000 + 10 * i), lines.get(count - 1 - i));
+        }
+    }
+
+    @Test
+    public void loadWithoutPersisting() throws IOException {
+        File file = folder.newFile();
+        write(file, journal(0, 2000));
+        JournalIndex index = JournalIndex.load(file, false);
+        assertEquals(2000, index.getEntryCount());
+        assertFalse(JournalIndex.indexFile(file).exists());
+    }
+
+    @Test
+    public void findEnd() throws IOException {
+        int count = 3 * JournalIndex.INTERVAL + 10;
+        File file = folder.newFile();
+        write(file, journal(0, count));
+        JournalIndex index = JournalIndex.load(file);
+        assertEquals(count, index.getEntryCount());
+        assertTrue(JournalIndex.indexFile(file).exists());
+
+        assertEquals(0, index.findEnd(999));
+        assertEquals("r0 root 1000", readAll(file, index.findEnd(1000)).get(0));
+        assertEquals("r0 root 1000", readAll(file, index.findEnd(1009)).get(0));
+        for (int i : new int[] {1, JournalIndex.INTERVAL - 1, JournalIndex.INTERVAL, JournalIndex.INTERVAL + 1, count - 1}) {
+            List<String> lines = readAll(file, index.findEnd(1000 + 10 * i));
+            assertEquals("r" + i + " root " + (1000 + 10 * i), lines.get(0));
+            assertEquals(i + 1, lines.size());
+        }
+        assertEquals(file.length(), index.findEnd(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void updateAppended() throws IOException {
+        File file = folder.newFile();
+        write(file, journal(0, 2000));
+        assertEquals(2000, JournalIndex.load(file).getEntryCount());
+
+        write(file, journal(2000, 2100), true);
+        JournalIndex index = JournalIndex.load(file);
+        assertEquals(2100, index.getEntryCount());
+        assertEquals("r2050 root 21500", readAll(file, index.findEnd(21505)).get(0));
+    }
+
+    @Test
+    public void rebuildRewritten() throws IOException {
+        File file = folder.newFile();
+        write(file, journal(0, 2000));
+        JournalIndex.load(file);
+
+        write(file, "x root 5\n");
+        JournalIndex index = JournalIndex.load(file);
+        assertEquals(1, index.getEntryCount());
+        assertEquals(asList("x root 5"), readAll(file, index.findEnd(5)));
+        try (JournalFileReader reader = new ReverseJournalFileReader(file, index.findEnd(4))) {
+            assertNull(reader.readLine());
+        }
+    }
+
+    @Test
+    public void timestamp() {
+        assertEquals(123, JournalIndex.timestamp("r root 123"));
+        assertEquals(-1, JournalIndex.timestamp("r root"));
+        assertEquals(-1, JournalIndex.timestamp("r root 12a"));
+        assertEquals(-1, JournalIndex.timestamp("invalid"));
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.file.InvalidFileStoreVersionException;
+import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveEntry;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveReader;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+
+/**
+ * Compare the size on disk of a repository with and without segment
+ * compression, together with the latency of reading its segments back. The
+ * size on disk is what competes for the page cache when the TAR files are
+ * memory mapped, the read latency is the price paid for decompressing the
+ * segments.
+ */
+public class SegmentCompressionBenchmark {
+
+    private static final int NODES = 100000;
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String... args) throws Exception {
+        boolean memoryMapping = args.length == 0 || Boolean.parseBoolean(args[0]);
+
+        File root = new File("target", "segment-compression-benchmark");
+        FileUtils.deleteQuietly(root);
+        try {
+            File raw = new File(root, "raw");
+            File compressed = new File(root, "compressed");
+            createRepository(raw, false);
+            createRepository(compressed, true);
+
+            for (int i = 0; i < ROUNDS; i++) {
+                readSegments("raw", raw, memoryMapping);
+                readSegments("compressed", compressed, memoryMapping);
+            }
+        } finally {
+            FileUtils.deleteQuietly(root);
+        }
+    }
+
+    private static void createRepository(File directory, boolean compress)
+            throws IOException, InvalidFileStoreVersionException, CommitFailedException {
+        try (FileStore store = fileStoreBuilder(directory).withSegmentCompression(compress).build()) {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            Random random = new Random(42);
+            NodeBuilder builder = nodeStore.getRoot().builder();
+            for (int i = 0; i < NODES; i++) {
+                NodeBuilder node = builder.child("c" + i % 100).child("n" + i);
+                node.setProperty("jcr:primaryType", "nt:unstructured");
+                node.setProperty("title", "Node number " + i);
+                node.setProperty("count", (long) random.nextInt(1000));
+                if (i % 1000 == 999) {
+                    nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+                    builder = nodeStore.getRoot().builder();
+                }
+            }
+            nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        }
+    }
+
+    private static void readSegments(String name, File directory, boolean memoryMapping) throws IOException {
+        SegmentTarManager manager = new SegmentTarManager(directory, new FileStoreMonitorAdapter(), new IOMonitorAdapter(), memoryMapping);
+
+        List<SegmentArchiveReader> readers = new ArrayList<>();
+        List<Runnable> reads = new ArrayList<>();
+        long size = 0;
+        long segmentBytes = 0;
+        try {
+            for (String archive : manager.listArchives()) {
+                SegmentArchiveReader reader = manager.open(archive);
+                if (reader == null) {
+                    continue;
+                }
+                readers.add(reader);
+                size += reader.length();
+                for (SegmentArchiveEntry entry : reader.listSegments()) {
+                    segmentBytes += entry.getLength();
+                    reads.add(() -> {
+                        try {
+                            ByteBuffer buffer = reader.readSegment(entry.getMsb(), entry.getLsb());
+                            buffer.get(buffer.limit() - 1);
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    });
+                }
+            }
+
+            Collections.shuffle(reads, new Random(42));
+
+            long start = System.nanoTime();
+            for (Runnable read : reads) {
+                read.run();
+            }
+            long elapsed = System.nanoTime() - start;
+
+            System.out.printf("%-10s segments=%d, stored segment bytes=%d, tar bytes=%d, read latency=%dns, total=%dms%n",
+                    name, reads.size(), segmentBytes, size, elapsed / Math.max(1, reads.size()),
+                    TimeUnit.NANOSECONDS.toMillis(elapsed));
+        } finally {
+            for (SegmentArchiveReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+}
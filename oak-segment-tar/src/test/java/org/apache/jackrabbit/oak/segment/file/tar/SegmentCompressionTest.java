@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import static org.apache.jackrabbit.oak.segment.file.tar.GCGeneration.newGCGeneration;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Random;
+import java.util.UUID;
+
+import org.apache.jackrabbit.oak.segment.file.tar.index.IndexEntry;
+import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveEntry;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SegmentCompressionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private SegmentArchiveManager archiveManager;
+
+    @Before
+    public void setUp() throws IOException {
+        archiveManager = new SegmentTarManager(folder.newFolder(), new FileStoreMonitorAdapter(), new IOMonitorAdapter(), false, true);
+    }
+
+    private static byte[] compressible(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i % 31);
+        }
+        return data;
+    }
+
+    private static byte[] incompressible(int size) {
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+
+    @Test
+    public void testCompressAndDecompress() throws IOException {
+        byte[] data = compressible(256 * 1024);
+        byte[] compressed = SegmentCompression.compress(data, 0, data.length);
+        assertTrue(compressed.length < data.length);
+        assertEquals(ByteBuffer.wrap(data), SegmentCompression.decompress(SegmentCompression.DEFLATE, ByteBuffer.wrap(compressed), data.length));
+        assertArrayEquals(data, SegmentCompression.decompress(compressed));
+    }
+
+    @Test
+    public void testIncompressibleData() {
+        byte[] data = incompressible(4096);
+        assertNull(SegmentCompression.compress(data, 0, data.length));
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnexpectedUncompressedLength() throws IOException {
+        byte[] data = compressible(4096);
+        byte[] compressed = SegmentCompression.compress(data, 0, data.length);
+        SegmentCompression.decompress(SegmentCompression.DEFLATE, ByteBuffer.wrap(compressed), data.length - 1);
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        byte[] compressible = compressible(64 * 1024);
+        byte[] incompressible = incompressible(64 * 1024);
+
+        try (TarWriter writer = new TarWriter(archiveManager, "data00000a.tar")) {
+            writer.writeEntry(a.getMostSignificantBits(), a.getLeastSignificantBits(), compressible, 0, compressible.length, newGCGeneration(1, 2, false));
+            writer.writeEntry(b.getMostSignificantBits(), b.getLeastSignificantBits(), incompressible, 0, incompressible.length, newGCGeneration(1, 2, false));
+            assertEquals(ByteBuffer.wrap(compressible), writer.readEntry(a.getMostSignificantBits(), a.getLeastSignificantBits()));
+            assertEquals(ByteBuffer.wrap(incompressible), writer.readEntry(b.getMostSignificantBits(), b.getLeastSignificantBits()));
+        }
+
+        try (TarReader reader = TarReader.open("data00000a.tar", archiveManager)) {
+            assertEquals(ByteBuffer.wrap(compressible), reader.readEntry(a.getMostSignificantBits(), a.getLeastSignificantBits()));
+            assertEquals(ByteBuffer.wrap(incompressible), reader.readEntry(b.getMostSignificantBits(), b.getLeastSignificantBits()));
+
+            for (SegmentArchiveEntry entry : reader.getEntries()) {
+                IndexEntry indexEntry = (IndexEntry) entry;
+                if (indexEntry.getMsb() == a.getMostSignificantBits()) {
+                    assertEquals(SegmentCompression.DEFLATE, indexEntry.getCompression());
+                    assertTrue(indexEntry.getLength() < compressible.length);
+                    assertEquals(compressible.length, indexEntry.getUncompressedLength());
+                } else {
+                    assertEquals(SegmentCompression.NONE, indexEntry.getCompression());
+                    assertEquals(incompressible.length, indexEntry.getLength());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRecoverCompressedEntries() throws IOException {
+        UUID id = UUID.randomUUID();
+        byte[] data = compressible(64 * 1024);
+
+        try (TarWriter writer = new TarWriter(archiveManager, "data00000a.tar")) {
+            writer.writeEntry(id.getMostSignificantBits(), id.getLeastSignificantBits(), data, 0, data.length, newGCGeneration(0, 0, false));
+        }
+
+        LinkedHashMap<UUID, byte[]> entries = new LinkedHashMap<>();
+        archiveManager.recoverEntries("data00000a.tar", entries);
+        assertEquals(1, entries.size());
+        assertArrayEquals(data, entries.get(id));
+    }
+
+}
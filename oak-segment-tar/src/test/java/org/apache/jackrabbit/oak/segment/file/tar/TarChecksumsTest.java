@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.apache.jackrabbit.oak.segment.file.tar.GCGeneration.newGCGeneration;
+import static org.apache.jackrabbit.oak.segment.file.tar.TarConstants.BLOCK_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TarChecksumsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private File directory;
+
+    private SegmentArchiveManager archiveManager;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.newFolder();
+        archiveManager = new SegmentTarManager(directory, new FileStoreMonitorAdapter(), new IOMonitorAdapter(), false);
+    }
+
+    private static UUID newId() {
+        UUID id = UUID.randomUUID();
+        return new UUID(id.getMostSignificantBits(), id.getLeastSignificantBits() & (-1 >>> 4));
+    }
+
+    private void writeEntries(UUID... ids) throws IOException {
+        try (TarWriter writer = new TarWriter(archiveManager, "data00000a.tar")) {
+            for (UUID id : ids) {
+                byte[] data = ("Segment " + id).getBytes(UTF_8);
+                writer.writeEntry(id.getMostSignificantBits(), id.getLeastSignificantBits(), data, 0, data.length, newGCGeneration(0, 0, false));
+            }
+        }
+    }
+
+    private Map<UUID, String> verify() throws IOException {
+        Map<UUID, String> failures = new LinkedHashMap<>();
+        TarChecksums.verify(archiveManager, "data00000a.tar", (id, length, failure) -> failures.put(id, failure));
+        return failures;
+    }
+
+    @Test
+    public void testValidEntries() throws IOException {
+        UUID a = newId();
+        UUID b = newId();
+        writeEntries(a, b);
+
+        Map<UUID, String> failures = verify();
+        assertEquals(2, failures.size());
+        assertNull(failures.get(a));
+        assertNull(failures.get(b));
+    }
+
+    @Test
+    public void testCorruptEntry() throws IOException {
+        UUID a = newId();
+        UUID b = newId();
+        writeEntries(a, b);
+
+        // The content of the first entry follows its header block
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, "data00000a.tar"), "rw")) {
+            file.seek(BLOCK_SIZE);
+            int value = file.read();
+            file.seek(BLOCK_SIZE);
+            file.write(value ^ 0xff);
+        }
+
+        Map<UUID, String> failures = verify();
+        assertEquals(2, failures.size());
+        assertNotNull(failures.get(a));
+        assertNull(failures.get(b));
+    }
+
+}
@@ -288,6 +288,45 @@ public class TarFilesTest {
         assertEquals(references, singleton("ok"));
     }
 
+    @Test
+    public void testCollectBlobReferencesWithBinaryReferencesSet() throws Exception {
+        tarFiles.close();
+        tarFiles = TarFiles.builder()
+            .withDirectory(folder.getRoot())
+            .withTarRecovery((id, data, recovery) -> {
+                // Intentionally left blank
+            })
+            .withIOMonitor(new IOMonitorAdapter())
+            .withFileStoreMonitor(new FileStoreMonitorAdapter())
+            .withMaxFileSize(MAX_FILE_SIZE)
+            .withBinaryReferencesSet(true)
+            .build();
+
+        GCGeneration ok = newGCGeneration(1, 1, false);
+        GCGeneration ko = newGCGeneration(2, 2, false);
+
+        writeSegmentWithBinaryReferences(randomUUID(), ok, "a");
+        writeSegmentWithBinaryReferences(randomUUID(), ok, "a", "b");
+        tarFiles.newWriter();
+        writeSegmentWithBinaryReferences(randomUUID(), ko, "c");
+        writeSegmentWithBinaryReferences(randomUUID(), ok, "d");
+
+        Set<String> references = new HashSet<>();
+        tarFiles.collectBlobReferences(references::add, ko::equals);
+        assertEquals(new HashSet<>(asList("a", "b", "d")), references);
+        assertTrue(new File(folder.getRoot(), BinaryReferencesSet.FILE_NAME).exists());
+
+        references.clear();
+        tarFiles.collectBlobReferences(references::add, gen -> false);
+        assertEquals(new HashSet<>(asList("a", "b", "c", "d")), references);
+
+        // The TAR indexes are used if the set can't be read
+        assertTrue(new File(folder.getRoot(), BinaryReferencesSet.FILE_NAME).delete());
+        references.clear();
+        tarFiles.collectBlobReferences(references::add, gen -> false);
+        assertEquals(new HashSet<>(asList("a", "b", "c", "d")), references);
+    }
+
     @Test
     public void testGetSegmentId() throws Exception {
         UUID a = randomUUID();
@@ -389,4 +428,70 @@ public class TarFilesTest {
         assertTrue(result.getReclaimedSegmentIds().isEmpty());
         assertEquals(0, result.getReclaimedSize());
     }
+
+    @Test
+    public void testParallelCleanup() throws Exception {
+        tarFiles.close();
+        tarFiles = TarFiles.builder()
+            .withDirectory(folder.getRoot())
+            .withTarRecovery((id, data, recovery) -> {
+                // Intentionally left blank
+            })
+            .withIOMonitor(new IOMonitorAdapter())
+            .withFileStoreMonitor(new FileStoreMonitorAdapter())
+            .withMaxFileSize(MAX_FILE_SIZE)
+            .withCleanupThreads(4)
+            .build();
+
+        UUID a = randomUUID();
+        UUID b = randomUUID();
+        UUID c = randomUUID();
+        UUID d = randomUUID();
+        UUID e = randomUUID();
+        UUID f = randomUUID();
+
+        writeSegment(a);
+        writeSegment(b);
+        tarFiles.newWriter();
+        writeSegmentWithReferences(c, b);
+        writeSegment(d);
+        tarFiles.newWriter();
+        writeSegmentWithReferences(e, a, d);
+        writeSegment(f);
+        tarFiles.newWriter();
+
+        // Traverse graph of segments starting with `e`. The segments `b`, `c`
+        // and `f` are spread across the three TAR files and will be reclaimed.
+
+        CleanupResult result = tarFiles.cleanup(new CleanupContext() {
+
+            @Override
+            public Collection<UUID> initialReferences() {
+                return singletonList(e);
+            }
+
+            @Override
+            public boolean shouldReclaim(UUID id, GCGeneration generation, boolean referenced) {
+                return !referenced;
+            }
+
+            @Override
+            public boolean shouldFollow(UUID from, UUID to) {
+                return true;
+            }
+
+        });
+
+        assertFalse(result.isInterrupted());
+        assertEquals(3, result.getRemovableFiles().size());
+        assertEquals(new HashSet<>(asList(b, c, f)), result.getReclaimedSegmentIds());
+        assertTrue(result.getReclaimedSize() > 0);
+        assertTrue(containsSegment(a));
+        assertTrue(containsSegment(d));
+        assertTrue(containsSegment(e));
+        assertFalse(containsSegment(b));
+        assertFalse(containsSegment(c));
+        assertFalse(containsSegment(f));
+    }
+
 }
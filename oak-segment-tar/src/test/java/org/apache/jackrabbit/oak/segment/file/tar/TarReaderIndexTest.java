@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class TarReaderIndexTest {
+
+    private static TarReader newReader(UUID... ids) {
+        TarReader reader = mock(TarReader.class);
+        when(reader.getUUIDs()).thenReturn(new HashSet<>(asList(ids)));
+        return reader;
+    }
+
+    private static TarReader get(TarReaderIndex index, UUID id) {
+        return index.get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    @Test
+    public void testAddAll() {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        TarReader reader = newReader(a, b);
+
+        TarReaderIndex index = new TarReaderIndex();
+        index.addAll(reader);
+
+        assertEquals(2, index.size());
+        assertSame(reader, get(index, a));
+        assertSame(reader, get(index, b));
+        assertNull(get(index, UUID.randomUUID()));
+    }
+
+    @Test
+    public void testAddAllReplacesMappings() {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        TarReader older = newReader(a, b);
+        TarReader newer = newReader(a);
+
+        TarReaderIndex index = new TarReaderIndex();
+        index.addAll(older);
+        index.addAll(newer);
+
+        assertEquals(2, index.size());
+        assertSame(newer, get(index, a));
+        assertSame(older, get(index, b));
+    }
+
+    @Test
+    public void testAddAllIfAbsentKeepsMappings() {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        TarReader newer = newReader(a);
+        TarReader older = newReader(a, b);
+
+        TarReaderIndex index = new TarReaderIndex();
+        index.addAll(newer);
+        index.addAllIfAbsent(older);
+
+        assertEquals(2, index.size());
+        assertSame(newer, get(index, a));
+        assertSame(older, get(index, b));
+    }
+
+    @Test
+    public void testRemoveAllKeepsReplacedMappings() {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        TarReader older = newReader(a, b);
+        TarReader newer = newReader(a);
+
+        TarReaderIndex index = new TarReaderIndex();
+        index.addAll(older);
+        index.addAll(newer);
+        index.removeAll(older);
+
+        assertEquals(1, index.size());
+        assertSame(newer, get(index, a));
+        assertNull(get(index, b));
+    }
+
+    @Test
+    public void testManyEntries() {
+        Random random = new Random(42);
+        TarReader reader = mock(TarReader.class);
+        TarReaderIndex index = new TarReaderIndex();
+        List<UUID> ids = new ArrayList<>();
+
+        for (int i = 0; i < 10000; i++) {
+            UUID id = new UUID(random.nextLong(), random.nextLong());
+            ids.add(id);
+            index.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), reader);
+        }
+
+        assertEquals(ids.size(), index.size());
+
+        Set<UUID> removed = new HashSet<>();
+
+        for (int i = 0; i < ids.size(); i += 3) {
+            UUID id = ids.get(i);
+            index.remove(id.getMostSignificantBits(), id.getLeastSignificantBits(), reader);
+            removed.add(id);
+        }
+
+        assertEquals(ids.size() - removed.size(), index.size());
+
+        for (UUID id : ids) {
+            if (removed.contains(id)) {
+                assertNull(get(index, id));
+            } else {
+                assertSame(reader, get(index, id));
+            }
+        }
+    }
+
+}
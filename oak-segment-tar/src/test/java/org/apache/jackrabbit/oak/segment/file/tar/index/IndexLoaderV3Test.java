@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import org.junit.Test;
+
+public class IndexLoaderV3Test {
+
+    private static IndexV3 loadIndex(ByteBuffer buffer) throws Exception {
+        return new IndexLoaderV3(1).loadIndex((whence, length) -> {
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(slice.limit() - whence);
+            slice.limit(slice.position() + length);
+            return slice.slice();
+        });
+    }
+
+    private static void assertInvalidIndexException(ByteBuffer buffer, String message) throws Exception {
+        try {
+            loadIndex(buffer);
+        } catch (InvalidIndexException e) {
+            assertEquals(message, e.getMessage());
+            throw e;
+        }
+    }
+
+    private static int checksum(ByteBuffer buffer) {
+        CRC32 checksum = new CRC32();
+        int position = buffer.position();
+        checksum.update(buffer);
+        buffer.position(position);
+        return (int) checksum.getValue();
+    }
+
+    private static ByteBuffer index(ByteBuffer entries, int count) {
+        ByteBuffer buffer = ByteBuffer.allocate(count * IndexEntryV3.SIZE + IndexV3.FOOTER_SIZE);
+        buffer.duplicate()
+            .put(entries.duplicate())
+            .putInt(checksum(entries))
+            .putInt(count)
+            .putInt(count * IndexEntryV3.SIZE + IndexV3.FOOTER_SIZE)
+            .putInt(IndexLoaderV3.MAGIC);
+        return buffer;
+    }
+
+    @Test(expected = InvalidIndexException.class)
+    public void testInvalidMagic() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(IndexV3.FOOTER_SIZE);
+        buffer.duplicate()
+            .putInt(0)
+            .putInt(1)
+            .putInt(IndexEntryV3.SIZE + IndexV3.FOOTER_SIZE)
+            .putInt(IndexLoaderV2.MAGIC);
+        assertInvalidIndexException(buffer, "Magic number mismatch");
+    }
+
+    @Test(expected = InvalidIndexException.class)
+    public void testInvalidSize() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(IndexV3.FOOTER_SIZE);
+        buffer.duplicate()
+            .putInt(0)
+            .putInt(1)
+            .putInt(IndexEntryV2.SIZE + IndexV3.FOOTER_SIZE)
+            .putInt(IndexLoaderV3.MAGIC);
+        assertInvalidIndexException(buffer, "Invalid size");
+    }
+
+    @Test(expected = InvalidIndexException.class)
+    public void testInvalidEntryCompression() throws Exception {
+        ByteBuffer entries = ByteBuffer.allocate(IndexEntryV3.SIZE);
+        entries.duplicate()
+            .putLong(0).putLong(0).putInt(0).putInt(1).putInt(0).putInt(0).put((byte) 0).put((byte) -1).putInt(1);
+        assertInvalidIndexException(index(entries, 1), "Invalid entry compression");
+    }
+
+    @Test(expected = InvalidIndexException.class)
+    public void testInvalidEntryUncompressedSize() throws Exception {
+        ByteBuffer entries = ByteBuffer.allocate(IndexEntryV3.SIZE);
+        entries.duplicate()
+            .putLong(0).putLong(0).putInt(0).putInt(1).putInt(0).putInt(0).put((byte) 0).put((byte) 1).putInt(0);
+        assertInvalidIndexException(index(entries, 1), "Invalid entry uncompressed size");
+    }
+
+    @Test(expected = InvalidIndexException.class)
+    public void testInconsistentUncompressedSize() throws Exception {
+        ByteBuffer entries = ByteBuffer.allocate(IndexEntryV3.SIZE);
+        entries.duplicate()
+            .putLong(0).putLong(0).putInt(0).putInt(1).putInt(0).putInt(0).put((byte) 0).put((byte) 0).putInt(2);
+        assertInvalidIndexException(index(entries, 1), "Invalid entry uncompressed size");
+    }
+
+    @Test
+    public void testLoadIndex() throws Exception {
+        ByteBuffer entries = ByteBuffer.allocate(2 * IndexEntryV3.SIZE);
+        entries.duplicate()
+            .putLong(0).putLong(0).putInt(0).putInt(1).putInt(2).putInt(3).put((byte) 0).put((byte) 0).putInt(1)
+            .putLong(0).putLong(1).putInt(1).putInt(4).putInt(5).putInt(6).put((byte) 1).put((byte) 1).putInt(7);
+
+        IndexV3 index = loadIndex(index(entries, 2));
+        assertEquals(2, index.count());
+
+        IndexEntryV3 uncompressed = index.entry(index.findEntry(0, 0));
+        assertEquals(1, uncompressed.getLength());
+        assertEquals(2, uncompressed.getGeneration());
+        assertEquals(3, uncompressed.getFullGeneration());
+        assertFalse(uncompressed.isCompacted());
+        assertEquals(0, uncompressed.getCompression());
+        assertEquals(1, uncompressed.getUncompressedLength());
+
+        IndexEntryV3 compressed = index.entry(index.findEntry(0, 1));
+        assertEquals(1, compressed.getPosition());
+        assertEquals(4, compressed.getLength());
+        assertTrue(compressed.isCompacted());
+        assertEquals(1, compressed.getCompression());
+        assertEquals(7, compressed.getUncompressedLength());
+    }
+
+}
@@ -61,4 +61,20 @@ public class IndexWriterTest {
         assertArrayEquals(buffer.array(), writer.write());
     }
 
+    @Test
+    public void testWriteCompressed() throws Exception {
+        IndexWriter writer = newIndexWriter(1);
+        writer.addEntry(7, 8, 9, 10, 11, 12, true, 1, 20);
+        writer.addEntry(1, 2, 3, 4, 5, 6, false);
+        ByteBuffer buffer = ByteBuffer.allocate(2 * IndexEntryV3.SIZE + IndexV3.FOOTER_SIZE);
+        buffer.duplicate()
+                .putLong(1).putLong(2).putInt(3).putInt(4).putInt(5).putInt(6).put((byte) 0).put((byte) 0).putInt(4)
+                .putLong(7).putLong(8).putInt(9).putInt(10).putInt(11).putInt(12).put((byte) 1).put((byte) 1).putInt(20)
+                .putInt(0x1F0640A3)
+                .putInt(2)
+                .putInt(2 * IndexEntryV3.SIZE + IndexV3.FOOTER_SIZE)
+                .putInt(IndexLoaderV3.MAGIC);
+        assertArrayEquals(buffer.array(), writer.write());
+    }
+
 }
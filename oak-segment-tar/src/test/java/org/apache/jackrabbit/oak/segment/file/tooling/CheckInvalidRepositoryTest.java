@@ -18,6 +18,10 @@
  */
 package org.apache.jackrabbit.oak.segment.file.tooling;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
 import java.io.File;
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -75,6 +79,94 @@ public class CheckInvalidRepositoryTest extends CheckRepositoryTestBase {
         assertExpectedOutput(strErr.toString(), Lists.newArrayList("Error while traversing /"));
     }
     
+    @Test
+    public void testInvalidRevisionFallbackOnValidWithParallelTraversal() {
+        StringWriter strOut = new StringWriter();
+        StringWriter strErr = new StringWriter();
+        
+        PrintWriter outWriter = new PrintWriter(strOut, true);
+        PrintWriter errWriter = new PrintWriter(strErr, true);
+        
+        Set<String> filterPaths = new LinkedHashSet<>();
+        filterPaths.add("/");
+        
+        Check.builder()
+        .withPath(new File(temporaryFolder.getRoot().getAbsolutePath()))
+        .withJournal("journal.log")
+        .withDebugInterval(Long.MAX_VALUE)
+        .withCheckHead(true)
+        .withCheckpoints(checkpoints)
+        .withCheckBinaries(true)
+        .withFilterPaths(filterPaths)
+        .withThreads(4)
+        .withOutWriter(outWriter)
+        .withErrWriter(errWriter)
+        .build()
+        .run();
+        
+        outWriter.close();
+        errWriter.close();
+        
+        // The corrupt revision must be rejected as in a sequential traversal,
+        // even though consistent subtrees are not checked twice
+        assertExpectedOutput(strOut.toString(), Lists.newArrayList("Path / is consistent", "Searched through 2 revisions"));
+        assertExpectedOutput(strErr.toString(), Lists.newArrayList("Error while traversing /"));
+    }
+
+    @Test
+    public void testProbesIgnoreCorruptUncheckedPaths() {
+        StringWriter sequentialOut = new StringWriter();
+        StringWriter sequentialErr = new StringWriter();
+        checkHeadPath("/d", 0, sequentialOut, sequentialErr);
+
+        StringWriter probedOut = new StringWriter();
+        StringWriter probedErr = new StringWriter();
+        checkHeadPath("/d", 2, probedOut, probedErr);
+
+        // "/a" and "/z" are corrupt in the latest revision, but only "/d" is
+        // checked. The latest revision must not be skipped by the probes.
+        assertExpectedOutput(sequentialOut.toString(), Lists.newArrayList("Searched through 1 revisions", "Path /d is consistent"));
+        assertExpectedOutput(probedOut.toString(), Lists.newArrayList("Searched through 1 revisions", "Path /d is consistent"));
+        String expected = latestGoodRevision(sequentialOut.toString());
+        assertNotNull(expected);
+        assertEquals(expected, latestGoodRevision(probedOut.toString()));
+        assertFalse(probedErr.toString().contains("Skipping revision"));
+    }
+
+    private void checkHeadPath(String path, int probeThreads, StringWriter strOut, StringWriter strErr) {
+        PrintWriter outWriter = new PrintWriter(strOut, true);
+        PrintWriter errWriter = new PrintWriter(strErr, true);
+
+        Set<String> filterPaths = new LinkedHashSet<>();
+        filterPaths.add(path);
+
+        Check.builder()
+        .withPath(new File(temporaryFolder.getRoot().getAbsolutePath()))
+        .withJournal("journal.log")
+        .withDebugInterval(Long.MAX_VALUE)
+        .withCheckBinaries(true)
+        .withCheckHead(true)
+        .withCheckpoints(new HashSet<String>())
+        .withFilterPaths(filterPaths)
+        .withProbeThreads(probeThreads)
+        .withOutWriter(outWriter)
+        .withErrWriter(errWriter)
+        .build()
+        .run();
+
+        outWriter.close();
+        errWriter.close();
+    }
+
+    private static String latestGoodRevision(String output) {
+        for (String line : output.split("\\n")) {
+            if (line.startsWith("Latest good revision for paths and checkpoints checked is")) {
+                return line;
+            }
+        }
+        return null;
+    }
+
     @Test
     public void testPartialBrokenPathWithoutValidRevision() {
         StringWriter strOut = new StringWriter();
@@ -18,6 +18,8 @@
  */
 package org.apache.jackrabbit.oak.segment.file.tooling;
 
+import static org.junit.Assert.assertFalse;
+
 import java.io.File;
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -346,4 +348,106 @@ public class CheckValidRepositoryTest extends CheckRepositoryTestBase {
                 "No good revision found"));
         assertExpectedOutput(strErr.toString(), Lists.newArrayList("Checkpoint bogus-checkpoint not found in this revision!"));
     }
+
+    @Test
+    public void testSuccessfulFullCheckWithProbesAndMaxTimestamp() throws Exception {
+        StringWriter strOut = new StringWriter();
+        StringWriter strErr = new StringWriter();
+        
+        PrintWriter outWriter = new PrintWriter(strOut, true);
+        PrintWriter errWriter = new PrintWriter(strErr, true);
+        
+        Set<String> filterPaths = new LinkedHashSet<>();
+        filterPaths.add("/");
+        
+        Check.builder()
+        .withPath(new File(temporaryFolder.getRoot().getAbsolutePath()))
+        .withJournal("journal.log")
+        .withDebugInterval(Long.MAX_VALUE)
+        .withCheckBinaries(true)
+        .withCheckHead(true)
+        .withCheckpoints(new HashSet<String>())
+        .withFilterPaths(filterPaths)
+        .withMaxTimestamp(System.currentTimeMillis())
+        .withProbeThreads(2)
+        .withOutWriter(outWriter)
+        .withErrWriter(errWriter)
+        .build()
+        .run();
+        
+        outWriter.close();
+        errWriter.close();
+        
+        assertExpectedOutput(strOut.toString(), Lists.newArrayList("Checking head", "Searched through 1 revisions and 0 checkpoints", 
+                "Checked 7 nodes and 21 properties", "Path / is consistent"));
+        assertExpectedOutput(strErr.toString(), Lists.newArrayList(""));
+        // the check must not write into the store it inspects
+        assertFalse(new File(temporaryFolder.getRoot(), "journal.log.idx").exists());
+        assertFalse(new File(temporaryFolder.getRoot(), "journal.log.idx.tmp").exists());
+    }
+
+    @Test
+    public void testDefaultCheckDoesNotIndexJournal() throws Exception {
+        StringWriter strOut = new StringWriter();
+        StringWriter strErr = new StringWriter();
+        
+        PrintWriter outWriter = new PrintWriter(strOut, true);
+        PrintWriter errWriter = new PrintWriter(strErr, true);
+        
+        Set<String> filterPaths = new LinkedHashSet<>();
+        filterPaths.add("/");
+        
+        Check.builder()
+        .withPath(new File(temporaryFolder.getRoot().getAbsolutePath()))
+        .withJournal("journal.log")
+        .withDebugInterval(Long.MAX_VALUE)
+        .withCheckHead(true)
+        .withCheckpoints(new HashSet<String>())
+        .withFilterPaths(filterPaths)
+        .withOutWriter(outWriter)
+        .withErrWriter(errWriter)
+        .build()
+        .run();
+        
+        outWriter.close();
+        errWriter.close();
+        
+        assertExpectedOutput(strOut.toString(), Lists.newArrayList("Path / is consistent"));
+        assertFalse(new File(temporaryFolder.getRoot(), "journal.log.idx").exists());
+    }
+
+    @Test
+    public void testSuccessfulParallelFullCheckWithChecksums() throws Exception {
+        StringWriter strOut = new StringWriter();
+        StringWriter strErr = new StringWriter();
+        
+        PrintWriter outWriter = new PrintWriter(strOut, true);
+        PrintWriter errWriter = new PrintWriter(strErr, true);
+        
+        Set<String> filterPaths = new LinkedHashSet<>();
+        filterPaths.add("/");
+        
+        Check.builder()
+        .withPath(new File(temporaryFolder.getRoot().getAbsolutePath()))
+        .withJournal("journal.log")
+        .withDebugInterval(Long.MAX_VALUE)
+        .withCheckBinaries(true)
+        .withCheckHead(true)
+        .withCheckpoints(new HashSet<String>())
+        .withFilterPaths(filterPaths)
+        .withThreads(4)
+        .withVerifyChecksums(true)
+        .withOutWriter(outWriter)
+        .withErrWriter(errWriter)
+        .build()
+        .run();
+        
+        outWriter.close();
+        errWriter.close();
+        
+        assertExpectedOutput(strOut.toString(), Lists.newArrayList("Verifying checksums", "[Checksums]",
+                "Checking head", "Searched through 1 revisions and 0 checkpoints",
+                "Checked 7 nodes and 21 properties", "Path / is consistent"));
+        assertExpectedOutput(strErr.toString(), Lists.newArrayList(""));
+    }
 }
@@ -97,6 +97,10 @@ public class SegmentNodeStoreServiceTest {
             .withLongType()
             .withValue("-1")
             .check());
+        assertTrue(cd.hasProperty("compaction.concurrency")
+            .withIntegerType()
+            .withValue("1")
+            .check());
         assertTrue(cd.hasProperty("standby")
             .withBooleanType()
             .withValue("false")
@@ -215,6 +219,10 @@ public class SegmentNodeStoreServiceTest {
             .withLongType()
             .withDefaultValue("-1")
             .check());
+        assertTrue(ocd.hasAttributeDefinition("compaction.concurrency")
+            .withIntegerType()
+            .withDefaultValue("1")
+            .check());
         assertTrue(ocd.hasAttributeDefinition("standby")
             .withBooleanType()
             .withDefaultValue("false")
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.segment.persistentcache;
+
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.file.ReadOnlyFileStore;
+import org.apache.jackrabbit.oak.segment.file.tar.TarPersistence;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentNodeStorePersistence;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+
+/**
+ * Measures the time to traverse a repository after a restart when every
+ * segment read from the persistence takes {@link #LATENCY_MILLIS}, with and
+ * without a {@link CachingPersistence} in front of the persistence.
+ */
+public class CachingPersistenceBenchmark {
+
+    private static final long LATENCY_MILLIS = Long.getLong("latency", 5);
+
+    public static void main(String... args) throws Exception {
+        File root = Files.createTempDirectory("caching-persistence-benchmark").toFile();
+        try {
+            File directory = new File(root, "repository");
+            File cacheDirectory = new File(root, "cache");
+            createRepository(directory);
+
+            run("Without disk cache", new LatencyInjectingPersistence(new TarPersistence(directory), LATENCY_MILLIS), root);
+            run("Cold disk cache", cachingPersistence(directory, cacheDirectory), root);
+            run("Warm disk cache", cachingPersistence(directory, cacheDirectory), root);
+        } finally {
+            FileUtils.deleteQuietly(root);
+        }
+    }
+
+    private static SegmentNodeStorePersistence cachingPersistence(File directory, File cacheDirectory) throws Exception {
+        return new CachingPersistence(
+                new LatencyInjectingPersistence(new TarPersistence(directory), LATENCY_MILLIS),
+                new DiskSegmentCache(cacheDirectory, 1024L * 1024 * 1024));
+    }
+
+    private static void createRepository(File directory) throws Exception {
+        try (FileStore store = fileStoreBuilder(directory).build()) {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            for (int i = 0; i < 20; i++) {
+                NodeBuilder builder = nodeStore.getRoot().builder();
+                NodeBuilder parent = builder.child("p" + i);
+                for (int j = 0; j < 1000; j++) {
+                    parent.child("c" + j).setProperty("value", "value of child " + j + " in commit " + i);
+                }
+                nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+                store.flush();
+            }
+        }
+    }
+
+    private static void run(String name, SegmentNodeStorePersistence persistence, File directory) throws Exception {
+        // Start with an empty segment cache on the heap, as after a restart
+        try (ReadOnlyFileStore store = fileStoreBuilder(directory)
+                .withCustomPersistence(persistence)
+                .buildReadOnly()) {
+            long t0 = System.nanoTime();
+            long nodes = count(store.getHead().getChildNode("root"));
+            long millis = (System.nanoTime() - t0) / 1000000;
+            System.out.printf("%s: traversed %d nodes in %d ms%n", name, nodes, millis);
+        }
+    }
+
+    private static long count(NodeState node) {
+        long count = 1;
+        for (ChildNodeEntry child : node.getChildNodeEntries()) {
+            count += count(child.getNodeState());
+        }
+        return count;
+    }
+
+}
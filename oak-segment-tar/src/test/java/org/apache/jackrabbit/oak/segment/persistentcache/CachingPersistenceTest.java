@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.segment.persistentcache;
+
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.file.ReadOnlyFileStore;
+import org.apache.jackrabbit.oak.segment.file.tar.TarPersistence;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CachingPersistenceTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private static ByteBuffer segment(int size, int seed) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (seed + i);
+        }
+        return ByteBuffer.wrap(data);
+    }
+
+    @Test
+    public void readWrite() throws Exception {
+        DiskSegmentCache cache = new DiskSegmentCache(folder.newFolder(), 1024 * 1024);
+        assertNull(cache.readSegment(1, 2));
+
+        ByteBuffer segment = segment(1000, 42);
+        cache.writeSegment(1, 2, segment);
+        assertEquals(0, segment.position());
+        assertTrue(cache.containsSegment(1, 2));
+        assertEquals(segment, cache.readSegment(1, 2));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1000, cache.getSize());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws Exception {
+        DiskSegmentCache cache = new DiskSegmentCache(folder.newFolder(), 3000);
+        cache.writeSegment(0, 1, segment(1000, 1));
+        cache.writeSegment(0, 2, segment(1000, 2));
+        cache.writeSegment(0, 3, segment(1000, 3));
+
+        // Make the first segment the most recently used one
+        cache.readSegment(0, 1);
+        cache.writeSegment(0, 4, segment(1000, 4));
+
+        assertTrue(cache.containsSegment(0, 1));
+        assertFalse(cache.containsSegment(0, 2));
+        assertTrue(cache.containsSegment(0, 3));
+        assertTrue(cache.containsSegment(0, 4));
+        assertEquals(3000, cache.getSize());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void surviveRestart() throws Exception {
+        File directory = folder.newFolder();
+        DiskSegmentCache cache = new DiskSegmentCache(directory, 1024 * 1024);
+        cache.writeSegment(1, 2, segment(1000, 42));
+        assertTrue(new File(directory, "unfinished.1.tmp").createNewFile());
+
+        cache = new DiskSegmentCache(directory, 1024 * 1024);
+        assertEquals(1, cache.getElementCount());
+        assertArrayEquals(segment(1000, 42).array(), cache.readSegment(1, 2).array());
+        assertFalse(new File(directory, "unfinished.1.tmp").exists());
+
+        // A smaller cache evicts the segments exceeding its size
+        cache = new DiskSegmentCache(directory, 500);
+        assertEquals(0, cache.getElementCount());
+        assertEquals(0, directory.list().length);
+    }
+
+    @Test
+    public void warmAfterRestart() throws Exception {
+        File directory = folder.newFolder();
+        try (FileStore store = fileStoreBuilder(directory).build()) {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            NodeBuilder root = nodeStore.getRoot().builder();
+            for (int i = 0; i < 1000; i++) {
+                root.child("c" + i).setProperty("value", "value of child " + i);
+            }
+            nodeStore.merge(root, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        }
+
+        File cacheDirectory = folder.newFolder();
+
+        LatencyInjectingPersistence remote = new LatencyInjectingPersistence(new TarPersistence(directory), 0);
+        long nodes = traverse(remote, cacheDirectory);
+        assertEquals(1001, nodes);
+        assertTrue(remote.getSegmentReads() > 0);
+
+        // A new store finds all the segments in the cache directory
+        remote = new LatencyInjectingPersistence(new TarPersistence(directory), 0);
+        assertEquals(nodes, traverse(remote, cacheDirectory));
+        assertEquals(0, remote.getSegmentReads());
+    }
+
+    private static long traverse(LatencyInjectingPersistence remote, File cacheDirectory) throws Exception {
+        CachingPersistence persistence = new CachingPersistence(remote, new DiskSegmentCache(cacheDirectory, 64 * 1024 * 1024));
+        try (ReadOnlyFileStore store = fileStoreBuilder(cacheDirectory.getParentFile())
+                .withCustomPersistence(persistence)
+                .withSegmentCacheSize(0)
+                .buildReadOnly()) {
+            return count(store.getHead().getChildNode("root"));
+        }
+    }
+
+    private static long count(NodeState node) {
+        long count = 1;
+        for (ChildNodeEntry child : node.getChildNodeEntries()) {
+            count += count(child.getNodeState());
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.segment.persistentcache;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitor;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
+import org.apache.jackrabbit.oak.segment.spi.persistence.GCJournalFile;
+import org.apache.jackrabbit.oak.segment.spi.persistence.JournalFile;
+import org.apache.jackrabbit.oak.segment.spi.persistence.ManifestFile;
+import org.apache.jackrabbit.oak.segment.spi.persistence.RepositoryLock;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveEntry;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveReader;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveWriter;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentNodeStorePersistence;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A stand-in for a remote persistence: it delays every segment read from the
+ * archives of the wrapped persistence by a fixed latency and counts the
+ * segment reads.
+ */
+public class LatencyInjectingPersistence implements SegmentNodeStorePersistence {
+
+    private final SegmentNodeStorePersistence delegate;
+
+    private final long latencyMillis;
+
+    private final AtomicLong segmentReads = new AtomicLong();
+
+    public LatencyInjectingPersistence(SegmentNodeStorePersistence delegate, long latencyMillis) {
+        this.delegate = delegate;
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * @return the number of segments read from the archives so far
+     */
+    public long getSegmentReads() {
+        return segmentReads.get();
+    }
+
+    private void delay() throws IOException {
+        segmentReads.incrementAndGet();
+        try {
+            MILLISECONDS.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    @Override
+    public SegmentArchiveManager createArchiveManager(boolean memoryMapping, IOMonitor ioMonitor, FileStoreMonitor fileStoreMonitor) throws IOException {
+        return new LatencyInjectingArchiveManager(delegate.createArchiveManager(memoryMapping, ioMonitor, fileStoreMonitor));
+    }
+
+    @Override
+    public boolean segmentFilesExist() {
+        return delegate.segmentFilesExist();
+    }
+
+    @Override
+    public JournalFile getJournalFile() {
+        return delegate.getJournalFile();
+    }
+
+    @Override
+    public GCJournalFile getGCJournalFile() throws IOException {
+        return delegate.getGCJournalFile();
+    }
+
+    @Override
+    public ManifestFile getManifestFile() throws IOException {
+        return delegate.getManifestFile();
+    }
+
+    @Override
+    public RepositoryLock lockRepository() throws IOException {
+        return delegate.lockRepository();
+    }
+
+    private class LatencyInjectingArchiveManager implements SegmentArchiveManager {
+
+        private final SegmentArchiveManager delegate;
+
+        LatencyInjectingArchiveManager(SegmentArchiveManager delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public @NotNull List<String> listArchives() throws IOException {
+            return delegate.listArchives();
+        }
+
+        @Override
+        public @Nullable SegmentArchiveReader open(@NotNull String archiveName) throws IOException {
+            SegmentArchiveReader reader = delegate.open(archiveName);
+            return reader == null ? null : new LatencyInjectingArchiveReader(reader);
+        }
+
+        @Override
+        public @Nullable SegmentArchiveReader forceOpen(String archiveName) throws IOException {
+            SegmentArchiveReader reader = delegate.forceOpen(archiveName);
+            return reader == null ? null : new LatencyInjectingArchiveReader(reader);
+        }
+
+        @Override
+        public @NotNull SegmentArchiveWriter create(@NotNull String archiveName) throws IOException {
+            return delegate.create(archiveName);
+        }
+
+        @Override
+        public boolean delete(@NotNull String archiveName) {
+            return delegate.delete(archiveName);
+        }
+
+        @Override
+        public boolean renameTo(@NotNull String from, @NotNull String to) {
+            return delegate.renameTo(from, to);
+        }
+
+        @Override
+        public void copyFile(@NotNull String from, @NotNull String to) throws IOException {
+            delegate.copyFile(from, to);
+        }
+
+        @Override
+        public boolean exists(@NotNull String archiveName) {
+            return delegate.exists(archiveName);
+        }
+
+        @Override
+        public void recoverEntries(@NotNull String archiveName, @NotNull LinkedHashMap<UUID, byte[]> entries) throws IOException {
+            delegate.recoverEntries(archiveName, entries);
+        }
+
+    }
+
+    private class LatencyInjectingArchiveReader implements SegmentArchiveReader {
+
+        private final SegmentArchiveReader delegate;
+
+        LatencyInjectingArchiveReader(SegmentArchiveReader delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public @Nullable ByteBuffer readSegment(long msb, long lsb) throws IOException {
+            delay();
+            return delegate.readSegment(msb, lsb);
+        }
+
+        @Override
+        public boolean containsSegment(long msb, long lsb) {
+            return delegate.containsSegment(msb, lsb);
+        }
+
+        @Override
+        public List<SegmentArchiveEntry> listSegments() {
+            return delegate.listSegments();
+        }
+
+        @Override
+        public @Nullable ByteBuffer getGraph() throws IOException {
+            return delegate.getGraph();
+        }
+
+        @Override
+        public boolean hasGraph() {
+            return delegate.hasGraph();
+        }
+
+        @Override
+        public @NotNull ByteBuffer getBinaryReferences() throws IOException {
+            return delegate.getBinaryReferences();
+        }
+
+        @Override
+        public long length() {
+            return delegate.length();
+        }
+
+        @Override
+        public @NotNull String getName() {
+            return delegate.getName();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public int getEntrySize(int size) {
+            return delegate.getEntrySize(size);
+        }
+
+    }
+
+}
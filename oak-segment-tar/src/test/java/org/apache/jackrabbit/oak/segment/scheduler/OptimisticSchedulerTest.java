@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.scheduler;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
+import org.apache.jackrabbit.oak.segment.RecordId;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreStats;
+import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitHook;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.junit.Test;
+
+public class OptimisticSchedulerTest {
+
+    private static OptimisticScheduler newScheduler(MemoryStore ms) {
+        SegmentNodeStoreStats stats = new SegmentNodeStoreStats(StatisticsProvider.NOOP);
+        return OptimisticScheduler.builder(ms.getRevisions(), ms.getReader(), stats).build();
+    }
+
+    private static NodeState getRoot(Scheduler scheduler) {
+        return scheduler.getHeadNodeState().getChildNode("root");
+    }
+
+    @Test
+    public void testConcurrentCommits() throws Exception {
+        final OptimisticScheduler scheduler = newScheduler(new MemoryStore());
+        ExecutorService executorService = newFixedThreadPool(10);
+        final AtomicInteger count = new AtomicInteger();
+
+        try {
+            Callable<PropertyState> commitTask = new Callable<PropertyState>() {
+                @Override
+                public PropertyState call() throws Exception {
+                    String property = "prop" + count.incrementAndGet();
+                    Commit commit = createCommit(scheduler, property, "value", EmptyHook.INSTANCE);
+                    NodeState result = scheduler.schedule(commit);
+                    return result.getProperty(property);
+                }
+            };
+
+            List<Future<PropertyState>> results = newArrayList();
+            for (int i = 0; i < 100; i++) {
+                results.add(executorService.submit(commitTask));
+            }
+            for (Future<PropertyState> result : results) {
+                assertNotNull(result.get());
+            }
+        } finally {
+            new ExecutorCloser(executorService).close();
+        }
+
+        assertEquals(100, getRoot(scheduler).getPropertyCount());
+    }
+
+    @Test
+    public void testCommitHooksRunConcurrently() throws Exception {
+        final OptimisticScheduler scheduler = newScheduler(new MemoryStore());
+        final CountDownLatch latch = new CountDownLatch(2);
+
+        // Both commit hooks wait for each other. This would dead lock if the
+        // commit hooks were run while holding the lock.
+
+        final CommitHook hook = new CommitHook() {
+            @Override
+            public NodeState processCommit(NodeState before, NodeState after, CommitInfo info) {
+                latch.countDown();
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return after;
+            }
+        };
+
+        ExecutorService executorService = newFixedThreadPool(2);
+        try {
+            Future<NodeState> a = executorService.submit(new Callable<NodeState>() {
+                @Override
+                public NodeState call() throws Exception {
+                    return scheduler.schedule(createCommit(scheduler, "a", "value", hook));
+                }
+            });
+            Future<NodeState> b = executorService.submit(new Callable<NodeState>() {
+                @Override
+                public NodeState call() throws Exception {
+                    return scheduler.schedule(createCommit(scheduler, "b", "value", hook));
+                }
+            });
+            a.get();
+            b.get();
+        } finally {
+            new ExecutorCloser(executorService).close();
+        }
+
+        NodeState root = getRoot(scheduler);
+        assertTrue(root.hasProperty("a"));
+        assertTrue(root.hasProperty("b"));
+    }
+
+    @Test
+    public void testRebaseOnConcurrentCommit() throws Exception {
+        OptimisticScheduler scheduler = newScheduler(new MemoryStore());
+
+        Commit first = createCommit(scheduler, "a", "value", EmptyHook.INSTANCE);
+        Commit second = createCommit(scheduler, "b", "value", EmptyHook.INSTANCE);
+
+        scheduler.schedule(first);
+        NodeState root = scheduler.schedule(second);
+
+        assertTrue(root.hasProperty("a"));
+        assertTrue(root.hasProperty("b"));
+    }
+
+    @Test
+    public void testBuilderResetToMergedRoot() throws Exception {
+        OptimisticScheduler scheduler = newScheduler(new MemoryStore());
+
+        NodeBuilder builder = getRoot(scheduler).builder();
+        builder.setProperty("a", "value");
+        NodeState merged = scheduler.schedule(new Commit(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY));
+
+        assertEquals(merged, builder.getNodeState());
+        assertTrue(builder.hasProperty("a"));
+        assertFalse(builder.hasChildNode("root"));
+        assertFalse(builder.hasChildNode("checkpoints"));
+    }
+
+    /**
+     * This test guards against race conditions which may happen when the head
+     * state in {@link org.apache.jackrabbit.oak.segment.Revisions} is changed
+     * from outside the scheduler.
+     */
+    @Test
+    public void testSimulatedRaceOnRevisions() throws Exception {
+        final MemoryStore ms = new MemoryStore();
+        final OptimisticScheduler scheduler = newScheduler(ms);
+
+        final RecordId initialHead = ms.getRevisions().getHead();
+        ExecutorService executorService = newFixedThreadPool(10);
+        final AtomicInteger count = new AtomicInteger();
+        final Random rand = new Random();
+
+        try {
+            Callable<PropertyState> commitTask = new Callable<PropertyState>() {
+                @Override
+                public PropertyState call() throws Exception {
+                    String property = "prop" + count.incrementAndGet();
+                    Commit commit = createCommit(scheduler, property, "value", EmptyHook.INSTANCE);
+                    NodeState result = scheduler.schedule(commit);
+                    return result.getProperty(property);
+                }
+            };
+
+            Callable<Void> parallelTask = new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    Thread.sleep(rand.nextInt(10));
+                    ms.getRevisions().setHead(ms.getRevisions().getHead(), initialHead);
+                    return null;
+                }
+            };
+
+            List<Future<PropertyState>> results = newArrayList();
+            for (int i = 0; i < 100; i++) {
+                results.add(executorService.submit(commitTask));
+                executorService.submit(parallelTask);
+            }
+
+            for (Future<PropertyState> result : results) {
+                assertNotNull(
+                        "PropertyState must not be null! The corresponding commit got lost because of a race condition.",
+                        result.get());
+            }
+        } finally {
+            new ExecutorCloser(executorService).close();
+        }
+    }
+
+    @Test
+    public void testCheckpoints() {
+        OptimisticScheduler scheduler = newScheduler(new MemoryStore());
+        String name = scheduler.checkpoint(60000, Collections.<String, String>emptyMap());
+        assertTrue(scheduler.getHeadNodeState().getChildNode("checkpoints").hasChildNode(name));
+        assertTrue(scheduler.removeCheckpoint(name));
+        assertFalse(scheduler.getHeadNodeState().getChildNode("checkpoints").hasChildNode(name));
+    }
+
+    private static Commit createCommit(Scheduler scheduler, String property, String value, CommitHook hook) {
+        NodeBuilder a = getRoot(scheduler).builder();
+        a.setProperty(property, value);
+        return new Commit(a, hook, CommitInfo.EMPTY);
+    }
+}
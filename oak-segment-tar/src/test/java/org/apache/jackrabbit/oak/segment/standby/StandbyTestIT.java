@@ -98,6 +98,19 @@ public class StandbyTestIT extends TestBase {
         }
     }
 
+    @Test
+    public void testSyncPipelined() throws Exception {
+        System.setProperty("standby.client.pipelineWindow", "4");
+        System.setProperty("standby.client.pipelineBatchSize", "8");
+
+        try {
+            testSync();
+        } finally {
+            System.clearProperty("standby.client.pipelineWindow");
+            System.clearProperty("standby.client.pipelineBatchSize");
+        }
+    }
+
     /**
      * OAK-2430
      */
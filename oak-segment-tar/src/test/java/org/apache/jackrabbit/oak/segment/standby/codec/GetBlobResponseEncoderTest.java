@@ -22,14 +22,22 @@ import static org.apache.jackrabbit.oak.segment.standby.StandbyTestUtils.createM
 import static org.junit.Assert.assertEquals;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.file.Files;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.stream.ChunkedWriteHandler;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class GetBlobResponseEncoderTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
     @Test
     public void shouldEncodeOneChunkResponse() throws Exception {
         byte[] blobData = new byte[] {1, 2, 3};
@@ -68,4 +76,29 @@ public class GetBlobResponseEncoderTest {
 
         assertEquals(secondExpected, secondBuffer);
     }
+
+    @Test
+    public void shouldEncodeChunksReadFromFile() throws Exception {
+        byte[] blobData = new byte[] {1, 2, 3, 4, 5};
+        byte[] firstChunkData = new byte[] {1, 2, 3};
+        byte[] secondChunkData = new byte[] {4, 5};
+
+        File file = folder.newFile();
+        Files.write(file.toPath(), blobData);
+
+        String blobId = "blobId";
+
+        EmbeddedChannel channel = new EmbeddedChannel(new ChunkedWriteHandler(), new GetBlobResponseEncoder(3));
+        channel.writeOutbound(new GetBlobResponse("clientId", blobId, new FileInputStream(file), blobData.length));
+
+        ByteBuf firstBuffer = (ByteBuf) channel.readOutbound();
+        ByteBuf firstExpected = createBlobChunkBuffer(Messages.HEADER_BLOB, 5L, blobId, firstChunkData, createMask(1, 2));
+
+        assertEquals(firstExpected, firstBuffer);
+
+        ByteBuf secondBuffer = (ByteBuf) channel.readOutbound();
+        ByteBuf secondExpected = createBlobChunkBuffer(Messages.HEADER_BLOB, 5L, blobId, secondChunkData, createMask(2, 2));
+
+        assertEquals(secondExpected, secondBuffer);
+    }
 }
@@ -26,6 +26,7 @@ import static org.apache.jackrabbit.oak.segment.standby.StandbyTestUtils.createM
 import static org.apache.jackrabbit.oak.segment.standby.StandbyTestUtils.hash;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
@@ -225,6 +226,40 @@ public class ResponseDecoderTest {
         assertTrue(elementsEqual(emptyList(), response.getReferences()));
     }
 
+    @Test
+    public void shouldDecodeSegmentNotFoundResponses() throws Exception {
+        UUID uuid = new UUID(1, 2);
+
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeInt(17);
+        buf.writeByte(Messages.HEADER_SEGMENT_NOT_FOUND);
+        buf.writeLong(uuid.getMostSignificantBits());
+        buf.writeLong(uuid.getLeastSignificantBits());
+
+        EmbeddedChannel channel = new EmbeddedChannel(new ResponseDecoder(folder.newFolder()));
+        channel.writeInbound(buf);
+        GetSegmentResponse response = (GetSegmentResponse) channel.readInbound();
+        assertEquals(uuid, UUID.fromString(response.getSegmentId()));
+        assertFalse(response.isFound());
+    }
+
+    @Test
+    public void shouldDecodeReferencesNotFoundResponses() throws Exception {
+        UUID uuid = new UUID(1, 2);
+
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeInt(17);
+        buf.writeByte(Messages.HEADER_REFERENCES_NOT_FOUND);
+        buf.writeLong(uuid.getMostSignificantBits());
+        buf.writeLong(uuid.getLeastSignificantBits());
+
+        EmbeddedChannel channel = new EmbeddedChannel(new ResponseDecoder(folder.newFolder()));
+        channel.writeInbound(buf);
+        GetReferencesResponse response = (GetReferencesResponse) channel.readInbound();
+        assertEquals(uuid, UUID.fromString(response.getSegmentId()));
+        assertFalse(response.isFound());
+    }
+
     @Test
     public void shouldDropInvalidGetSegmentResponses() throws Exception {
         UUID uuid = new UUID(1, 2);
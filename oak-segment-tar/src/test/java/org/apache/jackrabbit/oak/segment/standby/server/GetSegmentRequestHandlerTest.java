@@ -23,6 +23,7 @@ import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.nio.ByteBuffer;
 import java.util.UUID;
 
 import io.netty.channel.embedded.EmbeddedChannel;
@@ -37,7 +38,7 @@ public class GetSegmentRequestHandlerTest {
         byte[] data = new byte[] {3, 4, 5};
 
         StandbySegmentReader reader = mock(StandbySegmentReader.class);
-        when(reader.readSegment("segmentId")).thenReturn(data);
+        when(reader.readSegment("segmentId")).thenReturn(ByteBuffer.wrap(data));
 
         EmbeddedChannel channel = new EmbeddedChannel(new GetSegmentRequestHandler(reader));
         channel.writeInbound(new GetSegmentRequest("clientId", "segmentId"));
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jackrabbit.oak.segment.standby.server;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesResponse;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentsReferencesRequest;
+import org.junit.Test;
+
+public class GetSegmentsReferencesRequestHandlerTest {
+
+    @Test
+    public void successfulReadsShouldGenerateResponsesInRequestOrder() throws Exception {
+        StandbyReferencesReader reader = mock(StandbyReferencesReader.class);
+        when(reader.readReferences("first")).thenReturn(singletonList("a"));
+        when(reader.readReferences("second")).thenReturn(asList("b", "c"));
+
+        EmbeddedChannel channel = new EmbeddedChannel(new GetSegmentsReferencesRequestHandler(reader));
+        channel.writeInbound(new GetSegmentsReferencesRequest("clientId", asList("first", "second")));
+
+        GetReferencesResponse response = (GetReferencesResponse) channel.readOutbound();
+        assertEquals("first", response.getSegmentId());
+        assertEquals(singletonList("a"), response.getReferences());
+
+        response = (GetReferencesResponse) channel.readOutbound();
+        assertEquals("second", response.getSegmentId());
+        assertEquals(asList("b", "c"), response.getReferences());
+
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void unsuccessfulReadsShouldGenerateNotFoundResponses() throws Exception {
+        StandbyReferencesReader reader = mock(StandbyReferencesReader.class);
+        when(reader.readReferences("missing")).thenReturn(null);
+
+        EmbeddedChannel channel = new EmbeddedChannel(new GetSegmentsReferencesRequestHandler(reader));
+        channel.writeInbound(new GetSegmentsReferencesRequest("clientId", singletonList("missing")));
+
+        GetReferencesResponse response = (GetReferencesResponse) channel.readOutbound();
+        assertEquals("missing", response.getSegmentId());
+        assertFalse(response.isFound());
+        assertNull(channel.readOutbound());
+    }
+
+}
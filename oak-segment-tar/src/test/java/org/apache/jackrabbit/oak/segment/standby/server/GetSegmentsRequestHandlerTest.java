@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jackrabbit.oak.segment.standby.server;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentResponse;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentsRequest;
+import org.junit.Test;
+
+public class GetSegmentsRequestHandlerTest {
+
+    @Test
+    public void successfulReadsShouldGenerateResponsesInRequestOrder() throws Exception {
+        byte[] first = new byte[] {3, 4, 5};
+        byte[] second = new byte[] {6, 7};
+
+        StandbySegmentReader reader = mock(StandbySegmentReader.class);
+        when(reader.readSegment("first")).thenReturn(ByteBuffer.wrap(first));
+        when(reader.readSegment("second")).thenReturn(ByteBuffer.wrap(second));
+
+        EmbeddedChannel channel = new EmbeddedChannel(new GetSegmentsRequestHandler(reader));
+        channel.writeInbound(new GetSegmentsRequest("clientId", asList("first", "second")));
+
+        GetSegmentResponse response = (GetSegmentResponse) channel.readOutbound();
+        assertEquals("clientId", response.getClientId());
+        assertEquals("first", response.getSegmentId());
+        assertArrayEquals(first, response.getSegmentData());
+
+        response = (GetSegmentResponse) channel.readOutbound();
+        assertEquals("clientId", response.getClientId());
+        assertEquals("second", response.getSegmentId());
+        assertArrayEquals(second, response.getSegmentData());
+
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void unsuccessfulReadsShouldGenerateNotFoundResponses() throws Exception {
+        byte[] data = new byte[] {3, 4, 5};
+
+        StandbySegmentReader reader = mock(StandbySegmentReader.class);
+        when(reader.readSegment("missing")).thenReturn(null);
+        when(reader.readSegment("present")).thenReturn(ByteBuffer.wrap(data));
+
+        EmbeddedChannel channel = new EmbeddedChannel(new GetSegmentsRequestHandler(reader));
+        channel.writeInbound(new GetSegmentsRequest("clientId", asList("missing", "present")));
+
+        GetSegmentResponse response = (GetSegmentResponse) channel.readOutbound();
+        assertEquals("missing", response.getSegmentId());
+        assertFalse(response.isFound());
+
+        response = (GetSegmentResponse) channel.readOutbound();
+        assertEquals("present", response.getSegmentId());
+        assertTrue(response.isFound());
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void unrecognizedMessagesShouldBeIgnored() throws Exception {
+        StandbySegmentReader reader = mock(StandbySegmentReader.class);
+        EmbeddedChannel channel = new EmbeddedChannel(new GetSegmentsRequestHandler(reader));
+        channel.writeInbound("unrecognized");
+        assertEquals("unrecognized", channel.readInbound());
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.jackrabbit.oak.plugins.document.util.AsyncDocumentStoreAdapter;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Asynchronous companion of the {@link DocumentStore} interface. Each method
+ * has the same semantics as the corresponding method on
+ * {@link DocumentStore}, but returns immediately with a future, which allows
+ * a caller to issue independent round trips to the underlying storage
+ * concurrently.
+ * <p>
+ * Futures of failed operations complete exceptionally with the
+ * {@link DocumentStoreException} the corresponding blocking method would
+ * have thrown. Futures may be completed by a thread owned by the
+ * implementation, therefore dependent actions should not block.
+ * <p>
+ * Use {@link AsyncDocumentStoreAdapter#asyncView(DocumentStore)} to get an
+ * {@code AsyncDocumentStore} for any {@link DocumentStore}.
+ */
+public interface AsyncDocumentStore {
+
+    /**
+     * @see DocumentStore#find(Collection, String)
+     */
+    @NotNull
+    <T extends Document> CompletableFuture<T> findAsync(Collection<T> collection,
+                                                        String key);
+
+    /**
+     * @see DocumentStore#find(Collection, String, int)
+     */
+    @NotNull
+    <T extends Document> CompletableFuture<T> findAsync(Collection<T> collection,
+                                                        String key,
+                                                        int maxCacheAge);
+
+    /**
+     * @see DocumentStore#query(Collection, String, String, int)
+     */
+    @NotNull
+    <T extends Document> CompletableFuture<List<T>> queryAsync(Collection<T> collection,
+                                                               String fromKey,
+                                                               String toKey,
+                                                               int limit);
+
+    /**
+     * @see DocumentStore#create(Collection, List)
+     */
+    @NotNull
+    <T extends Document> CompletableFuture<Boolean> createAsync(Collection<T> collection,
+                                                                List<UpdateOp> updateOps);
+
+    /**
+     * @see DocumentStore#createOrUpdate(Collection, UpdateOp)
+     */
+    @NotNull
+    <T extends Document> CompletableFuture<T> createOrUpdateAsync(Collection<T> collection,
+                                                                  UpdateOp update);
+
+    /**
+     * @see DocumentStore#createOrUpdate(Collection, List)
+     */
+    @NotNull
+    <T extends Document> CompletableFuture<List<T>> createOrUpdateAsync(Collection<T> collection,
+                                                                        List<UpdateOp> updateOps);
+
+    /**
+     * @see DocumentStore#findAndUpdate(Collection, UpdateOp)
+     */
+    @NotNull
+    <T extends Document> CompletableFuture<T> findAndUpdateAsync(Collection<T> collection,
+                                                                 UpdateOp update);
+}
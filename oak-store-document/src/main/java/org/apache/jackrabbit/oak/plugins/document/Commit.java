@@ -24,6 +24,7 @@ import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Iterables;
@@ -51,6 +52,8 @@ import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
 import static org.apache.jackrabbit.oak.plugins.document.Document.MOD_COUNT;
 import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.COLLISIONS;
 import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.SPLIT_CANDIDATE_THRESHOLD;
+import static org.apache.jackrabbit.oak.plugins.document.util.AsyncDocumentStoreAdapter.asyncView;
+import static org.apache.jackrabbit.oak.plugins.document.util.AsyncDocumentStoreAdapter.join;
 
 /**
  * A higher level object representing a commit.
@@ -318,12 +321,14 @@ public class Commit {
         }
 
         // push branch changes to journal
+        // the journal entry is written concurrently with the changed nodes
+        CompletableFuture<Boolean> journalUpdate = null;
         if (baseBranchRevision != null) {
             // store as external change
             JournalEntry doc = JOURNAL.newDocument(store);
             doc.modified(modifiedNodes);
             Revision r = revision.asBranchRevision();
-            store.create(JOURNAL, singletonList(doc.asUpdateOp(r)));
+            journalUpdate = asyncView(store).createAsync(JOURNAL, singletonList(doc.asUpdateOp(r)));
         }
 
         int commitRootDepth = PathUtils.getDepth(commitRootPath);
@@ -344,6 +349,9 @@ public class Commit {
                 success = true;
             } else {
                 List<NodeDocument> oldDocs = store.createOrUpdate(NODES, changedNodes);
+                if (journalUpdate != null) {
+                    join(journalUpdate);
+                }
                 checkConflicts(oldDocs, changedNodes);
                 checkSplitCandidate(oldDocs);
 
@@ -490,14 +498,17 @@ public class Commit {
 
     private void rollback(List<UpdateOp> changed,
                           UpdateOp commitRoot) {
-        DocumentStore store = nodeStore.getDocumentStore();
+        AsyncDocumentStore store = asyncView(nodeStore.getDocumentStore());
+        // the reverse operations commute, revert the documents concurrently
+        List<CompletableFuture<NodeDocument>> reverted = new ArrayList<>();
         for (UpdateOp op : changed) {
             UpdateOp reverse = op.getReverseOperation();
             if (op.isNew()) {
                 NodeDocument.setDeletedOnce(reverse);
             }
-            store.findAndUpdate(NODES, reverse);
+            reverted.add(store.findAndUpdateAsync(NODES, reverse));
         }
+        join(CompletableFuture.allOf(reverted.toArray(new CompletableFuture<?>[0])));
         removeCollisionMarker(commitRoot.getId());
     }
 
@@ -527,6 +538,7 @@ public class Commit {
         if (doc == null) {
             return;
         }
+        nodeStore.getHotDocumentTracker().updated(doc);
         if (doc.getMemory() > SPLIT_CANDIDATE_THRESHOLD || doc.hasBinary()) {
             nodeStore.addSplitCandidate(doc.getId());
         }
@@ -613,6 +625,7 @@ public class Commit {
                 }
             }
             if (conflictMessage != null) {
+                nodeStore.getHotDocumentTracker().conflict(op.getId());
                 conflictMessage += ", before\n" + revision;
                 if (LOG.isDebugEnabled()) {
                     LOG.debug(conflictMessage  + "; document:\n" +
@@ -19,6 +19,7 @@ package org.apache.jackrabbit.oak.plugins.document;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Predicates.in;
 import static com.google.common.collect.Iterables.filter;
 import static com.google.common.collect.Iterables.transform;
 import static com.google.common.collect.Lists.newArrayList;
@@ -282,6 +283,11 @@ public final class DocumentNodeStore
      */
     private final Map<String, String> splitCandidates = Maps.newConcurrentMap();
 
+    /**
+     * Tracks the documents with a high update or conflict rate.
+     */
+    private final HotDocumentTracker hotDocuments;
+
     /**
      * Summary of changes done by this cluster node to persist by the background
      * update thread.
@@ -533,6 +539,7 @@ public final class DocumentNodeStore
         this.executor = builder.getExecutor();
         this.lastRevSeeker = builder.createMissingLastRevSeeker();
         this.clock = builder.getClock();
+        this.hotDocuments = new HotDocumentTracker(clock);
 
         int cid = builder.getClusterId();
         cid = Integer.getInteger("oak.documentMK.clusterId", cid);
@@ -1083,6 +1090,14 @@ public final class DocumentNodeStore
         splitCandidates.put(id, id);
     }
 
+    /**
+     * @return the tracker of documents with a high update or conflict rate.
+     */
+    @NotNull
+    HotDocumentTracker getHotDocumentTracker() {
+        return hotDocuments;
+    }
+
     @Nullable
     AbstractDocumentNodeState getSecondaryNodeState(@NotNull final String path,
                               @NotNull final RevisionVector rootRevision,
@@ -1285,7 +1300,9 @@ public final class DocumentNodeStore
         }
 
         final RevisionVector readRevision = parent.getLastRevision();
-        return transform(getChildren(parent, name, limit).children, new Function<String, DocumentNodeState>() {
+        List<String> children = getChildren(parent, name, limit).children;
+        prefetchChildDocuments(parent.getPath(), children, readRevision);
+        return transform(children, new Function<String, DocumentNodeState>() {
             @Override
             public DocumentNodeState apply(String input) {
                 String p = concat(parent.getPath(), input);
@@ -1331,6 +1348,38 @@ public final class DocumentNodeStore
         });
     }
 
+    /**
+     * Reads the documents of the given child nodes with a single bulk read,
+     * unless the node states at all read revisions or the documents are
+     * already cached. This puts the documents into the document cache and
+     * avoids a round trip per child node when the child node states are read.
+     *
+     * @param path the path of the parent node.
+     * @param names the names of the child nodes.
+     * @param readRevisions the read revisions of the child nodes.
+     */
+    private void prefetchChildDocuments(String path,
+                                        Iterable<String> names,
+                                        RevisionVector... readRevisions) {
+        List<String> ids = newArrayList();
+        for (String name : names) {
+            String p = concat(path, name);
+            boolean cached = true;
+            for (RevisionVector readRevision : readRevisions) {
+                cached &= nodeCache.getIfPresent(new PathRev(p, readRevision)) != null;
+            }
+            if (!cached) {
+                String id = Utils.getIdFromPath(p);
+                if (store.getIfCached(NODES, id) == null) {
+                    ids.add(id);
+                }
+            }
+        }
+        if (ids.size() > 1) {
+            store.find(NODES, ids);
+        }
+    }
+
     @Nullable
     DocumentNodeState readNode(String path, RevisionVector readRevision) {
         final long start = PERFLOG.start();
@@ -2313,13 +2362,25 @@ public final class DocumentNodeStore
 
     private void backgroundSplit() {
         RevisionVector head = getHeadRevision();
+        // split hot documents eagerly with a lower threshold
+        Set<String> hot = hotDocuments.update();
+        for (String id : hot) {
+            splitCandidates.put(id, id);
+        }
         for (Iterator<String> it = splitCandidates.keySet().iterator(); it.hasNext();) {
             String id = it.next();
             NodeDocument doc = store.find(Collection.NODES, id);
             if (doc == null) {
                 continue;
             }
-            for (UpdateOp op : doc.split(this, head, binarySize)) {
+            Iterable<UpdateOp> splitOps;
+            if (hot.contains(id) && !doc.isSplitDocument()) {
+                splitOps = SplitOperations.forDocument(doc, this, head,
+                        binarySize, HotDocumentTracker.SPLIT_NUM_REVS_THRESHOLD);
+            } else {
+                splitOps = doc.split(this, head, binarySize);
+            }
+            for (UpdateOp op : splitOps) {
                 NodeDocument before = null;
                 if (!op.isNew() ||
                         !store.create(Collection.NODES, Collections.singletonList(op))) {
@@ -2924,6 +2985,9 @@ public final class DocumentNodeStore
                                  DocumentNodeState.Children toChildren,
                                  RevisionVector toRev) {
         Set<String> childrenSet = Sets.newHashSet(toChildren.children);
+        // the children in both revisions are compared by their node states
+        prefetchChildDocuments(parentPath,
+                filter(fromChildren.children, in(childrenSet)), fromRev, toRev);
         for (String n : fromChildren.children) {
             if (!childrenSet.contains(n)) {
                 w.tag('-').value(n);
@@ -64,4 +64,10 @@ public interface DocumentNodeStoreMBean {
     CompositeData getBranchCommitHistory();
 
     CompositeData getMergeBranchCommitHistory();
+
+    @Description("Return the documents with the highest update and conflict\n" +
+        "rates on this cluster node, hottest first. Each entry lists the\n" +
+        "document id, the updates and conflicts per second and the size of\n" +
+        "the document. Hot documents are split eagerly by the background update.")
+    String[] getHotDocuments(@Name("limit") int limit);
 }
@@ -124,6 +124,11 @@ final class DocumentNodeStoreMBeanImpl extends AnnotatedStandardMBean implements
         }), String.class);
     }
 
+    @Override
+    public String[] getHotDocuments(int limit) {
+        return toArray(nodeStore.getHotDocumentTracker().getHotDocuments(limit), String.class);
+    }
+
     @Override
     public String formatRevision(String rev, boolean utc) {
         Revision r = Revision.fromString(rev);
@@ -16,6 +16,7 @@
  */
 package org.apache.jackrabbit.oak.plugins.document;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -81,6 +82,38 @@ public interface DocumentStore {
     <T extends Document> T find(Collection<T> collection, String key, int maxCacheAge)
             throws DocumentStoreException;
 
+    /**
+     * Get the documents with the given {@code keys}. This method is
+     * equivalent to calling {@link #find(Collection, String)} for each of the
+     * keys, but an implementation should serve the documents it has cached
+     * and read the remaining documents with as few round trips as possible.
+     * <p>
+     * The default implementation calls {@link #find(Collection, String)} for
+     * each of the keys.
+     * <p>
+     * The returned documents are immutable.
+     *
+     * @param <T> the document type
+     * @param collection the collection
+     * @param keys the keys
+     * @return the documents found, by key. The map does not contain an entry
+     *          for a key without document.
+     * @throws DocumentStoreException if the operation failed. E.g. because of
+     *          an I/O error.
+     */
+    @NotNull
+    default <T extends Document> Map<String, T> find(Collection<T> collection, List<String> keys)
+            throws DocumentStoreException {
+        Map<String, T> docs = new HashMap<String, T>();
+        for (String key : keys) {
+            T doc = find(collection, key);
+            if (doc != null) {
+                docs.put(key, doc);
+            }
+        }
+        return docs;
+    }
+
     /**
      * Get a list of documents where the key is greater than a start value and
      * less than an end value.
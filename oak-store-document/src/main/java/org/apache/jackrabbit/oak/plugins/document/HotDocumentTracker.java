@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jackrabbit.oak.stats.Clock;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Tracks the update rate, the conflict rate and the size of documents updated
+ * by this cluster node. A document with an update or conflict rate above a
+ * threshold is considered hot. A large document is already considered hot
+ * at a lower update rate, because every update rewrites and invalidates more
+ * data and the document reaches the split size threshold sooner. The
+ * background update splits hot documents eagerly, before they grow to the
+ * usual split thresholds and slow down updates and cache invalidation.
+ * <p>
+ * The rates are computed by {@link #update()} from the counts since its
+ * previous invocation and smoothed with the previous rates. Documents
+ * without updates and conflicts since the previous invocation are not
+ * tracked anymore. The number of tracked documents is limited. Updates and
+ * conflicts are counted atomically with the removal of an idle document,
+ * hence no count is lost.
+ */
+final class HotDocumentTracker {
+
+    /**
+     * The number of updates per second at which a document is considered hot.
+     */
+    static final double UPDATE_RATE_THRESHOLD = Double.parseDouble(
+            System.getProperty("oak.documentMK.hotDocumentUpdateRate", "10"));
+
+    /**
+     * The number of conflicts per second at which a document is considered hot.
+     */
+    static final double CONFLICT_RATE_THRESHOLD = Double.parseDouble(
+            System.getProperty("oak.documentMK.hotDocumentConflictRate", "1"));
+
+    /**
+     * The estimated size in bytes at which a document is considered large.
+     */
+    static final long LARGE_DOCUMENT_SIZE = Long.getLong(
+            "oak.documentMK.hotDocumentLargeSize", 256 * 1024);
+
+    /**
+     * The number of updates per second at which a large document is
+     * considered hot.
+     */
+    static final double LARGE_DOCUMENT_UPDATE_RATE_THRESHOLD = Double.parseDouble(
+            System.getProperty("oak.documentMK.hotDocumentLargeUpdateRate", "1"));
+
+    /**
+     * The maximum number of documents tracked at the same time.
+     */
+    static final int MAX_TRACKED_DOCUMENTS = Integer.getInteger(
+            "oak.documentMK.hotDocumentMaxTracked", 10000);
+
+    /**
+     * Hot documents are split when they have at least this number of
+     * revisions to split off, instead of {@link NodeDocument#NUM_REVS_THRESHOLD}.
+     */
+    static final int SPLIT_NUM_REVS_THRESHOLD = Integer.getInteger(
+            "oak.documentMK.hotDocumentSplitRevs", 10);
+
+    /**
+     * The tracked documents. A {@link ConcurrentHashMap} is required, because
+     * its compute methods are atomic and invoke the function exactly once.
+     */
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    private final Clock clock;
+
+    private final double updateRateThreshold;
+
+    private final double conflictRateThreshold;
+
+    private final long largeDocumentSize;
+
+    private final double largeDocumentUpdateRateThreshold;
+
+    private final int maxTracked;
+
+    private long lastUpdate;
+
+    HotDocumentTracker(@NotNull Clock clock) {
+        this(clock, UPDATE_RATE_THRESHOLD, CONFLICT_RATE_THRESHOLD,
+                LARGE_DOCUMENT_SIZE, LARGE_DOCUMENT_UPDATE_RATE_THRESHOLD,
+                MAX_TRACKED_DOCUMENTS);
+    }
+
+    HotDocumentTracker(@NotNull Clock clock,
+                       double updateRateThreshold,
+                       double conflictRateThreshold,
+                       long largeDocumentSize,
+                       double largeDocumentUpdateRateThreshold,
+                       int maxTracked) {
+        this.clock = clock;
+        this.updateRateThreshold = updateRateThreshold;
+        this.conflictRateThreshold = conflictRateThreshold;
+        this.largeDocumentSize = largeDocumentSize;
+        this.largeDocumentUpdateRateThreshold = largeDocumentUpdateRateThreshold;
+        this.maxTracked = maxTracked;
+        this.lastUpdate = clock.getTime();
+    }
+
+    /**
+     * Records an update of the given document.
+     *
+     * @param doc the document as it was before or after the update.
+     */
+    void updated(@NotNull NodeDocument doc) {
+        entries.compute(doc.getId(), (id, e) -> {
+            e = track(e);
+            if (e != null) {
+                e.updates.increment();
+                e.size = doc.getMemory();
+            }
+            return e;
+        });
+    }
+
+    /**
+     * Records a conflict on the document with the given id.
+     *
+     * @param id the id of a document.
+     */
+    void conflict(@NotNull String id) {
+        entries.compute(id, (k, e) -> {
+            e = track(e);
+            if (e != null) {
+                e.conflicts.increment();
+            }
+            return e;
+        });
+    }
+
+    /**
+     * Computes the rates of the tracked documents from the counts since the
+     * previous invocation of this method and removes documents without
+     * updates or conflicts since then.
+     *
+     * @return the ids of the hot documents.
+     */
+    @NotNull
+    synchronized Set<String> update() {
+        long now = clock.getTime();
+        long elapsed = now - lastUpdate;
+        if (elapsed <= 0) {
+            return Collections.emptySet();
+        }
+        lastUpdate = now;
+        Set<String> hot = new HashSet<String>();
+        for (String id : entries.keySet()) {
+            long[] counts = new long[2];
+            // reset the counts and remove an idle document atomically with
+            // respect to concurrent updates and conflicts
+            Entry e = entries.computeIfPresent(id, (k, v) -> {
+                counts[0] = v.updates.sumThenReset();
+                counts[1] = v.conflicts.sumThenReset();
+                return counts[0] == 0 && counts[1] == 0 ? null : v;
+            });
+            if (e == null) {
+                continue;
+            }
+            e.updateRate = smooth(e.updateRate, counts[0] * 1000.0 / elapsed);
+            e.conflictRate = smooth(e.conflictRate, counts[1] * 1000.0 / elapsed);
+            if (isHot(e)) {
+                hot.add(id);
+            }
+        }
+        return hot;
+    }
+
+    /**
+     * Returns a report of the hot documents, hottest first. A document is
+     * hotter than another if its update and conflict rates relative to their
+     * thresholds are higher.
+     *
+     * @param limit the maximum number of documents to report.
+     * @return the report, one line per document.
+     */
+    @NotNull
+    List<String> getHotDocuments(int limit) {
+        List<Map.Entry<String, Entry>> hot = new ArrayList<Map.Entry<String, Entry>>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (isHot(entry.getValue())) {
+                hot.add(entry);
+            }
+        }
+        Collections.sort(hot, new Comparator<Map.Entry<String, Entry>>() {
+            @Override
+            public int compare(Map.Entry<String, Entry> e1,
+                               Map.Entry<String, Entry> e2) {
+                int c = Double.compare(score(e2.getValue()), score(e1.getValue()));
+                if (c == 0) {
+                    c = Long.compare(e2.getValue().size, e1.getValue().size);
+                }
+                return c;
+            }
+        });
+        List<String> report = new ArrayList<String>();
+        for (Map.Entry<String, Entry> entry : hot.subList(0, Math.min(Math.max(limit, 0), hot.size()))) {
+            Entry e = entry.getValue();
+            report.add(String.format("%s: updates/s=%.1f, conflicts/s=%.1f, size=%d",
+                    entry.getKey(), e.updateRate, e.conflictRate, e.size));
+        }
+        return report;
+    }
+
+    private Entry track(Entry e) {
+        if (e == null && entries.size() < maxTracked) {
+            e = new Entry();
+        }
+        return e;
+    }
+
+    private boolean isHot(Entry e) {
+        return e.updateRate >= updateRateThreshold
+                || e.conflictRate >= conflictRateThreshold
+                || (e.size >= largeDocumentSize
+                        && e.updateRate >= largeDocumentUpdateRateThreshold);
+    }
+
+    private double score(Entry e) {
+        return e.updateRate / updateRateThreshold
+                + e.conflictRate / conflictRateThreshold;
+    }
+
+    private static double smooth(double previous, double current) {
+        return (previous + current) / 2;
+    }
+
+    private static final class Entry {
+
+        final LongAdder updates = new LongAdder();
+
+        final LongAdder conflicts = new LongAdder();
+
+        volatile long size;
+
+        volatile double updateRate;
+
+        volatile double conflictRate;
+    }
+}
@@ -29,7 +29,9 @@ import static org.apache.jackrabbit.oak.plugins.document.util.Utils.PROPERTY_OR_
 import static org.apache.jackrabbit.oak.plugins.document.util.Utils.isCommitted;
 import static org.apache.jackrabbit.oak.plugins.document.util.Utils.resolveCommitRevision;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
@@ -64,6 +66,9 @@ import org.slf4j.LoggerFactory;
 public class LastRevRecoveryAgent {
     private final Logger log = LoggerFactory.getLogger(getClass());
 
+    //Kept less than MongoDocumentStore.IN_CLAUSE_BATCH_SIZE to avoid re-partitioning
+    private static final int FIND_BATCH_SIZE = 450;
+
     private final DocumentStore store;
 
     private final RevisionContext revisionContext;
@@ -320,30 +325,42 @@ public class LastRevRecoveryAgent {
             }
         }
 
-        for (String parentPath : unsavedParents.getPaths()) {
-            Revision calcLastRev = unsavedParents.get(parentPath);
-            Revision knownLastRev = knownLastRevOrModification.get(parentPath);
-            if (knownLastRev == null) {
-                // we don't know when the document was last modified with
-                // the given clusterId. need to read from store
-                String id = Utils.getIdFromPath(parentPath);
-                NodeDocument doc = store.find(NODES, id);
-                if (doc != null) {
-                    Revision lastRev = doc.getLastRev().get(clusterId);
-                    Revision lastMod = determineLastModification(doc, clusterId);
-                    knownLastRev = Utils.max(lastRev, lastMod);
-                } else {
-                    log.warn("Unable to find document: {}", id);
-                    continue;
+        // read the parent documents with unknown last modification in
+        // bounded batches
+        for (List<String> parentPaths : Iterables.partition(unsavedParents.getPaths(), FIND_BATCH_SIZE)) {
+            List<String> parentIds = new ArrayList<String>();
+            for (String parentPath : parentPaths) {
+                if (knownLastRevOrModification.get(parentPath) == null) {
+                    parentIds.add(Utils.getIdFromPath(parentPath));
                 }
             }
+            Map<String, NodeDocument> parentDocs = store.find(NODES, parentIds);
+
+            for (String parentPath : parentPaths) {
+                Revision calcLastRev = unsavedParents.get(parentPath);
+                Revision knownLastRev = knownLastRevOrModification.get(parentPath);
+                if (knownLastRev == null) {
+                    // we don't know when the document was last modified with
+                    // the given clusterId. need to read from store
+                    String id = Utils.getIdFromPath(parentPath);
+                    NodeDocument doc = parentDocs.get(id);
+                    if (doc != null) {
+                        Revision lastRev = doc.getLastRev().get(clusterId);
+                        Revision lastMod = determineLastModification(doc, clusterId);
+                        knownLastRev = Utils.max(lastRev, lastMod);
+                    } else {
+                        log.warn("Unable to find document: {}", id);
+                        continue;
+                    }
+                }
 
-            //Copy the calcLastRev of parent only if they have changed
-            //In many case it might happen that parent have consistent lastRev
-            //This check ensures that unnecessary updates are not made
-            if (knownLastRev == null
-                    || calcLastRev.compareRevisionTime(knownLastRev) > 0) {
-                unsaved.put(parentPath, calcLastRev);
+                //Copy the calcLastRev of parent only if they have changed
+                //In many case it might happen that parent have consistent lastRev
+                //This check ensures that unnecessary updates are not made
+                if (knownLastRev == null
+                        || calcLastRev.compareRevisionTime(knownLastRev) > 0) {
+                    unsaved.put(parentPath, calcLastRev);
+                }
             }
         }
 
@@ -1274,21 +1274,36 @@ public final class NodeDocument extends Document {
             }
 
             // didn't find entry -> scan through remaining head ranges
-            return filter(transform(getPreviousRanges().headMap(revision).entrySet(),
-                    new Function<Map.Entry<Revision, Range>, NodeDocument>() {
-                @Override
-                public NodeDocument apply(Map.Entry<Revision, Range> input) {
-                    if (input.getValue().includes(revision)) {
-                       return getPreviousDoc(input.getKey(), input.getValue());
-                    }
-                    return null;
+            // and read the candidate documents with a single bulk read
+            Map<String, Revision> candidates = Maps.newLinkedHashMap();
+            for (Map.Entry<Revision, Range> e : getPreviousRanges().headMap(revision).entrySet()) {
+                if (e.getValue().includes(revision)) {
+                    candidates.put(Utils.getPreviousIdFor(mainPath, e.getKey(), e.getValue().height), e.getKey());
                 }
-            }), new Predicate<NodeDocument>() {
-                @Override
-                public boolean apply(@Nullable NodeDocument input) {
-                    return input != null && input.getValueMap(property).containsKey(revision);
+            }
+            if (candidates.isEmpty()) {
+                return Collections.emptyList();
+            }
+            Map<String, NodeDocument> docs = Maps.newHashMap(store.find(Collection.NODES,
+                    Lists.newArrayList(candidates.keySet())));
+            // same as getPreviousDocument(): read missing documents again
+            // from the primary
+            for (String prevId : candidates.keySet()) {
+                if (docs.get(prevId) == null) {
+                    docs.put(prevId, store.find(Collection.NODES, prevId, 0));
                 }
-            });
+            }
+            List<NodeDocument> prevDocs = Lists.newArrayList();
+            for (Map.Entry<String, Revision> c : candidates.entrySet()) {
+                String prevId = c.getKey();
+                NodeDocument prev = docs.get(prevId);
+                if (prev == null) {
+                    previousDocumentNotFound(prevId, c.getValue());
+                } else if (prev.getValueMap(property).containsKey(revision)) {
+                    prevDocs.add(prev);
+                }
+            }
+            return prevDocs;
         }
     }
 
@@ -1306,14 +1321,40 @@ public final class NodeDocument extends Document {
         return doc;
     }
 
+    /**
+     * Reads the previous documents referenced by the given ranges into the
+     * document cache with a single bulk read. Documents already present in
+     * the cache are not read again. Nothing is read when at most one
+     * document is missing, the on demand read is just as good in that case.
+     *
+     * @param ranges the previous ranges of this document or of one of its
+     *               intermediate previous documents.
+     */
+    private void prefetchPreviousDocs(Iterable<Map.Entry<Revision, Range>> ranges) {
+        String mainPath = getMainPath();
+        List<String> ids = Lists.newArrayList();
+        for (Map.Entry<Revision, Range> e : ranges) {
+            String prevId = Utils.getPreviousIdFor(mainPath, e.getKey(), e.getValue().height);
+            if (store.getIfCached(Collection.NODES, prevId) == null) {
+                ids.add(prevId);
+            }
+        }
+        if (ids.size() > 1) {
+            LOG.trace("prefetch previous documents {}", ids);
+            store.find(Collection.NODES, ids);
+        }
+    }
+
     @NotNull
     Iterator<NodeDocument> getAllPreviousDocs() {
         if (getPreviousRanges().isEmpty()) {
             return Collections.emptyIterator();
         }
-        //Currently this method would fire one query per previous doc
-        //If that poses a problem we can try to find all prev doc by relying
-        //on property that all prevDoc id would starts <depth+2>:p/path/to/node
+        //The previous documents of each level of the tree are read with a
+        //bulk read. If that poses a problem we can try to find all prev doc
+        //by relying on property that all prevDoc id would starts
+        //<depth+2>:p/path/to/node
+        prefetchPreviousDocs(getPreviousRanges().entrySet());
         return new AbstractIterator<NodeDocument>(){
             private Queue<Map.Entry<Revision, Range>> previousRanges =
                     Queues.newArrayDeque(getPreviousRanges().entrySet());
@@ -1323,6 +1364,7 @@ public final class NodeDocument extends Document {
                     Map.Entry<Revision, Range> e = previousRanges.remove();
                     NodeDocument prev = getPreviousDoc(e.getKey(), e.getValue());
                     if(prev != null){
+                        prefetchPreviousDocs(prev.getPreviousRanges().entrySet());
                         previousRanges.addAll(prev.getPreviousRanges().entrySet());
                         return prev;
                     }
@@ -1348,6 +1390,7 @@ public final class NodeDocument extends Document {
         }
         // create a mutable copy
         final NavigableMap<Revision, Range> ranges = Maps.newTreeMap(getPreviousRanges());
+        prefetchPreviousDocs(ranges.entrySet());
         return new AbstractIterator<NodeDocument>() {
             @Override
             protected NodeDocument computeNext() {
@@ -1370,6 +1413,7 @@ public final class NodeDocument extends Document {
                         break;
                     } else {
                         // replace intermediate entry with its previous ranges
+                        prefetchPreviousDocs(prev.getPreviousRanges().entrySet());
                         ranges.putAll(prev.getPreviousRanges());
                     }
                 }
@@ -25,13 +25,16 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 
@@ -51,6 +54,7 @@ import com.mongodb.ReadPreference;
 
 import org.apache.jackrabbit.oak.cache.CacheStats;
 import org.apache.jackrabbit.oak.cache.CacheValue;
+import org.apache.jackrabbit.oak.plugins.document.AsyncDocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.Collection;
 import org.apache.jackrabbit.oak.plugins.document.Document;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
@@ -71,6 +75,7 @@ import org.apache.jackrabbit.oak.plugins.document.cache.ModificationStamp;
 import org.apache.jackrabbit.oak.plugins.document.cache.NodeDocumentCache;
 import org.apache.jackrabbit.oak.plugins.document.locks.NodeDocumentLocks;
 import org.apache.jackrabbit.oak.plugins.document.locks.StripedNodeDocumentLocks;
+import org.apache.jackrabbit.oak.plugins.document.util.AsyncDocumentStoreAdapter;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.apache.jackrabbit.oak.stats.Clock;
 import org.apache.jackrabbit.oak.commons.PerfLogger;
@@ -122,7 +127,7 @@ import static org.apache.jackrabbit.oak.plugins.document.mongo.MongoUtils.hasInd
 /**
  * A document store that uses MongoDB as the backend.
  */
-public class MongoDocumentStore implements DocumentStore {
+public class MongoDocumentStore implements DocumentStore, AsyncDocumentStore {
 
     private static final Logger LOG = LoggerFactory.getLogger(MongoDocumentStore.class);
     private static final PerfLogger PERFLOG = new PerfLogger(
@@ -218,6 +223,25 @@ public class MongoDocumentStore implements DocumentStore {
     private final int acceptableLagMillis =
             Integer.getInteger("oak.mongo.acceptableLagMillis", 5000);
 
+    /**
+     * The maximum number of asynchronous operations running concurrently.
+     * Additional operations are queued.
+     * <p>
+     * Default is 8.
+     */
+    private final int asyncThreads =
+            Integer.getInteger("oak.mongo.asyncThreads", 8);
+
+    /**
+     * Runs the asynchronous operations. The operations are the blocking
+     * operations of this store, which keeps the cache consistency guarantees
+     * of the blocking API, while independent round trips overlap.
+     */
+    private final ExecutorService asyncExecutor =
+            AsyncDocumentStoreAdapter.newAsyncExecutor("MongoDocumentStore async", asyncThreads);
+
+    private final AsyncDocumentStore async = new AsyncDocumentStoreAdapter(this, asyncExecutor);
+
     /**
      * Feature flag for use of MongoDB client sessions.
      */
@@ -427,6 +451,79 @@ public class MongoDocumentStore implements DocumentStore {
         return result;
     }
 
+    /**
+     * Serves the cached documents and reads the remaining documents with
+     * {@code $in} queries of at most {@link #IN_CLAUSE_BATCH_SIZE} keys. The
+     * documents are read from the primary, unless client sessions are used or
+     * they are previous documents.
+     * Documents read from MongoDB are put into the cache, unless they were
+     * concurrently modified or invalidated.
+     */
+    @NotNull
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends Document> Map<String, T> find(Collection<T> collection,
+                                                    List<String> keys) {
+        if (collection != Collection.NODES) {
+            // other collections are read from the primary, one by one
+            return DocumentStore.super.find(collection, keys);
+        }
+        final long start = PERFLOG.start();
+        Map<String, T> docs = new HashMap<String, T>();
+        Set<String> missing = new LinkedHashSet<String>();
+        for (String key : keys) {
+            NodeDocument doc = nodesCache.getIfPresent(key);
+            if (doc == null) {
+                missing.add(key);
+            } else {
+                stats.doneFindCached(collection, key);
+                if (doc != NodeDocument.NULL) {
+                    docs.put(key, (T) doc);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            // previous documents are immutable and may be read from a
+            // secondary, like a single previous document is
+            Set<String> previous = new LinkedHashSet<String>();
+            Set<String> current = new LinkedHashSet<String>();
+            for (String key : missing) {
+                if (Utils.isPreviousDocId(key)) {
+                    previous.add(key);
+                } else {
+                    current.add(key);
+                }
+            }
+            MongoCollection<BasicDBObject> dbCollection = getDBCollection(collection);
+            if (!withClientSession()) {
+                // without causal consistency a secondary may return outdated
+                // documents, which must not end up in the cache
+                dbCollection = dbCollection.withReadPreference(ReadPreference.primary());
+            }
+            docs.putAll(findAndCache(collection, current, dbCollection));
+            ReadPreference previousReadPref = getMongoReadPreference(collection,
+                    null, DocumentReadPreference.PREFER_SECONDARY);
+            docs.putAll(findAndCache(collection, previous,
+                    getDBCollection(collection, previousReadPref)));
+        }
+        PERFLOG.end(start, 1, "find: keys={}, uncached={}", keys.size(), missing.size());
+        return docs;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Document> Map<String, T> findAndCache(Collection<T> collection,
+                                                             Set<String> keys,
+                                                             MongoCollection<BasicDBObject> dbCollection) {
+        if (keys.isEmpty()) {
+            return new HashMap<String, T>();
+        }
+        try (CacheChangesTracker tracker = nodesCache.registerTracker(keys)) {
+            Map<String, T> found = findDocuments(collection, keys, dbCollection);
+            nodesCache.putNonConflictingDocs(tracker, (Iterable<NodeDocument>) found.values());
+            return found;
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private <T extends Document> T find(final Collection<T> collection,
                                        final String key,
@@ -1181,25 +1278,31 @@ public class MongoDocumentStore implements DocumentStore {
     }
 
     private <T extends Document> Map<String, T> findDocuments(Collection<T> collection, Set<String> keys) {
+        if (keys.isEmpty()) {
+            return new HashMap<String, T>();
+        }
+        MongoCollection<BasicDBObject> dbCollection;
+        if (secondariesWithinAcceptableLag()) {
+            dbCollection = getDBCollection(collection);
+        } else {
+            lagTooHigh();
+            dbCollection = getDBCollection(collection).withReadPreference(ReadPreference.primary());
+        }
+        return findDocuments(collection, keys, dbCollection);
+    }
+
+    private <T extends Document> Map<String, T> findDocuments(Collection<T> collection,
+                                                              Set<String> keys,
+                                                              MongoCollection<BasicDBObject> dbCollection) {
         Map<String, T> docs = new HashMap<String, T>();
-        if (!keys.isEmpty()) {
-            List<Bson> conditions = new ArrayList<>(keys.size());
-            for (String key : keys) {
-                conditions.add(getByKeyQuery(key));
-            }
-            MongoCollection<BasicDBObject> dbCollection;
-            if (secondariesWithinAcceptableLag()) {
-                dbCollection = getDBCollection(collection);
-            } else {
-                lagTooHigh();
-                dbCollection = getDBCollection(collection).withReadPreference(ReadPreference.primary());
-            }
+        for (List<String> keyBatch : Iterables.partition(keys, IN_CLAUSE_BATCH_SIZE)) {
+            Bson query = Filters.in(Document.ID, keyBatch);
             execute(session -> {
                 FindIterable<BasicDBObject> cursor;
                 if (session != null) {
-                    cursor = dbCollection.find(session, Filters.or(conditions));
+                    cursor = dbCollection.find(session, query);
                 } else {
-                    cursor = dbCollection.find(Filters.or(conditions));
+                    cursor = dbCollection.find(query);
                 }
                 for (BasicDBObject doc : cursor) {
                     T foundDoc = convertFromDBObject(collection, doc);
@@ -1537,6 +1640,7 @@ public class MongoDocumentStore implements DocumentStore {
 
     @Override
     public void dispose() {
+        asyncExecutor.shutdown();
         client.close();
         try {
             nodesCache.close();
@@ -1599,6 +1703,57 @@ public class MongoDocumentStore implements DocumentStore {
         return doc;
     }
 
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<T> findAsync(Collection<T> collection, String key) {
+        return async.findAsync(collection, key);
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<T> findAsync(Collection<T> collection,
+                                                               String key,
+                                                               int maxCacheAge) {
+        return async.findAsync(collection, key, maxCacheAge);
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<List<T>> queryAsync(Collection<T> collection,
+                                                                      String fromKey,
+                                                                      String toKey,
+                                                                      int limit) {
+        return async.queryAsync(collection, fromKey, toKey, limit);
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<Boolean> createAsync(Collection<T> collection,
+                                                                       List<UpdateOp> updateOps) {
+        return async.createAsync(collection, updateOps);
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<T> createOrUpdateAsync(Collection<T> collection,
+                                                                         UpdateOp update) {
+        return async.createOrUpdateAsync(collection, update);
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<List<T>> createOrUpdateAsync(Collection<T> collection,
+                                                                               List<UpdateOp> updateOps) {
+        return async.createOrUpdateAsync(collection, updateOps);
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<T> findAndUpdateAsync(Collection<T> collection,
+                                                                        UpdateOp update) {
+        return async.findAndUpdateAsync(collection, update);
+    }
+
     @NotNull
     private static Bson createQueryForUpdate(String key,
                                              Map<Key, Condition> conditions) {
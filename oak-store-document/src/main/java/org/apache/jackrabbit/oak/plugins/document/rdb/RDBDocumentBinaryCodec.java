@@ -0,0 +1,382 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.rdb;
+
+import static com.google.common.base.Charsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.jackrabbit.oak.plugins.document.Document;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Compact binary encoding of documents, stored in the BDATA column as an
+ * alternative to (GZIPped) JSON.
+ * <p>
+ * An encoded document starts with the two magic bytes {@code 0xB1 0x0D}
+ * (which can neither start a GZIP stream nor UTF-8 encoded JSON), followed by
+ * a version byte and a flags byte. If {@link #FLAG_DEFLATED} is set, the
+ * remaining bytes are deflated. The (inflated) body of version 1 is:
+ * <pre>
+ * body     := varint(count) (name value)*
+ * name     := varint(n)      n &lt; D: n-th entry of the static dictionary
+ *                            n = D: new name, followed by string
+ *                            n &gt; D: (n-D-1)-th new name of this document
+ * value    := 0 (null) | 1 (false) | 2 (true)
+ *           | 3 zigzag-varint (long) | 4 8 bytes (double)
+ *           | 5 string | 6 varint(count) (revision value)* (revision map)
+ * revision := zigzag-varint(timestamp delta to previous revision in map)
+ *             varint(counter) varint(clusterId &lt;&lt; 1 | branch)
+ * string   := varint(length) UTF-8 bytes
+ * </pre>
+ * D is the size of the static dictionary of well known property names. The
+ * dictionary of a version must never change; new names require a new version.
+ */
+final class RDBDocumentBinaryCodec {
+
+    static final int VERSION = 1;
+
+    static final int FLAG_DEFLATED = 1;
+
+    private static final byte[] MAGIC = { (byte) 0xB1, (byte) 0x0D };
+
+    private static final int HEADER_LENGTH = MAGIC.length + 2;
+
+    // bodies below this size are not deflated
+    private static final int DEFLATE_THRESHOLD = 256;
+
+    private static final int NULL = 0, FALSE = 1, TRUE = 2, LONG = 3, DOUBLE = 4, STRING = 5, MAP = 6;
+
+    private static final String[] DICTIONARY_V1 = { "_id", "_modified", "_modCount", "_collisionsModCount", "_bin",
+            "_deletedOnce", "_sdType", "_sdMaxRevTime", "_revisions", "_commitRoot", "_deleted", "_lastRev", "_prev",
+            "_stalePrev", "_collisions", "_bc", "_sweepRev", "_children", "_path", "_prevNoProp", "_lastWrittenRootRev",
+            "jcr:primaryType", "jcr:mixinTypes", "jcr:uuid", "jcr:created", "jcr:createdBy", "jcr:lastModified",
+            "jcr:lastModifiedBy", "jcr:data", "jcr:mimeType", "jcr:encoding", "jcr:title", "jcr:frozenUuid",
+            "jcr:frozenPrimaryType", "jcr:frozenMixinTypes", "jcr:versionHistory", "jcr:baseVersion",
+            "jcr:predecessors", "jcr:isCheckedOut", ":childOrder", "rep:principalName", "rep:privileges",
+            "rep:authorizableId" };
+
+    private static final Map<String, Integer> DICTIONARY_V1_CODES = new HashMap<String, Integer>();
+
+    static {
+        for (int i = 0; i < DICTIONARY_V1.length; i++) {
+            DICTIONARY_V1_CODES.put(DICTIONARY_V1[i], i);
+        }
+    }
+
+    private RDBDocumentBinaryCodec() {
+    }
+
+    /**
+     * @return whether the given BDATA content uses the binary encoding.
+     */
+    static boolean isBinaryEncoded(byte[] bdata) {
+        return bdata != null && bdata.length >= HEADER_LENGTH && bdata[0] == MAGIC[0] && bdata[1] == MAGIC[1];
+    }
+
+    /**
+     * Encodes all non-column properties of the {@link Document}.
+     */
+    @NotNull
+    static byte[] encode(@NotNull Document doc, @NotNull Set<String> columnProperties) {
+        Writer body = new Writer();
+        List<Map.Entry<String, Object>> properties = new ArrayList<Map.Entry<String, Object>>();
+        for (Map.Entry<String, Object> entry : doc.entrySet()) {
+            if (!columnProperties.contains(entry.getKey())) {
+                properties.add(entry);
+            }
+        }
+        body.writeVarInt(properties.size());
+        Map<String, Integer> names = new HashMap<String, Integer>();
+        for (Map.Entry<String, Object> entry : properties) {
+            writeName(body, entry.getKey(), names);
+            writeValue(body, entry.getValue());
+        }
+
+        byte[] data = body.toByteArray();
+        int flags = 0;
+        if (data.length >= DEFLATE_THRESHOLD) {
+            data = deflate(data);
+            flags |= FLAG_DEFLATED;
+        }
+        byte[] result = new byte[HEADER_LENGTH + data.length];
+        result[0] = MAGIC[0];
+        result[1] = MAGIC[1];
+        result[2] = VERSION;
+        result[3] = (byte) flags;
+        System.arraycopy(data, 0, result, HEADER_LENGTH, data.length);
+        return result;
+    }
+
+    /**
+     * Decodes the properties in the binary encoded BDATA content into the
+     * given document.
+     *
+     * @throws DocumentStoreException if the content is not a supported
+     *             binary encoding or is malformed.
+     */
+    static void decode(@NotNull byte[] bdata, @NotNull Document doc) throws DocumentStoreException {
+        if (!isBinaryEncoded(bdata)) {
+            throw new DocumentStoreException("not a binary encoded document");
+        }
+        int version = bdata[2];
+        if (version != VERSION) {
+            throw new DocumentStoreException("unsupported binary document encoding version: " + version);
+        }
+        try {
+            ByteBuffer body = ByteBuffer.wrap(bdata, HEADER_LENGTH, bdata.length - HEADER_LENGTH);
+            if ((bdata[3] & FLAG_DEFLATED) != 0) {
+                body = ByteBuffer.wrap(inflate(bdata, HEADER_LENGTH));
+            }
+            int count = readVarInt(body);
+            List<String> names = new ArrayList<String>();
+            for (int i = 0; i < count; i++) {
+                String name = readName(body, names);
+                doc.put(name, readValue(body));
+            }
+            if (body.hasRemaining()) {
+                throw new DocumentStoreException("unexpected trailing data in binary encoded document");
+            }
+        } catch (BufferUnderflowException ex) {
+            throw new DocumentStoreException("truncated binary encoded document", ex);
+        } catch (DataFormatException ex) {
+            throw new DocumentStoreException("corrupt binary encoded document", ex);
+        }
+    }
+
+    private static void writeName(Writer out, String name, Map<String, Integer> names) {
+        Integer code = DICTIONARY_V1_CODES.get(name);
+        if (code != null) {
+            out.writeVarInt(code);
+        } else {
+            Integer index = names.get(name);
+            if (index != null) {
+                out.writeVarInt(DICTIONARY_V1.length + 1 + index);
+            } else {
+                names.put(name, names.size());
+                out.writeVarInt(DICTIONARY_V1.length);
+                out.writeString(name);
+            }
+        }
+    }
+
+    private static String readName(ByteBuffer in, List<String> names) {
+        int code = readVarInt(in);
+        if (code < DICTIONARY_V1.length) {
+            return DICTIONARY_V1[code];
+        } else if (code == DICTIONARY_V1.length) {
+            String name = readString(in);
+            names.add(name);
+            return name;
+        } else {
+            int index = code - DICTIONARY_V1.length - 1;
+            if (index >= names.size()) {
+                throw new DocumentStoreException("invalid property name reference: " + code);
+            }
+            return names.get(index);
+        }
+    }
+
+    private static void writeValue(Writer out, Object value) {
+        if (value == null) {
+            out.write(NULL);
+        } else if (value instanceof Boolean) {
+            out.write(((Boolean) value) ? TRUE : FALSE);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.write(LONG);
+            out.writeVarLong(zigzag(((Number) value).longValue()));
+        } else if (value instanceof Number) {
+            out.write(DOUBLE);
+            out.writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof String) {
+            out.write(STRING);
+            out.writeString((String) value);
+        } else if (value instanceof Map) {
+            @SuppressWarnings("unchecked")
+            Map<Object, Object> map = (Map<Object, Object>) value;
+            out.write(MAP);
+            out.writeVarInt(map.size());
+            long previous = 0;
+            for (Map.Entry<Object, Object> e : map.entrySet()) {
+                Object key = e.getKey();
+                Revision r = key instanceof Revision ? (Revision) key : Revision.fromString(key.toString());
+                out.writeVarLong(zigzag(r.getTimestamp() - previous));
+                out.writeVarInt(r.getCounter());
+                out.writeVarInt(r.getClusterId() << 1 | (r.isBranch() ? 1 : 0));
+                previous = r.getTimestamp();
+                writeValue(out, e.getValue());
+            }
+        } else {
+            throw new IllegalArgumentException("unexpected type: " + value.getClass());
+        }
+    }
+
+    private static Object readValue(ByteBuffer in) {
+        int type = in.get();
+        switch (type) {
+            case NULL:
+                return null;
+            case FALSE:
+                return Boolean.FALSE;
+            case TRUE:
+                return Boolean.TRUE;
+            case LONG:
+                return unzigzag(readVarLong(in));
+            case DOUBLE:
+                return Double.longBitsToDouble(in.getLong());
+            case STRING:
+                return readString(in);
+            case MAP:
+                int count = readVarInt(in);
+                Map<Revision, Object> map = new TreeMap<Revision, Object>(StableRevisionComparator.REVERSE);
+                long previous = 0;
+                for (int i = 0; i < count; i++) {
+                    long timestamp = previous + unzigzag(readVarLong(in));
+                    int counter = readVarInt(in);
+                    int clusterIdAndBranch = readVarInt(in);
+                    Revision r = new Revision(timestamp, counter, clusterIdAndBranch >>> 1, (clusterIdAndBranch & 1) != 0);
+                    previous = timestamp;
+                    map.put(r, readValue(in));
+                }
+                return map;
+            default:
+                throw new DocumentStoreException("unexpected value type " + type + " in binary encoded document");
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readVarInt(in);
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String s = new String(in.array(), in.arrayOffset() + in.position(), length, UTF_8);
+        in.position(in.position() + length);
+        return s;
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        long value = readVarLong(in);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new DocumentStoreException("invalid varint in binary encoded document: " + value);
+        }
+        return (int) value;
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new DocumentStoreException("malformed varint in binary encoded document");
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                bos.write(buffer, 0, n);
+            }
+            return bos.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int offset) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset, data.length - offset);
+            ByteArrayOutputStream bos = new ByteArrayOutputStream((data.length - offset) * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("unexpected end of deflated data");
+                }
+                bos.write(buffer, 0, n);
+            }
+            return bos.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Growable byte buffer with varint support.
+     */
+    private static final class Writer extends ByteArrayOutputStream {
+
+        Writer() {
+            super(1024);
+        }
+
+        void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeLong(long value) {
+            for (int i = 56; i >= 0; i -= 8) {
+                write((int) (value >>> i));
+            }
+        }
+
+        void writeString(String s) {
+            byte[] bytes = s.getBytes(UTF_8);
+            writeVarInt(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+    }
+}
@@ -45,6 +45,7 @@ import org.apache.jackrabbit.oak.plugins.document.UpdateOp;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Key;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Operation;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -70,8 +71,32 @@ public class RDBDocumentSerializer {
 
     private static final RDBJSONSupport JSON = new RDBJSONSupport(true);
 
+    private final boolean binaryEncoding;
+
     public RDBDocumentSerializer(DocumentStore store) {
+        this(store, false);
+    }
+
+    /**
+     * @param binaryEncoding
+     *            whether to serialize documents in the compact binary
+     *            encoding (see {@link #asBytes(Document, Set)}).
+     */
+    public RDBDocumentSerializer(DocumentStore store, boolean binaryEncoding) {
         this.store = store;
+        this.binaryEncoding = binaryEncoding;
+    }
+
+    /**
+     * Serializes all non-column properties of the {@link Document} into the
+     * compact binary encoding, suitable for the BDATA column.
+     *
+     * @return the binary encoding, or {@code null} when this serializer uses
+     *         JSON, see {@link #asString(Document, Set)}.
+     */
+    @Nullable
+    public byte[] asBytes(@NotNull Document doc, Set<String> columnProperties) {
+        return binaryEncoding ? RDBDocumentBinaryCodec.encode(doc, columnProperties) : null;
     }
 
     /**
@@ -182,7 +207,10 @@ public class RDBDocumentSerializer {
         // case #1: BDATA (blob) contains base data, DATA (string) contains
         // update operations
         try {
-            if (bdata != null && bdata.length != 0) {
+            if (RDBDocumentBinaryCodec.isBinaryEncoded(bdata)) {
+                RDBDocumentBinaryCodec.decode(bdata, doc);
+                blobInUse = true;
+            } else if (bdata != null && bdata.length != 0) {
                 String s = fromBlobData(bdata);
                 json = new JsopTokenizer(s);
                 json.read('{');
@@ -191,7 +219,7 @@ public class RDBDocumentSerializer {
                 blobInUse = true;
             }
         } catch (Exception ex) {
-            throw asDocumentStoreException(ex, "parsing blob data as JSON");
+            throw asDocumentStoreException(ex, "parsing blob data");
         }
 
         json = new JsopTokenizer(charData);
@@ -45,6 +45,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -52,8 +53,10 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.zip.Deflater;
@@ -63,6 +66,7 @@ import javax.sql.DataSource;
 
 import org.apache.jackrabbit.oak.cache.CacheStats;
 import org.apache.jackrabbit.oak.cache.CacheValue;
+import org.apache.jackrabbit.oak.plugins.document.AsyncDocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.Collection;
 import org.apache.jackrabbit.oak.plugins.document.Document;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreBuilder;
@@ -81,6 +85,7 @@ import org.apache.jackrabbit.oak.plugins.document.cache.NodeDocumentCache;
 import org.apache.jackrabbit.oak.plugins.document.locks.NodeDocumentLocks;
 import org.apache.jackrabbit.oak.plugins.document.locks.StripedNodeDocumentLocks;
 import org.apache.jackrabbit.oak.plugins.document.mongo.MongoDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.util.AsyncDocumentStoreAdapter;
 import org.apache.jackrabbit.oak.plugins.document.util.CloseableIterator;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -161,8 +166,8 @@ import com.google.common.collect.Sets;
  * <tr>
  * <th>DSIZE</th>
  * <td>bigint</td>
- * <td>The approximate size of the document's JSON serialization (for debugging
- * purposes).</td>
+ * <td>The approximate size of the document's JSON serialization or binary
+ * encoding (for debugging purposes).</td>
  * </tr>
  * <tr>
  * <th>VERSION</th>
@@ -192,6 +197,8 @@ import com.google.common.collect.Sets;
  * <th>BDATA</th>
  * <td>blob</td>
  * <td>The document's JSON serialization (usually GZIPped, only used for "large"
+ * documents), or its compact binary encoding when
+ * {@link RDBOptions#binaryEncoding(boolean)} is enabled (used for all
  * documents).</td>
  * </tr>
  * </tbody>
@@ -243,7 +250,7 @@ import com.google.common.collect.Sets;
  * "deletedOnce", and "_modified". Attempts to use a different indexed property
  * will cause a {@link DocumentStoreException}.
  */
-public class RDBDocumentStore implements DocumentStore {
+public class RDBDocumentStore implements DocumentStore, AsyncDocumentStore {
 
     /**
      * Creates a {@linkplain RDBDocumentStore} instance using the provided
@@ -276,6 +283,40 @@ public class RDBDocumentStore implements DocumentStore {
         return readDocumentCached(collection, id, maxCacheAge);
     }
 
+    /**
+     * Serves the cached documents and reads the remaining documents with
+     * {@code IN} statements of at most {@link RDBJDBCTools#MAX_IN_CLAUSE} keys.
+     * Documents read from the database are put into the cache, unless they
+     * were concurrently modified or invalidated.
+     */
+    @NotNull
+    @Override
+    public <T extends Document> Map<String, T> find(Collection<T> collection, List<String> ids) {
+        Map<String, T> result = new HashMap<String, T>();
+        Set<String> missing = new LinkedHashSet<String>(ids);
+        if (collection == Collection.NODES) {
+            for (String id : ids) {
+                NodeDocument cached = nodesCache.getIfPresent(id);
+                if (cached != null) {
+                    missing.remove(id);
+                    if (cached != NodeDocument.NULL) {
+                        result.put(id, castAsT(cached));
+                    }
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            try (CacheChangesTracker tracker = obtainTracker(collection, missing)) {
+                Map<String, T> read = readDocumentsUncached(collection, missing);
+                if (tracker != null) {
+                    nodesCache.putNonConflictingDocs(tracker, castAsNodeDocumentList(new ArrayList<T>(read.values())));
+                }
+                result.putAll(read);
+            }
+        }
+        return result;
+    }
+
     @NotNull
     @Override
     public <T extends Document> List<T> query(Collection<T> collection, String fromKey, String toKey, int limit) {
@@ -745,6 +786,7 @@ public class RDBDocumentStore implements DocumentStore {
 
     @Override
     public void dispose() {
+        this.asyncExecutor.shutdown();
         if (!this.tablesToBeDropped.isEmpty()) {
             String dropped = "";
             LOG.debug("attempting to drop: " + this.tablesToBeDropped);
@@ -872,6 +914,53 @@ public class RDBDocumentStore implements DocumentStore {
         }
     }
 
+    // asynchronous API, running the blocking operations on a bounded pool of
+    // threads, so that independent statements use separate connections
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<T> findAsync(Collection<T> collection, String id) {
+        return async.findAsync(collection, id);
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<T> findAsync(Collection<T> collection, String id, int maxCacheAge) {
+        return async.findAsync(collection, id, maxCacheAge);
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<List<T>> queryAsync(Collection<T> collection, String fromKey, String toKey,
+            int limit) {
+        return async.queryAsync(collection, fromKey, toKey, limit);
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<Boolean> createAsync(Collection<T> collection, List<UpdateOp> updateOps) {
+        return async.createAsync(collection, updateOps);
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<T> createOrUpdateAsync(Collection<T> collection, UpdateOp update) {
+        return async.createOrUpdateAsync(collection, update);
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<List<T>> createOrUpdateAsync(Collection<T> collection,
+            List<UpdateOp> updateOps) {
+        return async.createOrUpdateAsync(collection, updateOps);
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<T> findAndUpdateAsync(Collection<T> collection, UpdateOp update) {
+        return async.findAndUpdateAsync(collection, update);
+    }
+
     // implementation
 
     private static final String MODIFIED = "_modified";
@@ -890,6 +979,11 @@ public class RDBDocumentStore implements DocumentStore {
 
     private RDBConnectionHandler ch;
 
+    private final ExecutorService asyncExecutor = AsyncDocumentStoreAdapter.newAsyncExecutor("RDBDocumentStore async",
+            ASYNCTHREADS);
+
+    private final AsyncDocumentStore async = new AsyncDocumentStoreAdapter(this, asyncExecutor);
+
     // from options
     private Set<String> tablesToBeDropped = new HashSet<String>();
 
@@ -945,9 +1039,10 @@ public class RDBDocumentStore implements DocumentStore {
             new String[] { ID, NodeDocument.HAS_BINARY_FLAG, NodeDocument.DELETED_ONCE, COLLISIONSMODCOUNT, MODIFIED, MODCOUNT,
                     NodeDocument.SD_TYPE, NodeDocument.SD_MAX_REV_TIME_IN_SECS, VERSIONPROP }));
 
-    private final RDBDocumentSerializer ser = new RDBDocumentSerializer(this);
+    private RDBDocumentSerializer ser;
 
     private void initialize(DataSource ds, DocumentNodeStoreBuilder<?> builder, RDBOptions options) throws Exception {
+        this.ser = new RDBDocumentSerializer(this, options.isBinaryEncoding());
         this.stats = builder.getDocumentStoreStatsCollector();
 
         this.callStack = LOG.isDebugEnabled() ? new Exception("call stack of RDBDocumentStore creation") : null;
@@ -1983,6 +2078,7 @@ public class RDBDocumentStore implements DocumentStore {
         Connection connection = null;
         RDBTableMetaData tmd = getTable(collection);
         String data = null;
+        byte[] bdata = null;
         try {
             connection = this.ch.getRWConnection();
             Number hasBinary = (Number) document.get(NodeDocument.HAS_BINARY_FLAG);
@@ -2016,11 +2112,14 @@ public class RDBDocumentStore implements DocumentStore {
                 }
             }
             if (!success && shouldRetry) {
-                data = ser.asString(document, tmd.getColumnOnlyProperties());
+                bdata = ser.asBytes(document, tmd.getColumnOnlyProperties());
+                if (bdata == null) {
+                    data = ser.asString(document, tmd.getColumnOnlyProperties());
+                }
                 Object m = document.get(MODIFIED);
                 long modified = (m instanceof Long) ? ((Long)m).longValue() : 0;
                 success = db.update(connection, tmd, document.getId(), modified, hasBinary, deletedOnce, modcount, cmodcount,
-                        oldmodcount, data);
+                        oldmodcount, data, bdata);
                 connection.commit();
             }
             return success;
@@ -2135,6 +2234,9 @@ public class RDBDocumentStore implements DocumentStore {
     // Whether to use JDBC batch commands for the createOrUpdate (default: true).
     private static final boolean BATCHUPDATES = Boolean.parseBoolean(System
             .getProperty("org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.BATCHUPDATES", "true"));
+    // Maximum number of concurrently running asynchronous operations (default: 4)
+    private static final int ASYNCTHREADS = Integer.getInteger(
+            "org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.ASYNCTHREADS", 4);
 
     public static byte[] asBytes(@NotNull String data) {
         byte[] bytes;
@@ -258,7 +258,8 @@ public class RDBDocumentStoreJDBC {
         int[] results;
         try {
             for (T document : sortedDocs) {
-                String data = this.ser.asString(document, tmd.getColumnOnlyProperties());
+                byte[] bdata = this.ser.asBytes(document, tmd.getColumnOnlyProperties());
+                String data = bdata == null ? this.ser.asString(document, tmd.getColumnOnlyProperties()) : null;
                 String id = document.getId();
                 Number hasBinary = (Number) document.get(NodeDocument.HAS_BINARY_FLAG);
                 Boolean deletedOnce = (Boolean) document.get(NodeDocument.DELETED_ONCE);
@@ -271,19 +272,12 @@ public class RDBDocumentStoreJDBC {
                 stmt.setObject(si++, deletedOnceAsNullOrInteger(deletedOnce), Types.SMALLINT);
                 stmt.setObject(si++, document.get(MODCOUNT), Types.BIGINT);
                 stmt.setObject(si++, cmodcount == null ? Long.valueOf(0) : cmodcount, Types.BIGINT);
-                stmt.setObject(si++, data.length(), Types.BIGINT);
+                stmt.setObject(si++, dataSize(data, bdata), Types.BIGINT);
                 if (tmd.hasSplitDocs()) {
                     stmt.setObject(si++, document.get(NodeDocument.SD_TYPE));
                     stmt.setObject(si++, document.get(NodeDocument.SD_MAX_REV_TIME_IN_SECS));
                 }
-                if (data.length() < tmd.getDataLimitInOctets() / CHAR2OCTETRATIO) {
-                    stmt.setString(si++, data);
-                    stmt.setBinaryStream(si++, null, 0);
-                } else {
-                    stmt.setString(si++, "\"blob\"");
-                    byte[] bytes = asBytes(data);
-                    stmt.setBytes(si++, bytes);
-                }
+                si = setDataInStatement(tmd, stmt, si, data, bdata);
                 stmt.addBatch();
             }
             results = stmt.executeBatch();
@@ -343,7 +337,8 @@ public class RDBDocumentStoreJDBC {
                     continue; // This is a new document. We'll deal with the inserts later.
                 }
 
-                String data = this.ser.asString(document, tmd.getColumnOnlyProperties());
+                byte[] bdata = this.ser.asBytes(document, tmd.getColumnOnlyProperties());
+                String data = bdata == null ? this.ser.asString(document, tmd.getColumnOnlyProperties()) : null;
                 Number hasBinary = (Number) document.get(NodeDocument.HAS_BINARY_FLAG);
                 Boolean deletedOnce = (Boolean) document.get(NodeDocument.DELETED_ONCE);
                 Long cmodcount = (Long) document.get(COLLISIONSMODCOUNT);
@@ -354,16 +349,9 @@ public class RDBDocumentStoreJDBC {
                 stmt.setObject(si++, deletedOnceAsNullOrInteger(deletedOnce), Types.SMALLINT);
                 stmt.setObject(si++, modcount, Types.BIGINT);
                 stmt.setObject(si++, cmodcount == null ? Long.valueOf(0) : cmodcount, Types.BIGINT);
-                stmt.setObject(si++, data.length(), Types.BIGINT);
+                stmt.setObject(si++, dataSize(data, bdata), Types.BIGINT);
 
-                if (data.length() < tmd.getDataLimitInOctets() / CHAR2OCTETRATIO) {
-                    stmt.setString(si++, data);
-                    stmt.setBinaryStream(si++, null, 0);
-                } else {
-                    stmt.setString(si++, "\"blob\"");
-                    byte[] bytes = asBytes(data);
-                    stmt.setBytes(si++, bytes);
-                }
+                si = setDataInStatement(tmd, stmt, si, data, bdata);
 
                 setIdInStatement(tmd, stmt, si++, document.getId());
                 stmt.setObject(si++, modcount - 1, Types.BIGINT);
@@ -857,7 +845,7 @@ public class RDBDocumentStoreJDBC {
     }
 
     public boolean update(Connection connection, RDBTableMetaData tmd, String id, Long modified, Number hasBinary,
-            Boolean deletedOnce, Long modcount, Long cmodcount, Long oldmodcount, String data) throws SQLException {
+            Boolean deletedOnce, Long modcount, Long cmodcount, Long oldmodcount, String data, byte[] bdata) throws SQLException {
 
         StringBuilder t = new StringBuilder();
         t.append("update " + tmd.getName() + " set ");
@@ -875,16 +863,8 @@ public class RDBDocumentStoreJDBC {
             stmt.setObject(si++, deletedOnceAsNullOrInteger(deletedOnce), Types.SMALLINT);
             stmt.setObject(si++, modcount, Types.BIGINT);
             stmt.setObject(si++, cmodcount == null ? Long.valueOf(0) : cmodcount, Types.BIGINT);
-            stmt.setObject(si++, data.length(), Types.BIGINT);
-
-            if (data.length() < tmd.getDataLimitInOctets() / CHAR2OCTETRATIO) {
-                stmt.setString(si++, data);
-                stmt.setBinaryStream(si++, null, 0);
-            } else {
-                stmt.setString(si++, "\"blob\"");
-                byte[] bytes = asBytes(data);
-                stmt.setBytes(si++, bytes);
-            }
+            stmt.setObject(si++, dataSize(data, bdata), Types.BIGINT);
+            si = setDataInStatement(tmd, stmt, si, data, bdata);
 
             setIdInStatement(tmd, stmt, si++, id);
 
@@ -1008,6 +988,33 @@ public class RDBDocumentStoreJDBC {
         }
     }
 
+    /**
+     * Sets the DATA and BDATA parameters for a full serialization of a
+     * document, given either as JSON ({@code data}) or in the binary encoding
+     * ({@code bdata}, which takes precedence when not {@code null}).
+     *
+     * @return the index of the next parameter
+     */
+    private static int setDataInStatement(RDBTableMetaData tmd, PreparedStatement stmt, int si, String data, byte[] bdata)
+            throws SQLException {
+        if (bdata != null) {
+            stmt.setString(si++, "\"blob\"");
+            stmt.setBytes(si++, bdata);
+        } else if (data.length() < tmd.getDataLimitInOctets() / CHAR2OCTETRATIO) {
+            stmt.setString(si++, data);
+            stmt.setBinaryStream(si++, null, 0);
+        } else {
+            stmt.setString(si++, "\"blob\"");
+            byte[] bytes = asBytes(data);
+            stmt.setBytes(si++, bytes);
+        }
+        return si;
+    }
+
+    private static long dataSize(String data, byte[] bdata) {
+        return bdata != null ? bdata.length : data.length();
+    }
+
     private static void setIdInStatement(RDBTableMetaData tmd, PreparedStatement stmt, int idx, String id) throws SQLException {
         try {
             if (tmd.isIdBinary()) {
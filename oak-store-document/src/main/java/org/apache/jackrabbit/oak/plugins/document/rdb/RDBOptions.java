@@ -28,6 +28,7 @@ public class RDBOptions {
     private int initialSchema = Integer.getInteger("org.apache.jackrabbit.oak.plugins.document.rdb.RDBOptions.INITIALSCHEMA", 2);
     private int upgradeToSchema = Integer.getInteger("org.apache.jackrabbit.oak.plugins.document.rdb.RDBOptions.UPGRADETOSCHEMA",
             2);
+    private boolean binaryEncoding = Boolean.getBoolean("org.apache.jackrabbit.oak.plugins.document.rdb.RDBOptions.BINARYENCODING");
 
     public RDBOptions() {
     }
@@ -79,4 +80,18 @@ public class RDBOptions {
     public int getUpgradeToSchema() {
         return this.upgradeToSchema;
     }
+
+    /**
+     * Whether to write full document serializations in the compact binary
+     * encoding instead of JSON. Rows written in either format can be read
+     * regardless of this setting.
+     */
+    public RDBOptions binaryEncoding(boolean binaryEncoding) {
+        this.binaryEncoding = binaryEncoding;
+        return this;
+    }
+
+    public boolean isBinaryEncoding() {
+        return this.binaryEncoding;
+    }
 }
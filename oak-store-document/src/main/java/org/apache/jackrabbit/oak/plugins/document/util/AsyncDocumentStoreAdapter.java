@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.util;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.jackrabbit.oak.plugins.document.AsyncDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.Document;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
+import org.apache.jackrabbit.oak.plugins.document.UpdateOp;
+import org.jetbrains.annotations.NotNull;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An {@link AsyncDocumentStore} running the blocking methods of a
+ * {@link DocumentStore} with an {@link Executor}. With an executor running
+ * tasks in the calling thread, this adapter provides the asynchronous API
+ * for stores without a native implementation, like the
+ * {@link org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore}.
+ */
+public final class AsyncDocumentStoreAdapter implements AsyncDocumentStore {
+
+    private static final Executor DIRECT = Runnable::run;
+
+    private final DocumentStore store;
+
+    private final Executor executor;
+
+    public AsyncDocumentStoreAdapter(@NotNull DocumentStore store,
+                                     @NotNull Executor executor) {
+        this.store = checkNotNull(store);
+        this.executor = checkNotNull(executor);
+    }
+
+    /**
+     * Returns an {@link AsyncDocumentStore} for the given store. This is the
+     * store itself if it implements {@link AsyncDocumentStore}, otherwise an
+     * adapter running the operations in the calling thread.
+     *
+     * @param store the document store.
+     * @return the asynchronous view of the store.
+     */
+    @NotNull
+    public static AsyncDocumentStore asyncView(@NotNull DocumentStore store) {
+        if (store instanceof AsyncDocumentStore) {
+            return (AsyncDocumentStore) store;
+        }
+        return new AsyncDocumentStoreAdapter(store, DIRECT);
+    }
+
+    /**
+     * Creates an executor for the asynchronous operations of a document store.
+     * At most {@code threads} operations run concurrently, additional
+     * operations are queued. Idle threads are released after a minute.
+     *
+     * @param name the prefix of the thread names.
+     * @param threads the maximum number of threads.
+     * @return the executor.
+     */
+    @NotNull
+    public static ExecutorService newAsyncExecutor(@NotNull String name, int threads) {
+        checkArgument(threads > 0, "threads must be positive: %s", threads);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Waits for the given future and returns its result. A failure of the
+     * operation is re-thrown as is when it is a {@link RuntimeException},
+     * otherwise converted to a {@link DocumentStoreException}.
+     *
+     * @param future the future of an asynchronous operation.
+     * @return the result of the operation.
+     * @throws DocumentStoreException if the operation failed.
+     */
+    public static <T> T join(@NotNull CompletableFuture<T> future)
+            throws DocumentStoreException {
+        try {
+            return future.join();
+        } catch (CompletionException | CancellationException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw DocumentStoreException.convert(cause);
+        }
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<T> findAsync(Collection<T> collection,
+                                                               String key) {
+        return supply(() -> store.find(collection, key));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<T> findAsync(Collection<T> collection,
+                                                               String key,
+                                                               int maxCacheAge) {
+        return supply(() -> store.find(collection, key, maxCacheAge));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<List<T>> queryAsync(Collection<T> collection,
+                                                                      String fromKey,
+                                                                      String toKey,
+                                                                      int limit) {
+        return supply(() -> store.query(collection, fromKey, toKey, limit));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<Boolean> createAsync(Collection<T> collection,
+                                                                       List<UpdateOp> updateOps) {
+        return supply(() -> store.create(collection, updateOps));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<T> createOrUpdateAsync(Collection<T> collection,
+                                                                         UpdateOp update) {
+        return supply(() -> store.createOrUpdate(collection, update));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<List<T>> createOrUpdateAsync(Collection<T> collection,
+                                                                               List<UpdateOp> updateOps) {
+        return supply(() -> store.createOrUpdate(collection, updateOps));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<T> findAndUpdateAsync(Collection<T> collection,
+                                                                        UpdateOp update) {
+        return supply(() -> store.findAndUpdate(collection, update));
+    }
+
+    private <R> CompletableFuture<R> supply(Supplier<R> operation) {
+        try {
+            return CompletableFuture.supplyAsync(operation, executor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<R> failed = new CompletableFuture<R>();
+            failed.completeExceptionally(new DocumentStoreException(
+                    "Unable to schedule asynchronous operation", e));
+            return failed;
+        }
+    }
+}
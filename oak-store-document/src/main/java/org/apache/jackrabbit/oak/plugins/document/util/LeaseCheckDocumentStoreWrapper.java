@@ -20,8 +20,11 @@ package org.apache.jackrabbit.oak.plugins.document.util;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 import org.apache.jackrabbit.oak.cache.CacheStats;
+import org.apache.jackrabbit.oak.plugins.document.AsyncDocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.ClusterNodeInfo;
 import org.apache.jackrabbit.oak.plugins.document.Collection;
 import org.apache.jackrabbit.oak.plugins.document.Document;
@@ -31,13 +34,18 @@ import org.apache.jackrabbit.oak.plugins.document.UpdateOp;
 import org.apache.jackrabbit.oak.plugins.document.cache.CacheInvalidationStats;
 import org.jetbrains.annotations.NotNull;
 
+import static org.apache.jackrabbit.oak.plugins.document.util.AsyncDocumentStoreAdapter.asyncView;
+
 /**
  * Wrapper of another DocumentStore that does a lease check on any method
  * invocation (read or update) and fails if the lease is not valid.
  * <p>
+ * Asynchronous operations are checked when they are issued and fail with
+ * the exception of the lease check.
+ * <p>
  * @see "https://issues.apache.org/jira/browse/OAK-2739 for more details"
  */
-public final class LeaseCheckDocumentStoreWrapper implements DocumentStore {
+public final class LeaseCheckDocumentStoreWrapper implements DocumentStore, AsyncDocumentStore {
 
     private final DocumentStore delegate;
     private final ClusterNodeInfo clusterNodeInfo;
@@ -70,6 +78,14 @@ public final class LeaseCheckDocumentStoreWrapper implements DocumentStore {
         return delegate.find(collection, key, maxCacheAge);
     }
 
+    @NotNull
+    @Override
+    public final <T extends Document> Map<String, T> find(Collection<T> collection,
+            List<String> keys) {
+        performLeaseCheck();
+        return delegate.find(collection, keys);
+    }
+
     @Override
     public final <T extends Document> List<T> query(Collection<T> collection,
             String fromKey, String toKey, int limit) {
@@ -210,4 +226,64 @@ public final class LeaseCheckDocumentStoreWrapper implements DocumentStore {
         performLeaseCheck();
         return delegate.determineServerTimeDifferenceMillis();
     }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<T> findAsync(Collection<T> collection,
+            String key) {
+        return leaseChecked(() -> asyncView(delegate).findAsync(collection, key));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<T> findAsync(Collection<T> collection,
+            String key, int maxCacheAge) {
+        return leaseChecked(() -> asyncView(delegate).findAsync(collection, key, maxCacheAge));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<List<T>> queryAsync(Collection<T> collection,
+            String fromKey, String toKey, int limit) {
+        return leaseChecked(() -> asyncView(delegate).queryAsync(collection, fromKey, toKey, limit));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<Boolean> createAsync(Collection<T> collection,
+            List<UpdateOp> updateOps) {
+        return leaseChecked(() -> asyncView(delegate).createAsync(collection, updateOps));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<T> createOrUpdateAsync(Collection<T> collection,
+            UpdateOp update) {
+        return leaseChecked(() -> asyncView(delegate).createOrUpdateAsync(collection, update));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<List<T>> createOrUpdateAsync(Collection<T> collection,
+            List<UpdateOp> updateOps) {
+        return leaseChecked(() -> asyncView(delegate).createOrUpdateAsync(collection, updateOps));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<T> findAndUpdateAsync(Collection<T> collection,
+            UpdateOp update) {
+        return leaseChecked(() -> asyncView(delegate).findAndUpdateAsync(collection, update));
+    }
+
+    private <R> CompletableFuture<R> leaseChecked(Supplier<CompletableFuture<R>> operation) {
+        try {
+            performLeaseCheck();
+        } catch (DocumentStoreException e) {
+            CompletableFuture<R> failed = new CompletableFuture<R>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        return operation.get();
+    }
 }
@@ -88,6 +88,24 @@ public class LoggingDocumentStoreWrapper implements DocumentStore {
         }
     }
 
+    @NotNull
+    @Override
+    public <T extends Document> Map<String, T> find(final Collection<T> collection,
+                                                    final List<String> keys) {
+        try {
+            logMethod("find", collection, keys);
+            return logResult(new Callable<Map<String, T>>() {
+                @Override
+                public Map<String, T> call() throws Exception {
+                    return store.find(collection, keys);
+                }
+            });
+        } catch (Exception e) {
+            logException(e);
+            throw convert(e);
+        }
+    }
+
     @NotNull
     @Override
     public <T extends Document> List<T> query(final Collection<T> collection,
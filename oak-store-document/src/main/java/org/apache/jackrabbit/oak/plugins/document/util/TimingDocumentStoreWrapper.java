@@ -117,6 +117,22 @@ public class TimingDocumentStoreWrapper implements DocumentStore {
         }
     }
 
+    @Override
+    @NotNull
+    public <T extends Document> Map<String, T> find(Collection<T> collection, List<String> keys) {
+        try {
+            long start = now();
+            Map<String, T> result = base.find(collection, keys);
+            updateAndLogTimes("find3", start, 0, size(new ArrayList<T>(result.values())));
+            if (logCommonCall()) {
+                logCommonCall(start, "find3 " + collection + " " + keys.size() + " keys");
+            }
+            return result;
+        } catch (Exception e) {
+            throw convert(e);
+        }
+    }
+
     @Override
     @NotNull
     public <T extends Document> List<T> query(Collection<T> collection,
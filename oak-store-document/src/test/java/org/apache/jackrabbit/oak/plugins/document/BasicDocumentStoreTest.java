@@ -811,6 +811,45 @@ public class BasicDocumentStoreTest extends AbstractDocumentStoreTest {
         assertTrue(d == null);
     }
 
+    @Test
+    public void testFindMultiple() {
+        String base = this.getClass().getName() + ".testFindMultiple-" + UUID.randomUUID();
+        int cnt = 10;
+        List<UpdateOp> ups = new ArrayList<UpdateOp>();
+        List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < cnt; i++) {
+            String id = base + "-" + i;
+            ids.add(id);
+            removeMe.add(id);
+            if (i % 3 != 0) {
+                UpdateOp up = new UpdateOp(id, true);
+                up.set("foo", "bar" + i);
+                ups.add(up);
+            }
+        }
+        assertTrue(super.ds.create(Collection.NODES, ups));
+
+        // read some of the documents into the cache
+        ds.find(Collection.NODES, base + "-1");
+        ds.find(Collection.NODES, base + "-2");
+
+        Map<String, NodeDocument> docs = ds.find(Collection.NODES, ids);
+        assertEquals(ups.size(), docs.size());
+        for (int i = 0; i < cnt; i++) {
+            String id = base + "-" + i;
+            NodeDocument doc = docs.get(id);
+            if (i % 3 != 0) {
+                assertNotNull("document " + id + " not found", doc);
+                assertEquals(id, doc.getId());
+                assertEquals("bar" + i, doc.get("foo"));
+            } else {
+                assertNull(doc);
+            }
+        }
+
+        assertTrue(ds.find(Collection.NODES, Collections.<String>emptyList()).isEmpty());
+    }
+
     @Test
     public void testUpdateModified() {
         String id = this.getClass().getName() + ".testUpdateModified";
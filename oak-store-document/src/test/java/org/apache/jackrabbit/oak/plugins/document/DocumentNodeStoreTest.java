@@ -3852,6 +3852,44 @@ public class DocumentNodeStoreTest {
         assertFalse(info.isActive());
     }
 
+    @Test
+    public void backgroundSplitHotDocument() throws Exception {
+        Clock clock = new Clock.Virtual();
+        clock.waitUntil(System.currentTimeMillis());
+        Revision.setClock(clock);
+
+        DocumentStore store = new MemoryDocumentStore();
+        DocumentNodeStore ns = builderProvider.newBuilder().setAsyncDelay(0)
+                .clock(clock).setDocumentStore(store).getNodeStore();
+        NodeBuilder builder = ns.getRoot().builder();
+        builder.child("hot");
+        merge(ns, builder);
+        ns.runBackgroundOperations();
+
+        // update the node at a high rate, but less often than
+        // required for a regular split
+        int numUpdates = HotDocumentTracker.SPLIT_NUM_REVS_THRESHOLD * 4;
+        assertTrue(numUpdates < NUM_REVS_THRESHOLD);
+        for (int i = 0; i < numUpdates; i++) {
+            builder = ns.getRoot().builder();
+            builder.child("hot").setProperty("p", i);
+            merge(ns, builder);
+        }
+        clock.waitUntil(clock.getTime() + 1000);
+        ns.runBackgroundOperations();
+
+        String id = Utils.getIdFromPath("/hot");
+        NodeDocument doc = store.find(NODES, id);
+        assertNotNull(doc);
+        assertFalse(doc.getPreviousRanges().isEmpty());
+
+        boolean reported = false;
+        for (String line : ns.getHotDocumentTracker().getHotDocuments(10)) {
+            reported |= line.startsWith(id + ":");
+        }
+        assertTrue(reported);
+    }
+
     private void getChildNodeCountTest(int numChildren,
                                        Iterable<Long> maxValues,
                                        Iterable<Long> expectedValues)
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.util.Utils;
+import org.apache.jackrabbit.oak.stats.Clock;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HotDocumentTrackerTest {
+
+    private Clock.Virtual clock;
+
+    private HotDocumentTracker tracker;
+
+    @Before
+    public void before() {
+        clock = new Clock.Virtual();
+        tracker = new HotDocumentTracker(clock, 10, 1, 1000, 2, 3);
+    }
+
+    @Test
+    public void updateRate() {
+        NodeDocument hot = newDocument("/hot");
+        NodeDocument cold = newDocument("/cold");
+        for (int i = 0; i < 100; i++) {
+            tracker.updated(hot);
+        }
+        tracker.updated(cold);
+        clock.waitUntil(clock.getTime() + 1000);
+
+        Set<String> ids = tracker.update();
+        assertEquals(1, ids.size());
+        assertTrue(ids.contains(hot.getId()));
+
+        List<String> report = tracker.getHotDocuments(10);
+        assertEquals(1, report.size());
+        assertTrue(report.get(0), report.get(0).startsWith(hot.getId() + ":"));
+    }
+
+    @Test
+    public void conflictRate() {
+        NodeDocument doc = newDocument("/foo");
+        tracker.updated(doc);
+        tracker.conflict(doc.getId());
+        tracker.conflict(doc.getId());
+        tracker.conflict(doc.getId());
+        clock.waitUntil(clock.getTime() + 1000);
+
+        Set<String> ids = tracker.update();
+        assertEquals(1, ids.size());
+        assertTrue(ids.contains(doc.getId()));
+    }
+
+    @Test
+    public void largeDocument() {
+        NodeDocument large = newDocument("/large");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append('x');
+        }
+        large.put("p", sb.toString());
+        NodeDocument small = newDocument("/small");
+        for (int i = 0; i < 5; i++) {
+            tracker.updated(large);
+            tracker.updated(small);
+        }
+        clock.waitUntil(clock.getTime() + 1000);
+
+        Set<String> ids = tracker.update();
+        assertEquals(1, ids.size());
+        assertTrue(ids.contains(large.getId()));
+    }
+
+    @Test
+    public void idleDocumentsRemoved() {
+        NodeDocument doc = newDocument("/foo");
+        for (int i = 0; i < 100; i++) {
+            tracker.updated(doc);
+        }
+        clock.waitUntil(clock.getTime() + 1000);
+        assertEquals(1, tracker.update().size());
+        clock.waitUntil(clock.getTime() + 1000);
+        assertTrue(tracker.update().isEmpty());
+        assertTrue(tracker.getHotDocuments(10).isEmpty());
+    }
+
+    @Test
+    public void hottestFirst() {
+        for (int i = 1; i <= 3; i++) {
+            NodeDocument doc = newDocument("/doc-" + i);
+            for (int j = 0; j < i * 100; j++) {
+                tracker.updated(doc);
+            }
+        }
+        clock.waitUntil(clock.getTime() + 1000);
+        assertEquals(3, tracker.update().size());
+
+        List<String> report = tracker.getHotDocuments(2);
+        assertEquals(2, report.size());
+        assertTrue(report.get(0), report.get(0).startsWith(Utils.getIdFromPath("/doc-3") + ":"));
+        assertTrue(report.get(1), report.get(1).startsWith(Utils.getIdFromPath("/doc-2") + ":"));
+    }
+
+    @Test
+    public void maxTracked() {
+        for (int i = 0; i < 5; i++) {
+            NodeDocument doc = newDocument("/doc-" + i);
+            for (int j = 0; j < 100; j++) {
+                tracker.updated(doc);
+            }
+        }
+        clock.waitUntil(clock.getTime() + 1000);
+        assertEquals(3, tracker.update().size());
+    }
+
+    private static NodeDocument newDocument(String path) {
+        NodeDocument doc = new NodeDocument(new MemoryDocumentStore());
+        doc.put(Document.ID, Utils.getIdFromPath(path));
+        return doc;
+    }
+}
@@ -39,6 +39,7 @@ import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
 import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeStore;
+import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
 
 import static com.google.common.collect.Maps.newLinkedHashMap;
@@ -295,6 +296,48 @@ public class NodeDocumentTest {
         ns.dispose();
     }
 
+    @Test
+    public void prefetchPreviousDocs() throws Exception {
+        final Set<String> bulkReads = new HashSet<String>();
+        final Set<String> singleReads = new HashSet<String>();
+        MemoryDocumentStore store = new MemoryDocumentStore() {
+            @Override
+            public <T extends Document> T getIfCached(Collection<T> collection,
+                                                      String key) {
+                // simulate a cold cache
+                return null;
+            }
+
+            @NotNull
+            @Override
+            public <T extends Document> Map<String, T> find(Collection<T> collection,
+                                                            List<String> keys) {
+                bulkReads.addAll(keys);
+                return super.find(collection, keys);
+            }
+
+            @Override
+            public <T extends Document> T find(Collection<T> collection,
+                                               String key) {
+                if (collection == NODES && Utils.isPreviousDocId(key)
+                        && !bulkReads.contains(key)) {
+                    singleReads.add(key);
+                }
+                return super.find(collection, key);
+            }
+        };
+        DocumentNodeStore ns = createTestStore(store, 0, 200);
+        NodeDocument root = getRootDocument(store);
+        assertTrue(root.getPreviousRanges().size() > 1);
+        bulkReads.clear();
+        singleReads.clear();
+
+        int numPrevDocs = Iterators.size(root.getAllPreviousDocs());
+        assertFalse(bulkReads.isEmpty());
+        assertTrue(singleReads.size() < numPrevDocs);
+        ns.dispose();
+    }
+
     @Test
     public void getNewestRevisionTooExpensive() throws Exception {
         final int NUM_CHANGES = 200;
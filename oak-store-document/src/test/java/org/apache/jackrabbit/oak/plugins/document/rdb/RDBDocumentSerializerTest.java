@@ -24,14 +24,20 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.Document;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreFixture;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -107,6 +113,94 @@ public class RDBDocumentSerializerTest {
         }
     }
 
+    @Test
+    public void testBinaryEncoding() {
+        RDBDocumentSerializer binser = new RDBDocumentSerializer(store, true);
+        NodeDocument doc = Collection.NODES.newDocument(store);
+        doc.put(Document.ID, "1:/foo");
+        doc.put("s", "string");
+        doc.put("b", Boolean.TRUE);
+        doc.put("l", -42L);
+        doc.put("d", 1.5d);
+        doc.put("n", null);
+        Map<Revision, Object> revs = new TreeMap<Revision, Object>(StableRevisionComparator.REVERSE);
+        revs.put(new Revision(1500000000000L, 0, 1), "c");
+        revs.put(new Revision(1500000000123L, 2, 3, true), "1-0-1");
+        revs.put(new Revision(1499999999000L, 7, 1), "c");
+        doc.put("_revisions", revs);
+
+        assertNull(this.ser.asBytes(doc, Collections.singleton(Document.ID)));
+        byte[] bdata = binser.asBytes(doc, Collections.singleton(Document.ID));
+        assertTrue(RDBDocumentBinaryCodec.isBinaryEncoded(bdata));
+
+        // readable regardless of the encoding configured for writing
+        RDBRow row = new RDBRow("1:/foo", 0L, false, 1l, 2l, 3l, 0L, 0L, 0L, "\"blob\"", bdata);
+        NodeDocument result = this.ser.fromRow(Collection.NODES, row);
+        assertEquals("1:/foo", result.getId());
+        assertEquals("string", result.get("s"));
+        assertEquals(Boolean.TRUE, result.get("b"));
+        assertEquals(-42L, result.get("l"));
+        assertEquals(1.5d, result.get("d"));
+        assertTrue(result.keySet().contains("n"));
+        assertNull(result.get("n"));
+        assertEquals(revs, result.get("_revisions"));
+    }
+
+    @Test
+    public void testBinaryEncodingLarge() {
+        RDBDocumentSerializer binser = new RDBDocumentSerializer(store, true);
+        NodeDocument doc = Collection.NODES.newDocument(store);
+        doc.put(Document.ID, "1:/foo");
+        for (int i = 0; i < 100; i++) {
+            Map<Revision, Object> values = new TreeMap<Revision, Object>(StableRevisionComparator.REVERSE);
+            for (int j = 0; j < 10; j++) {
+                values.put(new Revision(1500000000000L + j * 1000, j, 1), "\"value-" + i + "-" + j + "\"");
+            }
+            doc.put("prop" + i, values);
+        }
+        byte[] bdata = binser.asBytes(doc, Collections.singleton(Document.ID));
+        assertTrue(bdata.length < binser.asString(doc, Collections.singleton(Document.ID)).length());
+
+        RDBRow row = new RDBRow("1:/foo", 0L, false, 1l, 2l, 3l, 0L, 0L, 0L, "\"blob\"", bdata);
+        NodeDocument result = binser.fromRow(Collection.NODES, row);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(doc.get("prop" + i), result.get("prop" + i));
+        }
+    }
+
+    @Test
+    public void testBinaryEncodingAndDiff() {
+        RDBDocumentSerializer binser = new RDBDocumentSerializer(store, true);
+        NodeDocument doc = Collection.NODES.newDocument(store);
+        doc.put(Document.ID, "_foo");
+        doc.put("m1", 2L);
+        doc.put("m2", 2L);
+        byte[] bdata = binser.asBytes(doc, Collections.singleton(Document.ID));
+
+        RDBRow row = new RDBRow("_foo", 1L, false, 1l, 2l, 3l, 0L, 0L, 0L,
+                "\"blob\", [[\"=\", \"foo\", \"bar\"],[\"M\", \"m1\", 1],[\"M\", \"m2\", 3]]", bdata);
+        NodeDocument result = binser.fromRow(Collection.NODES, row);
+        assertEquals("bar", result.get("foo"));
+        assertEquals(2L, result.get("m1"));
+        assertEquals(3L, result.get("m2"));
+    }
+
+    @Test
+    public void testBinaryEncodingTruncated() {
+        RDBDocumentSerializer binser = new RDBDocumentSerializer(store, true);
+        NodeDocument doc = Collection.NODES.newDocument(store);
+        doc.put(Document.ID, "_foo");
+        doc.put("s", "string");
+        byte[] bdata = binser.asBytes(doc, Collections.singleton(Document.ID));
+        try {
+            RDBRow row = new RDBRow("_foo", 1L, false, 1l, 2l, 3l, 0L, 0L, 0L, "\"blob\"",
+                    Arrays.copyOf(bdata, bdata.length - 2));
+            binser.fromRow(Collection.NODES, row);
+            fail("should fail");
+        } catch (DocumentStoreException expected) {
+        }
+    }
+
     @Test
     public void testBlobAndDiff() throws UnsupportedEncodingException {
         RDBRow row = new RDBRow("_foo", 1L, false, 1l, 2l, 3l, 0L, 0L, 0L,
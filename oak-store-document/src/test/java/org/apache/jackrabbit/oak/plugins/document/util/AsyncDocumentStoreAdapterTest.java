@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.util;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import com.google.common.collect.Lists;
+import org.apache.jackrabbit.oak.plugins.document.AsyncDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.Document;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.UpdateOp;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
+import static org.apache.jackrabbit.oak.plugins.document.util.AsyncDocumentStoreAdapter.asyncView;
+import static org.apache.jackrabbit.oak.plugins.document.util.AsyncDocumentStoreAdapter.join;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncDocumentStoreAdapterTest {
+
+    @Test
+    public void memoryStoreRunsInCallingThread() {
+        DocumentStore store = new MemoryDocumentStore();
+        AsyncDocumentStore async = asyncView(store);
+
+        CompletableFuture<NodeDocument> created = async.createOrUpdateAsync(NODES, newOp("1:/foo"));
+        assertTrue(created.isDone());
+        assertNull(join(created));
+
+        CompletableFuture<NodeDocument> found = async.findAsync(NODES, "1:/foo");
+        assertTrue(found.isDone());
+        assertNotNull(join(found));
+        assertNull(join(async.findAsync(NODES, "1:/bar")));
+    }
+
+    @Test
+    public void asyncViewOfAsyncStore() {
+        DocumentStore store = new LeaseCheckDocumentStoreWrapper(new MemoryDocumentStore(), null);
+        assertSame(store, asyncView(store));
+    }
+
+    @Test
+    public void concurrentOperations() {
+        DocumentStore store = new MemoryDocumentStore();
+        ExecutorService executor = AsyncDocumentStoreAdapter.newAsyncExecutor("test", 4);
+        try {
+            AsyncDocumentStore async = new AsyncDocumentStoreAdapter(store, executor);
+            List<CompletableFuture<NodeDocument>> futures = Lists.newArrayList();
+            for (int i = 0; i < 100; i++) {
+                futures.add(async.createOrUpdateAsync(NODES, newOp("1:/node-" + i)));
+            }
+            for (CompletableFuture<NodeDocument> f : futures) {
+                assertNull(join(f));
+            }
+            assertEquals(100, join(async.queryAsync(NODES, "1:/", "1:/z", 1000)).size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void failureIsRethrown() {
+        final DocumentStoreException failure = new DocumentStoreException("failure");
+        AsyncDocumentStore async = asyncView(new MemoryDocumentStore() {
+            @Override
+            public <T extends Document> T find(Collection<T> collection, String key) {
+                throw failure;
+            }
+        });
+        CompletableFuture<NodeDocument> found = async.findAsync(NODES, "1:/foo");
+        assertTrue(found.isCompletedExceptionally());
+        try {
+            join(found);
+            fail("DocumentStoreException expected");
+        } catch (DocumentStoreException e) {
+            assertSame(failure, e);
+        }
+    }
+
+    @Test
+    public void rejectedOperationFails() {
+        ExecutorService executor = AsyncDocumentStoreAdapter.newAsyncExecutor("test", 1);
+        executor.shutdown();
+        AsyncDocumentStore async = new AsyncDocumentStoreAdapter(new MemoryDocumentStore(), executor);
+        CompletableFuture<NodeDocument> found = async.findAsync(NODES, "1:/foo");
+        assertTrue(found.isCompletedExceptionally());
+        try {
+            join(found);
+            fail("DocumentStoreException expected");
+        } catch (DocumentStoreException e) {
+            // expected
+        }
+    }
+
+    private static UpdateOp newOp(String id) {
+        UpdateOp op = new UpdateOp(id, true);
+        op.set("p", "v");
+        return op;
+    }
+}